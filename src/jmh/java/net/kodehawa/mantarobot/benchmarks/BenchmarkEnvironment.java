@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2016-2018 David Alejandro Rubio Escares / Kodehawa
+ *
+ * Mantaro is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * Mantaro is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mantaro.  If not, see http://www.gnu.org/licenses/
+ */
+
+package net.kodehawa.mantarobot.benchmarks;
+
+import com.timgroup.statsd.NoOpStatsDClient;
+import net.dv8tion.jda.core.JDA;
+import net.dv8tion.jda.core.Permission;
+import net.dv8tion.jda.core.entities.*;
+import net.dv8tion.jda.core.events.message.guild.GuildMessageReceivedEvent;
+import net.kodehawa.mantarobot.MantaroBot;
+import net.kodehawa.mantarobot.core.listeners.command.CommandScheduler;
+import net.kodehawa.mantarobot.core.processor.DefaultCommandProcessor;
+import net.kodehawa.mantarobot.data.Config;
+import net.kodehawa.mantarobot.data.MantaroData;
+import net.kodehawa.mantarobot.db.GlobalAccessIndex;
+import net.kodehawa.mantarobot.db.LocalLeaderboards;
+import net.kodehawa.mantarobot.db.ManagedDatabase;
+import net.kodehawa.mantarobot.db.storage.FileStorage;
+import net.kodehawa.mantarobot.db.storage.Storage;
+import net.kodehawa.mantarobot.utils.data.GsonDataManager;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Sets up just enough of the bot for the dispatch path to run without Discord, RethinkDB or Redis:
+ * a default config, a {@link ManagedDatabase} on an in-memory {@link FileStorage} and a {@link MantaroBot} instance reporting to nowhere.
+ * Discord entities are mocked, and every event is sent by the same user on the same channel.
+ */
+public class BenchmarkEnvironment {
+    public static final long GUILD_ID = 213468583252983809L;
+    public static final long CHANNEL_ID = 266231083341840385L;
+    public static final long USER_ID = 155867458203287552L;
+    public static final long SELF_ID = 213466096718708737L;
+
+    private static boolean initialized = false;
+    private static Config config;
+    private static JDA jda;
+    private static Guild guild;
+    private static TextChannel channel;
+    private static User user;
+    private static Member member;
+
+    @SuppressWarnings("unchecked")
+    public static synchronized void init() throws Exception {
+        if(initialized)
+            return;
+
+        //Has to be set before anything reads the config, or it'll try to create one on disk and exit.
+        config = new Config();
+        config.commandOverloadPolicy = CommandScheduler.OverloadPolicy.DROP;
+        GsonDataManager<Config> configManager = mock(GsonDataManager.class);
+        when(configManager.get()).thenReturn(config);
+        setStatic(MantaroData.class, "config", configManager);
+        //Never touches the disk, but still goes through the same serialization as the real backends.
+        Storage storage = new FileStorage(null);
+        ManagedDatabase db = new ManagedDatabase(storage);
+        db.ensureIndexes();
+        //Same as MantaroData does, or saved guilds would keep their old prefix and policy cached.
+        DefaultCommandProcessor.register(db);
+        GlobalAccessIndex.register(db);
+        LocalLeaderboards.register(db);
+        setStatic(MantaroData.class, "storage", storage);
+        setStatic(MantaroData.class, "db", db);
+
+        MantaroBot bot = mock(MantaroBot.class);
+        when(bot.getStatsClient()).thenReturn(new NoOpStatsDClient());
+        setStatic(MantaroBot.class, "instance", bot);
+
+        jda = mock(JDA.class);
+        SelfUser selfUser = mock(SelfUser.class);
+        when(selfUser.getIdLong()).thenReturn(SELF_ID);
+        when(selfUser.getId()).thenReturn(String.valueOf(SELF_ID));
+        when(jda.getSelfUser()).thenReturn(selfUser);
+
+        guild = mock(Guild.class);
+        channel = mock(TextChannel.class);
+        user = mock(User.class);
+        member = mock(Member.class);
+        Member self = mock(Member.class);
+
+        when(guild.getId()).thenReturn(String.valueOf(GUILD_ID));
+        when(guild.getIdLong()).thenReturn(GUILD_ID);
+        when(guild.getSelfMember()).thenReturn(self);
+        when(guild.getMember(user)).thenReturn(member);
+        when(guild.getJDA()).thenReturn(jda);
+
+        when(channel.getId()).thenReturn(String.valueOf(CHANNEL_ID));
+        when(channel.getIdLong()).thenReturn(CHANNEL_ID);
+        when(channel.getGuild()).thenReturn(guild);
+        when(channel.getJDA()).thenReturn(jda);
+
+        when(user.getId()).thenReturn(String.valueOf(USER_ID));
+        when(user.getIdLong()).thenReturn(USER_ID);
+        when(user.getName()).thenReturn("Benchmark");
+        when(user.getDiscriminator()).thenReturn("0001");
+        when(user.isBot()).thenReturn(false);
+
+        when(member.getUser()).thenReturn(user);
+        when(member.getGuild()).thenReturn(guild);
+        when(member.getRoles()).thenReturn(Collections.emptyList());
+
+        when(self.getUser()).thenReturn(selfUser);
+        when(self.getPermissions(any(Channel.class))).thenReturn(Arrays.asList(Permission.MESSAGE_WRITE, Permission.MESSAGE_EMBED_LINKS));
+        when(self.hasPermission(any(Permission.class))).thenReturn(true);
+
+        initialized = true;
+    }
+
+    public static Config getConfig() {
+        return config;
+    }
+
+    /**
+     * Creates a new message event from the benchmark user, on the benchmark channel.
+     *
+     * @param content The raw content of the message.
+     * @return The event.
+     */
+    public static GuildMessageReceivedEvent event(String content) {
+        Message message = mock(Message.class);
+        when(message.getContentRaw()).thenReturn(content);
+        when(message.getContentDisplay()).thenReturn(content);
+        when(message.getId()).thenReturn("1");
+        when(message.getIdLong()).thenReturn(1L);
+        when(message.getAuthor()).thenReturn(user);
+        when(message.getMember()).thenReturn(member);
+        when(message.getGuild()).thenReturn(guild);
+        when(message.getTextChannel()).thenReturn(channel);
+        when(message.getChannel()).thenReturn(channel);
+        when(message.getJDA()).thenReturn(jda);
+        return new GuildMessageReceivedEvent(jda, 0, message);
+    }
+
+    private static void setStatic(Class<?> clazz, String name, Object value) throws ReflectiveOperationException {
+        Field field = clazz.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(null, value);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2016-2018 David Alejandro Rubio Escares / Kodehawa
+ *
+ * Mantaro is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * Mantaro is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mantaro.  If not, see http://www.gnu.org/licenses/
+ */
+
+package net.kodehawa.mantarobot.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.kodehawa.mantarobot.db.entities.DBGuild;
+import net.kodehawa.mantarobot.db.entities.Player;
+import net.kodehawa.mantarobot.db.entities.helpers.GuildData;
+import net.kodehawa.mantarobot.db.entities.helpers.PlayerData;
+import net.kodehawa.mantarobot.db.redis.MigratingCodec;
+import org.openjdk.jmh.annotations.*;
+import org.redisson.client.codec.Codec;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding of the cached entities with every redis format. The encoded size is printed on setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+    @Param({"JSON", "SMILE"})
+    public MigratingCodec.Format format;
+
+    @Param({"guild", "player"})
+    public String entity;
+
+    private Codec codec;
+    private Object value;
+    private byte[] encoded;
+
+    @Setup
+    public void setup() throws IOException {
+        codec = new MigratingCodec(new ObjectMapper(), format);
+        value = entity.equals("guild") ? guild() : player();
+
+        ByteBuf buf = codec.getValueEncoder().encode(value);
+        encoded = new byte[buf.readableBytes()];
+        buf.readBytes(encoded);
+        buf.release();
+
+        System.out.printf("%n%s %s: %d bytes%n", format, entity, encoded.length);
+    }
+
+    @Benchmark
+    public int encode() throws IOException {
+        ByteBuf buf = codec.getValueEncoder().encode(value);
+        try {
+            return buf.readableBytes();
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Benchmark
+    public Object decode() throws IOException {
+        return codec.getValueDecoder().decode(Unpooled.wrappedBuffer(encoded), null);
+    }
+
+    //What an average configured guild looks like: a few settings changed, everything else default.
+    private static DBGuild guild() {
+        DBGuild guild = DBGuild.of("213468583252983809");
+        GuildData data = guild.getData();
+        data.setGuildCustomPrefix("!");
+        data.setGuildLogChannel("266231083341840385");
+        data.setMutedRole("305425296425779200");
+        data.getDisabledCommands().add("slots");
+        data.getDisabledCommands().add("gamble");
+        data.getDisabledChannels().add("302940473218383873");
+        data.getAutoroles().put("member", "305425296425779201");
+        return guild;
+    }
+
+    private static Player player() {
+        Map<Integer, Integer> inventory = new HashMap<>();
+        for(int i = 1; i < 12; i++) {
+            inventory.put(i, i * 3);
+        }
+
+        PlayerData data = new PlayerData();
+        data.setExperience(48213);
+        data.setDescription("hi");
+        return new Player("155867458203287552:g", 24L, 1850400L, 37L, inventory, data);
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2016-2018 David Alejandro Rubio Escares / Kodehawa
+ *
+ * Mantaro is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * Mantaro is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mantaro.  If not, see http://www.gnu.org/licenses/
+ */
+
+package net.kodehawa.mantarobot.benchmarks;
+
+import net.kodehawa.mantarobot.commands.custom.ConditionalCustoms;
+import net.kodehawa.mantarobot.commands.custom.Mapifier;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Custom command response resolution: $(...) placeholders and @function{...} conditionals.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CustomCommandBenchmark {
+    private final Map<String, String> dynamicMap = new HashMap<>();
+    private String placeholders;
+    private String conditionals;
+
+    @Setup
+    public void setup() {
+        dynamicMap.put("event.author", "<@155867458203287552>");
+        dynamicMap.put("event.author.name", "Benchmark");
+        dynamicMap.put("event.channel", "<#266231083341840385>");
+        dynamicMap.put("event.guild.name", "Mantaro Hub");
+        dynamicMap.put("event.args", "some arguments");
+
+        placeholders = "Hey $(event.author), welcome to $(event.guild.name)! You said $(event.args) on $(event.channel), $(event.author.name).";
+        conditionals = "@{if;$(event.args);equals;;You didn't say anything;You said @{url;$(event.args)}} @{ne;;;fallback}";
+    }
+
+    @Benchmark
+    public String dynamicResolve() {
+        return Mapifier.dynamicResolve(placeholders, dynamicMap);
+    }
+
+    @Benchmark
+    public String conditionalResolve() {
+        return ConditionalCustoms.resolve(Mapifier.dynamicResolve(conditionals, dynamicMap), 0);
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2016-2018 David Alejandro Rubio Escares / Kodehawa
+ *
+ * Mantaro is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * Mantaro is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mantaro.  If not, see http://www.gnu.org/licenses/
+ */
+
+package net.kodehawa.mantarobot.benchmarks;
+
+import net.dv8tion.jda.core.entities.MessageEmbed;
+import net.dv8tion.jda.core.events.message.guild.GuildMessageReceivedEvent;
+import net.kodehawa.mantarobot.core.listeners.command.CommandListener;
+import net.kodehawa.mantarobot.core.listeners.command.CommandScheduler;
+import net.kodehawa.mantarobot.core.modules.commands.SimpleCommand;
+import net.kodehawa.mantarobot.core.modules.commands.base.Category;
+import net.kodehawa.mantarobot.core.processor.DefaultCommandProcessor;
+import net.kodehawa.mantarobot.core.shard.MantaroShard;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Message to command dispatch: the listener, the processor (prefix matching) and the registry (guild policy checks).
+ * The benchmark command does nothing, so only the dispatch overhead is measured.
+ * <p>
+ * The listener gets measured twice: with a scheduler that runs everything on the benchmark thread (the whole path a message takes),
+ * and with a scheduler whose guild queue is always full (what an overloaded shard does with every message).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+    private GuildMessageReceivedEvent commandEvent;
+    private GuildMessageReceivedEvent plainEvent;
+    private DefaultCommandProcessor processor;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkEnvironment.init();
+
+        DefaultCommandProcessor.REGISTRY.register("bench", new SimpleCommand(Category.MISC) {
+            @Override
+            protected void call(GuildMessageReceivedEvent event, String content, String[] args) {}
+
+            @Override
+            public MessageEmbed help(GuildMessageReceivedEvent event) {
+                return null;
+            }
+        });
+
+        processor = new DefaultCommandProcessor();
+        commandEvent = BenchmarkEnvironment.event("~>bench some \"quoted arguments\" here");
+        plainEvent = BenchmarkEnvironment.event("just a regular message that happens to be long enough to look like a normal conversation");
+    }
+
+    @Benchmark
+    public void listenerOnEvent(InlineDispatch dispatch) {
+        dispatch.listener.onEvent(plainEvent);
+    }
+
+    @Benchmark
+    public void listenerOnEventRejected(OverloadedDispatch dispatch) {
+        dispatch.listener.onEvent(plainEvent);
+    }
+
+    @Benchmark
+    public boolean processorRunCommand() {
+        return processor.run(commandEvent);
+    }
+
+    @Benchmark
+    public boolean processorRunPlainMessage() {
+        return processor.run(plainEvent);
+    }
+
+    @Benchmark
+    public boolean registryProcess() {
+        return DefaultCommandProcessor.REGISTRY.process(commandEvent, "bench", "some \"quoted arguments\" here");
+    }
+
+    private static CommandListener listener(CommandScheduler scheduler) {
+        MantaroShard shard = mock(MantaroShard.class);
+        when(shard.getCommandScheduler()).thenReturn(scheduler);
+        return new CommandListener(0, shard, new DefaultCommandProcessor());
+    }
+
+    //A single thread can queue way faster than any amount of workers can run, so with real ones this would only measure the rejections.
+    @State(Scope.Benchmark)
+    public static class InlineDispatch {
+        CommandListener listener;
+        CommandScheduler scheduler;
+
+        @Setup
+        public void setup() throws Exception {
+            BenchmarkEnvironment.init();
+            scheduler = new InlineScheduler();
+            listener = listener(scheduler);
+        }
+
+        @TearDown
+        public void tearDown() {
+            scheduler.shutdown();
+        }
+    }
+
+    //The only worker is stuck on the first task and the second one fills the queue, so everything else gets rejected.
+    @State(Scope.Benchmark)
+    public static class OverloadedDispatch {
+        CommandListener listener;
+        CommandScheduler scheduler;
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Setup
+        public void setup() throws Exception {
+            BenchmarkEnvironment.init();
+            scheduler = new CommandScheduler(1, 1, Executors.defaultThreadFactory());
+
+            CountDownLatch started = new CountDownLatch(1);
+            scheduler.submit(BenchmarkEnvironment.GUILD_ID, () -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch(InterruptedException ignored) { }
+            }, null);
+            //Otherwise the filler could get rejected instead, and the worker would drain the queue afterwards.
+            started.await();
+            scheduler.submit(BenchmarkEnvironment.GUILD_ID, () -> {}, null);
+            listener = listener(scheduler);
+        }
+
+        @TearDown
+        public void tearDown() {
+            release.countDown();
+            scheduler.shutdown();
+        }
+    }
+
+    private static class InlineScheduler extends CommandScheduler {
+        InlineScheduler() {
+            //The worker never gets anything to do.
+            super(1, 1, Executors.defaultThreadFactory());
+        }
+
+        @Override
+        public boolean submit(long guildId, Runnable task, Runnable onOverload) {
+            task.run();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2016-2018 David Alejandro Rubio Escares / Kodehawa
+ *
+ * Mantaro is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * Mantaro is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mantaro.  If not, see http://www.gnu.org/licenses/
+ */
+
+package net.kodehawa.mantarobot.benchmarks;
+
+import net.kodehawa.mantarobot.db.ConnectionPool;
+import net.kodehawa.mantarobot.db.entities.Player;
+import net.kodehawa.mantarobot.db.entities.helpers.PlayerData;
+import net.kodehawa.mantarobot.db.storage.FileStorage;
+import net.kodehawa.mantarobot.db.storage.Leaderboard;
+import net.kodehawa.mantarobot.db.storage.RethinkStorage;
+import net.kodehawa.mantarobot.db.storage.Storage;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.rethinkdb.RethinkDB.r;
+
+/**
+ * The queries the bot runs the most, against every {@link Storage} backend.
+ * <p>
+ * FILE runs on a temporary file. RETHINK needs a server on localhost:28015 with a "mantaro_bench" database and a "players" table,
+ * skip it with {@code -p backend=FILE} if there's none around.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StorageBenchmark {
+    private static final int PLAYERS = 10000;
+
+    @Param({"FILE", "RETHINK"})
+    public Storage.Backend backend;
+
+    private Storage storage;
+    private List<String> ids;
+
+    @Setup
+    public void setup() {
+        if(backend == Storage.Backend.FILE) {
+            File file = new File(System.getProperty("java.io.tmpdir"), "mantaro-bench-" + System.nanoTime() + ".mv.db");
+            file.deleteOnExit();
+            storage = new FileStorage(file.getAbsolutePath());
+        } else {
+            storage = new RethinkStorage(new ConnectionPool(
+                    () -> r.connection().hostname("localhost").port(28015).db("mantaro_bench").connect(), 4, 5000, 30
+            ), 500);
+        }
+
+        storage.init();
+
+        ids = new ArrayList<>(PLAYERS);
+        List<Player> players = new ArrayList<>(PLAYERS);
+        for(int i = 0; i < PLAYERS; i++) {
+            Player player = player(i);
+            ids.add(player.getId());
+            players.add(player);
+        }
+
+        storage.saveAll(Player.DB_TABLE, players);
+    }
+
+    @TearDown
+    public void tearDown() {
+        storage.deleteAll(Player.DB_TABLE, ids);
+        storage.close();
+    }
+
+    @Benchmark
+    public Object get() {
+        return storage.get(Player.DB_TABLE, randomId(), Player.class);
+    }
+
+    @Benchmark
+    public Object getAll() {
+        List<String> batch = new ArrayList<>(100);
+        for(int i = 0; i < 100; i++) {
+            batch.add(randomId());
+        }
+
+        return storage.getAll(Player.DB_TABLE, batch, Player.class);
+    }
+
+    @Benchmark
+    public void save() {
+        storage.save(player(ThreadLocalRandom.current().nextInt(PLAYERS)));
+    }
+
+    @Benchmark
+    public boolean update() {
+        return storage.update(Player.DB_TABLE, randomId(), Collections.singletonMap("money", ThreadLocalRandom.current().nextLong(1000000)));
+    }
+
+    @Benchmark
+    public Object top() {
+        return storage.top(Leaderboard.MONEY, 10);
+    }
+
+    @Benchmark
+    public long rank() {
+        return storage.rank(Leaderboard.MONEY, randomId().replace(":g", ""));
+    }
+
+    private String randomId() {
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+
+    private static Player player(int i) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Map<Integer, Integer> inventory = new HashMap<>();
+        for(int item = 1; item < 8; item++) {
+            inventory.put(item, random.nextInt(50));
+        }
+
+        PlayerData data = new PlayerData();
+        data.setExperience(random.nextLong(100000));
+        return new Player("bench" + i + ":g", random.nextLong(100), random.nextLong(1000000), random.nextLong(500), inventory, data);
+    }
+}
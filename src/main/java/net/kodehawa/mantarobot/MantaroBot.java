@@ -24,11 +24,13 @@ import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import net.dv8tion.jda.core.JDA;
 import net.dv8tion.jda.core.entities.Guild;
+import net.kodehawa.mantarobot.commands.currency.LeaderboardSnapshots;
 import net.kodehawa.mantarobot.commands.moderation.MuteTask;
 import net.kodehawa.mantarobot.commands.moderation.TempBanManager;
 import net.kodehawa.mantarobot.commands.music.MantaroAudioManager;
 import net.kodehawa.mantarobot.commands.utils.birthday.BirthdayCacher;
 import net.kodehawa.mantarobot.core.MantaroCore;
+import net.kodehawa.mantarobot.core.processor.CommandTracer;
 import net.kodehawa.mantarobot.core.processor.DefaultCommandProcessor;
 import net.kodehawa.mantarobot.core.shard.MantaroShard;
 import net.kodehawa.mantarobot.core.shard.ShardedMantaro;
@@ -38,6 +40,7 @@ import net.kodehawa.mantarobot.data.MantaroData;
 import net.kodehawa.mantarobot.log.LogFilter;
 import net.kodehawa.mantarobot.log.LogUtils;
 import net.kodehawa.mantarobot.utils.*;
+import net.kodehawa.mantarobot.utils.commands.NewRateLimiter;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
@@ -80,6 +83,8 @@ public class MantaroBot extends ShardedJDA implements Webscale<MantaroBot>, Quan
     @Getter
     private BirthdayCacher birthdayCacher;
     @Getter
+    private LeaderboardSnapshots leaderboardSnapshots;
+    @Getter
     private ScheduledExecutorService executorService = Executors.newScheduledThreadPool(3);
     @Getter
     private boolean webscale = false;
@@ -152,8 +157,12 @@ public class MantaroBot extends ShardedJDA implements Webscale<MantaroBot>, Quan
                         "Shards are still waking up!", DefaultCommandProcessor.REGISTRY.commands().size(), (end - start) / 1000));
 
         birthdayCacher = new BirthdayCacher();
+        leaderboardSnapshots = new LeaderboardSnapshots(10, config.leaderboardRefreshInterval, TimeUnit.SECONDS);
         final MuteTask muteTask = new MuteTask();
         Async.task("Mute Handler", muteTask::handle, 1, TimeUnit.MINUTES);
+        Async.task("Command Latency Reporter", () -> CommandTracer.report(statsClient), 1, TimeUnit.MINUTES);
+        Async.task("Database Metrics Reporter", () -> MantaroData.db().report(statsClient), 1, TimeUnit.MINUTES);
+        Async.task("Ratelimiter Metrics Reporter", () -> NewRateLimiter.report(statsClient), 1, TimeUnit.MINUTES);
     }
 
     public static void main(String[] args) {
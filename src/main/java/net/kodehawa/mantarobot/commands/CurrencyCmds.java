@@ -18,9 +18,6 @@ package net.kodehawa.mantarobot.commands;
 
 import br.com.brjdevs.java.utils.texts.StringUtils;
 import com.google.common.eventbus.Subscribe;
-import com.rethinkdb.model.OptArgs;
-import com.rethinkdb.net.Connection;
-import com.rethinkdb.net.Cursor;
 import net.dv8tion.jda.core.EmbedBuilder;
 import net.dv8tion.jda.core.Permission;
 import net.dv8tion.jda.core.entities.Member;
@@ -39,8 +36,10 @@ import net.kodehawa.mantarobot.core.modules.commands.TreeCommand;
 import net.kodehawa.mantarobot.core.modules.commands.base.Category;
 import net.kodehawa.mantarobot.core.modules.commands.base.Command;
 import net.kodehawa.mantarobot.data.MantaroData;
+import net.kodehawa.mantarobot.db.ManagedDatabase;
 import net.kodehawa.mantarobot.db.entities.Player;
 import net.kodehawa.mantarobot.db.entities.helpers.Inventory;
+import net.kodehawa.mantarobot.db.storage.Leaderboard;
 import net.kodehawa.mantarobot.utils.DiscordUtils;
 import net.kodehawa.mantarobot.utils.Utils;
 import net.kodehawa.mantarobot.utils.commands.EmoteReference;
@@ -53,7 +52,6 @@ import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-import static com.rethinkdb.RethinkDB.r;
 import static net.kodehawa.mantarobot.utils.Utils.handleDefaultRatelimit;
 
 @Module
@@ -198,45 +196,45 @@ public class CurrencyCmds {
         marketCommand.addSubCommand("dump", new SubCommand() {
             @Override
             protected void call(GuildMessageReceivedEvent event, String content) {
-                String[] args = content.split(" ");
-                String itemName = content;
-                int itemNumber = 1;
-                boolean isMassive = !itemName.isEmpty() && itemName.split(" ")[0].matches("^[0-9]*$");
-                if(isMassive) {
-                    try {
-                        itemNumber = Math.abs(Integer.valueOf(itemName.split(" ")[0]));
-                        itemName = itemName.replace(args[0], "").trim();
-                    } catch (NumberFormatException e) {
-                        event.getChannel().sendMessage(EmoteReference.ERROR + "Not a valid number of items to dump.").queue();
-                        return;
-                    } catch (Exception e) {
-                        onHelp(event);
-                        return;
+                MantaroData.db().getUpdater().updatePlayer(event.getAuthor().getId(), player -> {
+                    String[] args = content.split(" ");
+                    String itemName = content;
+                    int itemNumber = 1;
+                    boolean isMassive = !itemName.isEmpty() && itemName.split(" ")[0].matches("^[0-9]*$");
+                    if(isMassive) {
+                        try {
+                            itemNumber = Math.abs(Integer.valueOf(itemName.split(" ")[0]));
+                            itemName = itemName.replace(args[0], "").trim();
+                        } catch (NumberFormatException e) {
+                            event.getChannel().sendMessage(EmoteReference.ERROR + "Not a valid number of items to dump.").queue();
+                            return null;
+                        } catch (Exception e) {
+                            onHelp(event);
+                            return null;
+                        }
                     }
-                }
 
-                Item item = Items.fromAny(itemName).orElse(null);
+                    Item item = Items.fromAny(itemName).orElse(null);
 
-                if(item == null) {
-                    event.getChannel().sendMessage(EmoteReference.ERROR + "Cannot check the dump a non-existent item!").queue();
-                    return;
-                }
-
-                Player player = MantaroData.db().getPlayer(event.getAuthor());
+                    if(item == null) {
+                        event.getChannel().sendMessage(EmoteReference.ERROR + "Cannot check the dump a non-existent item!").queue();
+                        return null;
+                    }
 
-                if(!player.getInventory().containsItem(item)) {
-                    event.getChannel().sendMessage(EmoteReference.ERROR + "Cannot dump an item you don't have!").queue();
-                    return;
-                }
+                    if(!player.getInventory().containsItem(item)) {
+                        event.getChannel().sendMessage(EmoteReference.ERROR + "Cannot dump an item you don't have!").queue();
+                        return null;
+                    }
 
-                if(player.getInventory().getAmount(item) < itemNumber) {
-                    event.getChannel().sendMessage(EmoteReference.ERROR + "You cannot dump more items than what you have.").queue();
-                    return;
-                }
+                    if(player.getInventory().getAmount(item) < itemNumber) {
+                        event.getChannel().sendMessage(EmoteReference.ERROR + "You cannot dump more items than what you have.").queue();
+                        return null;
+                    }
 
-                player.getInventory().process(new ItemStack(item, -itemNumber));
-                player.saveAsync();
-                event.getChannel().sendMessage(String.format("%sSent %dx **%s %s** to the trash!", EmoteReference.CORRECT, itemNumber, item.getEmoji(), item.getName())).queue();
+                    player.getInventory().process(new ItemStack(item, -itemNumber));
+                    event.getChannel().sendMessage(String.format("%sSent %dx **%s %s** to the trash!", EmoteReference.CORRECT, itemNumber, item.getEmoji(), item.getName())).queue();
+                    return null;
+                });
             }
         }).createSubCommandAlias("dump", "trash");
 
@@ -270,134 +268,135 @@ public class CurrencyCmds {
         marketCommand.addSubCommand("sell", new SubCommand() {
             @Override
             protected void call(GuildMessageReceivedEvent event, String content) {
-                Player player = MantaroData.db().getPlayer(event.getMember());
-                String[] args = content.split(" ");
-                String itemName = content;
-                int itemNumber = 1;
-                boolean isMassive = !itemName.isEmpty() && itemName.split(" ")[0].matches("^[0-9]*$");
-                if(isMassive) {
-                    try {
-                        itemNumber = Math.abs(Integer.valueOf(itemName.split(" ")[0]));
-                        itemName = itemName.replace(args[0], "").trim();
-                    } catch (NumberFormatException e) {
-                        event.getChannel().sendMessage(EmoteReference.ERROR + "Not a valid number of items to buy.").queue();
-                        return;
-                    } catch (Exception e) {
-                        onHelp(event);
-                        return;
+                MantaroData.db().getUpdater().updatePlayer(event.getAuthor().getId(), player -> {
+                    String[] args = content.split(" ");
+                    String itemName = content;
+                    int itemNumber = 1;
+                    boolean isMassive = !itemName.isEmpty() && itemName.split(" ")[0].matches("^[0-9]*$");
+                    if(isMassive) {
+                        try {
+                            itemNumber = Math.abs(Integer.valueOf(itemName.split(" ")[0]));
+                            itemName = itemName.replace(args[0], "").trim();
+                        } catch (NumberFormatException e) {
+                            event.getChannel().sendMessage(EmoteReference.ERROR + "Not a valid number of items to buy.").queue();
+                            return null;
+                        } catch (Exception e) {
+                            onHelp(event);
+                            return null;
+                        }
                     }
-                }
 
-                try {
-                    if(args[0].equals("all")) {
-                        long all = player.getInventory().asList().stream()
-                                .filter(item -> item.getItem().isSellable())
-                                .mapToLong(value -> (long) (value.getItem().getValue() * value.getAmount() * 0.9d))
-                                .sum();
+                    try {
+                        if(args[0].equals("all")) {
+                            long all = player.getInventory().asList().stream()
+                                    .filter(item -> item.getItem().isSellable())
+                                    .mapToLong(value -> (long) (value.getItem().getValue() * value.getAmount() * 0.9d))
+                                    .sum();
 
-                        player.getInventory().clearOnlySellables();
-                        player.addMoney(all);
+                            player.getInventory().clearOnlySellables();
+                            player.addMoney(all);
 
-                        event.getChannel().sendMessage(String.format("%sYou sold all your inventory items and gained %d credits!", EmoteReference.MONEY, all)).queue();
+                            event.getChannel().sendMessage(String.format("%sYou sold all your inventory items and gained %d credits!", EmoteReference.MONEY, all)).queue();
+                            return null;
+                        }
 
-                        player.saveAsync();
-                        return;
-                    }
+                        Item toSell = Items.fromAny(itemName).orElse(null);
 
-                    Item toSell = Items.fromAny(itemName).orElse(null);
+                        if(toSell == null) {
+                            event.getChannel().sendMessage(EmoteReference.ERROR + "You cannot sell a non-existant item.").queue();
+                            return null;
+                        }
 
-                    if(toSell == null) {
-                        event.getChannel().sendMessage(EmoteReference.ERROR + "You cannot sell a non-existant item.").queue();
-                        return;
-                    }
+                        if(!toSell.isSellable()) {
+                            event.getChannel().sendMessage(EmoteReference.ERROR + "You cannot sell an item that cannot be sold.").queue();
+                            return null;
+                        }
 
-                    if(!toSell.isSellable()) {
-                        event.getChannel().sendMessage(EmoteReference.ERROR + "You cannot sell an item that cannot be sold.").queue();
-                        return;
-                    }
+                        if(player.getInventory().getAmount(toSell) < 1) {
+                            event.getChannel().sendMessage(EmoteReference.STOP + "You cannot sell an item you don't have.").queue();
+                            return null;
+                        }
 
-                    if(player.getInventory().getAmount(toSell) < 1) {
-                        event.getChannel().sendMessage(EmoteReference.STOP + "You cannot sell an item you don't have.").queue();
-                        return;
-                    }
+                        if(player.getInventory().getAmount(toSell) < itemNumber) {
+                            event.getChannel().sendMessage(EmoteReference.ERROR + "You cannot sell more items than what you have.").queue();
+                            return null;
+                        }
 
-                    if(player.getInventory().getAmount(toSell) < itemNumber) {
-                        event.getChannel().sendMessage(EmoteReference.ERROR + "You cannot sell more items than what you have.").queue();
-                        return;
+                        int many = itemNumber * -1;
+                        long amount = Math.round((toSell.getValue() * 0.9)) * Math.abs(many);
+                        player.getInventory().process(new ItemStack(toSell, many));
+                        player.addMoney(amount);
+                        player.getData().setMarketUsed(player.getData().getMarketUsed() + 1);
+                        event.getChannel().sendMessage(String.format("%sYou sold %d **%s** and gained %d credits!", EmoteReference.CORRECT, Math.abs(many), toSell.getName(), amount)).queue();
+                    } catch(Exception e) {
+                        event.getChannel().sendMessage(EmoteReference.ERROR + "Invalid syntax.").queue();
                     }
 
-                    int many = itemNumber * -1;
-                    long amount = Math.round((toSell.getValue() * 0.9)) * Math.abs(many);
-                    player.getInventory().process(new ItemStack(toSell, many));
-                    player.addMoney(amount);
-                    player.getData().setMarketUsed(player.getData().getMarketUsed() + 1);
-                    event.getChannel().sendMessage(String.format("%sYou sold %d **%s** and gained %d credits!", EmoteReference.CORRECT, Math.abs(many), toSell.getName(), amount)).queue();
-
-                    player.saveAsync();
-                } catch(Exception e) {
-                    event.getChannel().sendMessage(EmoteReference.ERROR + "Invalid syntax.").queue();
-                }
+                    return null;
+                });
             }
         });
 
         marketCommand.addSubCommand("buy", new SubCommand() {
             @Override
             protected void call(GuildMessageReceivedEvent event, String content) {
-                Player player = MantaroData.db().getPlayer(event.getMember());
-                String[] args = content.split(" ");
-                String itemName = content;
-                int itemNumber = 1;
-                boolean isMassive = !itemName.isEmpty() && itemName.split(" ")[0].matches("^[0-9]*$");
-                if(isMassive) {
-                    try {
-                        itemNumber = Math.abs(Integer.valueOf(itemName.split(" ")[0]));
-                        itemName = itemName.replace(args[0], "").trim();
-                    } catch (Exception e) {
-                        if (e instanceof NumberFormatException) {
-                            event.getChannel().sendMessage(EmoteReference.ERROR + "Not a valid number of items to buy.").queue();
-                        } else {
-                            onHelp(event);
-                            return;
+                MantaroData.db().getUpdater().updatePlayer(event.getAuthor().getId(), player -> {
+                    String[] args = content.split(" ");
+                    String itemName = content;
+                    int itemNumber = 1;
+                    boolean isMassive = !itemName.isEmpty() && itemName.split(" ")[0].matches("^[0-9]*$");
+                    if(isMassive) {
+                        try {
+                            itemNumber = Math.abs(Integer.valueOf(itemName.split(" ")[0]));
+                            itemName = itemName.replace(args[0], "").trim();
+                        } catch (Exception e) {
+                            if (e instanceof NumberFormatException) {
+                                event.getChannel().sendMessage(EmoteReference.ERROR + "Not a valid number of items to buy.").queue();
+                            } else {
+                                onHelp(event);
+                                return null;
+                            }
                         }
                     }
-                }
 
-                Item itemToBuy = Items.fromAnyNoId(itemName).orElse(null);
-
-                if(itemToBuy == null) {
-                    event.getChannel().sendMessage(EmoteReference.ERROR + "You cannot buy an unexistant item.").queue();
-                    return;
-                }
+                    Item itemToBuy = Items.fromAnyNoId(itemName).orElse(null);
 
-                try {
-                    if(!itemToBuy.isBuyable()) {
-                        event.getChannel().sendMessage(EmoteReference.ERROR + "You cannot buy an item that cannot be bought.")
-                                .queue();
-                        return;
+                    if(itemToBuy == null) {
+                        event.getChannel().sendMessage(EmoteReference.ERROR + "You cannot buy an unexistant item.").queue();
+                        return null;
                     }
 
-                    ItemStack stack = player.getInventory().getStackOf(itemToBuy);
-                    if(stack != null && !stack.canJoin(new ItemStack(itemToBuy, itemNumber))) {
-                        //assume overflow
-                        event.getChannel().sendMessage(EmoteReference.ERROR + "You cannot buy more of that object!").queue();
-                        return;
-                    }
+                    try {
+                        if(!itemToBuy.isBuyable()) {
+                            event.getChannel().sendMessage(EmoteReference.ERROR + "You cannot buy an item that cannot be bought.")
+                                    .queue();
+                            return null;
+                        }
 
-                    if(player.removeMoney(itemToBuy.getValue() * itemNumber)) {
-                        player.getInventory().process(new ItemStack(itemToBuy, itemNumber));
-                        player.getData().addBadgeIfAbsent(Badge.BUYER);
-                        player.getData().setMarketUsed(player.getData().getMarketUsed() + 1);
-                        player.saveAsync();
+                        ItemStack stack = player.getInventory().getStackOf(itemToBuy);
+                        if(stack != null && !stack.canJoin(new ItemStack(itemToBuy, itemNumber))) {
+                            //assume overflow
+                            event.getChannel().sendMessage(EmoteReference.ERROR + "You cannot buy more of that object!").queue();
+                            return null;
+                        }
 
-                        event.getChannel().sendMessage(String.format("%sBought %d %s for %d credits successfully. You now have %d credits.",
-                                EmoteReference.OK, itemNumber, itemToBuy.getEmoji(), itemToBuy.getValue() * itemNumber, player.getMoney())).queue();
+                        if(player.removeMoney(itemToBuy.getValue() * itemNumber)) {
+                            player.getInventory().process(new ItemStack(itemToBuy, itemNumber));
+                            player.getData().addBadgeIfAbsent(Badge.BUYER);
+                            player.getData().setMarketUsed(player.getData().getMarketUsed() + 1);
 
-                    } else {
-                        event.getChannel().sendMessage(EmoteReference.STOP + "You don't have enough money to buy this item.").queue();
+                            event.getChannel().sendMessage(String.format("%sBought %d %s for %d credits successfully. You now have %d credits.",
+                                    EmoteReference.OK, itemNumber, itemToBuy.getEmoji(), itemToBuy.getValue() * itemNumber, player.getMoney())).queue();
+
+                        } else {
+                            event.getChannel().sendMessage(EmoteReference.STOP + "You don't have enough money to buy this item.").queue();
+                        }
+                    } catch(Exception e) {
+                        event.getChannel().sendMessage(EmoteReference.ERROR + "Invalid syntax.").queue();
                     }
-                } catch(Exception e) {
-                    event.getChannel().sendMessage(EmoteReference.ERROR + "Invalid syntax.").queue();
-                }
+
+                    return null;
+                });
             }
         });
     }
@@ -438,66 +437,40 @@ public class CurrencyCmds {
                     if(item == null) {
                         event.getChannel().sendMessage("There isn't an item associated with this emoji.").queue();
                     } else {
-                        Player player = MantaroData.db().getPlayer(event.getAuthor());
-                        Player giveToPlayer = MantaroData.db().getPlayer(giveTo);
-
-                        if(player.isLocked()) {
-                            event.getChannel().sendMessage(EmoteReference.ERROR + "You cannot transfer items now.").queue();
+                        int amount;
+                        try {
+                            amount = args.length == 2 ? 1 : Math.abs(Integer.parseInt(args[2]));
+                        } catch(NumberFormatException nfe) {
+                            event.getChannel().sendMessage(EmoteReference.ERROR + "Invalid number provided").queue();
                             return;
                         }
 
-                        if(args.length == 2) {
-                            if(player.getInventory().containsItem(item)) {
-                                if(item.isHidden()) {
-                                    event.getChannel().sendMessage(EmoteReference.ERROR + "You cannot transfer this item!").queue();
-                                    return;
-                                }
-
-                                if(giveToPlayer.getInventory().asMap().getOrDefault(item, new ItemStack(item, 0)).getAmount() >= 5000) {
-                                    event.getChannel().sendMessage(EmoteReference.ERROR + "This player has the maximum possible amount of this item (5000).").queue();
-                                    return;
-                                }
-
-                                player.getInventory().process(new ItemStack(item, -1));
-                                giveToPlayer.getInventory().process(new ItemStack(item, 1));
-                                event.getChannel().sendMessage(String.format("%s%s gave 1 **%s** to %s", EmoteReference.OK, event.getMember().getEffectiveName(),
-                                        item.getName(), event.getGuild().getMember(giveTo).getEffectiveName())).queue();
-                            } else {
-                                event.getChannel().sendMessage(EmoteReference.ERROR + "You don't have any of these items in your inventory").queue();
-                            }
+                        //Both inventories are locked until the items are moved, so they can't be spent or sold in-between.
+                        String result = MantaroData.db().getUpdater().updatePlayers(event.getAuthor().getId(), giveTo.getId(), (player, giveToPlayer) -> {
+                            if(player.isLocked())
+                                return EmoteReference.ERROR + "You cannot transfer items now.";
 
-                            player.saveAsync();
-                            giveToPlayer.saveAsync();
-                            return;
-                        }
+                            if(!player.getInventory().containsItem(item))
+                                return EmoteReference.ERROR + "You don't have any of these items in your inventory";
 
-                        try {
-                            int amount = Math.abs(Integer.parseInt(args[2]));
-                            if(player.getInventory().containsItem(item) && player.getInventory().getAmount(item) >= amount) {
-                                if(item.isHidden()) {
-                                    event.getChannel().sendMessage(EmoteReference.ERROR + "You cannot transfer this item!").queue();
-                                    return;
-                                }
-
-                                if(giveToPlayer.getInventory().asMap().getOrDefault(item, new ItemStack(item, 0)).getAmount() + amount > 5000) {
-                                    event.getChannel().sendMessage(EmoteReference.ERROR + "This player would exceed the maximum possible amount of this item (5000).").queue();
-                                    return;
-                                }
-
-                                player.getInventory().process(new ItemStack(item, amount * -1));
-                                giveToPlayer.getInventory().process(new ItemStack(item, amount));
-
-                                event.getChannel().sendMessage(String.format("%s%s gave %d **%s** to %s", EmoteReference.OK,
-                                        event.getMember().getEffectiveName(), amount, item.getName(), event.getGuild().getMember(giveTo).getEffectiveName())).queue();
-                            } else {
-                                event.getChannel().sendMessage(EmoteReference.ERROR + "You don't have enough of this item to do that").queue();
+                            if(player.getInventory().getAmount(item) < amount)
+                                return EmoteReference.ERROR + "You don't have enough of this item to do that";
+
+                            if(item.isHidden())
+                                return EmoteReference.ERROR + "You cannot transfer this item!";
+
+                            if(giveToPlayer.getInventory().asMap().getOrDefault(item, new ItemStack(item, 0)).getAmount() + amount > 5000) {
+                                return EmoteReference.ERROR + (args.length == 2 ? "This player has the maximum possible amount of this item (5000)." :
+                                        "This player would exceed the maximum possible amount of this item (5000).");
                             }
-                        } catch(NumberFormatException nfe) {
-                            event.getChannel().sendMessage(EmoteReference.ERROR + "Invalid number provided").queue();
-                        }
 
-                        player.saveAsync();
-                        giveToPlayer.saveAsync();
+                            player.getInventory().process(new ItemStack(item, -amount));
+                            giveToPlayer.getInventory().process(new ItemStack(item, amount));
+                            return String.format("%s%s gave %d **%s** to %s", EmoteReference.OK, event.getMember().getEffectiveName(),
+                                    amount, item.getName(), event.getGuild().getMember(giveTo).getEffectiveName());
+                        });
+
+                        event.getChannel().sendMessage(result).queue();
                     }
                 }
             }
@@ -565,41 +538,29 @@ public class CurrencyCmds {
                     return;
                 }
 
-                Player transferPlayer = MantaroData.db().getPlayer(event.getMember());
-                Player toTransfer = MantaroData.db().getPlayer(event.getGuild().getMember(giveTo));
+                //Both players are locked until the money is moved, so nothing else can spend it in-between.
+                String result = MantaroData.db().getUpdater().updatePlayers(event.getAuthor().getId(), giveTo.getId(), (transferPlayer, toTransfer) -> {
+                    if(transferPlayer.isLocked())
+                        return EmoteReference.ERROR + "You cannot transfer money now.";
 
-                if(transferPlayer.isLocked()) {
-                    event.getChannel().sendMessage(EmoteReference.ERROR + "You cannot transfer money now.").queue();
-                    return;
-                }
+                    if(transferPlayer.getMoney() < toSend)
+                        return EmoteReference.ERROR + "You cannot transfer money you don't have.";
 
-                if(transferPlayer.getMoney() < toSend) {
-                    event.getChannel().sendMessage(EmoteReference.ERROR + "You cannot transfer money you don't have.").queue();
-                    return;
-                }
+                    if(toTransfer.isLocked())
+                        return EmoteReference.ERROR + "That user cannot receive money now.";
 
-                if(toTransfer.isLocked()) {
-                    event.getChannel().sendMessage(EmoteReference.ERROR + "That user cannot receive money now.").queue();
-                    return;
-                }
+                    if(toTransfer.getMoney() > (long) TRANSFER_LIMIT * 20)
+                        return EmoteReference.ERROR + "This user already has too much money...";
 
-                if(toTransfer.getMoney() > (long) TRANSFER_LIMIT * 20) {
-                    event.getChannel().sendMessage(EmoteReference.ERROR + "This user already has too much money...").queue();
-                    return;
-                }
+                    if(!toTransfer.addMoney(toSend))
+                        return EmoteReference.ERROR + "Cannot send money to this player.";
 
-                if(toTransfer.addMoney(toSend)) {
                     transferPlayer.removeMoney(toSend);
-                    transferPlayer.saveAsync();
-
-                    event.getChannel().sendMessage(String.format("%sTransferred **%d** to *%s* successfully.", EmoteReference.CORRECT, toSend,
-                            event.getMessage().getMentionedUsers().get(0).getName())).queue();
-
-                    toTransfer.saveAsync();
                     rl.process(toTransfer.getUserId());
-                } else {
-                    event.getChannel().sendMessage(EmoteReference.ERROR + "Cannot send money to this player.").queue();
-                }
+                    return String.format("%sTransferred **%d** to *%s* successfully.", EmoteReference.CORRECT, toSend, giveTo.getName());
+                });
+
+                event.getChannel().sendMessage(result).queue();
             }
 
             @Override
@@ -625,23 +586,25 @@ public class CurrencyCmds {
 
             @Override
             protected void call(GuildMessageReceivedEvent event, String content, String[] args) {
-                Player player = MantaroData.db().getPlayer(event.getAuthor());
-                Inventory inventory = player.getInventory();
-                if(inventory.containsItem(Items.LOOT_CRATE)) {
-                    if(inventory.containsItem(Items.LOOT_CRATE_KEY)) {
-                        if(!handleDefaultRatelimit(rateLimiter, event.getAuthor(), event)) return;
-
-                        inventory.process(new ItemStack(Items.LOOT_CRATE_KEY, -1));
-                        inventory.process(new ItemStack(Items.LOOT_CRATE, -1));
-                        player.getData().addBadgeIfAbsent(Badge.THE_SECRET);
-                        player.save();
-                        openLootBox(event, true);
+                MantaroData.db().getUpdater().updatePlayer(event.getAuthor().getId(), player -> {
+                    Inventory inventory = player.getInventory();
+                    if(inventory.containsItem(Items.LOOT_CRATE)) {
+                        if(inventory.containsItem(Items.LOOT_CRATE_KEY)) {
+                            if(!handleDefaultRatelimit(rateLimiter, event.getAuthor(), event)) return null;
+
+                            inventory.process(new ItemStack(Items.LOOT_CRATE_KEY, -1));
+                            inventory.process(new ItemStack(Items.LOOT_CRATE, -1));
+                            player.getData().addBadgeIfAbsent(Badge.THE_SECRET);
+                            openLootBox(event, player, true);
+                        } else {
+                            event.getChannel().sendMessage(EmoteReference.ERROR + "You need a loot crate key to open a crate. It's locked!").queue();
+                        }
                     } else {
-                        event.getChannel().sendMessage(EmoteReference.ERROR + "You need a loot crate key to open a crate. It's locked!").queue();
+                        event.getChannel().sendMessage(EmoteReference.ERROR + "You need a loot crate! How else would you use your key >.>").queue();
                     }
-                } else {
-                    event.getChannel().sendMessage(EmoteReference.ERROR + "You need a loot crate! How else would you use your key >.>").queue();
-                }
+
+                    return null;
+                });
             }
 
             @Override
@@ -654,9 +617,7 @@ public class CurrencyCmds {
         });
     }
 
-    //TODO find an efficient way to do this that doesn't require a shit ton of db reads.
-    //@Subscribe
-    @SuppressWarnings("unchecked")
+    @Subscribe
     public void rank(CommandRegistry registry) {
         registry.register("rank", new SimpleCommand(Category.CURRENCY) {
             @Override
@@ -667,31 +628,12 @@ public class CurrencyCmds {
                     return;
                 User user = m.getUser();
 
-                long moneyRank, levelRank, reputationRank, streakRank;
-                long count;
-                try(Connection conn = Utils.newDbConnection()) {
-                    moneyRank = ((Cursor<Long>) r.table("players").orderBy()
-                            .optArg("index", r.desc("money"))
-                            .offsetsOf(player -> player.g("id").eq(user.getId() + ":g"))
-                            .run(conn, OptArgs.of("read_mode", "outdated"))).next() + 1;
-
-                    levelRank = ((Cursor<Long>) r.table("players").orderBy()
-                            .optArg("index", r.desc("level"))
-                            .offsetsOf(player -> player.g("id").eq(user.getId() + ":g"))
-                            .run(conn, OptArgs.of("read_mode", "outdated"))).next() + 1;
-
-                    reputationRank = ((Cursor<Long>) r.table("players").orderBy()
-                            .optArg("index", r.desc("reputation"))
-                            .offsetsOf(player -> player.g("id").eq(user.getId() + ":g"))
-                            .run(conn, OptArgs.of("read_mode", "outdated"))).next() + 1;
-
-                    streakRank = ((Cursor<Long>) r.table("players").orderBy()
-                            .optArg("index", r.desc("userDailyStreak"))
-                            .offsetsOf(player -> player.g("id").eq(user.getId() + ":g"))
-                            .run(conn, OptArgs.of("read_mode", "outdated"))).next() + 1;
-
-                    count = r.table("players").count().run(conn);
-                }
+                ManagedDatabase db = MantaroData.db();
+                long moneyRank = db.getLeaderboardRank(Leaderboard.MONEY, user.getId());
+                long levelRank = db.getLeaderboardRank(Leaderboard.LEVEL, user.getId());
+                long reputationRank = db.getLeaderboardRank(Leaderboard.REPUTATION, user.getId());
+                long streakRank = db.getLeaderboardRank(Leaderboard.STREAK, user.getId());
+                long count = db.getPlayerCount();
 
                 event.getChannel().sendMessage(new EmbedBuilder()
                         .setTitle(user.getName() + "'s Leaderboard Rank")
@@ -714,7 +656,7 @@ public class CurrencyCmds {
         });
     }
 
-    private void openLootBox(GuildMessageReceivedEvent event, boolean special) {
+    private void openLootBox(GuildMessageReceivedEvent event, Player player, boolean special) {
         List<Item> toAdd = new ArrayList<>();
         int amtItems = random.nextInt(3) + 3;
         List<Item> items = new ArrayList<>();
@@ -735,13 +677,11 @@ public class CurrencyCmds {
         for(int i = 0; i < amtItems; i++)
             toAdd.add(selectReverseWeighted(items));
 
-        Player player = MantaroData.db().getPlayer(event.getMember());
         ArrayList<ItemStack> ita = new ArrayList<>();
 
         toAdd.forEach(item -> ita.add(new ItemStack(item, 1)));
 
         boolean overflow = player.getInventory().merge(ita);
-        player.saveAsync();
 
         event.getChannel().sendMessage(String.format("%s**You won:** %s%s",
                 EmoteReference.LOOT_CRATE.getDiscordNotation(), toAdd.stream().map(Item::toString).collect(Collectors.joining(", ")),
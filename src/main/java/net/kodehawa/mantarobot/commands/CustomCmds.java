@@ -57,6 +57,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static br.com.brjdevs.java.utils.collections.CollectionUtils.random;
 import static net.kodehawa.mantarobot.commands.custom.Mapifier.dynamicResolve;
@@ -603,28 +604,33 @@ public class CustomCmds {
 
     @Subscribe
     public void onPostLoad(PostLoadEvent e) {
-        Async.thread(() -> db().getCustomCommands().forEach(custom -> {
-            if(!NAME_PATTERN.matcher(custom.getName()).matches()) {
-                String newName = INVALID_CHARACTERS_PATTERN.matcher(custom.getName()).replaceAll("_");
-                log.info("Custom Command with Invalid Characters '%s' found. Replacing with '%'", custom.getName());
-
-                custom.deleteAsync();
-                custom = CustomCommand.of(custom.getGuildId(), newName, custom.getValues());
-                custom.saveAsync();
-            }
+        //Streamed, so we never have the whole table on the heap at once.
+        Async.thread(() -> {
+            try(Stream<CustomCommand> commands = db().streamCustomCommands()) {
+                commands.forEach(custom -> {
+                    if(!NAME_PATTERN.matcher(custom.getName()).matches()) {
+                        String newName = INVALID_CHARACTERS_PATTERN.matcher(custom.getName()).replaceAll("_");
+                        log.info("Custom Command with Invalid Characters '%s' found. Replacing with '%'", custom.getName());
 
-            if(DefaultCommandProcessor.REGISTRY.commands().containsKey(custom.getName()) && !DefaultCommandProcessor.REGISTRY
-                    .commands().get(custom.getName()).equals(customCommand)) {
-                custom.deleteAsync();
-                custom = CustomCommand.of(custom.getGuildId(), "_" + custom.getName(), custom.getValues());
-                custom.saveAsync();
-            }
+                        custom.deleteAsync();
+                        custom = CustomCommand.of(custom.getGuildId(), newName, custom.getValues());
+                        custom.saveAsync();
+                    }
+
+                    if(DefaultCommandProcessor.REGISTRY.commands().containsKey(custom.getName()) && !DefaultCommandProcessor.REGISTRY
+                            .commands().get(custom.getName()).equals(customCommand)) {
+                        custom.deleteAsync();
+                        custom = CustomCommand.of(custom.getGuildId(), "_" + custom.getName(), custom.getValues());
+                        custom.saveAsync();
+                    }
 
-            //add to registry
-            DefaultCommandProcessor.REGISTRY.commands().put(custom.getName(), customCommand);
+                    //add to registry
+                    DefaultCommandProcessor.REGISTRY.commands().put(custom.getName(), customCommand);
 
-            customCommands.put(custom.getId(), custom.getValues());
-        }));
+                    customCommands.put(custom.getId(), custom.getValues());
+                });
+            }
+        });
     }
 
     private void runCustom(String response, GuildMessageReceivedEvent event) {
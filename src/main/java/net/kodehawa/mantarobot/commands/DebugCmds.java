@@ -36,15 +36,24 @@ import net.kodehawa.mantarobot.core.listeners.command.CommandListener;
 import net.kodehawa.mantarobot.core.listeners.events.PreLoadEvent;
 import net.kodehawa.mantarobot.core.modules.Module;
 import net.kodehawa.mantarobot.core.modules.commands.SimpleCommand;
+import net.kodehawa.mantarobot.core.modules.commands.SimpleTreeCommand;
+import net.kodehawa.mantarobot.core.modules.commands.SubCommand;
 import net.kodehawa.mantarobot.core.modules.commands.base.Category;
+import net.kodehawa.mantarobot.core.processor.CommandTracer;
 import net.kodehawa.mantarobot.core.processor.DefaultCommandProcessor;
 import net.kodehawa.mantarobot.core.shard.MantaroShard;
+import net.kodehawa.mantarobot.data.MantaroData;
+import net.kodehawa.mantarobot.db.DatabaseMetrics;
 import net.kodehawa.mantarobot.utils.DiscordUtils;
+import net.kodehawa.mantarobot.utils.Pair;
 import net.kodehawa.mantarobot.utils.Utils;
 import net.kodehawa.mantarobot.utils.commands.EmoteReference;
 import net.kodehawa.mantarobot.utils.commands.RateLimiter;
+import net.kodehawa.mantarobot.utils.stats.LatencyRecorder;
+import org.HdrHistogram.Histogram;
 
 import java.lang.management.ManagementFactory;
+import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
@@ -200,14 +209,16 @@ public class DebugCmds {
 
                     JDA jda = shard.getJDA();
                     builder.append(String.format(
-                            "%-17s | %-9s | U: %-6d | G: %-4d | EV: %-8s | P: %-6s | VC: %-2d",
+                            "%-17s | %-9s | U: %-6d | G: %-4d | EV: %-8s | P: %-6s | VC: %-2d | Q: %-3d | R: %d",
                             jda.getShardInfo() == null ? "Shard [0 / 1]" : jda.getShardInfo(),
                             jda.getStatus(),
                             jda.getUserCache().size(),
                             jda.getGuildCache().size(),
                             shard.getEventManager().getLastJDAEventTimeDiff() + " ms",
                             jda.getPing(),
-                            jda.getVoiceChannelCache().stream().filter(voiceChannel -> voiceChannel.getMembers().contains(voiceChannel.getGuild().getSelfMember())).count()
+                            jda.getVoiceChannelCache().stream().filter(voiceChannel -> voiceChannel.getMembers().contains(voiceChannel.getGuild().getSelfMember())).count(),
+                            shard.getCommandScheduler().getQueueDepth(),
+                            shard.getCommandScheduler().getRejectedCount()
                     ));
 
                     if(shard.getJDA().getShardInfo() != null && shard.getJDA().getShardInfo().equals(event.getJDA().getShardInfo())) {
@@ -319,6 +330,144 @@ public class DebugCmds {
         });
     }
 
+    @Subscribe
+    public void debugInfo(CommandRegistry cr) {
+        cr.register("debug", new SimpleTreeCommand(Category.INFO) {
+            @Override
+            public MessageEmbed help(GuildMessageReceivedEvent event) {
+                return helpEmbed(event, "Debug")
+                        .setDescription("**Internal numbers, so we can see where the bot is being slow.**")
+                        .addField("Usage",
+                                "`~>debug latency` - **Shows the commands with the slowest execution time.**\n"
+                                        + "`~>debug latency <command>` - **Shows how long each step of running a command takes.**\n"
+                                        + "`~>debug db` - **Shows the cache hit ratio and the database latency of every entity.**\n"
+                                        + "`~>debug db <entity>` - **Shows how long each database operation on an entity takes (players, guilds...).**\n"
+                                , false)
+                        .build();
+            }
+        }.addSubCommand("latency", new SubCommand() {
+            @Override
+            protected void call(GuildMessageReceivedEvent event, String content) {
+                String command = content.trim().toLowerCase();
+
+                if(command.isEmpty()) {
+                    List<Pair<String, Histogram>> slowest = CommandTracer.getCommands().stream()
+                            .map(name -> new Pair<>(name, CommandTracer.get(name)[CommandTracer.Stage.COMMAND_BODY.ordinal()].snapshot()))
+                            .filter(pair -> pair.getRight().getTotalCount() > 0)
+                            .sorted(Comparator.comparingLong((Pair<String, Histogram> pair) -> pair.getRight().getValueAtPercentile(99)).reversed())
+                            .limit(15)
+                            .collect(Collectors.toList());
+
+                    if(slowest.isEmpty()) {
+                        event.getChannel().sendMessage(EmoteReference.ERROR + "No commands have been ran yet!").queue();
+                        return;
+                    }
+
+                    StringBuilder builder = new StringBuilder(String.format("%-16s | %-8s | %-10s | %-10s\n", "Command", "Count", "p50 (us)", "p99 (us)"));
+                    for(Pair<String, Histogram> pair : slowest) {
+                        Histogram h = pair.getRight();
+                        builder.append(String.format("%-16s | %-8d | %-10d | %-10d\n", pair.getLeft(), h.getTotalCount(),
+                                LatencyRecorder.micros(h.getValueAtPercentile(50)), LatencyRecorder.micros(h.getValueAtPercentile(99))));
+                    }
+
+                    event.getChannel().sendMessage(new MessageBuilder()
+                            .append(EmoteReference.STOPWATCH)
+                            .append("**Slowest commands since startup (command body)**")
+                            .append("\n")
+                            .appendCodeBlock(builder.toString(), "prolog")
+                            .build()).queue();
+                    return;
+                }
+
+                LatencyRecorder[] recorders = CommandTracer.get(command);
+                if(recorders == null) {
+                    event.getChannel().sendMessage(EmoteReference.ERROR + "That command hasn't been ran since startup (or doesn't exist).").queue();
+                    return;
+                }
+
+                StringBuilder builder = new StringBuilder(String.format("%-8s | %-8s | %-10s | %-10s | %-10s | %-10s\n", "Stage", "Count", "p50 (us)", "p95 (us)", "p99 (us)", "max (us)"));
+                for(CommandTracer.Stage stage : CommandTracer.Stage.values()) {
+                    Histogram h = recorders[stage.ordinal()].snapshot();
+                    builder.append(String.format("%-8s | %-8d | %-10d | %-10d | %-10d | %-10d\n", stage.getName(), h.getTotalCount(),
+                            LatencyRecorder.micros(h.getValueAtPercentile(50)), LatencyRecorder.micros(h.getValueAtPercentile(95)),
+                            LatencyRecorder.micros(h.getValueAtPercentile(99)), LatencyRecorder.micros(h.getMaxValue())));
+                }
+
+                event.getChannel().sendMessage(new MessageBuilder()
+                        .append(EmoteReference.STOPWATCH)
+                        .append("**Latency breakdown for ").append(command).append(" since startup**")
+                        .append("\n")
+                        .appendCodeBlock(builder.toString(), "prolog")
+                        .build()).queue();
+            }
+        }).addSubCommand("db", new SubCommand() {
+            @Override
+            protected void call(GuildMessageReceivedEvent event, String content) {
+                String entity = content.trim().toLowerCase();
+                List<DatabaseMetrics.Metrics> all = DatabaseMetrics.getAll();
+
+                if(entity.isEmpty()) {
+                    if(all.isEmpty()) {
+                        event.getChannel().sendMessage(EmoteReference.ERROR + "Nothing has been read from the database yet!").queue();
+                        return;
+                    }
+
+                    StringBuilder builder = new StringBuilder(String.format("%-7s | %-8s | %-8s | %-5s | %-6s | %-10s | %-10s | %-7s | %-7s | %-6s\n",
+                            "Layer", "Entity", "Gets", "Hit %", "Near %", "p50 (us)", "p99 (us)", "Saves", "Deletes", "Bulk"));
+                    for(DatabaseMetrics.Metrics metrics : all) {
+                        Histogram h = metrics.getLatency(DatabaseMetrics.Operation.GET).snapshot();
+                        double ratio = metrics.getHitRatio();
+                        double nearRatio = metrics.getNearHitRatio();
+                        builder.append(String.format("%-7s | %-8s | %-8d | %-5s | %-6s | %-10d | %-10d | %-7d | %-7d | %-6d\n",
+                                metrics.getLayer().getName(), metrics.getEntity(), metrics.getCount(DatabaseMetrics.Operation.GET),
+                                ratio < 0 ? "-" : String.format("%.1f", ratio * 100),
+                                nearRatio < 0 ? "-" : String.format("%.1f", nearRatio * 100),
+                                LatencyRecorder.micros(h.getValueAtPercentile(50)), LatencyRecorder.micros(h.getValueAtPercentile(99)),
+                                metrics.getCount(DatabaseMetrics.Operation.SAVE), metrics.getCount(DatabaseMetrics.Operation.DELETE),
+                                metrics.getCount(DatabaseMetrics.Operation.BULK)));
+                    }
+
+                    event.getChannel().sendMessage(new MessageBuilder()
+                            .append(EmoteReference.STOPWATCH)
+                            .append("**Database operations since startup** (write queue: ")
+                            .append(String.valueOf(MantaroData.db().getWriteQueue().getDepth())).append(" pending)")
+                            .append("\n")
+                            .appendCodeBlock(builder.toString(), "prolog")
+                            .build()).queue();
+                    return;
+                }
+
+                List<DatabaseMetrics.Metrics> matching = all.stream().filter(metrics -> metrics.getEntity().equals(entity)).collect(Collectors.toList());
+                if(matching.isEmpty()) {
+                    event.getChannel().sendMessage(EmoteReference.ERROR + "Nothing has been done with that entity since startup (or it doesn't exist).").queue();
+                    return;
+                }
+
+                StringBuilder builder = new StringBuilder(String.format("%-7s | %-6s | %-8s | %-10s | %-10s | %-10s | %-10s\n",
+                        "Layer", "Op", "Count", "p50 (us)", "p95 (us)", "p99 (us)", "max (us)"));
+                for(DatabaseMetrics.Metrics metrics : matching) {
+                    for(DatabaseMetrics.Operation operation : DatabaseMetrics.Operation.values()) {
+                        long count = metrics.getCount(operation);
+                        if(count == 0)
+                            continue;
+
+                        Histogram h = metrics.getLatency(operation).snapshot();
+                        builder.append(String.format("%-7s | %-6s | %-8d | %-10d | %-10d | %-10d | %-10d\n", metrics.getLayer().getName(), operation.getName(), count,
+                                LatencyRecorder.micros(h.getValueAtPercentile(50)), LatencyRecorder.micros(h.getValueAtPercentile(95)),
+                                LatencyRecorder.micros(h.getValueAtPercentile(99)), LatencyRecorder.micros(h.getMaxValue())));
+                    }
+                }
+
+                event.getChannel().sendMessage(new MessageBuilder()
+                        .append(EmoteReference.STOPWATCH)
+                        .append("**Database breakdown for ").append(entity).append(" since startup**")
+                        .append("\n")
+                        .appendCodeBlock(builder.toString(), "prolog")
+                        .build()).queue();
+            }
+        }));
+    }
+
     private String ratePing(long ping) {
         if(ping == 69) return "l-lewd! <:MantaroGasm:318869352851963904>";
         if(ping <= 1) return "supersonic speed! :upside_down:"; //just in case...
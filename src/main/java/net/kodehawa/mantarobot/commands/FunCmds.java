@@ -113,8 +113,9 @@ public class FunCmds {
                 DBGuild dbGuild = MantaroData.db().getGuild(event.getGuild());
                 User proposing = event.getAuthor();
                 User proposedTo = event.getMessage().getMentionedUsers().get(0);
-                Player proposingPlayer = MantaroData.db().getPlayer(proposing);
-                Player proposedPlayer = MantaroData.db().getPlayer(proposedTo);
+                Map<String, Player> players = MantaroData.db().getPlayers(Arrays.asList(proposing.getId(), proposedTo.getId()));
+                Player proposingPlayer = players.get(proposing.getId());
+                Player proposedPlayer = players.get(proposedTo.getId());
                 User proposingMarriedWith = proposingPlayer.getData().getMarriedWith() == null ? null : MantaroBot.getInstance().getUserById(proposingPlayer.getData().getMarriedWith());
 
                 Inventory playerInventory = proposingPlayer.getInventory();
@@ -170,43 +171,44 @@ public class FunCmds {
                     }
 
                     if(message.equalsIgnoreCase("yes")) {
-                        Player proposed = MantaroData.db().getPlayer(proposedTo);
-                        Player author = MantaroData.db().getPlayer(proposing);
-                        Inventory authorInventory = author.getInventory();
+                        boolean married = MantaroData.db().getUpdater().updatePlayers(proposedTo.getId(), proposing.getId(), (proposed, author) -> {
+                            Inventory authorInventory = author.getInventory();
 
-                        if(authorInventory.getAmount(Items.RING) < 2) {
-                            event.getChannel().sendMessage(EmoteReference.ERROR + "You cannot marry with less than two rings on your inventory!").queue();
-                            return Operation.COMPLETED;
-                        }
+                            if(authorInventory.getAmount(Items.RING) < 2) {
+                                event.getChannel().sendMessage(EmoteReference.ERROR + "You cannot marry with less than two rings on your inventory!").queue();
+                                return false;
+                            }
 
-                        proposed.getData().setMarriedWith(proposing.getId());
-                        proposed.getData().setMarriedSince(System.currentTimeMillis());
-                        proposed.getData().addBadgeIfAbsent(Badge.MARRIED);
+                            proposed.getData().setMarriedWith(proposing.getId());
+                            proposed.getData().setMarriedSince(System.currentTimeMillis());
+                            proposed.getData().addBadgeIfAbsent(Badge.MARRIED);
 
-                        author.getData().setMarriedWith(proposedTo.getId());
-                        author.getData().setMarriedSince(System.currentTimeMillis());
-                        author.getData().addBadgeIfAbsent(Badge.MARRIED);
+                            author.getData().setMarriedWith(proposedTo.getId());
+                            author.getData().setMarriedSince(System.currentTimeMillis());
+                            author.getData().addBadgeIfAbsent(Badge.MARRIED);
 
-                        Inventory proposedInventory = proposed.getInventory();
+                            Inventory proposedInventory = proposed.getInventory();
 
-                        authorInventory.process(new ItemStack(Items.RING, -1));
+                            authorInventory.process(new ItemStack(Items.RING, -1));
 
-                        if(proposedInventory.getAmount(Items.RING) < 5000) {
-                            proposedInventory.process(new ItemStack(Items.RING, 1));
-                        }
+                            if(proposedInventory.getAmount(Items.RING) < 5000) {
+                                proposedInventory.process(new ItemStack(Items.RING, 1));
+                            }
+
+                            return true;
+                        });
 
-                        ie.getChannel().sendMessage(String.format("%s`%s` accepted the proposal of `%s`!", EmoteReference.POPPER, ie.getAuthor().getName(), proposing.getName())).queue();
-                        proposed.save();
-                        author.save();
+                        if(married) {
+                            ie.getChannel().sendMessage(String.format("%s`%s` accepted the proposal of `%s`!", EmoteReference.POPPER, ie.getAuthor().getName(), proposing.getName())).queue();
+                            TextChannelGround.of(event).dropItemWithChance(Items.LOVE_LETTER, 2);
+                        }
 
-                        TextChannelGround.of(event).dropItemWithChance(Items.LOVE_LETTER, 2);
                         return Operation.COMPLETED;
                     }
 
                     if(message.equalsIgnoreCase("no")) {
                         ie.getChannel().sendMessage(EmoteReference.CORRECT + "Denied proposal from `" + proposing.getName() + "`").queue();
-                        proposingPlayer.getData().addBadgeIfAbsent(Badge.DENIED);
-                        proposingPlayer.saveAsync();
+                        MantaroData.db().getUpdater().updatePlayer(proposing.getId(), player -> player.getData().addBadgeIfAbsent(Badge.DENIED));
                         return Operation.COMPLETED;
                     }
 
@@ -245,24 +247,25 @@ public class FunCmds {
                 User userMarriedWith = divorcee.getData().getMarriedWith() == null ? null : MantaroBot.getInstance().getUserById(divorcee.getData().getMarriedWith());
 
                 if(userMarriedWith == null) {
-                    divorcee.getData().setMarriedWith(null);
-                    divorcee.getData().setMarriedSince(0L);
-                    divorcee.saveAsync();
+                    MantaroData.db().getUpdater().updatePlayer(event.getAuthor().getId(), player -> {
+                        player.getData().setMarriedWith(null);
+                        player.getData().setMarriedSince(0L);
+                        return null;
+                    });
                     event.getChannel().sendMessage(EmoteReference.CORRECT + "Now you're single. That's nice I guess.").queue();
                     return;
                 }
 
-                Player marriedWith = MantaroData.db().getPlayer(userMarriedWith);
-
-                marriedWith.getData().setMarriedWith(null);
-                marriedWith.getData().setMarriedSince(0L);
-                marriedWith.getData().addBadgeIfAbsent(Badge.HEART_BROKEN);
-                marriedWith.save();
+                MantaroData.db().getUpdater().updatePlayers(event.getAuthor().getId(), userMarriedWith.getId(), (player, marriedWith) -> {
+                    marriedWith.getData().setMarriedWith(null);
+                    marriedWith.getData().setMarriedSince(0L);
+                    marriedWith.getData().addBadgeIfAbsent(Badge.HEART_BROKEN);
 
-                divorcee.getData().setMarriedWith(null);
-                divorcee.getData().setMarriedSince(0L);
-                divorcee.getData().addBadgeIfAbsent(Badge.HEART_BROKEN);
-                divorcee.save();
+                    player.getData().setMarriedWith(null);
+                    player.getData().setMarriedSince(0L);
+                    player.getData().addBadgeIfAbsent(Badge.HEART_BROKEN);
+                    return null;
+                });
 
                 event.getChannel().sendMessage(EmoteReference.CORRECT + "Now you're single. That's nice I guess.").queue();
             }
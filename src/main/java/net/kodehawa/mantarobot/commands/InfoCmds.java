@@ -27,6 +27,7 @@ import net.kodehawa.mantarobot.MantaroBot;
 import net.kodehawa.mantarobot.MantaroInfo;
 import net.kodehawa.mantarobot.commands.currency.TextChannelGround;
 import net.kodehawa.mantarobot.commands.info.stats.manager.*;
+import net.kodehawa.mantarobot.commands.info.stats.manager.SlidingWindowCounter.Window;
 import net.kodehawa.mantarobot.core.CommandRegistry;
 import net.kodehawa.mantarobot.core.listeners.command.CommandListener;
 import net.kodehawa.mantarobot.core.modules.Module;
@@ -473,32 +474,32 @@ public class InfoCmds {
                 if(args.length > 0) {
                     String what = args[0];
                     if(what.equals("total")) {
-                        event.getChannel().sendMessage(commandStatsManager.fillEmbed(CommandStatsManager.TOTAL_CMDS, baseEmbed(event, "Command Stats | Total")).build()).queue();
+                        event.getChannel().sendMessage(commandStatsManager.fillEmbed(CommandStatsManager.COMMANDS.snapshot(Window.TOTAL), baseEmbed(event, "Command Stats | Total")).build()).queue();
                         return;
                     }
 
                     if(what.equals("daily")) {
-                        event.getChannel().sendMessage(commandStatsManager.fillEmbed(CommandStatsManager.DAY_CMDS, baseEmbed(event, "Command Stats | Daily")).build()).queue();
+                        event.getChannel().sendMessage(commandStatsManager.fillEmbed(CommandStatsManager.COMMANDS.snapshot(Window.DAY), baseEmbed(event, "Command Stats | Daily")).build()).queue();
                         return;
                     }
 
                     if(what.equals("hourly")) {
-                        event.getChannel().sendMessage(commandStatsManager.fillEmbed(CommandStatsManager.HOUR_CMDS, baseEmbed(event, "Command Stats | Hourly")).build()).queue();
+                        event.getChannel().sendMessage(commandStatsManager.fillEmbed(CommandStatsManager.COMMANDS.snapshot(Window.HOUR), baseEmbed(event, "Command Stats | Hourly")).build()).queue();
                         return;
                     }
 
                     if(what.equals("now")) {
-                        event.getChannel().sendMessage(commandStatsManager.fillEmbed(CommandStatsManager.MINUTE_CMDS, baseEmbed(event, "Command Stats | Now")).build()).queue();
+                        event.getChannel().sendMessage(commandStatsManager.fillEmbed(CommandStatsManager.COMMANDS.snapshot(Window.MINUTE), baseEmbed(event, "Command Stats | Now")).build()).queue();
                         return;
                     }
                 }
 
                 //Default
                 event.getChannel().sendMessage(baseEmbed(event, "Command Stats")
-                        .addField("Now", commandStatsManager.resume(CommandStatsManager.MINUTE_CMDS), false)
-                        .addField("Hourly", commandStatsManager.resume(CommandStatsManager.HOUR_CMDS), false)
-                        .addField("Daily", commandStatsManager.resume(CommandStatsManager.DAY_CMDS), false)
-                        .addField("Total", commandStatsManager.resume(CommandStatsManager.TOTAL_CMDS), false)
+                        .addField("Now", commandStatsManager.resume(CommandStatsManager.COMMANDS.snapshot(Window.MINUTE)), false)
+                        .addField("Hourly", commandStatsManager.resume(CommandStatsManager.COMMANDS.snapshot(Window.HOUR)), false)
+                        .addField("Daily", commandStatsManager.resume(CommandStatsManager.COMMANDS.snapshot(Window.DAY)), false)
+                        .addField("Total", commandStatsManager.resume(CommandStatsManager.COMMANDS.snapshot(Window.TOTAL)), false)
                         .build()
                 ).queue();
             }
@@ -511,32 +512,32 @@ public class InfoCmds {
                 if(args.length > 0) {
                     String what = args[0];
                     if(what.equals("total")) {
-                        event.getChannel().sendMessage(guildStatsManager.fillEmbed(GuildStatsManager.TOTAL_EVENTS, baseEmbed(event, "Guild Stats | Total")).build()).queue();
+                        event.getChannel().sendMessage(guildStatsManager.fillEmbed(GuildStatsManager.EVENTS.snapshot(Window.TOTAL), baseEmbed(event, "Guild Stats | Total")).build()).queue();
                         return;
                     }
 
                     if(what.equals("daily")) {
-                        event.getChannel().sendMessage(guildStatsManager.fillEmbed(GuildStatsManager.DAY_EVENTS, baseEmbed(event, "Guild Stats | Daily")).build()).queue();
+                        event.getChannel().sendMessage(guildStatsManager.fillEmbed(GuildStatsManager.EVENTS.snapshot(Window.DAY), baseEmbed(event, "Guild Stats | Daily")).build()).queue();
                         return;
                     }
 
                     if(what.equals("hourly")) {
-                        event.getChannel().sendMessage(guildStatsManager.fillEmbed(GuildStatsManager.HOUR_EVENTS, baseEmbed(event, "Guild Stats | Hourly")).build()).queue();
+                        event.getChannel().sendMessage(guildStatsManager.fillEmbed(GuildStatsManager.EVENTS.snapshot(Window.HOUR), baseEmbed(event, "Guild Stats | Hourly")).build()).queue();
                         return;
                     }
 
                     if(what.equals("now")) {
-                        event.getChannel().sendMessage(guildStatsManager.fillEmbed(GuildStatsManager.MINUTE_EVENTS, baseEmbed(event, "Guild Stats | Now")).build()).queue();
+                        event.getChannel().sendMessage(guildStatsManager.fillEmbed(GuildStatsManager.EVENTS.snapshot(Window.MINUTE), baseEmbed(event, "Guild Stats | Now")).build()).queue();
                         return;
                     }
                 }
 
                 //Default
                 event.getChannel().sendMessage(baseEmbed(event, "Guild Stats")
-                        .addField("Now", guildStatsManager.resume(GuildStatsManager.MINUTE_EVENTS), false)
-                        .addField("Hourly", guildStatsManager.resume(GuildStatsManager.HOUR_EVENTS), false)
-                        .addField("Daily", guildStatsManager.resume(GuildStatsManager.DAY_EVENTS), false)
-                        .addField("Total", guildStatsManager.resume(GuildStatsManager.TOTAL_EVENTS), false)
+                        .addField("Now", guildStatsManager.resume(GuildStatsManager.EVENTS.snapshot(Window.MINUTE)), false)
+                        .addField("Hourly", guildStatsManager.resume(GuildStatsManager.EVENTS.snapshot(Window.HOUR)), false)
+                        .addField("Daily", guildStatsManager.resume(GuildStatsManager.EVENTS.snapshot(Window.DAY)), false)
+                        .addField("Total", guildStatsManager.resume(GuildStatsManager.EVENTS.snapshot(Window.TOTAL)), false)
                         .setFooter("Guilds: " + MantaroBot.getInstance().getGuildCache().size(), null)
                         .build()
                 ).queue();
@@ -550,32 +551,32 @@ public class InfoCmds {
                 if(args.length > 0) {
                     String what = args[0];
                     if(what.equals("total")) {
-                        event.getChannel().sendMessage(categoryStatsManager.fillEmbed(CategoryStatsManager.TOTAL_CATS, baseEmbed(event, "Category Stats | Total")).build()).queue();
+                        event.getChannel().sendMessage(categoryStatsManager.fillEmbed(CategoryStatsManager.CATEGORIES.snapshot(Window.TOTAL), baseEmbed(event, "Category Stats | Total")).build()).queue();
                         return;
                     }
 
                     if(what.equals("daily")) {
-                        event.getChannel().sendMessage(categoryStatsManager.fillEmbed(CategoryStatsManager.DAY_CATS, baseEmbed(event, "Category Stats | Daily")).build()).queue();
+                        event.getChannel().sendMessage(categoryStatsManager.fillEmbed(CategoryStatsManager.CATEGORIES.snapshot(Window.DAY), baseEmbed(event, "Category Stats | Daily")).build()).queue();
                         return;
                     }
 
                     if(what.equals("hourly")) {
-                        event.getChannel().sendMessage(categoryStatsManager.fillEmbed(CategoryStatsManager.HOUR_CATS, baseEmbed(event, "Category Stats | Hourly")).build()).queue();
+                        event.getChannel().sendMessage(categoryStatsManager.fillEmbed(CategoryStatsManager.CATEGORIES.snapshot(Window.HOUR), baseEmbed(event, "Category Stats | Hourly")).build()).queue();
                         return;
                     }
 
                     if(what.equals("now")) {
-                        event.getChannel().sendMessage(categoryStatsManager.fillEmbed(CategoryStatsManager.MINUTE_CATS, baseEmbed(event, "Category Stats | Now")).build()).queue();
+                        event.getChannel().sendMessage(categoryStatsManager.fillEmbed(CategoryStatsManager.CATEGORIES.snapshot(Window.MINUTE), baseEmbed(event, "Category Stats | Now")).build()).queue();
                         return;
                     }
                 }
 
                 //Default
                 event.getChannel().sendMessage(baseEmbed(event, "Category Stats")
-                        .addField("Now", categoryStatsManager.resume(CategoryStatsManager.MINUTE_CATS), false)
-                        .addField("Hourly", categoryStatsManager.resume(CategoryStatsManager.HOUR_CATS), false)
-                        .addField("Daily", categoryStatsManager.resume(CategoryStatsManager.DAY_CATS), false)
-                        .addField("Total", categoryStatsManager.resume(CategoryStatsManager.TOTAL_CATS), false)
+                        .addField("Now", categoryStatsManager.resume(CategoryStatsManager.CATEGORIES.snapshot(Window.MINUTE)), false)
+                        .addField("Hourly", categoryStatsManager.resume(CategoryStatsManager.CATEGORIES.snapshot(Window.HOUR)), false)
+                        .addField("Daily", categoryStatsManager.resume(CategoryStatsManager.CATEGORIES.snapshot(Window.DAY)), false)
+                        .addField("Total", categoryStatsManager.resume(CategoryStatsManager.CATEGORIES.snapshot(Window.TOTAL)), false)
                         .build()
                 ).queue();
             }
@@ -585,7 +586,7 @@ public class InfoCmds {
             @Override
             protected void call(GuildMessageReceivedEvent event, String content) {
                 event.getChannel().sendMessage(
-                        customCommandStatsManager.fillEmbed(CustomCommandStatsManager.TOTAL_CUSTOM_CMDS, baseEmbed(event, "CCS Stats | Total")
+                        customCommandStatsManager.fillEmbed(CustomCommandStatsManager.CUSTOM_COMMANDS.snapshot(Window.TOTAL), baseEmbed(event, "CCS Stats | Total")
                         ).build()).queue();
             }
         });
@@ -593,7 +594,7 @@ public class InfoCmds {
         statsCommand.addSubCommand("game", new SubCommand() {
             @Override
             protected void call(GuildMessageReceivedEvent event, String content) {
-                event.getChannel().sendMessage(baseEmbed(event, "Game Stats").setDescription(gameStatsManager.resume(GameStatsManager.TOTAL_GAMES)).build()).queue();
+                event.getChannel().sendMessage(baseEmbed(event, "Game Stats").setDescription(gameStatsManager.resume(GameStatsManager.GAMES.snapshot(Window.TOTAL))).build()).queue();
             }
         });
     }
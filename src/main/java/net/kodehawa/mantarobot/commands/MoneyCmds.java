@@ -19,15 +19,12 @@ package net.kodehawa.mantarobot.commands;
 import br.com.brjdevs.java.utils.texts.StringUtils;
 import com.google.common.eventbus.Subscribe;
 import com.jagrosh.jdautilities.utils.FinderUtil;
-import com.rethinkdb.gen.ast.OrderBy;
-import com.rethinkdb.model.OptArgs;
-import com.rethinkdb.net.Connection;
-import com.rethinkdb.net.Cursor;
 import net.dv8tion.jda.core.entities.Member;
 import net.dv8tion.jda.core.entities.MessageEmbed;
 import net.dv8tion.jda.core.entities.User;
 import net.dv8tion.jda.core.events.message.guild.GuildMessageReceivedEvent;
 import net.kodehawa.mantarobot.MantaroBot;
+import net.kodehawa.mantarobot.commands.currency.LeaderboardSnapshots;
 import net.kodehawa.mantarobot.commands.currency.TextChannelGround;
 import net.kodehawa.mantarobot.commands.currency.item.ItemStack;
 import net.kodehawa.mantarobot.commands.currency.item.Items;
@@ -45,10 +42,10 @@ import net.kodehawa.mantarobot.core.modules.commands.base.ITreeCommand;
 import net.kodehawa.mantarobot.data.MantaroData;
 import net.kodehawa.mantarobot.db.entities.Player;
 import net.kodehawa.mantarobot.db.entities.helpers.PlayerData;
+import net.kodehawa.mantarobot.db.storage.Leaderboard;
 import net.kodehawa.mantarobot.utils.Utils;
 import net.kodehawa.mantarobot.utils.commands.EmoteReference;
 import net.kodehawa.mantarobot.utils.commands.RateLimiter;
-import org.apache.commons.lang3.tuple.Pair;
 
 import java.security.SecureRandom;
 import java.text.NumberFormat;
@@ -58,9 +55,9 @@ import java.time.Month;
 import java.time.ZoneId;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
-import static com.rethinkdb.RethinkDB.r;
 import static net.kodehawa.mantarobot.utils.Utils.handleDefaultRatelimit;
 
 /**
@@ -86,19 +83,32 @@ public class MoneyCmds {
         cr.register("daily", new SimpleCommand(Category.CURRENCY) {
             @Override
             public void call(GuildMessageReceivedEvent event, String content, String[] args) {
-                long money = 150L;
-                User mentionedUser = null;
                 List<User> mentioned = event.getMessage().getMentionedUsers();
-
-                if(!mentioned.isEmpty())
-                    mentionedUser = event.getMessage().getMentionedUsers().get(0);
+                User mentionedUser = mentioned.isEmpty() ? null : mentioned.get(0);
 
                 if(mentionedUser != null && mentionedUser.isBot()) {
                     event.getChannel().sendMessage(EmoteReference.ERROR + "You cannot transfer your daily to a bot!").queue();
                     return;
                 }
 
-                Player player = mentionedUser != null ? MantaroData.db().getPlayer(event.getGuild().getMember(mentionedUser)) : MantaroData.db().getPlayer(event.getMember());
+                String authorId = event.getAuthor().getId();
+                if(mentionedUser != null && !mentionedUser.getId().equals(authorId)) {
+                    //The streak goes to the author, the money to the receiver.
+                    MantaroData.db().getUpdater().updatePlayers(mentionedUser.getId(), authorId, (player, authorPlayer) -> {
+                        claim(event, player, authorPlayer, mentionedUser);
+                        return null;
+                    });
+                } else {
+                    MantaroData.db().getUpdater().updatePlayer(authorId, player -> {
+                        claim(event, player, null, mentionedUser);
+                        return null;
+                    });
+                }
+            }
+
+            //authorPlayer is only there when giving the daily to someone else.
+            private void claim(GuildMessageReceivedEvent event, Player player, Player authorPlayer, User mentionedUser) {
+                long money = 150L;
 
                 if(player.isLocked()) {
                     event.getChannel().sendMessage(EmoteReference.ERROR + (mentionedUser != null ? "That user cannot receive daily credits now." :
@@ -111,9 +121,7 @@ public class MoneyCmds {
                 PlayerData playerData = player.getData();
                 String streak;
 
-                String playerId = player.getUserId();
-
-                if(playerId.equals(event.getAuthor().getId())) {
+                if(authorPlayer == null) {
                     if(System.currentTimeMillis() - playerData.getLastDailyAt() < TimeUnit.HOURS.toMillis(50)) {
                         playerData.setDailyStreak(playerData.getDailyStreak() + 1);
                         streak = "Streak up! Current streak: `" + playerData.getDailyStreak() + "x`";
@@ -144,7 +152,6 @@ public class MoneyCmds {
                         playerData.addBadgeIfAbsent(Badge.BIG_CLAIMER);
                     }
                 } else {
-                    Player authorPlayer = MantaroData.db().getPlayer(event.getAuthor());
                     PlayerData authorPlayerData = authorPlayer.getData();
 
                     if(System.currentTimeMillis() - authorPlayerData.getLastDailyAt() < TimeUnit.HOURS.toMillis(50)) {
@@ -179,10 +186,9 @@ public class MoneyCmds {
                     }
 
                     authorPlayerData.setLastDailyAt(System.currentTimeMillis());
-                    authorPlayer.save();
                 }
 
-                if(mentionedUser != null && !mentionedUser.getId().equals(event.getAuthor().getId())) {
+                if(authorPlayer != null) {
                     money = money + r.nextInt(90);
 
                     if(mentionedUser.getId().equals(player.getData().getMarriedWith())) {
@@ -193,7 +199,6 @@ public class MoneyCmds {
 
                     player.addMoney(money);
                     playerData.setLastDailyAt(System.currentTimeMillis());
-                    player.save();
 
                     event.getChannel().sendMessage(EmoteReference.CORRECT + "I gave your **$" + money + "** daily credits to " +
                             mentionedUser.getName() + "\n\n" + streak).queue();
@@ -202,7 +207,6 @@ public class MoneyCmds {
 
                 player.addMoney(money);
                 playerData.setLastDailyAt(System.currentTimeMillis());
-                player.save();
 
                 event.getChannel().sendMessage(EmoteReference.CORRECT + "You got **$" + money + "** daily credits.\n\n" + streak).queue();
             }
@@ -292,8 +296,7 @@ public class MoneyCmds {
                 final long finalGains = gains;
 
                 if(i >= Integer.MAX_VALUE / 4) {
-                    player.setLocked(true);
-                    player.save();
+                    setLocked(user, true);
                     event.getChannel().sendMessage(String.format("%sYou're about to bet **%d** credits (which seems to be a lot). " +
                             "Are you sure? Type **yes** to continue and **no** otherwise.", EmoteReference.WARNING, i)).queue();
                     InteractiveOperations.create(event.getChannel(), 30, new InteractiveOperation() {
@@ -301,12 +304,11 @@ public class MoneyCmds {
                         public int run(GuildMessageReceivedEvent e) {
                             if(e.getAuthor().getId().equals(user.getId())) {
                                 if(e.getMessage().getContentRaw().equalsIgnoreCase("yes")) {
-                                    proceedGamble(event, player, finalLuck, random, i, finalGains);
+                                    proceedGamble(event, user, finalLuck, random, i, finalGains);
                                     return COMPLETED;
                                 } else if(e.getMessage().getContentRaw().equalsIgnoreCase("no")) {
                                     e.getChannel().sendMessage(EmoteReference.ZAP + "Cancelled bet.").queue();
-                                    player.setLocked(false);
-                                    player.saveAsync();
+                                    setLocked(user, false);
                                     return COMPLETED;
                                 }
                             }
@@ -318,14 +320,13 @@ public class MoneyCmds {
                         public void onExpire() {
                             event.getChannel().sendMessage(EmoteReference.ERROR + "Time to complete the operation has ran out.")
                                     .queue();
-                            player.setLocked(false);
-                            player.saveAsync();
+                            setLocked(user, false);
                         }
                     });
                     return;
                 }
 
-                proceedGamble(event, player, luck, random, i, gains);
+                proceedGamble(event, user, luck, random, i, gains);
             }
 
             @Override
@@ -348,80 +349,81 @@ public class MoneyCmds {
 
             @Override
             public void call(GuildMessageReceivedEvent event, String content, String[] args) {
-                Player player = MantaroData.db().getPlayer(event.getMember());
-
-                if(player.isLocked()) {
-                    event.getChannel().sendMessage(EmoteReference.ERROR + "You cannot loot now.").queue();
-                    return;
-                }
+                MantaroData.db().getUpdater().updatePlayer(event.getAuthor().getId(), player -> {
 
-                if(!handleDefaultRatelimit(rateLimiter, event.getAuthor(), event))
-                    return;
-
-                LocalDate today = LocalDate.now(zoneId);
-                LocalDate eventStart = today.withMonth(Month.DECEMBER.getValue()).withDayOfMonth(23);
-                LocalDate eventStop = eventStart.plusDays(3); //Up to the 25th
-                TextChannelGround ground = TextChannelGround.of(event);
-
-                if(today.isEqual(eventStart) || (today.isAfter(eventStart) && today.isBefore(eventStop))) {
-                    ground.dropItemWithChance(Items.CHRISTMAS_TREE_SPECIAL, 4);
-                    ground.dropItemWithChance(Items.BELL_SPECIAL, 4);
-                }
+                    if(player.isLocked()) {
+                        event.getChannel().sendMessage(EmoteReference.ERROR + "You cannot loot now.").queue();
+                        return null;
+                    }
 
-                if(r.nextInt(100) == 0) { //1 in 100 chance of it dropping a loot crate.
-                    ground.dropItem(Items.LOOT_CRATE);
-                    if(player.getData().addBadgeIfAbsent(Badge.LUCKY)) player.saveAsync();
-                }
+                    if(!handleDefaultRatelimit(rateLimiter, event.getAuthor(), event))
+                        return null;
 
-                List<ItemStack> loot = ground.collectItems();
-                int moneyFound = ground.collectMoney() + Math.max(0, r.nextInt(50) - 10);
+                    LocalDate today = LocalDate.now(zoneId);
+                    LocalDate eventStart = today.withMonth(Month.DECEMBER.getValue()).withDayOfMonth(23);
+                    LocalDate eventStop = eventStart.plusDays(3); //Up to the 25th
+                    TextChannelGround ground = TextChannelGround.of(event);
 
-                if(MantaroData.db().getUser(event.getMember()).isPremium() && moneyFound > 0) {
-                    moneyFound = moneyFound + random.nextInt(moneyFound);
-                }
+                    if(today.isEqual(eventStart) || (today.isAfter(eventStart) && today.isBefore(eventStop))) {
+                        ground.dropItemWithChance(Items.CHRISTMAS_TREE_SPECIAL, 4);
+                        ground.dropItemWithChance(Items.BELL_SPECIAL, 4);
+                    }
 
-                if(!loot.isEmpty()) {
-                    String s = ItemStack.toString(ItemStack.reduce(loot));
-                    String overflow;
+                    if(r.nextInt(100) == 0) { //1 in 100 chance of it dropping a loot crate.
+                        ground.dropItem(Items.LOOT_CRATE);
+                        player.getData().addBadgeIfAbsent(Badge.LUCKY);
+                    }
 
-                    if(player.getInventory().merge(loot))
-                        overflow = "But you already had too many items, so you decided to throw away the excess. ";
-                    else
-                        overflow = "";
+                    List<ItemStack> loot = ground.collectItems();
+                    int moneyFound = ground.collectMoney() + Math.max(0, r.nextInt(50) - 10);
 
-                    if(moneyFound != 0) {
-                        if(player.addMoney(moneyFound)) {
-                            event.getChannel().sendMessage(String.format("%sDigging through messages, you found %s, along with **$%d credits!** %s",
-                                    EmoteReference.POPPER, s, moneyFound, overflow)).queue();
-                        } else {
-                            event.getChannel().sendMessage(String.format("%sDigging through messages, you found %s, along with **$%d credits.** " +
-                                    "%sBut you already had too many credits.", EmoteReference.POPPER, s, moneyFound, overflow)).queue();
-                        }
-                    } else {
-                        event.getChannel().sendMessage(EmoteReference.MEGA + "Digging through messages, you found " + s + ". " + overflow).queue();
+                    if(MantaroData.db().getUser(event.getMember()).isPremium() && moneyFound > 0) {
+                        moneyFound = moneyFound + random.nextInt(moneyFound);
                     }
 
-                } else {
-                    if(moneyFound != 0) {
-                        if(player.addMoney(moneyFound)) {
-                            event.getChannel().sendMessage(EmoteReference.POPPER + "Digging through messages, you found **$" + moneyFound +
-                                    " credits!**").queue();
+                    if(!loot.isEmpty()) {
+                        String s = ItemStack.toString(ItemStack.reduce(loot));
+                        String overflow;
+
+                        if(player.getInventory().merge(loot))
+                            overflow = "But you already had too many items, so you decided to throw away the excess. ";
+                        else
+                            overflow = "";
+
+                        if(moneyFound != 0) {
+                            if(player.addMoney(moneyFound)) {
+                                event.getChannel().sendMessage(String.format("%sDigging through messages, you found %s, along with **$%d credits!** %s",
+                                        EmoteReference.POPPER, s, moneyFound, overflow)).queue();
+                            } else {
+                                event.getChannel().sendMessage(String.format("%sDigging through messages, you found %s, along with **$%d credits.** " +
+                                        "%sBut you already had too many credits.", EmoteReference.POPPER, s, moneyFound, overflow)).queue();
+                            }
                         } else {
-                            event.getChannel().sendMessage(String.format("%sDigging through messages, you found **$%d credits.** " +
-                                    "But you already had too many credits.", EmoteReference.POPPER, moneyFound)).queue();
+                            event.getChannel().sendMessage(EmoteReference.MEGA + "Digging through messages, you found " + s + ". " + overflow).queue();
                         }
+
                     } else {
-                        String msg = "Digging through messages, you found nothing but dust";
+                        if(moneyFound != 0) {
+                            if(player.addMoney(moneyFound)) {
+                                event.getChannel().sendMessage(EmoteReference.POPPER + "Digging through messages, you found **$" + moneyFound +
+                                        " credits!**").queue();
+                            } else {
+                                event.getChannel().sendMessage(String.format("%sDigging through messages, you found **$%d credits.** " +
+                                        "But you already had too many credits.", EmoteReference.POPPER, moneyFound)).queue();
+                            }
+                        } else {
+                            String msg = "Digging through messages, you found nothing but dust";
 
-                        if(r.nextInt(100) > 93) {
-                            msg += "\n" +
-                                    "Seems like you've got so much dust here... You might want to clean this up before it gets too messy!";
+                            if(r.nextInt(100) > 93) {
+                                msg += "\n" +
+                                        "Seems like you've got so much dust here... You might want to clean this up before it gets too messy!";
+                            }
+                            event.getChannel().sendMessage(EmoteReference.SAD + msg).queue();
                         }
-                        event.getChannel().sendMessage(EmoteReference.SAD + msg).queue();
                     }
-                }
 
-                player.saveAsync();
+                    return null;
+                });
             }
 
             @Override
@@ -483,7 +485,6 @@ public class MoneyCmds {
     @Subscribe
     public void richest(CommandRegistry cr) {
         final RateLimiter rateLimiter = new RateLimiter(TimeUnit.SECONDS, 10);
-        final String pattern = ":g$";
 
         ITreeCommand leaderboards = (ITreeCommand) cr.register("leaderboard", new TreeCommand(Category.CURRENCY) {
             @Override
@@ -494,25 +495,10 @@ public class MoneyCmds {
                         if(!handleDefaultRatelimit(rateLimiter, event.getAuthor(), event))
                             return;
 
-                        OrderBy template =
-                                r.table("players")
-                                        .orderBy()
-                                        .optArg("index", r.desc("money"));
-
-                        Cursor<Map> c1 = getGlobalRichest(template, pattern);
-                        List<Map> c = c1.toList();
-                        c1.close();
-
                         event.getChannel().sendMessage(
                                 baseEmbed(event,
                                         "Money leaderboard (Top 10)", event.getJDA().getSelfUser().getEffectiveAvatarUrl()
-                                ).setDescription(c.stream()
-                                        .map(map -> Pair.of(MantaroBot.getInstance().getUserById(map.get("id").toString().split(":")[0]), map.get("money").toString()))
-                                        .filter(p -> Objects.nonNull(p.getKey()))
-                                        .map(p -> String.format("%s**%s#%s** - $%s", EmoteReference.MARKER, p.getKey().getName(), p
-                                                .getKey().getDiscriminator(), p.getValue()))
-                                        .collect(Collectors.joining("\n"))
-                                ).build()
+                                ).setDescription(leaderboard(Leaderboard.MONEY, entry -> "$" + entry.getValue())).build()
                         ).queue();
                     }
                 };
@@ -536,30 +522,10 @@ public class MoneyCmds {
                 if(!handleDefaultRatelimit(rateLimiter, event.getAuthor(), event))
                     return;
 
-                Cursor<Map> m;
-                try(Connection conn = Utils.newDbConnection()) {
-                    m = r.table("players")
-                            .orderBy()
-                            .optArg("index", r.desc("level"))
-                            .filter(player -> player.g("id").match(pattern))
-                            .map(player -> player.pluck("id", "level", r.hashMap("data", "experience")))
-                            .limit(10)
-                            .run(conn, OptArgs.of("read_mode", "outdated"));
-                }
-
-                List<Map> c = m.toList();
-                m.close();
-
                 event.getChannel().sendMessage(
                         baseEmbed(event,"Level leaderboard (Top 10)", event.getJDA().getSelfUser().getEffectiveAvatarUrl()
-                        ).setDescription(c.stream()
-                                .map(map -> Pair.of(MantaroBot.getInstance().getUserById(map.get("id").toString().split(":")[0]), map.get("level").toString() +
-                                        "\n - Experience: **" + ((Map)map.get("data")).get("experience") + "**"))
-                                .filter(p -> Objects.nonNull(p.getKey()))
-                                .map(p -> String.format("%s**%s#%s** - %s", EmoteReference.MARKER, p.getKey().getName(), p
-                                        .getKey().getDiscriminator(), p.getValue()))
-                                .collect(Collectors.joining("\n"))
-                        ).build()
+                        ).setDescription(leaderboard(Leaderboard.LEVEL, entry -> entry.getValue() +
+                                "\n - Experience: **" + entry.getExperience() + "**")).build()
                 ).queue();
             }
         });
@@ -567,31 +533,10 @@ public class MoneyCmds {
         leaderboards.addSubCommand("rep", new SubCommand() {
             @Override
             protected void call(GuildMessageReceivedEvent event, String content) {
-                Cursor<Map> m;
-
-                try(Connection conn = Utils.newDbConnection()) {
-                    m = r.table("players")
-                            .orderBy()
-                            .optArg("index", r.desc("reputation"))
-                            .filter(player -> player.g("id").match(pattern))
-                            .map(player -> player.pluck("id", "reputation"))
-                            .limit(10)
-                            .run(conn, OptArgs.of("read_mode", "outdated"));
-                }
-
-                List<Map> c = m.toList();
-                m.close();
-
                 event.getChannel().sendMessage(
                         baseEmbed(event,
                                 "Reputation leaderboard (Top 10)", event.getJDA().getSelfUser().getEffectiveAvatarUrl()
-                        ).setDescription(c.stream()
-                                .map(map -> Pair.of(MantaroBot.getInstance().getUserById(map.get("id").toString().split(":")[0]), map.get("reputation").toString()))
-                                .filter(p -> Objects.nonNull(p.getKey()))
-                                .map(p -> String.format("%s**%s#%s** - %s", EmoteReference.MARKER, p.getKey().getName(), p
-                                        .getKey().getDiscriminator(), p.getValue()))
-                                .collect(Collectors.joining("\n"))
-                        ).build()
+                        ).setDescription(leaderboard(Leaderboard.REPUTATION, entry -> String.valueOf(entry.getValue()))).build()
                 ).queue();
             }
         });
@@ -599,31 +544,10 @@ public class MoneyCmds {
         leaderboards.addSubCommand("streak", new SubCommand() {
             @Override
             protected void call(GuildMessageReceivedEvent event, String content) {
-                Cursor<Map> m;
-
-                try(Connection conn = Utils.newDbConnection()) {
-                    m = r.table("players")
-                            .orderBy()
-                            .optArg("index", r.desc("userDailyStreak"))
-                            .filter(player -> player.g("id").match(pattern))
-                            .map(player -> player.pluck("id", r.hashMap("data", "dailyStrike")))
-                            .limit(10)
-                            .run(conn, OptArgs.of("read_mode", "outdated"));
-                }
-
-                List<Map> c = m.toList();
-                m.close();
-
                 event.getChannel().sendMessage(
                         baseEmbed(event,
                                 "Daily streak leaderboard (Top 10)", event.getJDA().getSelfUser().getEffectiveAvatarUrl()
-                        ).setDescription(c.stream()
-                                .map(map -> Pair.of(MantaroBot.getInstance().getUserById(map.get("id").toString().split(":")[0]), ((HashMap)(map.get("data"))).get("dailyStrike").toString()))
-                                .filter(p -> Objects.nonNull(p.getKey()))
-                                .map(p -> String.format("%s**%s#%s** - %sx", EmoteReference.MARKER, p.getKey().getName(), p
-                                        .getKey().getDiscriminator(), p.getValue()))
-                                .collect(Collectors.joining("\n"))
-                        ).build()
+                        ).setDescription(leaderboard(Leaderboard.STREAK, entry -> entry.getValue() + "x")).build()
                 ).queue();
             }
         });
@@ -633,26 +557,19 @@ public class MoneyCmds {
         leaderboards.addSubCommand("localxp", new SubCommand() {
             @Override
             protected void call(GuildMessageReceivedEvent event, String content) {
-                List<Map> l;
-
-                try(Connection conn = Utils.newDbConnection()) {
-                    l = r.table("guilds")
-                            .get(event.getGuild().getId())
-                            .getField("data")
-                            .getField("localPlayerExperience")
-                            .run(conn, OptArgs.of("read_mode", "outdated"));
-                }
-
-                l.sort(Comparator.<Map>comparingLong(o -> (long) o.get("experience")).reversed());
+                //Only the top of the guild, kept up to date as experience gets saved.
+                List<LocalExperience> top = MantaroData.db().getLocalLeaderboard(event.getGuild().getId());
 
                 event.getChannel().sendMessage(
                         baseEmbed(event,
                                 "Local level leaderboard", event.getJDA().getSelfUser().getEffectiveAvatarUrl()
-                        ).setDescription(l.stream()
-                                .map(map -> Pair.of(MantaroBot.getInstance().getUserById(map.get("userId").toString()), map.get("level").toString() +
-                                        "\n - Experience: **" + map.get("experience") + "**\n"))
-                                .map(p -> String.format("%s**%s** - %s", EmoteReference.MARKER,
-                                        p == null ? "User left guild" : p.getKey().getName() + "#" + p.getKey().getDiscriminator(), p.getValue()))
+                        ).setDescription(top.stream()
+                                .map(experience -> {
+                                    Member member = event.getGuild().getMemberById(experience.getUserId());
+                                    return String.format("%s**%s** - %s\n - Experience: **%s**", EmoteReference.MARKER,
+                                            member == null ? "User left guild" : member.getUser().getName() + "#" + member.getUser().getDiscriminator(),
+                                            experience.getLevel(), experience.getExperience());
+                                })
                                 .collect(Collectors.joining("\n"))
                         ).build()
                 ).queue();
@@ -669,6 +586,13 @@ public class MoneyCmds {
         cr.registerAlias("leaderboard", "richest");
     }
 
+    //One line per player of the latest snapshot of a leaderboard.
+    private static String leaderboard(Leaderboard leaderboard, Function<LeaderboardSnapshots.Entry, String> value) {
+        return MantaroBot.getInstance().getLeaderboardSnapshots().get(leaderboard).getEntries().stream()
+                .map(entry -> String.format("%s**%s** - %s", EmoteReference.MARKER, entry.getName(), value.apply(entry)))
+                .collect(Collectors.joining("\n"));
+    }
+
     @Subscribe
     public void slots(CommandRegistry cr) {
         RateLimiter rateLimiter = new RateLimiter(TimeUnit.SECONDS, 35);
@@ -683,128 +607,126 @@ public class MoneyCmds {
         cr.register("slots", new SimpleCommand(Category.CURRENCY) {
             @Override
             protected void call(GuildMessageReceivedEvent event, String content, String[] args) {
-                Map<String, Optional<String>> opts = StringUtils.parse(args);
-                long money = 50;
-                int slotsChance = 25; //25% raw chance of winning, completely random chance of winning on the other random iteration
-                boolean isWin = false;
-                boolean coinSelect = false;
-                Player player = MantaroData.db().getPlayer(event.getAuthor());
-                int amountN = 1;
-
-                if(opts.containsKey("useticket")) {
-                    coinSelect = true;
-                }
-
-                if(opts.containsKey("amount") && opts.get("amount").isPresent()) {
-                    if(!coinSelect) {
-                        event.getChannel().sendMessage(EmoteReference.ERROR + "You cannot specify how many tickets you're gonna use if you're not using tickets!").queue();
-                        return;
+                MantaroData.db().getUpdater().updatePlayer(event.getAuthor().getId(), player -> {
+                    Map<String, Optional<String>> opts = StringUtils.parse(args);
+                    long money = 50;
+                    int slotsChance = 25; //25% raw chance of winning, completely random chance of winning on the other random iteration
+                    boolean isWin = false;
+                    boolean coinSelect = false;
+                    int amountN = 1;
+
+                    if(opts.containsKey("useticket")) {
+                        coinSelect = true;
                     }
 
-                    String amount = opts.get("amount").get();
+                    if(opts.containsKey("amount") && opts.get("amount").isPresent()) {
+                        if(!coinSelect) {
+                            event.getChannel().sendMessage(EmoteReference.ERROR + "You cannot specify how many tickets you're gonna use if you're not using tickets!").queue();
+                            return null;
+                        }
+
+                        String amount = opts.get("amount").get();
 
-                    if(amount.isEmpty()) {
-                        event.getChannel().sendMessage(EmoteReference.ERROR + "You didn't specify the amount!").queue();
-                        return;
-                    }
+                        if(amount.isEmpty()) {
+                            event.getChannel().sendMessage(EmoteReference.ERROR + "You didn't specify the amount!").queue();
+                            return null;
+                        }
 
-                    try {
-                        amountN = Integer.parseUnsignedInt(amount);
-                    } catch (NumberFormatException e) {
-                        event.getChannel().sendMessage(EmoteReference.ERROR + "That is not a valid number!").queue();
-                    }
+                        try {
+                            amountN = Integer.parseUnsignedInt(amount);
+                        } catch (NumberFormatException e) {
+                            event.getChannel().sendMessage(EmoteReference.ERROR + "That is not a valid number!").queue();
+                        }
 
-                   if(player.getInventory().getAmount(Items.SLOT_COIN) < amountN) {
-                        event.getChannel().sendMessage(EmoteReference.ERROR + "You don't have enough slots tickets!").queue();
-                        return;
-                   }
+                       if(player.getInventory().getAmount(Items.SLOT_COIN) < amountN) {
+                            event.getChannel().sendMessage(EmoteReference.ERROR + "You don't have enough slots tickets!").queue();
+                            return null;
+                       }
 
-                   money += 58 * amountN;
-                }
+                       money += 58 * amountN;
+                    }
 
-                if(args.length == 1 && !coinSelect) {
-                    try {
-                        money = Math.abs(Integer.parseInt(args[0]));
+                    if(args.length == 1 && !coinSelect) {
+                        try {
+                            money = Math.abs(Integer.parseInt(args[0]));
 
-                        if(money < 25) {
-                            event.getChannel().sendMessage(EmoteReference.ERROR + "The minimum amount is 25!").queue();
-                            return;
-                        }
+                            if(money < 25) {
+                                event.getChannel().sendMessage(EmoteReference.ERROR + "The minimum amount is 25!").queue();
+                                return null;
+                            }
 
-                        if(money > SLOTS_MAX_MONEY) {
-                            event.getChannel().sendMessage(EmoteReference.WARNING + "This machine cannot dispense that much money!").queue();
-                            return;
+                            if(money > SLOTS_MAX_MONEY) {
+                                event.getChannel().sendMessage(EmoteReference.WARNING + "This machine cannot dispense that much money!").queue();
+                                return null;
+                            }
+                        } catch(NumberFormatException e) {
+                            event.getChannel().sendMessage(EmoteReference.ERROR + "That's not a number!").queue();
+                            return null;
                         }
-                    } catch(NumberFormatException e) {
-                        event.getChannel().sendMessage(EmoteReference.ERROR + "That's not a number!").queue();
-                        return;
                     }
-                }
 
 
-                if(player.getMoney() < money && !coinSelect) {
-                    event.getChannel().sendMessage(EmoteReference.SAD + "You don't have enough money to play the slots machine!").queue();
-                    return;
-                }
+                    if(player.getMoney() < money && !coinSelect) {
+                        event.getChannel().sendMessage(EmoteReference.SAD + "You don't have enough money to play the slots machine!").queue();
+                        return null;
+                    }
 
-                if(!handleDefaultRatelimit(rateLimiter, event.getAuthor(), event)) return;
+                    if(!handleDefaultRatelimit(rateLimiter, event.getAuthor(), event)) return null;
 
-                if(coinSelect) {
-                    if(player.getInventory().containsItem(Items.SLOT_COIN)) {
-                        player.getInventory().process(new ItemStack(Items.SLOT_COIN, -amountN));
-                        player.saveAsync();
-                        slotsChance = slotsChance + 10;
+                    if(coinSelect) {
+                        if(player.getInventory().containsItem(Items.SLOT_COIN)) {
+                            player.getInventory().process(new ItemStack(Items.SLOT_COIN, -amountN));
+                            slotsChance = slotsChance + 10;
+                        } else {
+                            event.getChannel().sendMessage(EmoteReference.SAD + "You wanted to use tickets but you don't have any :<").queue();
+                            return null;
+                        }
                     } else {
-                        event.getChannel().sendMessage(EmoteReference.SAD + "You wanted to use tickets but you don't have any :<").queue();
-                        return;
+                        player.removeMoney(money);
                     }
-                } else {
-                    player.removeMoney(money);
-                    player.saveAsync();
-                }
 
-                StringBuilder message = new StringBuilder(String.format("%s**You used %s and rolled the slot machine!**\n\n", EmoteReference.DICE, coinSelect ? amountN +" slot ticket(s)" : money + " credits"));
-                StringBuilder builder = new StringBuilder();
+                    StringBuilder message = new StringBuilder(String.format("%s**You used %s and rolled the slot machine!**\n\n", EmoteReference.DICE, coinSelect ? amountN +" slot ticket(s)" : money + " credits"));
+                    StringBuilder builder = new StringBuilder();
 
-                for(int i = 0; i < 9; i++) {
-                    if(i > 1 && i % 3 == 0) {
-                        builder.append("\n");
-                    }
+                    for(int i = 0; i < 9; i++) {
+                        if(i > 1 && i % 3 == 0) {
+                            builder.append("\n");
+                        }
 
-                    builder.append(emotes[random.nextInt(emotes.length)]);
-                }
+                        builder.append(emotes[random.nextInt(emotes.length)]);
+                    }
 
-                String toSend = builder.toString();
-                int gains = 0;
-                String[] rows = toSend.split("\\r?\\n");
+                    String toSend = builder.toString();
+                    int gains = 0;
+                    String[] rows = toSend.split("\\r?\\n");
 
-                if(random.nextInt(100) < slotsChance) {
-                    rows[1] = winCombinations.get(random.nextInt(winCombinations.size()));
-                }
+                    if(random.nextInt(100) < slotsChance) {
+                        rows[1] = winCombinations.get(random.nextInt(winCombinations.size()));
+                    }
 
-                if(winCombinations.contains(rows[1])) {
-                    isWin = true;
-                    gains = random.nextInt((int) Math.round(money * 1.76)) + 14;
-                }
+                    if(winCombinations.contains(rows[1])) {
+                        isWin = true;
+                        gains = random.nextInt((int) Math.round(money * 1.76)) + 14;
+                    }
 
-                rows[1] = rows[1] + " \u2b05";
-                toSend = String.join("\n", rows);
+                    rows[1] = rows[1] + " \u2b05";
+                    toSend = String.join("\n", rows);
 
-                if(isWin) {
-                    message.append(toSend).append("\n\n").append(String.format("And you won **%d** credits and got to keep what you bet (%d credits)! Lucky! ", gains, money)).append(EmoteReference.POPPER);
-                    player.addMoney(gains + money);
+                    if(isWin) {
+                        message.append(toSend).append("\n\n").append(String.format("And you won **%d** credits and got to keep what you bet (%d credits)! Lucky! ", gains, money)).append(EmoteReference.POPPER);
+                        player.addMoney(gains + money);
 
-                    if((gains + money) > SLOTS_MAX_MONEY) {
-                        player.getData().addBadgeIfAbsent(Badge.LUCKY_SEVEN);
+                        if((gains + money) > SLOTS_MAX_MONEY) {
+                            player.getData().addBadgeIfAbsent(Badge.LUCKY_SEVEN);
+                        }
+                    } else {
+                        message.append(toSend).append("\n\n").append("And you lost ").append(EmoteReference.SAD).append("\n").append("I hope you do better next time!");
                     }
 
-                    player.saveAsync();
-                } else {
-                    message.append(toSend).append("\n\n").append("And you lost ").append(EmoteReference.SAD).append("\n").append("I hope you do better next time!");
-                }
-
-                message.append("\n");
-                event.getChannel().sendMessage(message.toString()).queue();
+                    message.append("\n");
+                    event.getChannel().sendMessage(message.toString()).queue();
+                    return null;
+                });
             }
 
             @Override
@@ -831,40 +753,39 @@ public class MoneyCmds {
             @Override
             protected void call(GuildMessageReceivedEvent event, String content, String[] args) {
                 User user = event.getAuthor();
-                Player player = MantaroData.db().getPlayer(user);
+                MantaroData.db().getUpdater().updatePlayer(user.getId(), player -> {
+                    if(!player.getInventory().containsItem(Items.BROM_PICKAXE)) {
+                        event.getChannel().sendMessage(EmoteReference.ERROR + "You don't have any pick to mine!").queue();
+                        return null;
+                    }
 
-                if(!player.getInventory().containsItem(Items.BROM_PICKAXE)) {
-                    event.getChannel().sendMessage(EmoteReference.ERROR + "You don't have any pick to mine!").queue();
-                    return;
-                }
+                    if(!handleDefaultRatelimit(rateLimiter, user, event)) return null;
 
-                if(!handleDefaultRatelimit(rateLimiter, user, event)) return;
+                    if(r.nextInt(100) > 75) { //35% chance of it breaking the pick.
+                        event.getChannel().sendMessage(EmoteReference.SAD + "One of your picks broke while mining.").queue();
+                        player.getInventory().process(new ItemStack(Items.BROM_PICKAXE, -1));
+                        return null;
+                    }
 
-                if(r.nextInt(100) > 75) { //35% chance of it breaking the pick.
-                    event.getChannel().sendMessage(EmoteReference.SAD + "One of your picks broke while mining.").queue();
-                    player.getInventory().process(new ItemStack(Items.BROM_PICKAXE, -1));
-                    player.saveAsync();
-                    return;
-                }
+                    long money = Math.max(30, r.nextInt(150)); //30 to 150 credits.
+                    String message = EmoteReference.PICK + "You mined minerals worth **$" + money + " credits!**";
 
-                long money = Math.max(30, r.nextInt(150)); //30 to 150 credits.
-                String message = EmoteReference.PICK + "You mined minerals worth **$" + money + " credits!**";
+                    if(r.nextInt(400) > 350) {
+                        if(player.getInventory().getAmount(Items.DIAMOND) == 5000) {
+                            message += "\nHuh, you found a diamond while mining, but you already had too much, so we sold it for you!";
+                            money += Items.DIAMOND.getValue() * 0.9;
+                        } else {
+                            player.getInventory().process(new ItemStack(Items.DIAMOND, 1));
+                            message += "\nHuh! You got lucky and found a diamond while mining, check your inventory!";
+                        }
 
-                if(r.nextInt(400) > 350) {
-                    if(player.getInventory().getAmount(Items.DIAMOND) == 5000) {
-                        message += "\nHuh, you found a diamond while mining, but you already had too much, so we sold it for you!";
-                        money += Items.DIAMOND.getValue() * 0.9;
-                    } else {
-                        player.getInventory().process(new ItemStack(Items.DIAMOND, 1));
-                        message += "\nHuh! You got lucky and found a diamond while mining, check your inventory!";
+                        player.getData().addBadgeIfAbsent(Badge.MINER);
                     }
 
-                    player.getData().addBadgeIfAbsent(Badge.MINER);
-                }
-
-                event.getChannel().sendMessage(message).queue();
-                player.addMoney(money);
-                player.saveAsync();
+                    event.getChannel().sendMessage(message).queue();
+                    player.addMoney(money);
+                    return null;
+                });
             }
 
             @Override
@@ -877,39 +798,43 @@ public class MoneyCmds {
         });
     }
 
-    private void proceedGamble(GuildMessageReceivedEvent event, Player player, int luck, Random r, long i, long gains) {
-        if(luck > r.nextInt(140)) {
-            if(player.addMoney(gains)) {
-                if(gains > Integer.MAX_VALUE) {
-                    if(!player.getData().hasBadge(Badge.GAMBLER)) {
+    private void proceedGamble(GuildMessageReceivedEvent event, User user, int luck, Random r, long i, long gains) {
+        MantaroData.db().getUpdater().updatePlayer(user.getId(), player -> {
+            player.setLocked(false);
+
+            //The bet was checked before asking, and the money could have been spent since.
+            if(player.getMoney() < i) {
+                event.getChannel().sendMessage(EmoteReference.ERROR2 + "Please type a value within your balance.").queue();
+                return null;
+            }
+
+            if(luck > r.nextInt(140)) {
+                if(player.addMoney(gains)) {
+                    if(gains > Integer.MAX_VALUE) {
                         player.getData().addBadgeIfAbsent(Badge.GAMBLER);
-                        player.saveAsync();
                     }
-                }
 
-                event.getChannel().sendMessage(EmoteReference.DICE + "Congrats, you won " + gains + " credits and got to keep what you had!").queue();
+                    event.getChannel().sendMessage(EmoteReference.DICE + "Congrats, you won " + gains + " credits and got to keep what you had!").queue();
+                } else {
+                    event.getChannel().sendMessage(EmoteReference.DICE + "Congrats, you won " + gains + " credits. But you already had too many credits. Your bag overflowed.\n" +
+                            "Congratulations, you exploded a Java long. Here's a buggy money bag for you.").queue();
+                }
             } else {
-                event.getChannel().sendMessage(EmoteReference.DICE + "Congrats, you won " + gains + " credits. But you already had too many credits. Your bag overflowed.\n" +
-                        "Congratulations, you exploded a Java long. Here's a buggy money bag for you.").queue();
-            }
-        } else {
-            long oldMoney = player.getMoney();
-            player.setMoney(Math.max(0, player.getMoney() - i));
+                long oldMoney = player.getMoney();
+                player.setMoney(Math.max(0, player.getMoney() - i));
 
-            event.getChannel().sendMessage(String.format("\uD83C\uDFB2 Sadly, you lost %s credits! \uD83D\uDE26", player.getMoney() == 0 ? "all of your " + oldMoney : i)).queue();
-        }
+                event.getChannel().sendMessage(String.format("\uD83C\uDFB2 Sadly, you lost %s credits! \uD83D\uDE26", player.getMoney() == 0 ? "all of your " + oldMoney : i)).queue();
+            }
 
-        player.setLocked(false);
-        player.saveAsync();
+            return null;
+        });
     }
 
-    private Cursor<Map> getGlobalRichest(OrderBy template, String pattern) {
-        try(Connection conn = Utils.newDbConnection()) {
-            return template.filter(player -> player.g("id").match(pattern))
-                    .map(player -> player.pluck("id", "money"))
-                    .limit(10)
-                    .run(conn, OptArgs.of("read_mode", "outdated"));
-        }
+    private void setLocked(User user, boolean locked) {
+        MantaroData.db().getUpdater().updatePlayer(user.getId(), player -> {
+            player.setLocked(locked);
+            return null;
+        });
     }
 
 }
@@ -65,6 +65,7 @@ public class MuteCmds {
 
                 ManagedDatabase db = MantaroData.db();
                 DBGuild dbGuild = db.getGuild(event.getGuild());
+                dbGuild.trackChanges();
                 GuildData guildData = dbGuild.getData();
                 String reason = "Not specified";
                 Map<String, Optional<String>> opts = br.com.brjdevs.java.utils.texts.StringUtils.parse(args);
@@ -128,7 +129,7 @@ public class MuteCmds {
 
                         data.getMutes().put(user.getIdLong(), Pair.of(event.getGuild().getId(), time));
                         data.save();
-                        dbGuild.save();
+                        dbGuild.saveChanges();
                     } else {
                         if(time > 0) {
                             if(time > System.currentTimeMillis() + TimeUnit.DAYS.toMillis(10)) {
@@ -138,7 +139,7 @@ public class MuteCmds {
 
                             data.getMutes().put(user.getIdLong(), Pair.of(event.getGuild().getId(), time));
                             data.save();
-                            dbGuild.save();
+                            dbGuild.saveChanges();
                         } else {
                             event.getChannel().sendMessage(EmoteReference.ERROR + "You didn't specify any time!").queue();
                             return;
@@ -220,9 +221,10 @@ public class MuteCmds {
                     }
 
                     DBGuild dbGuild = MantaroData.db().getGuild(event.getGuild());
+                    dbGuild.trackChanges();
                     GuildData guildData = dbGuild.getData();
                     guildData.setSetModTimeout(timeoutToSet);
-                    dbGuild.save();
+                    dbGuild.saveChanges();
 
                     event.getChannel().sendMessage(EmoteReference.CORRECT + "Successfully set mod action timeout to `" + args[0] + "` (" + timeoutToSet + "ms)").queue();
                 })).setShortDescription("Sets the default timeout for the ~>mute command"));
@@ -232,10 +234,11 @@ public class MuteCmds {
                         "Resets the default mute timeout which was set previously with `defaultmusictimeout set`", OptionType.GUILD)
                         .setAction((event -> {
                             DBGuild dbGuild = MantaroData.db().getGuild(event.getGuild());
+                            dbGuild.trackChanges();
                             GuildData guildData = dbGuild.getData();
 
                             guildData.setSetModTimeout(0L);
-                            dbGuild.save();
+                            dbGuild.saveChanges();
 
                             event.getChannel().sendMessage(EmoteReference.CORRECT + "Successfully reset timeout.").queue();
                         })).setShortDescription("Resets the default mute timeout."));
@@ -30,7 +30,6 @@ import net.kodehawa.mantarobot.core.modules.commands.base.Command;
 import net.kodehawa.mantarobot.core.modules.commands.base.CommandPermission;
 import net.kodehawa.mantarobot.data.MantaroData;
 import net.kodehawa.mantarobot.db.entities.DBGuild;
-import net.kodehawa.mantarobot.db.entities.Player;
 import net.kodehawa.mantarobot.db.entities.helpers.GuildData;
 import net.kodehawa.mantarobot.options.core.Option;
 import net.kodehawa.mantarobot.options.core.OptionType;
@@ -142,10 +141,7 @@ public class OptsCmd {
                             if(++i < args.length) a = Arrays.copyOfRange(args, i, args.length);
                             else a = new String[0];
                             callable.accept(event, a);
-                            Player p = MantaroData.db().getPlayer(event.getAuthor());
-                            if(p.getData().addBadgeIfAbsent(Badge.DID_THIS_WORK)) {
-                                p.saveAsync();
-                            }
+                            MantaroData.db().getUpdater().updatePlayer(event.getAuthor().getId(), p -> p.getData().addBadgeIfAbsent(Badge.DID_THIS_WORK));
                         } catch(IndexOutOfBoundsException ignored) { }
                         return;
                     }
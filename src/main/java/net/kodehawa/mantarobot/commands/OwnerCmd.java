@@ -39,7 +39,6 @@ import net.kodehawa.mantarobot.data.MantaroData;
 import net.kodehawa.mantarobot.db.entities.DBGuild;
 import net.kodehawa.mantarobot.db.entities.DBUser;
 import net.kodehawa.mantarobot.db.entities.MantaroObj;
-import net.kodehawa.mantarobot.db.entities.Player;
 import net.kodehawa.mantarobot.db.entities.helpers.PlayerData;
 import net.kodehawa.mantarobot.utils.commands.EmoteReference;
 
@@ -131,27 +130,23 @@ public class OwnerCmd {
                     }
 
                     if(e.getMessage().getContentRaw().equalsIgnoreCase("yes")) {
-                        Player transferred = MantaroData.db().getPlayer(mentionedUsers.get(0));
-                        Player transferTo = MantaroData.db().getPlayer(mentionedUsers.get(1));
-
-                        transferTo.setMoney(transferred.getMoney());
-                        transferTo.setLevel(transferred.getLevel());
-                        transferTo.setReputation(transferred.getReputation());
-
-                        PlayerData transferredData = transferred.getData();
-                        PlayerData transferToData = transferTo.getData();
-
-                        transferToData.setExperience(transferredData.getExperience());
-                        transferToData.setBadges(transferredData.getBadges());
-                        transferToData.setShowBadge(transferredData.isShowBadge());
-                        transferToData.setMarketUsed(transferredData.getMarketUsed());
-                        transferToData.setMainBadge(transferredData.getMainBadge());
-                        transferToData.setGamesWon(transferredData.getGamesWon());
-
-
-                        transferTo.save();
-                        Player reset = Player.of(mentionedUsers.get(0));
-                        reset.save();
+                        MantaroData.db().getUpdater().updatePlayers(mentionedUsers.get(0).getId(), mentionedUsers.get(1).getId(), (transferred, transferTo) -> {
+                            transferTo.setMoney(transferred.getMoney());
+                            transferTo.setLevel(transferred.getLevel());
+                            transferTo.setReputation(transferred.getReputation());
+
+                            PlayerData transferredData = transferred.getData();
+                            PlayerData transferToData = transferTo.getData();
+
+                            transferToData.setExperience(transferredData.getExperience());
+                            transferToData.setBadges(transferredData.getBadges());
+                            transferToData.setShowBadge(transferredData.isShowBadge());
+                            transferToData.setMarketUsed(transferredData.getMarketUsed());
+                            transferToData.setMainBadge(transferredData.getMainBadge());
+                            transferToData.setGamesWon(transferredData.getGamesWon());
+                            return null;
+                        });
+                        MantaroData.db().getPlayer(mentionedUsers.get(0)).delete();
 
                         e.getChannel().sendMessage(EmoteReference.CORRECT + "Transfer from " + mentionedUsers.get(0) + " to " + mentionedUsers.get(1) + " completed.").queue();
 
@@ -199,9 +194,7 @@ public class OwnerCmd {
                 }
 
                 for(User u : users) {
-                    Player p = MantaroData.db().getPlayer(u);
-                    p.getData().addBadgeIfAbsent(badge);
-                    p.saveAsync();
+                    MantaroData.db().getUpdater().updatePlayer(u.getId(), p -> p.getData().addBadgeIfAbsent(badge));
                 }
 
                 event.getChannel().sendMessage(
@@ -238,9 +231,7 @@ public class OwnerCmd {
                 }
 
                 for(User u : users) {
-                    Player p = MantaroData.db().getPlayer(u);
-                    p.getData().removeBadge(badge);
-                    p.saveAsync();
+                    MantaroData.db().getUpdater().updatePlayer(u.getId(), p -> p.getData().removeBadge(badge));
                 }
 
                 event.getChannel().sendMessage(
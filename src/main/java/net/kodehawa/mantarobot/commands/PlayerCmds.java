@@ -37,7 +37,6 @@ import net.kodehawa.mantarobot.core.modules.commands.base.Category;
 import net.kodehawa.mantarobot.core.modules.commands.base.Command;
 import net.kodehawa.mantarobot.core.modules.commands.base.ITreeCommand;
 import net.kodehawa.mantarobot.data.MantaroData;
-import net.kodehawa.mantarobot.db.entities.DBUser;
 import net.kodehawa.mantarobot.db.entities.Player;
 import net.kodehawa.mantarobot.db.entities.helpers.Inventory;
 import net.kodehawa.mantarobot.db.entities.helpers.PlayerData;
@@ -111,9 +110,10 @@ public class PlayerCmds {
                 }
 
                 if(!handleDefaultRatelimit(rateLimiter, event.getAuthor(), event)) return;
-                Player player = MantaroData.db().getPlayer(user);
-                player.addReputation(1L);
-                player.save();
+                MantaroData.db().getUpdater().updatePlayer(user.getId(), player -> {
+                    player.addReputation(1L);
+                    return null;
+                });
                 event.getChannel().sendMessage(EmoteReference.CORRECT + "Added reputation to **" + member.getEffectiveName() + "**").queue();
             }
 
@@ -174,43 +174,50 @@ public class PlayerCmds {
                         User marriedTo = (player.getData().getMarriedWith() == null || player.getData().getMarriedWith().isEmpty()) ? null :
                                 MantaroBot.getInstance().getUserById(player.getData().getMarriedWith());
 
-                        PlayerData playerData = player.getData();
-                        Inventory inv = player.getInventory();
-
                         //start of badge assigning
                         Guild mh = MantaroBot.getInstance().getGuildById("213468583252983809");
                         Member mhMember = mh == null ? null : mh.getMemberById(memberLooked.getUser().getId());
-                        boolean saveAfter = false;
-
-                        if(player.getMoney() > 7526527671L && playerData.addBadgeIfAbsent(Badge.ALTERNATIVE_WORLD))
-                            saveAfter = true;
-                        if(MantaroData.config().get().isOwner(userLooked) && playerData.addBadgeIfAbsent(Badge.DEVELOPER))
-                            saveAfter = true;
-                        if(inv.asList().stream().anyMatch(stack -> stack.getAmount() == 5000) && playerData.addBadgeIfAbsent(Badge.SHOPPER))
-                            saveAfter = true;
-                        if(inv.asList().stream().anyMatch(stack -> stack.getItem().equals(Items.CHRISTMAS_TREE_SPECIAL) || stack.getItem().equals(Items.BELL_SPECIAL)) && playerData.addBadgeIfAbsent(Badge.CHRISTMAS))
-                            saveAfter = true;
-                        if(MantaroBot.getInstance().getShardedMantaro().getDiscordBotsUpvoters().contains(userLooked.getIdLong()) && playerData.addBadgeIfAbsent(Badge.UPVOTER))
-                            saveAfter = true;
-                        if(player.getLevel() >= 10 && playerData.addBadgeIfAbsent(Badge.WALKER))
-                            saveAfter = true;
-                        if(player.getLevel() >= 50 && playerData.addBadgeIfAbsent(Badge.RUNNER))
-                            saveAfter = true;
-                        if(player.getLevel() >= 100 && playerData.addBadgeIfAbsent(Badge.FAST_RUNNER))
-                            saveAfter = true;
-                        if(player.getLevel() >= 150 && playerData.addBadgeIfAbsent(Badge.MARATHON_RUNNER))
-                            saveAfter = true;
-                        if(player.getLevel() >= 200 && playerData.addBadgeIfAbsent(Badge.MARATHON_WINNER))
-                            saveAfter = true;
-                        if(playerData.getMarketUsed() > 1000 && playerData.addBadgeIfAbsent(Badge.COMPULSIVE_BUYER))
-                            saveAfter = true;
-                        if(mhMember != null && mhMember.getRoles().stream().anyMatch(r -> r.getIdLong() == 292803391330058241L) && playerData.addBadgeIfAbsent(Badge.HELPER_2))
-                            saveAfter = true;
-
-                        if(saveAfter)
-                            player.saveAsync();
+                        boolean developer = MantaroData.config().get().isOwner(userLooked);
+                        boolean upvoter = MantaroBot.getInstance().getShardedMantaro().getDiscordBotsUpvoters().contains(userLooked.getIdLong());
+                        boolean helper = mhMember != null && mhMember.getRoles().stream().anyMatch(r -> r.getIdLong() == 292803391330058241L);
+
+                        //Shows the copy the badges went to, so new ones are there already.
+                        player = MantaroData.db().getUpdater().updatePlayer(userLooked.getId(), p -> {
+                            PlayerData data = p.getData();
+                            Inventory inventory = p.getInventory();
+
+                            if(p.getMoney() > 7526527671L)
+                                data.addBadgeIfAbsent(Badge.ALTERNATIVE_WORLD);
+                            if(developer)
+                                data.addBadgeIfAbsent(Badge.DEVELOPER);
+                            if(inventory.asList().stream().anyMatch(stack -> stack.getAmount() == 5000))
+                                data.addBadgeIfAbsent(Badge.SHOPPER);
+                            if(inventory.asList().stream().anyMatch(stack -> stack.getItem().equals(Items.CHRISTMAS_TREE_SPECIAL) || stack.getItem().equals(Items.BELL_SPECIAL)))
+                                data.addBadgeIfAbsent(Badge.CHRISTMAS);
+                            if(upvoter)
+                                data.addBadgeIfAbsent(Badge.UPVOTER);
+                            if(p.getLevel() >= 10)
+                                data.addBadgeIfAbsent(Badge.WALKER);
+                            if(p.getLevel() >= 50)
+                                data.addBadgeIfAbsent(Badge.RUNNER);
+                            if(p.getLevel() >= 100)
+                                data.addBadgeIfAbsent(Badge.FAST_RUNNER);
+                            if(p.getLevel() >= 150)
+                                data.addBadgeIfAbsent(Badge.MARATHON_RUNNER);
+                            if(p.getLevel() >= 200)
+                                data.addBadgeIfAbsent(Badge.MARATHON_WINNER);
+                            if(data.getMarketUsed() > 1000)
+                                data.addBadgeIfAbsent(Badge.COMPULSIVE_BUYER);
+                            if(helper)
+                                data.addBadgeIfAbsent(Badge.HELPER_2);
+
+                            return p;
+                        });
                         //end of badge assigning
 
+                        PlayerData playerData = player.getData();
+                        Inventory inv = player.getInventory();
+
                         List<Badge> badges = playerData.getBadges();
                         Collections.sort(badges);
                         String displayBadges = badges.stream().map(Badge::getUnicode).limit(5).collect(Collectors.joining("  "));
@@ -256,38 +263,38 @@ public class PlayerCmds {
         profileCommand.addSubCommand("timezone", new SubCommand() {
             @Override
             protected void call(GuildMessageReceivedEvent event, String content) {
-                DBUser dbUser = MantaroData.db().getUser(event.getAuthor());
-                String[] args = content.split(" ");
+                MantaroData.db().getUpdater().updateUser(event.getAuthor().getId(), dbUser -> {
+                    String[] args = content.split(" ");
 
-                if(args.length < 1) {
-                    event.getChannel().sendMessage(EmoteReference.ERROR + "You need to specify the timezone.").queue();
-                    return;
-                }
+                    if(args.length < 1) {
+                        event.getChannel().sendMessage(EmoteReference.ERROR + "You need to specify the timezone.").queue();
+                        return null;
+                    }
 
-                String timezone = args[0];
+                    String timezone = args[0];
 
-                if(timezone.equalsIgnoreCase("reset")) {
-                    dbUser.getData().setTimezone(null);
-                    dbUser.saveAsync();
-                    event.getChannel().sendMessage(EmoteReference.CORRECT + "Reset timezone.").queue();
-                    return;
-                }
+                    if(timezone.equalsIgnoreCase("reset")) {
+                        dbUser.getData().setTimezone(null);
+                        event.getChannel().sendMessage(EmoteReference.CORRECT + "Reset timezone.").queue();
+                        return null;
+                    }
 
-                if(!Utils.isValidTimeZone(timezone)) {
-                    event.getChannel().sendMessage(EmoteReference.ERROR + "Invalid timezone.").queue();
-                    return;
-                }
+                    if(!Utils.isValidTimeZone(timezone)) {
+                        event.getChannel().sendMessage(EmoteReference.ERROR + "Invalid timezone.").queue();
+                        return null;
+                    }
 
-                try {
-                    UtilsCmds.dateGMT(event.getGuild(),timezone);
-                } catch(Exception e) {
-                    event.getChannel().sendMessage(EmoteReference.ERROR + "Not a valid timezone.").queue();
-                    return;
-                }
+                    try {
+                        UtilsCmds.dateGMT(event.getGuild(),timezone);
+                    } catch(Exception e) {
+                        event.getChannel().sendMessage(EmoteReference.ERROR + "Not a valid timezone.").queue();
+                        return null;
+                    }
 
-                dbUser.getData().setTimezone(timezone);
-                dbUser.saveAsync();
-                event.getChannel().sendMessage(String.format("%sSaved timezone, your profile timezone is now: **%s**", EmoteReference.CORRECT, timezone)).queue();
+                    dbUser.getData().setTimezone(timezone);
+                    event.getChannel().sendMessage(String.format("%sSaved timezone, your profile timezone is now: **%s**", EmoteReference.CORRECT, timezone)).queue();
+                    return null;
+                });
             }
         });
 
@@ -296,41 +303,41 @@ public class PlayerCmds {
             protected void call(GuildMessageReceivedEvent event, String content) {
                 String[] args = content.split(" ");
                 User author = event.getAuthor();
-                Player player = MantaroData.db().getPlayer(author);
+                MantaroData.db().getUpdater().updatePlayer(author.getId(), player -> {
+                    if(args.length == 0) {
+                        event.getChannel().sendMessage(EmoteReference.ERROR +
+                                "You need to provide an argument! (set or remove)\n" +
+                                "for example, ~>profile description set Hi there!").queue();
+                        return null;
+                    }
 
-                if(args.length == 0) {
-                    event.getChannel().sendMessage(EmoteReference.ERROR +
-                            "You need to provide an argument! (set or remove)\n" +
-                            "for example, ~>profile description set Hi there!").queue();
-                    return;
-                }
+                    if(args[0].equals("set")) {
+                        int MAX_LENGTH = 300;
 
-                if(args[0].equals("set")) {
-                    int MAX_LENGTH = 300;
+                        if(MantaroData.db().getUser(author).isPremium())
+                            MAX_LENGTH = 500;
 
-                    if(MantaroData.db().getUser(author).isPremium())
-                        MAX_LENGTH = 500;
+                        String content1 = SPLIT_PATTERN.split(content, 2)[1];
 
-                    String content1 = SPLIT_PATTERN.split(content, 2)[1];
+                        if(content1.length() > MAX_LENGTH) {
+                            event.getChannel().sendMessage(EmoteReference.ERROR +
+                                    "The description is too long! `(Limit of 300 characters for everyone and 500 for premium users)`").queue();
+                            return null;
+                        }
 
-                    if(content1.length() > MAX_LENGTH) {
-                        event.getChannel().sendMessage(EmoteReference.ERROR +
-                                "The description is too long! `(Limit of 300 characters for everyone and 500 for premium users)`").queue();
-                        return;
+                        player.getData().setDescription(content1);
+                        event.getChannel().sendMessage(EmoteReference.POPPER + "Set description to: **" + content1 + "**\n" +
+                                "Check your shiny new profile with `~>profile`").queue();
+                        return null;
                     }
 
-                    player.getData().setDescription(content1);
-                    event.getChannel().sendMessage(EmoteReference.POPPER + "Set description to: **" + content1 + "**\n" +
-                            "Check your shiny new profile with `~>profile`").queue();
-                    player.save();
-                    return;
-                }
+                    if(args[1].equals("clear")) {
+                        player.getData().setDescription(null);
+                        event.getChannel().sendMessage(EmoteReference.CORRECT + "Successfully cleared description.").queue();
+                    }
 
-                if(args[1].equals("clear")) {
-                    player.getData().setDescription(null);
-                    event.getChannel().sendMessage(EmoteReference.CORRECT + "Successfully cleared description.").queue();
-                    player.save();
-                }
+                    return null;
+                });
             }
         });
 
@@ -343,42 +350,41 @@ public class PlayerCmds {
                     return;
                 }
 
-                Player player = MantaroData.db().getPlayer(event.getAuthor());
-                PlayerData data = player.getData();
+                MantaroData.db().getUpdater().updatePlayer(event.getAuthor().getId(), player -> {
+                    PlayerData data = player.getData();
 
-                if(args[0].equalsIgnoreCase("none")) {
-                    data.setShowBadge(false);
-                    event.getChannel().sendMessage(EmoteReference.CORRECT + "No badge will show on the top of your profile now!").queue();
-                    player.saveAsync();
-                    return;
-                }
+                    if(args[0].equalsIgnoreCase("none")) {
+                        data.setShowBadge(false);
+                        event.getChannel().sendMessage(EmoteReference.CORRECT + "No badge will show on the top of your profile now!").queue();
+                        return null;
+                    }
 
-                if(args[0].equalsIgnoreCase("reset")) {
-                    data.setMainBadge(null);
-                    data.setShowBadge(true);
-                    event.getChannel().sendMessage(EmoteReference.CORRECT + "Your display badge is now the most important one.").queue();
-                    player.saveAsync();
-                    return;
-                }
+                    if(args[0].equalsIgnoreCase("reset")) {
+                        data.setMainBadge(null);
+                        data.setShowBadge(true);
+                        event.getChannel().sendMessage(EmoteReference.CORRECT + "Your display badge is now the most important one.").queue();
+                        return null;
+                    }
 
-                Badge badge = Badge.lookupFromString(content);
+                    Badge badge = Badge.lookupFromString(content);
 
-                if(badge == null) {
-                    event.getChannel().sendMessage(EmoteReference.ERROR + "There's no such badge...\n" +
-                            "Your available badges: " + player.getData().getBadges().stream().map(Badge::getDisplay).collect(Collectors.joining(", "))).queue();
-                    return;
-                }
+                    if(badge == null) {
+                        event.getChannel().sendMessage(EmoteReference.ERROR + "There's no such badge...\n" +
+                                "Your available badges: " + player.getData().getBadges().stream().map(Badge::getDisplay).collect(Collectors.joining(", "))).queue();
+                        return null;
+                    }
 
-                if(!data.getBadges().contains(badge)) {
-                    event.getChannel().sendMessage(EmoteReference.ERROR + "You don't have that badge.\n" +
-                            "Your available badges: " + player.getData().getBadges().stream().map(Badge::getDisplay).collect(Collectors.joining(", "))).queue();
-                    return;
-                }
+                    if(!data.getBadges().contains(badge)) {
+                        event.getChannel().sendMessage(EmoteReference.ERROR + "You don't have that badge.\n" +
+                                "Your available badges: " + player.getData().getBadges().stream().map(Badge::getDisplay).collect(Collectors.joining(", "))).queue();
+                        return null;
+                    }
 
-                data.setShowBadge(true);
-                data.setMainBadge(badge);
-                player.saveAsync();
-                event.getChannel().sendMessage(EmoteReference.CORRECT + "Your display badge is now: **" + badge.display + "**").queue();
+                    data.setShowBadge(true);
+                    data.setMainBadge(badge);
+                    event.getChannel().sendMessage(EmoteReference.CORRECT + "Your display badge is now: **" + badge.display + "**").queue();
+                    return null;
+                });
             }
         });
     }
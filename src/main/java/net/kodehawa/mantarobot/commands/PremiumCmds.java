@@ -31,7 +31,6 @@ import net.kodehawa.mantarobot.core.modules.commands.base.CommandPermission;
 import net.kodehawa.mantarobot.data.MantaroData;
 import net.kodehawa.mantarobot.db.entities.DBGuild;
 import net.kodehawa.mantarobot.db.entities.DBUser;
-import net.kodehawa.mantarobot.db.entities.Player;
 import net.kodehawa.mantarobot.db.entities.PremiumKey;
 import net.kodehawa.mantarobot.utils.commands.EmoteReference;
 
@@ -84,14 +83,15 @@ public class PremiumCmds {
 
                     key.activate(180);
                     event.getChannel().sendMessage(EmoteReference.POPPER + "This server is now **Premium** :heart: (For: " + key.getDurationDays() + " days)").queue();
-                    guild.getData().setPremiumKey(key.getId());
-                    guild.saveAsync();
+                    MantaroData.db().getUpdater().updateGuild(event.getGuild().getId(), g -> {
+                        g.getData().setPremiumKey(key.getId());
+                        return null;
+                    });
                     return;
                 }
 
                 if(scopeParsed.equals(PremiumKey.Type.USER)) {
                     DBUser user = MantaroData.db().getUser(event.getAuthor());
-                    Player player = MantaroData.db().getPlayer(event.getAuthor());
 
                     PremiumKey currentUserKey = MantaroData.db().getPremiumKey(user.getData().getPremiumKey());
 
@@ -101,14 +101,15 @@ public class PremiumCmds {
                     }
 
                     if(event.getAuthor().getId().equals(key.getOwner())) {
-                        player.getData().addBadgeIfAbsent(Badge.DONATOR);
-                        player.saveAsync();
+                        MantaroData.db().getUpdater().updatePlayer(event.getAuthor().getId(), player -> player.getData().addBadgeIfAbsent(Badge.DONATOR));
                     }
 
                     key.activate(event.getAuthor().getId().equals(key.getOwner()) ? 365 : 180);
                     event.getChannel().sendMessage(EmoteReference.POPPER + "You're now **Premium** :heart: (For: " + key.getDurationDays() + " days)").queue();
-                    user.getData().setPremiumKey(key.getId());
-                    user.saveAsync();
+                    MantaroData.db().getUpdater().updateUser(event.getAuthor().getId(), u -> {
+                        u.getData().setPremiumKey(key.getId());
+                        return null;
+                    });
                     return;
                 }
 
@@ -152,9 +153,7 @@ public class PremiumCmds {
                         }
 
                         if(!marked) {
-                            Player p = MantaroData.db().getPlayer(owner);
-                            if(p.getData().addBadgeIfAbsent(Badge.DONATOR_2))
-                                p.saveAsync();
+                            MantaroData.db().getUpdater().updatePlayer(owner.getId(), p -> p.getData().addBadgeIfAbsent(Badge.DONATOR_2));
                         }
 
                         embedBuilder.setDescription("**Premium user! <3**")
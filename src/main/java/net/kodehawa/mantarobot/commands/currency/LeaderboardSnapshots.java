@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2016-2018 David Alejandro Rubio Escares / Kodehawa
+ *
+ * Mantaro is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * Mantaro is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mantaro.  If not, see http://www.gnu.org/licenses/
+ */
+package net.kodehawa.mantarobot.commands.currency;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import net.dv8tion.jda.core.entities.User;
+import net.kodehawa.mantarobot.MantaroBot;
+import net.kodehawa.mantarobot.data.MantaroData;
+import net.kodehawa.mantarobot.db.storage.Leaderboard;
+import net.kodehawa.mantarobot.db.storage.LeaderboardEntry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the top players of every global {@link Leaderboard}, with their names already resolved.
+ * <p>
+ * Every board gets recomputed in the background once per interval, so the leaderboard commands never hit the database or walk the shards
+ * looking for users. A board is computed on the spot the first time it's requested, which gives the shards some time to load before the
+ * names get resolved. Refreshes run on their own thread, as a slow query shouldn't hold back everything else on {@link MantaroData#getExecutor()}.
+ */
+@Slf4j
+public class LeaderboardSnapshots {
+    //A future per board, so the first computation doesn't run with a lock of the map held.
+    private final Map<Leaderboard, CompletableFuture<Snapshot>> snapshots = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("LeaderboardSnapshots-Refresher").setDaemon(true).build()
+    );
+    private final int size;
+
+    /**
+     * @param size            How many players to keep on every board.
+     * @param refreshInterval How often to recompute the boards.
+     * @param unit            The unit of refreshInterval.
+     */
+    public LeaderboardSnapshots(int size, long refreshInterval, TimeUnit unit) {
+        this.size = size;
+        refresher.scheduleAtFixedRate(this::refresh, refreshInterval, refreshInterval, unit);
+    }
+
+    /**
+     * @param leaderboard The leaderboard.
+     * @return The latest snapshot of the leaderboard.
+     */
+    public Snapshot get(Leaderboard leaderboard) {
+        CompletableFuture<Snapshot> future = snapshots.get(leaderboard);
+        if(future == null) {
+            //Only the first caller runs the query, everyone else waits for it.
+            CompletableFuture<Snapshot> created = new CompletableFuture<>();
+            future = snapshots.putIfAbsent(leaderboard, created);
+            if(future == null) {
+                future = created;
+                try {
+                    created.complete(compute(leaderboard));
+                } catch(Exception e) {
+                    //So the next caller tries again.
+                    snapshots.remove(leaderboard, created);
+                    created.completeExceptionally(e);
+                }
+            }
+        }
+
+        try {
+            return future.join();
+        } catch(CompletionException e) {
+            throw new RuntimeException("Error computing the " + leaderboard + " leaderboard", e.getCause());
+        }
+    }
+
+    /**
+     * Recomputes every board that was requested at least once. Boards that fail to load keep their old snapshot.
+     */
+    public void refresh() {
+        for(Map.Entry<Leaderboard, CompletableFuture<Snapshot>> board : snapshots.entrySet()) {
+            //Still being computed for the first time, that one's fresh enough.
+            if(!board.getValue().isDone())
+                continue;
+
+            try {
+                snapshots.put(board.getKey(), CompletableFuture.completedFuture(compute(board.getKey())));
+            } catch(Exception e) {
+                log.error("Error refreshing the {} leaderboard", board.getKey(), e);
+            }
+        }
+    }
+
+    private Snapshot compute(Leaderboard leaderboard) {
+        //Users that can't be found anywhere are skipped, so ask for a few more.
+        List<LeaderboardEntry> top = MantaroData.db().getLeaderboard(leaderboard, size * 2);
+        List<Entry> entries = new ArrayList<>(size);
+
+        for(LeaderboardEntry entry : top) {
+            if(entries.size() == size)
+                break;
+
+            User user = MantaroBot.getInstance().getUserById(entry.getUserId());
+            if(user == null)
+                continue;
+
+            entries.add(new Entry(entry.getUserId(), user.getName() + "#" + user.getDiscriminator(), entry.getValue(), entry.getExperience()));
+        }
+
+        return new Snapshot(Collections.unmodifiableList(entries), System.currentTimeMillis());
+    }
+
+    @Getter
+    public static class Snapshot {
+        private final List<Entry> entries;
+        private final long createdAt;
+
+        Snapshot(List<Entry> entries, long createdAt) {
+            this.entries = entries;
+            this.createdAt = createdAt;
+        }
+    }
+
+    @Getter
+    public static class Entry {
+        private final String userId;
+        //Name#discriminator, as of when the snapshot was taken.
+        private final String name;
+        private final long value;
+        private final long experience;
+
+        Entry(String userId, String name, long value, long experience) {
+            this.userId = userId;
+            this.name = name;
+            this.value = value;
+            this.experience = experience;
+        }
+    }
+}
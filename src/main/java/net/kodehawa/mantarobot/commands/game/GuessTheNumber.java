@@ -27,7 +27,6 @@ import net.kodehawa.mantarobot.core.listeners.operations.InteractiveOperations;
 import net.kodehawa.mantarobot.core.listeners.operations.core.InteractiveOperation;
 import net.kodehawa.mantarobot.core.listeners.operations.core.Operation;
 import net.kodehawa.mantarobot.data.MantaroData;
-import net.kodehawa.mantarobot.db.entities.Player;
 import net.kodehawa.mantarobot.utils.commands.EmoteReference;
 
 import java.util.List;
@@ -87,15 +86,16 @@ public class GuessTheNumber extends Game<Object> {
                     }
 
                     if(e.getMessage().getContentRaw().equals(String.valueOf(number))) {
-                        Player player = MantaroData.db().getPlayer(e.getMember());
                         int gains = 95;
-                        player.addMoney(gains);
-                        player.getData().setGamesWon(player.getData().getGamesWon() + 1);
+                        MantaroData.db().getUpdater().updatePlayer(e.getAuthor().getId(), player -> {
+                            player.addMoney(gains);
+                            player.getData().setGamesWon(player.getData().getGamesWon() + 1);
 
-                        if(player.getData().getGamesWon() == 100)
-                            player.getData().addBadgeIfAbsent(Badge.GAMER);
+                            if(player.getData().getGamesWon() == 100)
+                                player.getData().addBadgeIfAbsent(Badge.GAMER);
 
-                        player.save();
+                            return null;
+                        });
 
                         TextChannelGround.of(e).dropItemWithChance(Items.FLOPPY_DISK, 3);
                         lobby.getChannel().sendMessage(EmoteReference.MEGA + "**" + e.getMember().getEffectiveName() + "**" + " Just won $" + gains + " credits by answering correctly!").queue();
@@ -24,7 +24,6 @@ import net.kodehawa.mantarobot.commands.currency.item.Items;
 import net.kodehawa.mantarobot.commands.currency.profile.Badge;
 import net.kodehawa.mantarobot.core.listeners.operations.core.Operation;
 import net.kodehawa.mantarobot.data.MantaroData;
-import net.kodehawa.mantarobot.db.entities.Player;
 import net.kodehawa.mantarobot.utils.commands.EmoteReference;
 
 import java.util.List;
@@ -74,15 +73,16 @@ public abstract class Game<T> {
             }
 
             if(expectedAnswer.stream().map(String::valueOf).anyMatch(e.getMessage().getContentRaw()::equalsIgnoreCase)) {
-                Player player = MantaroData.db().getPlayer(e.getMember());
                 int gains = 45 + extra;
-                player.addMoney(gains);
+                MantaroData.db().getUpdater().updatePlayer(e.getAuthor().getId(), player -> {
+                    player.addMoney(gains);
 
-                if(player.getData().getGamesWon() == 100)
-                    player.getData().addBadgeIfAbsent(Badge.GAMER);
+                    if(player.getData().getGamesWon() == 100)
+                        player.getData().addBadgeIfAbsent(Badge.GAMER);
 
-                player.getData().setGamesWon(player.getData().getGamesWon() + 1);
-                player.save();
+                    player.getData().setGamesWon(player.getData().getGamesWon() + 1);
+                    return null;
+                });
 
                 TextChannelGround.of(e).dropItemWithChance(Items.FLOPPY_DISK, 3);
                 lobby.getChannel().sendMessage(EmoteReference.MEGA + "**" + e.getMember().getEffectiveName() + "**" + " just won $" + gains + " credits by answering correctly!").queue();
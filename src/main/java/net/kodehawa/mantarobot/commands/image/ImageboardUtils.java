@@ -26,7 +26,6 @@ import net.kodehawa.mantarobot.commands.currency.TextChannelGround;
 import net.kodehawa.mantarobot.commands.currency.profile.Badge;
 import net.kodehawa.mantarobot.data.MantaroData;
 import net.kodehawa.mantarobot.db.entities.DBGuild;
-import net.kodehawa.mantarobot.db.entities.Player;
 import net.kodehawa.mantarobot.db.entities.helpers.PlayerData;
 import net.kodehawa.mantarobot.utils.commands.EmoteReference;
 
@@ -42,8 +41,8 @@ public class ImageboardUtils {
         Rating rating = Rating.SAFE;
         boolean needRating = args.length >= 3;
         final TextChannel channel = event.getChannel();
-        final Player player = MantaroData.db().getPlayer(event.getAuthor());
-        final PlayerData playerData = player.getData();
+        //Only to skip the update when the badge is already there.
+        final PlayerData playerData = MantaroData.db().getPlayer(event.getAuthor()).getData();
 
         if(needRating && !nsfwOnly)
             rating = Rating.lookupFromString(args[2]);
@@ -99,8 +98,8 @@ public class ImageboardUtils {
 
                             imageEmbed(image.getURL(), String.valueOf(image.getWidth()), String.valueOf(image.getHeight()), tags, image.getRating(), imageboard, channel);
                             if(image.getRating().equals(Rating.EXPLICIT)) {
-                                if(playerData.addBadgeIfAbsent(Badge.LEWDIE)) {
-                                    player.saveAsync();
+                                if(!playerData.hasBadge(Badge.LEWDIE)) {
+                                    MantaroData.db().getUpdater().updatePlayer(event.getAuthor().getId(), p -> p.getData().addBadgeIfAbsent(Badge.LEWDIE));
                                 }
 
                                 TextChannelGround.of(event).dropItemWithChance(13, 3);
@@ -159,8 +158,8 @@ public class ImageboardUtils {
 
                             imageEmbed(image.getURL(), String.valueOf(image.getWidth()), String.valueOf(image.getHeight()), imageTags, image.getRating(), imageboard, channel);
                             if(image.getRating().equals(Rating.EXPLICIT)) {
-                                if(playerData.addBadgeIfAbsent(Badge.LEWDIE)) {
-                                    player.saveAsync();
+                                if(!playerData.hasBadge(Badge.LEWDIE)) {
+                                    MantaroData.db().getUpdater().updatePlayer(event.getAuthor().getId(), p -> p.getData().addBadgeIfAbsent(Badge.LEWDIE));
                                 }
 
                                 TextChannelGround.of(event).dropItemWithChance(13, 3);
@@ -198,8 +197,8 @@ public class ImageboardUtils {
                         String tags = image.getTags().stream().collect(Collectors.joining(", "));
                         imageEmbed(image.getURL(), String.valueOf(image.getWidth()), String.valueOf(image.getHeight()), tags, image.getRating(), imageboard, channel);
                         if(image.getRating().equals(Rating.EXPLICIT)) {
-                            if(playerData.addBadgeIfAbsent(Badge.LEWDIE)) {
-                                player.saveAsync();
+                            if(!playerData.hasBadge(Badge.LEWDIE)) {
+                                MantaroData.db().getUpdater().updatePlayer(event.getAuthor().getId(), p -> p.getData().addBadgeIfAbsent(Badge.LEWDIE));
                             }
 
                             TextChannelGround.of(event).dropItemWithChance(13, 3);
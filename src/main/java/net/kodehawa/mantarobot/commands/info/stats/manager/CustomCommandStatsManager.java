@@ -16,15 +16,11 @@
 
 package net.kodehawa.mantarobot.commands.info.stats.manager;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
-
 public class CustomCommandStatsManager extends StatsManager<String> {
-    public static final Map<String, AtomicInteger> TOTAL_CUSTOM_CMDS = new HashMap<>();
+    public static final SlidingWindowCounter<String> CUSTOM_COMMANDS = new SlidingWindowCounter<>(false);
 
     public static void log(String cmd) {
         if(cmd.isEmpty()) return;
-        TOTAL_CUSTOM_CMDS.computeIfAbsent(cmd, k -> new AtomicInteger(0)).incrementAndGet();
+        CUSTOM_COMMANDS.increment(cmd);
     }
 }
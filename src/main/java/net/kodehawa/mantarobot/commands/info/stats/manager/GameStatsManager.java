@@ -16,15 +16,11 @@
 
 package net.kodehawa.mantarobot.commands.info.stats.manager;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
-
 public class GameStatsManager extends StatsManager<String> {
-    public static final Map<String, AtomicInteger> TOTAL_GAMES = new HashMap<>();
+    public static final SlidingWindowCounter<String> GAMES = new SlidingWindowCounter<>(false);
 
     public static void log(String game) {
         if(game.isEmpty()) return;
-        TOTAL_GAMES.computeIfAbsent(game, k -> new AtomicInteger(0)).incrementAndGet();
+        GAMES.increment(game);
     }
 }
@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2016-2018 David Alejandro Rubio Escares / Kodehawa
+ *
+ * Mantaro is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * Mantaro is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mantaro.  If not, see http://www.gnu.org/licenses/
+ */
+
+package net.kodehawa.mantarobot.commands.info.stats.manager;
+
+import net.kodehawa.mantarobot.utils.Pair;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how many times every key was logged in the last minute, hour, day and since startup.
+ * <p>
+ * Every window is a ring of {@link LongAdder} buckets per key, so logging never locks and the windows slide one bucket at a time
+ * instead of resetting all at once. Reading goes through {@link #snapshot(Window)}, which keeps the top keys of every window cached for a few seconds.
+ */
+public class SlidingWindowCounter<T> {
+    //How many keys a snapshot keeps, enough for both the embed and the summary.
+    public static final int TOP_K = 12;
+    private static final long SNAPSHOT_TTL = TimeUnit.SECONDS.toMillis(5);
+    //Marks a bucket being cleared to be reused.
+    private static final long RESETTING = -1;
+
+    private final ConcurrentHashMap<T, Counter> counters = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<Snapshot<T>> snapshots = new AtomicReferenceArray<>(Window.values().length);
+    private final boolean windowed;
+
+    /**
+     * @param windowed Whether to keep the minute, hour and day windows, or just the total.
+     */
+    public SlidingWindowCounter(boolean windowed) {
+        this.windowed = windowed;
+    }
+
+    public void increment(T key) {
+        Counter counter = counters.get(key);
+        if(counter == null)
+            counter = counters.computeIfAbsent(key, ignored -> new Counter(windowed));
+
+        counter.increment(System.currentTimeMillis());
+    }
+
+    /**
+     * @param key    The key to check.
+     * @param window The window to count.
+     * @return How many times the key was logged in the specified window.
+     */
+    public long get(T key, Window window) {
+        Counter counter = counters.get(key);
+        return counter == null ? 0 : counter.get(window, System.currentTimeMillis());
+    }
+
+    /**
+     * @param window The window to count.
+     * @return The total count of the window and its {@link #TOP_K} keys, computed at most once every few seconds.
+     */
+    public Snapshot<T> snapshot(Window window) {
+        if(!windowed && window != Window.TOTAL)
+            throw new IllegalArgumentException("This counter only keeps the total count");
+
+        long now = System.currentTimeMillis();
+        Snapshot<T> snapshot = snapshots.get(window.ordinal());
+        if(snapshot != null && now - snapshot.createdAt < SNAPSHOT_TTL)
+            return snapshot;
+
+        long total = 0;
+        PriorityQueue<Pair<T, Long>> top = new PriorityQueue<>(TOP_K + 1, Comparator.comparingLong(Pair::getRight));
+        for(Map.Entry<T, Counter> entry : counters.entrySet()) {
+            long count = entry.getValue().get(window, now);
+            if(count <= 0)
+                continue;
+
+            total += count;
+            top.offer(new Pair<>(entry.getKey(), count));
+            if(top.size() > TOP_K)
+                top.poll();
+        }
+
+        List<Pair<T, Long>> sorted = new ArrayList<>(top);
+        sorted.sort(Comparator.<Pair<T, Long>>comparingLong(Pair::getRight).reversed());
+
+        snapshot = new Snapshot<>(total, sorted, now);
+        snapshots.set(window.ordinal(), snapshot);
+        return snapshot;
+    }
+
+    public enum Window {
+        //12 buckets of 5 seconds.
+        MINUTE(TimeUnit.SECONDS.toMillis(5), 12),
+        //60 buckets of a minute.
+        HOUR(TimeUnit.MINUTES.toMillis(1), 60),
+        //24 buckets of an hour.
+        DAY(TimeUnit.HOURS.toMillis(1), 24),
+        TOTAL(0, 0);
+
+        private final long bucketMillis;
+        private final int buckets;
+
+        Window(long bucketMillis, int buckets) {
+            this.bucketMillis = bucketMillis;
+            this.buckets = buckets;
+        }
+    }
+
+    public static class Snapshot<T> {
+        private final long total;
+        private final List<Pair<T, Long>> top;
+        private final long createdAt;
+
+        private Snapshot(long total, List<Pair<T, Long>> top, long createdAt) {
+            this.total = total;
+            this.top = top;
+            this.createdAt = createdAt;
+        }
+
+        /**
+         * @return The sum of the counts of every key, not only the top ones.
+         */
+        public long getTotal() {
+            return total;
+        }
+
+        /**
+         * @return The keys with the highest counts, highest first.
+         */
+        public List<Pair<T, Long>> getTop() {
+            return top;
+        }
+    }
+
+    private static class Counter {
+        final LongAdder total = new LongAdder();
+        final Ring[] rings;
+
+        Counter(boolean windowed) {
+            if(windowed) {
+                rings = new Ring[] { new Ring(Window.MINUTE), new Ring(Window.HOUR), new Ring(Window.DAY) };
+            } else {
+                rings = new Ring[0];
+            }
+        }
+
+        void increment(long now) {
+            total.increment();
+            for(Ring ring : rings) {
+                ring.increment(now);
+            }
+        }
+
+        long get(Window window, long now) {
+            if(window == Window.TOTAL)
+                return total.sum();
+
+            return window.ordinal() < rings.length ? rings[window.ordinal()].sum(now) : 0;
+        }
+    }
+
+    private static class Ring {
+        final long bucketMillis;
+        final LongAdder[] buckets;
+        //Which bucket number (time / bucketMillis) every slot is currently counting.
+        final AtomicLongArray stamps;
+
+        Ring(Window window) {
+            this.bucketMillis = window.bucketMillis;
+            this.buckets = new LongAdder[window.buckets];
+            this.stamps = new AtomicLongArray(window.buckets);
+            for(int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void increment(long now) {
+            long stamp = now / bucketMillis;
+            int i = (int) (stamp % buckets.length);
+
+            while(true) {
+                long current = stamps.get(i);
+                //Also take the (rare) case of a thread that got its time right before the slot moved on, a bucket off doesn't matter.
+                if(current >= stamp) {
+                    buckets[i].increment();
+                    return;
+                }
+
+                if(current == RESETTING) {
+                    Thread.yield();
+                    continue;
+                }
+
+                //The slot still holds an old bucket, whoever wins gets to clear it. Nobody adds to it while it's being cleared.
+                if(stamps.compareAndSet(i, current, RESETTING)) {
+                    buckets[i].reset();
+                    stamps.set(i, stamp);
+                }
+            }
+        }
+
+        long sum(long now) {
+            long stamp = now / bucketMillis;
+            long sum = 0;
+            for(int i = 0; i < buckets.length; i++) {
+                long s = stamps.get(i);
+                if(s > stamp - buckets.length && s <= stamp)
+                    sum += buckets[i].sum();
+            }
+
+            return sum;
+        }
+    }
+}
@@ -18,9 +18,6 @@ package net.kodehawa.mantarobot.commands.info.stats.manager;
 
 import net.dv8tion.jda.core.EmbedBuilder;
 
-import java.util.Comparator;
-import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 public abstract class StatsManager<T> {
@@ -34,41 +31,37 @@ public abstract class StatsManager<T> {
         return builder.append(EMPTY_BLOCK).append('`').toString();
     }
 
-    public EmbedBuilder fillEmbed(Map<T, AtomicInteger> values, EmbedBuilder builder) {
-        int total = values.values().stream().mapToInt(AtomicInteger::get).sum();
+    public EmbedBuilder fillEmbed(SlidingWindowCounter.Snapshot<T> values, EmbedBuilder builder) {
+        long total = values.getTotal();
 
         if(total == 0) {
             builder.addField("Nothing Here.", "Just dust.", false);
             return builder;
         }
 
-        values.entrySet().stream()
-                .filter(entry -> entry.getValue().get() > 0)
-                .sorted(Comparator.comparingInt(entry -> total - entry.getValue().get()))
+        values.getTop().stream()
                 .limit(12)
                 .forEachOrdered(entry -> {
-                    int percent = entry.getValue().get() * 100 / total;
-                    builder.addField(String.valueOf(entry.getKey()), String.format("%s %d%% (%d)", bar(percent, 15), percent, entry.getValue().get()), false);
+                    int percent = (int) (entry.getRight() * 100 / total);
+                    builder.addField(String.valueOf(entry.getLeft()), String.format("%s %d%% (%d)", bar(percent, 15), percent, entry.getRight()), false);
                 });
 
         return builder;
     }
 
-    public String resume(Map<T, AtomicInteger> commands) {
-        int total = commands.values().stream().mapToInt(AtomicInteger::get).sum();
+    public String resume(SlidingWindowCounter.Snapshot<T> values) {
+        long total = values.getTotal();
 
-        return (total == 0) ? ("No Events Logged.") : ("Count: " + total + "\n" + commands.entrySet().stream()
-                .filter(entry -> entry.getValue().get() > 0)
-                .sorted(Comparator.comparingInt(entry -> total - entry.getValue().get()))
+        return (total == 0) ? ("No Events Logged.") : ("Count: " + total + "\n" + values.getTop().stream()
                 .limit(5)
                 .map(entry -> {
-                    int percent = Math.round((float) entry.getValue().get() * 100 / total);
-                    return String.format("%s %d%% **%s** (%d)", bar(percent, 15), percent, entry.getKey(), entry.getValue().get());
+                    int percent = Math.round((float) entry.getRight() * 100 / total);
+                    return String.format("%s %d%% **%s** (%d)", bar(percent, 15), percent, entry.getLeft(), entry.getRight());
                 })
                 .collect(Collectors.joining("\n")));
     }
 
-    public int getTotalValueFor(Map<T, AtomicInteger> map) {
-        return map.values().stream().mapToInt(AtomicInteger::get).sum();
+    public long getTotalValueFor(SlidingWindowCounter.Snapshot<T> values) {
+        return values.getTotal();
     }
 }
@@ -24,8 +24,6 @@ import net.kodehawa.mantarobot.commands.currency.profile.Badge;
 import net.kodehawa.mantarobot.data.MantaroData;
 import net.kodehawa.mantarobot.db.ManagedDatabase;
 import net.kodehawa.mantarobot.db.entities.DBGuild;
-import net.kodehawa.mantarobot.db.entities.Player;
-import net.kodehawa.mantarobot.db.entities.helpers.PlayerData;
 
 public class ModLog {
 
@@ -33,8 +31,6 @@ public class ModLog {
 
     public static void log(Member author, User target, String reason, ModAction action, long caseN, String... time) {
         DBGuild guildDB = db.getGuild(author.getGuild());
-        Player player = db.getPlayer(author);
-        PlayerData playerData = player.getData();
         EmbedBuilder embedBuilder = new EmbedBuilder();
 
         embedBuilder.addField("Responsible Moderator", author.getEffectiveName(), true);
@@ -76,10 +72,7 @@ public class ModLog {
 
         }
 
-        if(!playerData.hasBadge(Badge.POWER_USER)) {
-            playerData.addBadgeIfAbsent(Badge.POWER_USER);
-            player.saveAsync();
-        }
+        db.getUpdater().updatePlayer(author.getUser().getId(), player -> player.getData().addBadgeIfAbsent(Badge.POWER_USER));
 
         if(guildDB.getData().getGuildLogChannel() != null) {
             if(MantaroBot.getInstance().getTextChannelById(guildDB.getData().getGuildLogChannel()) != null) {
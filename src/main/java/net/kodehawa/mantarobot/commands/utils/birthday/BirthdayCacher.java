@@ -16,19 +16,15 @@
 
 package net.kodehawa.mantarobot.commands.utils.birthday;
 
-import com.rethinkdb.model.OptArgs;
-import com.rethinkdb.net.Cursor;
 import lombok.extern.slf4j.Slf4j;
 import net.kodehawa.mantarobot.data.MantaroData;
+import net.kodehawa.mantarobot.db.entities.DBUser;
 
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-
-import static com.rethinkdb.RethinkDB.r;
+import java.util.stream.Stream;
 
 /**
  * Caches the birthday date of all users seen on bot startup and adds them to a local ConcurrentHashMap.
@@ -47,23 +43,20 @@ public class BirthdayCacher {
 
     public void cache() {
         executorService.submit(() -> {
-            try {
-                Cursor<Map> m = r.table("users").run(MantaroData.conn(), OptArgs.of("read_mode", "outdated"));
+            //Only fetch what we need, in batches, instead of the whole users table at once.
+            try(Stream<DBUser> users = MantaroData.db().streamUserBirthdays()) {
                 cachedBirthdays.clear();
-                List<Map> m1 = m.toList();
 
-                for(Map r : m1) {
-                    //Blame rethinkdb for the casting hell thx
-                    String birthday = (String) ((HashMap) r.get("data")).get("birthday");
+                users.forEach(user -> {
+                    String birthday = user.getData() == null ? null : user.getData().getBirthday();
                     if(birthday != null && !birthday.isEmpty()) {
-                        log.debug("-> PROCESS: {}", r);
-                        cachedBirthdays.put(String.valueOf(r.get("id")), birthday);
+                        log.debug("-> PROCESS: {}", user.getId());
+                        cachedBirthdays.put(user.getId(), birthday);
                     }
-                }
+                });
 
                 log.debug("-> [CACHE] Birthdays: {}", cachedBirthdays);
 
-                m.close();
                 isDone = true;
                 log.info("Cached all birthdays!");
             } catch(Exception e) {
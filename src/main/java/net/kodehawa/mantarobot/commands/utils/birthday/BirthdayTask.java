@@ -23,15 +23,16 @@ import net.dv8tion.jda.core.entities.Guild;
 import net.dv8tion.jda.core.entities.Member;
 import net.dv8tion.jda.core.entities.Role;
 import net.dv8tion.jda.core.entities.TextChannel;
-import net.dv8tion.jda.core.utils.cache.SnowflakeCacheView;
 import net.kodehawa.mantarobot.MantaroBot;
 import net.kodehawa.mantarobot.data.MantaroData;
 import net.kodehawa.mantarobot.db.ManagedDatabase;
+import net.kodehawa.mantarobot.db.entities.DBGuild;
 import net.kodehawa.mantarobot.db.entities.helpers.GuildData;
 import net.kodehawa.mantarobot.utils.commands.EmoteReference;
 import org.apache.commons.lang3.time.FastDateFormat;
 
 import java.util.Calendar;
+import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
@@ -55,10 +56,13 @@ public class BirthdayTask {
             Calendar cal = Calendar.getInstance();
             String now = dateFormat.format(cal.getTime()).substring(0, 5);
             Map<String, String> cached = cache.cachedBirthdays;
-            SnowflakeCacheView<Guild> guilds = jda.getGuildCache();
+            //A copy, the cache can change while this runs and every guild iterated has to be on dbGuilds.
+            List<Guild> guilds = jda.getGuildCache().asList();
+            //One round trip for the whole shard instead of one per guild.
+            Map<String, DBGuild> dbGuilds = db.getGuilds(guilds.stream().map(Guild::getId).collect(Collectors.toList()));
 
             for(Guild guild : guilds) {
-                GuildData tempData = db.getGuild(guild).getData();
+                GuildData tempData = dbGuilds.get(guild.getId()).getData();
                 if(tempData.getBirthdayChannel() != null && tempData.getBirthdayRole() != null) {
                     Role birthdayRole = guild.getRoleById(tempData.getBirthdayRole());
                     TextChannel channel = guild.getTextChannelById(tempData.getBirthdayChannel());
@@ -17,8 +17,9 @@
 package net.kodehawa.mantarobot.core;
 
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import lombok.extern.slf4j.Slf4j;
-import net.dv8tion.jda.core.entities.Member;
 import net.dv8tion.jda.core.events.message.guild.GuildMessageReceivedEvent;
 import net.kodehawa.mantarobot.MantaroBot;
 import net.kodehawa.mantarobot.commands.info.stats.manager.CategoryStatsManager;
@@ -29,20 +30,33 @@ import net.kodehawa.mantarobot.core.modules.commands.SubCommand;
 import net.kodehawa.mantarobot.core.modules.commands.TreeCommand;
 import net.kodehawa.mantarobot.core.modules.commands.base.Category;
 import net.kodehawa.mantarobot.core.modules.commands.base.Command;
-import net.kodehawa.mantarobot.core.modules.commands.base.CommandPermission;
+import net.kodehawa.mantarobot.core.processor.CommandTracer;
 import net.kodehawa.mantarobot.data.Config;
 import net.kodehawa.mantarobot.data.MantaroData;
+import net.kodehawa.mantarobot.db.GlobalAccessIndex;
 import net.kodehawa.mantarobot.db.entities.DBGuild;
-import net.kodehawa.mantarobot.db.entities.helpers.GuildData;
 import net.kodehawa.mantarobot.utils.commands.EmoteReference;
 
-import java.util.*;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 public class CommandRegistry {
 
     private final Map<String, Command> commands;
     private final Config conf = MantaroData.config().get();
+    private final Map<String, Integer> commandIds = new ConcurrentHashMap<>();
+    private final AtomicInteger nextCommandId = new AtomicInteger();
+    //Guild saves invalidate this on this node, the expiry just covers the guild being edited from somewhere else.
+    private final Cache<String, GuildCommandPolicy> policies = CacheBuilder.newBuilder()
+            .concurrencyLevel(10)
+            .maximumSize(50000)
+            .expireAfterWrite(2, TimeUnit.MINUTES)
+            .build();
 
     public CommandRegistry(Map<String, Command> commands) {
         this.commands = Preconditions.checkNotNull(commands);
@@ -60,77 +74,47 @@ public class CommandRegistry {
     //I know there are better approaches to this, THIS IS JUST A WORKAROUND, DON'T TRY TO REPLICATE THIS.
     public boolean process(GuildMessageReceivedEvent event, String cmdName, String content) {
         long start = System.currentTimeMillis();
-        Command command = commands.get(cmdName);
+        //The key the command was found under, so per-command state doesn't get split by however it was typed.
+        String key = cmdName;
+        Command command = commands.get(key);
 
         if(command == null) {
-            command = commands.get(cmdName.toLowerCase());
+            key = cmdName.toLowerCase();
+            command = commands.get(key);
 
             if(command == null)
                 return false;
         }
 
-        //Variable used in lambda expression should be final or effectively final...
-        final Command cmd = command;
-
-        if(MantaroData.db().getMantaroData().getBlackListedUsers().contains(event.getAuthor().getId())) {
-            return false;
-        }
-
-        DBGuild dbg = MantaroData.db().getGuild(event.getGuild());
-        GuildData data = dbg.getData();
-
-        if(data.getDisabledCommands().contains(cmd instanceof AliasCommand ? ((AliasCommand) cmd).getOriginalName() : cmdName)) {
-            return false;
-        }
-
-        List<String> channelDisabledCommands = data.getChannelSpecificDisabledCommands().get(event.getChannel().getId());
-        if(channelDisabledCommands != null && channelDisabledCommands.contains(cmd instanceof AliasCommand ? ((AliasCommand) cmd).getOriginalName() : cmdName)) {
-            return false;
-        }
-
-        if(data.getDisabledUsers().contains(event.getAuthor().getId()) && !isAdmin(event.getMember())) {
+        long fetchStart = System.nanoTime();
+        if(GlobalAccessIndex.isBlacklistedUser(event.getAuthor().getIdLong())) {
             return false;
         }
 
-        if(data.getDisabledChannels().contains(event.getChannel().getId()) && (cmd instanceof AliasCommand ? ((AliasCommand) cmd).parentCategory() != Category.MODERATION : cmd.category() != Category.MODERATION)) {
-            return false;
-        }
+        boolean isAlias = command instanceof AliasCommand;
+        Category category = isAlias ? ((AliasCommand) command).parentCategory() : command.category();
+        String name = isAlias ? ((AliasCommand) command).getOriginalName() : key;
 
-        if(conf.isPremiumBot() && (cmd instanceof AliasCommand ? ((AliasCommand) cmd).parentCategory() == Category.CURRENCY : cmd.category() == Category.CURRENCY)) {
+        if(conf.isPremiumBot() && category == Category.CURRENCY) {
             return false;
         }
 
-        if(data.getDisabledCategories().contains(cmd instanceof AliasCommand ? ((AliasCommand) cmd).parentCategory() : cmd.category())) {
-            return false;
-        }
-
-        if(data.getChannelSpecificDisabledCategories().computeIfAbsent(event.getChannel().getId(), c ->
-                new ArrayList<>()).contains(cmd instanceof AliasCommand ? ((AliasCommand) cmd).parentCategory() : cmd.category())) {
-            return false;
-        }
+        GuildCommandPolicy policy = getPolicy(event.getGuild().getId());
+        long policyStart = System.nanoTime();
+        CommandTracer.mark(CommandTracer.Stage.GUILD_FETCH, policyStart - fetchStart);
 
-        if(!data.getDisabledRoles().isEmpty() && event.getMember().getRoles().stream().anyMatch(r -> data.getDisabledRoles().contains(r.getId())) && !isAdmin(event.getMember())) {
-            return false;
-        }
-
-        HashMap<String, List<String>> roleSpecificDisabledCommands = data.getRoleSpecificDisabledCommands();
-        if(event.getMember().getRoles().stream().anyMatch(r -> roleSpecificDisabledCommands.computeIfAbsent(r.getId(), s -> new ArrayList<>()).contains(cmd instanceof AliasCommand ? ((AliasCommand) cmd).getOriginalName() : cmdName)) && !isAdmin(event.getMember())) {
-            return false;
-        }
-
-        HashMap<String, List<Category>> roleSpecificDisabledCategories = data.getRoleSpecificDisabledCategories();
-        if(event.getMember().getRoles().stream().anyMatch(r -> roleSpecificDisabledCategories.computeIfAbsent(r.getId(), s -> new ArrayList<>()).contains(cmd instanceof AliasCommand ? ((AliasCommand) cmd).parentCategory() : cmd.category())) && !isAdmin(event.getMember())) {
+        if(!policy.isAllowed(commandId(name), category, event.getChannel().getIdLong(), event.getMember())) {
             return false;
         }
 
         //If we are in the patreon bot, deny all requests from unknown guilds.
-        if(conf.isPremiumBot() && !conf.isOwner(event.getAuthor()) && !dbg.isPremium()) {
+        if(conf.isPremiumBot() && !conf.isOwner(event.getAuthor()) && !MantaroData.db().getGuild(event.getGuild()).isPremium()) {
             event.getChannel().sendMessage(EmoteReference.ERROR + "Seems like you're trying to use the Patreon bot when this guild is **not** marked as premium. " +
                     "**If you think this is an error please contact Kodehawa#3457 or poke me on #donators in the support guild**").queue();
             return false;
         }
 
-        if(!cmd.permission().test(event.getMember())) {
+        if(!command.permission().test(event.getMember())) {
             event.getChannel().sendMessage(EmoteReference.STOP + "You have no permissions to trigger this command :(").queue();
             return false;
         }
@@ -138,13 +122,21 @@ public class CommandRegistry {
         long end = System.currentTimeMillis();
         MantaroBot.getInstance().getStatsClient().increment("commands");
         log.debug("Command invoked: {}, by {}#{} with timestamp {}", cmdName, event.getAuthor().getName(), event.getAuthor().getDiscriminator(), new Date(System.currentTimeMillis()));
-        cmd.run(event, cmdName, content);
+        long bodyStart = System.nanoTime();
+        CommandTracer.mark(CommandTracer.Stage.POLICY_CHECK, bodyStart - policyStart);
+        CommandTracer.expectResponse(name, event.getChannel().getIdLong(), event.getMessageIdLong());
+        try {
+            command.run(event, cmdName, content);
+        } finally {
+            CommandTracer.mark(CommandTracer.Stage.COMMAND_BODY, System.nanoTime() - bodyStart);
+            CommandTracer.finish(name);
+        }
 
-        if(cmd.category() != null && cmd.category().name() != null && !cmd.category().name().isEmpty()) {
+        if(command.category() != null && command.category().name() != null && !command.category().name().isEmpty()) {
             MantaroBot.getInstance().getStatsClient().increment("command", "name:" + cmdName);
-            MantaroBot.getInstance().getStatsClient().increment("category", "name:" + cmd.category().name().toLowerCase());
+            MantaroBot.getInstance().getStatsClient().increment("category", "name:" + command.category().name().toLowerCase());
             CommandStatsManager.log(cmdName);
-            CategoryStatsManager.log(cmd.category().name().toLowerCase());
+            CategoryStatsManager.log(command.category().name().toLowerCase());
         }
 
         MantaroBot.getInstance().getStatsClient().histogram("command_process_time", (end - start));
@@ -152,6 +144,42 @@ public class CommandRegistry {
         return true;
     }
 
+    /**
+     * Gets the compiled {@link GuildCommandPolicy} of a guild, compiling it from the database if it isn't cached yet.
+     *
+     * @param guildId The id of the guild.
+     * @return The policy of the guild.
+     */
+    public GuildCommandPolicy getPolicy(String guildId) {
+        GuildCommandPolicy policy = policies.getIfPresent(guildId);
+        if(policy == null) {
+            policy = GuildCommandPolicy.compile(MantaroData.db().getGuild(guildId).getData(), this::commandId);
+            policies.put(guildId, policy);
+        }
+
+        return policy;
+    }
+
+    /**
+     * Drops the cached {@link GuildCommandPolicy} of a guild. Called every time a {@link DBGuild} gets saved or deleted.
+     *
+     * @param guildId The id of the guild.
+     */
+    public void invalidatePolicy(String guildId) {
+        policies.invalidate(guildId);
+    }
+
+    /**
+     * Gets the id of the specified command name, used to index commands on a {@link GuildCommandPolicy}.
+     * Ids are handed out lazily, as custom commands can get added to the command map at any point, and never released.
+     *
+     * @param name The name of the command, as registered. Any other casing gets an id of its own.
+     * @return The id of the command.
+     */
+    public int commandId(String name) {
+        return commandIds.computeIfAbsent(name, ignored -> nextCommandId.getAndIncrement());
+    }
+
     public Command register(String name, Command command) {
         commands.putIfAbsent(name, command);
         return command;
@@ -172,8 +200,4 @@ public class CommandRegistry {
     public void addSubCommandTo(SimpleTreeCommand command, String name, SubCommand subCommand) {
         command.addSubCommand(name, subCommand);
     }
-
-    private boolean isAdmin(Member member) {
-        return CommandPermission.ADMIN.test(member);
-    }
 }
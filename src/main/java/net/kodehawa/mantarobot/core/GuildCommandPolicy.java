@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2016-2018 David Alejandro Rubio Escares / Kodehawa
+ *
+ * Mantaro is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * Mantaro is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mantaro.  If not, see http://www.gnu.org/licenses/
+ */
+
+package net.kodehawa.mantarobot.core;
+
+import gnu.trove.map.TLongLongMap;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongLongHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+import net.dv8tion.jda.core.entities.Member;
+import net.dv8tion.jda.core.entities.Role;
+import net.kodehawa.mantarobot.core.modules.commands.base.Category;
+import net.kodehawa.mantarobot.core.modules.commands.base.CommandPermission;
+import net.kodehawa.mantarobot.db.entities.helpers.GuildData;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * Immutable, precompiled view of the command restrictions a guild has configured on its {@link GuildData}.
+ * <p>
+ * Commands are indexed by the id handed out by {@link CommandRegistry#commandId(String)}, categories by their ordinal, and users, channels and roles
+ * are stored as primitive longs, so checking a command is just a few hash/bit lookups instead of walking the lists and maps on every message.
+ * <p>
+ * Instances are cached by the {@link CommandRegistry} and dropped whenever the guild gets saved, so they never have to be mutated.
+ */
+public class GuildCommandPolicy {
+    private final BitSet disabledCommands;
+    private final long disabledCategories;
+    private final TLongObjectMap<BitSet> channelDisabledCommands;
+    private final TLongLongMap channelDisabledCategories;
+    private final TLongSet disabledUsers;
+    private final TLongSet disabledChannels;
+    private final TLongSet disabledRoles;
+    private final TLongObjectMap<BitSet> roleDisabledCommands;
+    private final TLongLongMap roleDisabledCategories;
+
+    private GuildCommandPolicy(GuildData data, ToIntFunction<String> commandIds) {
+        this.disabledCommands = commands(data.getDisabledCommands(), commandIds);
+        this.disabledCategories = categories(data.getDisabledCategories());
+        this.channelDisabledCommands = commandsById(data.getChannelSpecificDisabledCommands(), commandIds);
+        this.channelDisabledCategories = categoriesById(data.getChannelSpecificDisabledCategories());
+        this.disabledUsers = ids(data.getDisabledUsers());
+        this.disabledChannels = ids(data.getDisabledChannels());
+        this.disabledRoles = ids(data.getDisabledRoles());
+        this.roleDisabledCommands = commandsById(data.getRoleSpecificDisabledCommands(), commandIds);
+        this.roleDisabledCategories = categoriesById(data.getRoleSpecificDisabledCategories());
+    }
+
+    /**
+     * Compiles the restrictions stored on the specified {@link GuildData}. The data itself is only read, never modified.
+     *
+     * @param data       The guild data to compile.
+     * @param commandIds Resolves a command name to its registry id.
+     * @return The compiled policy.
+     */
+    public static GuildCommandPolicy compile(GuildData data, ToIntFunction<String> commandIds) {
+        return new GuildCommandPolicy(data, commandIds);
+    }
+
+    /**
+     * Checks whether the guild allows the specified command to be ran.
+     *
+     * @param commandId The registry id of the command (the original command in case of an alias).
+     * @param category  The category of the command (the parent category in case of an alias), can be null.
+     * @param channelId The id of the channel the command was ran on.
+     * @param member    The member who ran the command.
+     * @return Whether the command can be ran or not.
+     */
+    public boolean isAllowed(int commandId, Category category, long channelId, Member member) {
+        long categoryBit = category == null ? 0L : 1L << category.ordinal();
+
+        if(disabledCommands.get(commandId))
+            return false;
+
+        BitSet channelCommands = channelDisabledCommands.get(channelId);
+        if(channelCommands != null && channelCommands.get(commandId))
+            return false;
+
+        //Lazily checked, as it's the expensive one.
+        boolean admin = false, adminChecked = false;
+
+        if(disabledUsers.contains(member.getUser().getIdLong())) {
+            admin = isAdmin(member);
+            adminChecked = true;
+            if(!admin)
+                return false;
+        }
+
+        if(disabledChannels.contains(channelId) && category != Category.MODERATION)
+            return false;
+
+        if((disabledCategories & categoryBit) != 0)
+            return false;
+
+        if((channelDisabledCategories.get(channelId) & categoryBit) != 0)
+            return false;
+
+        if(disabledRoles.isEmpty() && roleDisabledCommands.isEmpty() && roleDisabledCategories.isEmpty())
+            return true;
+
+        List<Role> roles = member.getRoles();
+        for(int i = 0; i < roles.size(); i++) {
+            long roleId = roles.get(i).getIdLong();
+            BitSet roleCommands = roleDisabledCommands.get(roleId);
+
+            if(disabledRoles.contains(roleId) || (roleCommands != null && roleCommands.get(commandId)) || (roleDisabledCategories.get(roleId) & categoryBit) != 0) {
+                if(!adminChecked) {
+                    admin = isAdmin(member);
+                    adminChecked = true;
+                }
+
+                return admin;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isAdmin(Member member) {
+        return CommandPermission.ADMIN.test(member);
+    }
+
+    private static BitSet commands(Collection<String> names, ToIntFunction<String> commandIds) {
+        BitSet set = new BitSet();
+        if(names == null)
+            return set;
+
+        for(String name : names) {
+            if(name != null)
+                set.set(commandIds.applyAsInt(name));
+        }
+
+        return set;
+    }
+
+    private static long categories(Collection<Category> categories) {
+        long mask = 0L;
+        if(categories == null)
+            return mask;
+
+        for(Category category : categories) {
+            if(category != null)
+                mask |= 1L << category.ordinal();
+        }
+
+        return mask;
+    }
+
+    private static TLongObjectMap<BitSet> commandsById(Map<String, List<String>> map, ToIntFunction<String> commandIds) {
+        TLongObjectMap<BitSet> result = new TLongObjectHashMap<>();
+        if(map == null)
+            return result;
+
+        for(Map.Entry<String, List<String>> entry : map.entrySet()) {
+            long id = parseId(entry.getKey());
+            BitSet set = commands(entry.getValue(), commandIds);
+            if(id != 0 && !set.isEmpty())
+                result.put(id, set);
+        }
+
+        return result;
+    }
+
+    private static TLongLongMap categoriesById(Map<String, List<Category>> map) {
+        TLongLongMap result = new TLongLongHashMap();
+        if(map == null)
+            return result;
+
+        for(Map.Entry<String, List<Category>> entry : map.entrySet()) {
+            long id = parseId(entry.getKey());
+            long mask = categories(entry.getValue());
+            if(id != 0 && mask != 0)
+                result.put(id, mask);
+        }
+
+        return result;
+    }
+
+    private static TLongSet ids(Collection<String> ids) {
+        TLongSet set = new TLongHashSet();
+        if(ids == null)
+            return set;
+
+        for(String s : ids) {
+            long id = parseId(s);
+            if(id != 0)
+                set.add(id);
+        }
+
+        return set;
+    }
+
+    //Snowflakes are never 0, so we can use it to signal an invalid id.
+    private static long parseId(String id) {
+        if(id == null)
+            return 0;
+
+        try {
+            return Long.parseUnsignedLong(id);
+        } catch(NumberFormatException e) {
+            return 0;
+        }
+    }
+}
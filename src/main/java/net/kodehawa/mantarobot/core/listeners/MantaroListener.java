@@ -48,6 +48,7 @@ import net.kodehawa.mantarobot.core.listeners.entities.CachedMessage;
 import net.kodehawa.mantarobot.core.listeners.events.ShardMonitorEvent;
 import net.kodehawa.mantarobot.core.shard.MantaroShard;
 import net.kodehawa.mantarobot.data.MantaroData;
+import net.kodehawa.mantarobot.db.GlobalAccessIndex;
 import net.kodehawa.mantarobot.db.ManagedDatabase;
 import net.kodehawa.mantarobot.db.entities.DBGuild;
 import net.kodehawa.mantarobot.db.entities.DBUser;
@@ -422,9 +423,8 @@ public class MantaroListener implements EventListener {
         }
 
         try {
-            if(MantaroData.db().getMantaroData().getBlackListedGuilds().contains(event.getGuild().getId())
-                    || MantaroData.db().getMantaroData().getBlackListedUsers().contains(
-                    event.getGuild().getOwner().getUser().getId())) {
+            if(GlobalAccessIndex.isBlacklistedGuild(event.getGuild().getIdLong())
+                    || GlobalAccessIndex.isBlacklistedUser(event.getGuild().getOwner().getUser().getIdLong())) {
                 event.getGuild().leave().queue();
                 return;
             }
@@ -440,9 +440,8 @@ public class MantaroListener implements EventListener {
 
     private void onLeave(GuildLeaveEvent event) {
         try {
-            if(MantaroData.db().getMantaroData().getBlackListedGuilds().contains(event.getGuild().getId())
-                    || MantaroData.db().getMantaroData().getBlackListedUsers().contains(
-                    event.getGuild().getOwner().getUser().getId())) {
+            if(GlobalAccessIndex.isBlacklistedGuild(event.getGuild().getIdLong())
+                    || GlobalAccessIndex.isBlacklistedUser(event.getGuild().getOwner().getUser().getIdLong())) {
                 log.info("Left " + event.getGuild() + " because of a blacklist entry. (O:" + event.getGuild().getOwner() + ")");
                 return;
             }
@@ -33,14 +33,13 @@ import net.kodehawa.mantarobot.commands.currency.profile.Badge;
 import net.kodehawa.mantarobot.commands.custom.EmbedJSON;
 import net.kodehawa.mantarobot.core.listeners.entities.CachedMessage;
 import net.kodehawa.mantarobot.core.listeners.events.ShardMonitorEvent;
-import net.kodehawa.mantarobot.core.listeners.operations.InteractiveOperations;
+import net.kodehawa.mantarobot.core.processor.CommandTracer;
+import net.kodehawa.mantarobot.core.processor.PrefixMatcher;
 import net.kodehawa.mantarobot.core.processor.core.ICommandProcessor;
 import net.kodehawa.mantarobot.core.shard.MantaroShard;
+import net.kodehawa.mantarobot.data.Config;
 import net.kodehawa.mantarobot.data.MantaroData;
-import net.kodehawa.mantarobot.db.entities.DBGuild;
-import net.kodehawa.mantarobot.db.entities.Player;
 import net.kodehawa.mantarobot.db.entities.helpers.GuildData;
-import net.kodehawa.mantarobot.db.entities.helpers.PlayerData;
 import net.kodehawa.mantarobot.utils.SentryHelper;
 import net.kodehawa.mantarobot.utils.Snow64;
 import net.kodehawa.mantarobot.utils.commands.EmoteReference;
@@ -63,6 +62,9 @@ public class CommandListener implements EventListener {
     @Getter
     private static final Cache<String, Optional<CachedMessage>> messageCache = CacheBuilder.newBuilder().concurrencyLevel(10).maximumSize(65000).build();
     private static final RateLimiter experienceRatelimiter = new RateLimiter(TimeUnit.SECONDS, 18);
+    private static final ExperienceAccumulator experienceAccumulator = new ExperienceAccumulator(30, TimeUnit.SECONDS, 5000);
+    private static final Cache<Long, Boolean> busyNotified = CacheBuilder.newBuilder().concurrencyLevel(10).expireAfterWrite(10, TimeUnit.SECONDS).build();
+    private static final Config config = MantaroData.config().get();
     //Commands ran this session.
     private static int commandTotal = 0;
     private final String[] boomQuotes = {
@@ -108,14 +110,32 @@ public class CommandListener implements EventListener {
             //Inserts a cached message into the cache. This only holds the id and the content, and is way lighter than saving the entire jda object.
             messageCache.put(msg.getMessage().getId(), Optional.of(new CachedMessage(msg.getAuthor().getIdLong(), msg.getMessage().getContentDisplay())));
 
+            //Our own response to a command, if there was one.
+            if(msg.getAuthor().getIdLong() == msg.getJDA().getSelfUser().getIdLong())
+                CommandTracer.onResponse(msg.getChannel().getIdLong());
+
             //Ignore myself and bots.
             if(msg.getAuthor().isBot() || msg.getAuthor().equals(msg.getJDA().getSelfUser()))
                 return;
 
-            shard.getCommandPool().execute(() -> onCommand(msg));
+            shard.getCommandScheduler().submit(msg.getGuild().getIdLong(), () -> onCommand(msg), () -> onOverload(msg));
         }
     }
 
+    private void onOverload(GuildMessageReceivedEvent event) {
+        MantaroBot.getInstance().getStatsClient().increment("command_rejected");
+
+        if(config.commandOverloadPolicy != CommandScheduler.OverloadPolicy.REPLY || !PrefixMatcher.startsWithAny(event.getMessage().getContentRaw(), config.prefix))
+            return;
+
+        //Only tell them once in a while, replying to every single message would make it worse.
+        if(busyNotified.getIfPresent(event.getGuild().getIdLong()) != null)
+            return;
+
+        busyNotified.put(event.getGuild().getIdLong(), Boolean.TRUE);
+        event.getChannel().sendMessage(EmoteReference.STOPWATCH + "I'm a little too busy on this server right now, please try again in a few seconds.").queue();
+    }
+
     private void onCommand(GuildMessageReceivedEvent event) {
         try {
             Member self = event.getGuild().getSelfMember();
@@ -125,54 +145,31 @@ public class CommandListener implements EventListener {
             if(commandProcessor.run(event)) {
                 commandTotal++;
             } else {
-                //Only run experience if no command has been executed, avoids weird race conditions when saving player status.
+                //Only run experience if no command has been executed.
                 try {
                     //Only run experience if the user is not rate limited (clears every 30 seconds)
                     if(random.nextInt(15) > 7 && !event.getAuthor().isBot() && experienceRatelimiter.process(event.getAuthor())) {
                         if(event.getMember() == null)
                             return;
 
-                        //Don't run the experience handler on this channel if there's an InteractiveOperation running as there might be issues with
-                        //some nasty race conditions involving player save.
-                        if(InteractiveOperations.get(event.getChannel()) != null)
-                            return;
+                        // ---------- GLOBAL EXPERIENCE CHECK ---------- //
 
-                        Player player = MantaroData.db().getPlayer(event.getAuthor());
-                        PlayerData data = player.getData();
-                        DBGuild dbGuild = MantaroData.db().getGuild(event.getGuild());
-                        GuildData guildData = dbGuild.getData();
+                        //Add a random number between 0 and 4 to the player experience. Gets saved later, along with everyone else's.
+                        long level = experienceAccumulator.add(event.getAuthor().getId(), random.nextInt(5));
 
-                        if(player.isLocked())
-                            return;
+                        //Check if the member is not null, just to be sure it happened in-between.
+                        if(level > 1 && event.getGuild().getMember(event.getAuthor()) != null) {
+                            GuildData guildData = MantaroData.db().getGuild(event.getGuild()).getData();
+                            if(guildData.isEnabledLevelUpMessages()) {
+                                String levelUpChannel = guildData.getLevelUpChannel();
+                                String levelUpMessage = guildData.getLevelUpMessage();
 
-                        // ---------- GLOBAL EXPERIENCE CHECK ---------- //
-
-                        //Set level to 1 if level is zero.
-                        if(player.getLevel() == 0)
-                            player.setLevel(1);
-
-                        //Set player experience to a random number between 1 and 5.
-                        data.setExperience(data.getExperience() + Math.round(random.nextInt(5)));
-
-                        //Apply some black magic.
-                        if(data.getExperience() > (player.getLevel() * Math.log10(player.getLevel()) * 1000) + (50 * player.getLevel() / 2)) {
-                            player.setLevel(player.getLevel() + 1);
-                            //Check if the member is not null, just to be sure it happened in-between.
-                            if(player.getLevel() > 1 && event.getGuild().getMemberById(player.getUserId()) != null) {
-                                if(guildData.isEnabledLevelUpMessages()) {
-                                    String levelUpChannel = guildData.getLevelUpChannel();
-                                    String levelUpMessage = guildData.getLevelUpMessage();
-
-                                    //Player has leveled up!
-                                    if(levelUpMessage != null && levelUpChannel != null) {
-                                        processMessage(String.valueOf(player.getLevel()), levelUpMessage, levelUpChannel, event);
-                                    }
+                                //Player has leveled up!
+                                if(levelUpMessage != null && levelUpChannel != null) {
+                                    processMessage(String.valueOf(level), levelUpMessage, levelUpChannel, event);
                                 }
                             }
                         }
-
-                        //This time, actually remember to save the player so you don't have to restart 102 shards to fix it.
-                        player.saveAsync();
                     }
                 } catch(Exception ignored) { }
             }
@@ -200,7 +197,6 @@ public class CommandListener implements EventListener {
             SentryHelper.captureExceptionContext("Something seems to have broken in the db! Check this out!", e, this.getClass(), "Redis Database");
         } catch(Exception e) {
             String id = Snow64.toSnow64(event.getMessage().getIdLong());
-            Player player = MantaroData.db().getPlayer(event.getAuthor());
             event.getChannel().sendMessage(
                     String.format("%s%s\n(Error ID: `%s`)\n" +
                                     "If you want, join our **support guild** (Link on `~>about`), or check out our GitHub page (/Mantaro/MantaroBot). " +
@@ -208,8 +204,7 @@ public class CommandListener implements EventListener {
                             EmoteReference.ERROR, boomQuotes[rand.nextInt(boomQuotes.length)], id)
             ).queue();
 
-            if(player.getData().addBadgeIfAbsent(Badge.FIRE))
-                player.saveAsync();
+            MantaroData.db().getUpdater().updatePlayer(event.getAuthor().getId(), player -> player.getData().addBadgeIfAbsent(Badge.FIRE));
 
             SentryHelper.captureException(String.format("Unexpected Exception on Command: %s | (Error ID: ``%s``)", event.getMessage().getContentRaw(), id), e, this.getClass());
             log.error("Error happened with id: {} (Error ID: {})", event.getMessage().getContentRaw(), id, e);
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2016-2018 David Alejandro Rubio Escares / Kodehawa
+ *
+ * Mantaro is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * Mantaro is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mantaro.  If not, see http://www.gnu.org/licenses/
+ */
+
+package net.kodehawa.mantarobot.core.listeners.command;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs the commands of a shard on a fixed amount of workers.
+ * <p>
+ * Every guild gets its own bounded queue, and workers take one task from each guild with pending work in turns (round-robin),
+ * so a single spamming guild can only fill up its own queue instead of spawning threads or starving everyone else on the shard.
+ * When a guild queue is full the task is rejected and the supplied overload handler is called instead.
+ */
+@Slf4j
+public class CommandScheduler {
+    private final ConcurrentHashMap<Long, GuildQueue> queues = new ConcurrentHashMap<>();
+    private final LinkedBlockingQueue<GuildQueue> ready = new LinkedBlockingQueue<>();
+    private final int maxQueuedPerGuild;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private final Thread[] workers;
+    private volatile boolean shutdown = false;
+
+    /**
+     * @param workers           How many threads will run commands.
+     * @param maxQueuedPerGuild How many tasks a guild can have waiting before new ones get rejected.
+     * @param threadFactory     The factory used to create the workers.
+     */
+    public CommandScheduler(int workers, int maxQueuedPerGuild, ThreadFactory threadFactory) {
+        if(workers < 1)
+            throw new IllegalArgumentException("Worker count must be at least 1");
+        if(maxQueuedPerGuild < 1)
+            throw new IllegalArgumentException("Guild queue size must be at least 1");
+
+        this.maxQueuedPerGuild = maxQueuedPerGuild;
+        this.workers = new Thread[workers];
+
+        for(int i = 0; i < workers; i++) {
+            Thread t = threadFactory.newThread(this::work);
+            t.setDaemon(true);
+            this.workers[i] = t;
+            t.start();
+        }
+    }
+
+    /**
+     * Queues a task to be ran for the specified guild.
+     *
+     * @param guildId    The guild the task belongs to.
+     * @param task       The task to run.
+     * @param onOverload Ran on the calling thread if the guild queue is full and the task was rejected.
+     * @return Whether the task was queued.
+     */
+    public boolean submit(long guildId, Runnable task, Runnable onOverload) {
+        if(shutdown)
+            throw new IllegalStateException("This scheduler has been shut down");
+
+        GuildQueue queue = queues.computeIfAbsent(guildId, GuildQueue::new);
+        if(queue.size.incrementAndGet() > maxQueuedPerGuild) {
+            queue.size.decrementAndGet();
+            rejected.increment();
+            if(onOverload != null)
+                onOverload.run();
+            return false;
+        }
+
+        queued.incrementAndGet();
+        queue.tasks.offer(task);
+        if(queue.scheduled.compareAndSet(false, true))
+            ready.offer(queue);
+
+        return true;
+    }
+
+    /**
+     * @return How many tasks are waiting to be ran on all guilds.
+     */
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    /**
+     * @param guildId The guild to check.
+     * @return How many tasks are waiting to be ran for the specified guild.
+     */
+    public int getQueueDepth(long guildId) {
+        GuildQueue queue = queues.get(guildId);
+        return queue == null ? 0 : queue.size.get();
+    }
+
+    /**
+     * @return How many tasks have been rejected since this scheduler was created.
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public int getWorkerCount() {
+        return workers.length;
+    }
+
+    public void shutdown() {
+        shutdown = true;
+        for(Thread t : workers) {
+            t.interrupt();
+        }
+    }
+
+    private void work() {
+        while(!shutdown) {
+            GuildQueue queue;
+            try {
+                queue = ready.take();
+            } catch(InterruptedException e) {
+                continue;
+            }
+
+            Runnable task = queue.tasks.poll();
+
+            //Put the guild back at the end of the line before running, so other workers can keep draining it while this one is busy.
+            if(!queue.tasks.isEmpty()) {
+                ready.offer(queue);
+            } else {
+                queue.scheduled.set(false);
+                //Something could've been queued between the check and the flag reset.
+                if(!queue.tasks.isEmpty() && queue.scheduled.compareAndSet(false, true))
+                    ready.offer(queue);
+            }
+
+            if(task == null)
+                continue;
+
+            queue.size.decrementAndGet();
+            queued.decrementAndGet();
+
+            try {
+                task.run();
+            } catch(Throwable t) {
+                log.error("Uncaught exception while running a command task for guild {}", queue.guildId, t);
+            }
+        }
+    }
+
+    public enum OverloadPolicy {
+        //Silently drop the message.
+        DROP,
+        //Tell the guild the bot is too busy to handle the command right now.
+        REPLY
+    }
+
+    private static class GuildQueue {
+        final long guildId;
+        final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        final AtomicInteger size = new AtomicInteger();
+        final AtomicBoolean scheduled = new AtomicBoolean();
+
+        GuildQueue(long guildId) {
+            this.guildId = guildId;
+        }
+    }
+}
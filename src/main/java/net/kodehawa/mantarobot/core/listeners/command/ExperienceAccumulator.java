@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2016-2018 David Alejandro Rubio Escares / Kodehawa
+ *
+ * Mantaro is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * Mantaro is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mantaro.  If not, see http://www.gnu.org/licenses/
+ */
+
+package net.kodehawa.mantarobot.core.listeners.command;
+
+import lombok.extern.slf4j.Slf4j;
+import net.kodehawa.mantarobot.data.MantaroData;
+import net.kodehawa.mantarobot.db.entities.Player;
+import net.kodehawa.mantarobot.utils.Pair;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Adds up the global experience players get from talking, and writes it to the database in batches.
+ * <p>
+ * Every player with pending experience gets an entry holding the experience and level they had when the entry was created (the base),
+ * plus whatever they gained since. Level-ups are computed from base + gained, so they still happen on the message that caused them,
+ * but the database only sees one atomic increment per player every flush, instead of a full player replace per message.
+ * As the increments only touch the experience and level fields, they can't overwrite anything a command did to the same player,
+ * and commands only write the fields they changed (see {@link net.kodehawa.mantarobot.db.EntityUpdater}), so they can't undo a flush either.
+ */
+@Slf4j
+public class ExperienceAccumulator {
+    private final ConcurrentHashMap<String, Entry> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+    private final int maxPending;
+
+    /**
+     * @param flushInterval How often to write the pending experience to the database.
+     * @param unit          The unit of flushInterval.
+     * @param maxPending    How many players can have pending experience before writing early.
+     */
+    public ExperienceAccumulator(long flushInterval, TimeUnit unit, int maxPending) {
+        this.maxPending = maxPending;
+        MantaroData.getExecutor().scheduleAtFixedRate(this::flush, flushInterval, flushInterval, unit);
+        //Not a shutdown hook of its own, the flush has to land before the database gets closed.
+        MantaroData.db().beforeClose(this::flush);
+    }
+
+    /**
+     * Adds experience to a player.
+     *
+     * @param userId     The id of the player.
+     * @param experience How much experience to add.
+     * @return The new level of the player if they leveled up with this, or 0 otherwise.
+     *         Also 0 if the player is locked, in which case nothing is added.
+     */
+    public long add(String userId, long experience) {
+        while(true) {
+            Entry entry = pending.get(userId);
+            if(entry == null) {
+                Player player = MantaroData.db().getPlayer(userId);
+                if(player.isLocked())
+                    return 0;
+
+                entry = new Entry(player.getData().getExperience(), player.getLevel(), player.getLevel() == 0);
+                Entry existing = pending.putIfAbsent(userId, entry);
+                if(existing != null)
+                    entry = existing;
+                else if(pending.size() >= maxPending && flushQueued.compareAndSet(false, true))
+                    MantaroData.queue(this::flush);
+            }
+
+            synchronized(entry) {
+                if(entry.flushed) {
+                    //The flush already took what this entry had, carry on from where it left.
+                    pending.replace(userId, entry, entry.next());
+                    continue;
+                }
+
+                //Set level to 1 if level is zero.
+                if(entry.level() == 0)
+                    entry.levels++;
+
+                entry.experience += experience;
+
+                //Apply some black magic.
+                long level = entry.level();
+                if(entry.experience() > (level * Math.log10(level) * 1000) + (50 * level / 2)) {
+                    entry.levels++;
+                    return entry.level();
+                }
+
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Writes all the pending experience to the database.
+     */
+    public void flush() {
+        flushQueued.set(false);
+        if(pending.isEmpty())
+            return;
+
+        Map<String, Pair<Long, Long>> increments = new HashMap<>();
+        Map<String, Pair<Long, Long>> created = new HashMap<>();
+
+        for(Map.Entry<String, Entry> e : pending.entrySet()) {
+            Entry entry = e.getValue();
+            synchronized(entry) {
+                entry.flushed = true;
+                if(entry.experience != 0 || entry.levels != 0)
+                    (entry.created ? created : increments).put(e.getKey(), new Pair<>(entry.experience, entry.levels));
+            }
+
+            pending.remove(e.getKey(), entry);
+        }
+
+        try {
+            if(!increments.isEmpty())
+                MantaroData.db().addExperience(increments);
+
+            //Players who didn't exist before have nothing to increment, so they go through the updater, which creates them if needed.
+            created.forEach((id, delta) -> MantaroData.db().getUpdater().updatePlayer(id, player -> {
+                player.getData().setExperience(player.getData().getExperience() + delta.getLeft());
+                return player.setLevel(player.getLevel() + delta.getRight());
+            }));
+
+            log.debug("Flushed experience of {} players ({} new)", increments.size() + created.size(), created.size());
+        } catch(Exception e) {
+            log.error("Error while flushing the experience of {} players", increments.size() + created.size(), e);
+        }
+    }
+
+    private static class Entry {
+        final long baseExperience;
+        final long baseLevel;
+        //Whether the player might not exist on the database (never got any experience), and can't just get incremented.
+        final boolean created;
+        long experience;
+        long levels;
+        boolean flushed;
+
+        Entry(long baseExperience, long baseLevel, boolean created) {
+            this.baseExperience = baseExperience;
+            this.baseLevel = baseLevel;
+            this.created = created;
+        }
+
+        long experience() {
+            return baseExperience + experience;
+        }
+
+        long level() {
+            return baseLevel + levels;
+        }
+
+        Entry next() {
+            //If it was created by the flush we're following, it exists now.
+            return new Entry(experience(), level(), false);
+        }
+    }
+}
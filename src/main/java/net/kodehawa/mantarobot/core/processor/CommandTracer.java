@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2016-2018 David Alejandro Rubio Escares / Kodehawa
+ *
+ * Mantaro is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * Mantaro is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mantaro.  If not, see http://www.gnu.org/licenses/
+ */
+
+package net.kodehawa.mantarobot.core.processor;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.timgroup.statsd.StatsDClient;
+import net.kodehawa.mantarobot.utils.stats.LatencyRecorder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records how long every stage of a command invocation takes, keyed by command name.
+ * <p>
+ * A trace is started by the command processor for every message ({@link #begin()}), stages get marked on the same thread as they finish and
+ * everything is recorded once the command has ran ({@link #finish(String)}). The time between the message being received and the first
+ * response showing up on the channel is recorded when the bot receives its own message back from Discord ({@link #expectResponse(String, long, long)}).
+ * Messages don't say what they're responding to, so when more than one command is waiting on the same channel nothing gets recorded.
+ */
+public class CommandTracer {
+    private static final Map<String, LatencyRecorder[]> RECORDERS = new ConcurrentHashMap<>();
+    //One slot per stage, plus the time the trace started on the last one.
+    private static final ThreadLocal<long[]> CURRENT = ThreadLocal.withInitial(() -> new long[Stage.values().length + 1]);
+    //Nothing responds to some commands, so don't keep them waiting forever.
+    private static final long RESPONSE_TIMEOUT = TimeUnit.SECONDS.toNanos(30);
+    //Channel -> commands waiting for a response. Only ever touched through asMap().compute*, which is atomic per channel.
+    private static final Cache<Long, List<PendingResponse>> PENDING_RESPONSES = CacheBuilder.newBuilder()
+            .concurrencyLevel(10)
+            .expireAfterWrite(RESPONSE_TIMEOUT, TimeUnit.NANOSECONDS)
+            .build();
+    private static final AtomicLong TOKENS = new AtomicLong();
+
+    /**
+     * Starts tracing on the current thread, forgetting everything marked by the last trace.
+     */
+    public static void begin() {
+        long[] current = CURRENT.get();
+        Arrays.fill(current, -1);
+        current[current.length - 1] = System.nanoTime();
+    }
+
+    /**
+     * Marks a stage of the current trace as finished.
+     *
+     * @param stage The stage.
+     * @param nanos How long it took, in nanoseconds.
+     */
+    public static void mark(Stage stage, long nanos) {
+        CURRENT.get()[stage.ordinal()] = nanos;
+    }
+
+    /**
+     * Starts waiting for the first response of the command of the current trace. Has to be called before the command body runs,
+     * as the response can make it back before the body returns.
+     *
+     * @param command   The name of the command.
+     * @param channelId The channel the command was ran on.
+     * @param messageId The message that triggered the command.
+     */
+    public static void expectResponse(String command, long channelId, long messageId) {
+        long[] current = CURRENT.get();
+        PendingResponse response = new PendingResponse(messageId, TOKENS.incrementAndGet(), recorders(command), current[current.length - 1]);
+
+        PENDING_RESPONSES.asMap().compute(channelId, (id, pending) -> {
+            List<PendingResponse> list = pending == null ? new ArrayList<>(1) : pending;
+            list.removeIf(p -> p.isExpired(response.start));
+            list.add(response);
+            return list;
+        });
+    }
+
+    /**
+     * Records every stage marked on the current trace under the specified command.
+     *
+     * @param command The name of the command.
+     */
+    public static void finish(String command) {
+        long[] current = CURRENT.get();
+        LatencyRecorder[] recorders = recorders(command);
+
+        for(int i = 0; i < recorders.length; i++) {
+            if(current[i] >= 0)
+                recorders[i].record(current[i]);
+        }
+    }
+
+    /**
+     * Called when the bot sends a message, records the first response latency if a command was waiting for it.
+     *
+     * @param channelId The channel the message was sent to.
+     */
+    public static void onResponse(long channelId) {
+        long now = System.nanoTime();
+        PENDING_RESPONSES.asMap().computeIfPresent(channelId, (id, pending) -> {
+            pending.removeIf(p -> p.isExpired(now));
+            //With more than one waiting there's no telling which one this answers, so skip the sample instead of guessing.
+            //Either way all of them got a response now.
+            if(pending.size() == 1) {
+                PendingResponse response = pending.get(0);
+                response.recorders[Stage.FIRST_RESPONSE.ordinal()].record(now - response.start);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * @param command The name of the command.
+     * @return The recorders of every stage of the command, indexed by {@link Stage#ordinal()}, or null if the command was never traced.
+     */
+    public static LatencyRecorder[] get(String command) {
+        return RECORDERS.get(command);
+    }
+
+    /**
+     * @return The name of every command traced since startup.
+     */
+    public static Set<String> getCommands() {
+        return Collections.unmodifiableSet(RECORDERS.keySet());
+    }
+
+    /**
+     * Sends the percentiles of every stage of every command to StatsD.
+     *
+     * @param client The client to send the values with.
+     */
+    public static void report(StatsDClient client) {
+        RECORDERS.forEach((command, recorders) -> {
+            for(Stage stage : Stage.values()) {
+                recorders[stage.ordinal()].report(client, "command_latency", "name:" + command, "stage:" + stage.getName());
+            }
+        });
+    }
+
+    private static LatencyRecorder[] recorders(String command) {
+        return RECORDERS.computeIfAbsent(command, ignored -> {
+            LatencyRecorder[] recorders = new LatencyRecorder[Stage.values().length];
+            for(int i = 0; i < recorders.length; i++) {
+                recorders[i] = new LatencyRecorder();
+            }
+            return recorders;
+        });
+    }
+
+    public enum Stage {
+        PREFIX_MATCH("prefix"), GUILD_FETCH("guild"), POLICY_CHECK("policy"), COMMAND_BODY("body"), FIRST_RESPONSE("response");
+
+        private final String name;
+
+        Stage(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    //A trace is the triggering message plus a token, as the same message can trigger more than one trace (edits, retries).
+    private static class PendingResponse {
+        final long messageId;
+        final long token;
+        final LatencyRecorder[] recorders;
+        final long start;
+
+        PendingResponse(long messageId, long token, LatencyRecorder[] recorders, long start) {
+            this.messageId = messageId;
+            this.token = token;
+            this.recorders = recorders;
+            this.start = start;
+        }
+
+        boolean isExpired(long now) {
+            return now - start > RESPONSE_TIMEOUT;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) return true;
+            if(!(o instanceof PendingResponse)) return false;
+            PendingResponse other = (PendingResponse) o;
+            return messageId == other.messageId && token == other.token;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(messageId) * 31 + Long.hashCode(token);
+        }
+    }
+}
@@ -16,6 +16,8 @@
 
 package net.kodehawa.mantarobot.core.processor;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import lombok.extern.slf4j.Slf4j;
 import net.dv8tion.jda.core.Permission;
 import net.dv8tion.jda.core.events.message.guild.GuildMessageReceivedEvent;
@@ -23,9 +25,12 @@ import net.kodehawa.mantarobot.MantaroBot;
 import net.kodehawa.mantarobot.core.CommandRegistry;
 import net.kodehawa.mantarobot.core.processor.core.ICommandProcessor;
 import net.kodehawa.mantarobot.data.MantaroData;
+import net.kodehawa.mantarobot.db.ManagedDatabase;
+import net.kodehawa.mantarobot.db.entities.DBGuild;
 import net.kodehawa.mantarobot.utils.commands.EmoteReference;
 
-import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 import static net.kodehawa.mantarobot.utils.StringUtils.splitArgs;
 
@@ -33,36 +38,68 @@ import static net.kodehawa.mantarobot.utils.StringUtils.splitArgs;
 public class DefaultCommandProcessor implements ICommandProcessor {
 
     public static final CommandRegistry REGISTRY = new CommandRegistry();
+    //Mantaro prefixes.
+    private static final PrefixMatcher PREFIXES = new PrefixMatcher(MantaroData.config().get().prefix);
+    //Guild-specific prefixes. Empty means the guild has no custom prefix set.
+    private static final Cache<String, Optional<String>> CUSTOM_PREFIXES = CacheBuilder.newBuilder()
+            .concurrencyLevel(10)
+            .maximumSize(100000)
+            .expireAfterWrite(10, TimeUnit.MINUTES)
+            .build();
+
+    /**
+     * Makes every save or deletion of a {@link DBGuild} on the specified database drop what's cached about the guild on the command path.
+     *
+     * @param db The database.
+     */
+    public static void register(ManagedDatabase db) {
+        db.addSaveListener(DBGuild.class, guild -> invalidateGuild(guild.getId()));
+        db.addDeleteListener(DBGuild.class, guild -> invalidateGuild(guild.getId()));
+    }
+
+    /**
+     * Drops everything cached about a guild on the command path. Called every time a {@link DBGuild} gets saved or deleted.
+     *
+     * @param guildId The id of the guild.
+     */
+    public static void invalidateGuild(String guildId) {
+        CUSTOM_PREFIXES.invalidate(guildId);
+        REGISTRY.invalidatePolicy(guildId);
+    }
+
+    private static String getCustomPrefix(String guildId) {
+        Optional<String> prefix = CUSTOM_PREFIXES.getIfPresent(guildId);
+        if(prefix == null) {
+            prefix = Optional.ofNullable(MantaroData.db().getGuild(guildId).getData().getGuildCustomPrefix());
+            CUSTOM_PREFIXES.put(guildId, prefix);
+        }
+
+        return prefix.orElse(null);
+    }
 
     @Override
     public boolean run(GuildMessageReceivedEvent event) {
         //When did we start processing this command?...
         long start = System.currentTimeMillis();
+        CommandTracer.begin();
+        long prefixStart = System.nanoTime();
         //The command executed, in raw form.
         String rawCmd = event.getMessage().getContentRaw();
-        //Mantaro prefixes.
-        String[] prefix = MantaroData.config().get().prefix;
-        //Guild-specific prefix.
-        String customPrefix = MantaroData.db().getGuild(event.getGuild()).getData().getGuildCustomPrefix();
-        //What prefix did this person use.
-        String usedPrefix = null;
-        //Lower-case raw cmd check, only used for prefix checking.
-        String lowerRawCmd = rawCmd.toLowerCase();
-
-        for(String s : prefix) {
-            if(lowerRawCmd.startsWith(s)) usedPrefix = s;
-        }
+        //What prefix did this person use, if it was a global one.
+        int prefixLength = PREFIXES.match(rawCmd);
 
-        if(usedPrefix != null && lowerRawCmd.startsWith(usedPrefix.toLowerCase())) {
-            rawCmd = rawCmd.substring(usedPrefix.length());
-        }
-        else if(customPrefix != null && lowerRawCmd.startsWith(customPrefix.toLowerCase())) {
-            rawCmd = rawCmd.substring(customPrefix.length());
-        }
-        else if(usedPrefix == null) {
-            return false;
+        if(prefixLength == -1) {
+            //Guild-specific prefix, only looked up (and cached) if none of the global ones match.
+            String customPrefix = getCustomPrefix(event.getGuild().getId());
+            if(!PrefixMatcher.startsWithIgnoreCase(rawCmd, customPrefix))
+                return false;
+
+            prefixLength = customPrefix.length();
         }
 
+        rawCmd = rawCmd.substring(prefixLength);
+        CommandTracer.mark(CommandTracer.Stage.PREFIX_MATCH, System.nanoTime() - prefixStart);
+
         String[] parts = splitArgs(rawCmd, 2);
         String cmdName = parts[0], content = parts[1];
 
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2016-2018 David Alejandro Rubio Escares / Kodehawa
+ *
+ * Mantaro is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * Mantaro is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mantaro.  If not, see http://www.gnu.org/licenses/
+ */
+
+package net.kodehawa.mantarobot.core.processor;
+
+import java.util.Arrays;
+
+/**
+ * Small case-insensitive char trie over a fixed set of prefixes.
+ * Matching only walks the first few characters of the message, without copying or lower-casing it.
+ */
+public class PrefixMatcher {
+    private final Node root = new Node();
+
+    public PrefixMatcher(String... prefixes) {
+        for(String prefix : prefixes) {
+            if(prefix == null || prefix.isEmpty())
+                continue;
+
+            Node node = root;
+            for(int i = 0; i < prefix.length(); i++) {
+                node = node.getOrAdd(Character.toLowerCase(prefix.charAt(i)));
+            }
+
+            node.terminal = true;
+        }
+    }
+
+    /**
+     * Checks if a String starts with the specified prefix, ignoring case, without copying it.
+     *
+     * @param s      The String to check.
+     * @param prefix The prefix to look for, can be null.
+     * @return Whether the String starts with the prefix.
+     */
+    public static boolean startsWithIgnoreCase(String s, String prefix) {
+        return prefix != null && !prefix.isEmpty() && s.regionMatches(true, 0, prefix, 0, prefix.length());
+    }
+
+    /**
+     * Checks if a String starts with any of the specified prefixes, ignoring case, without copying it.
+     *
+     * @param s        The String to check.
+     * @param prefixes The prefixes to look for.
+     * @return Whether the String starts with any of the prefixes.
+     */
+    public static boolean startsWithAny(String s, String... prefixes) {
+        for(String prefix : prefixes) {
+            if(startsWithIgnoreCase(s, prefix))
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Finds the longest prefix the specified String starts with.
+     *
+     * @param s The String to check.
+     * @return The length of the matched prefix, or -1 if none of the prefixes match.
+     */
+    public int match(String s) {
+        Node node = root;
+        int matched = -1;
+
+        for(int i = 0; i < s.length(); i++) {
+            node = node.get(Character.toLowerCase(s.charAt(i)));
+            if(node == null)
+                break;
+
+            if(node.terminal)
+                matched = i + 1;
+        }
+
+        return matched;
+    }
+
+    private static class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private boolean terminal;
+
+        Node get(char c) {
+            for(int i = 0; i < keys.length; i++) {
+                if(keys[i] == c)
+                    return children[i];
+            }
+
+            return null;
+        }
+
+        Node getOrAdd(char c) {
+            Node node = get(c);
+            if(node != null)
+                return node;
+
+            node = new Node();
+            keys = Arrays.copyOf(keys, keys.length + 1);
+            children = Arrays.copyOf(children, children.length + 1);
+            keys[keys.length - 1] = c;
+            children[children.length - 1] = node;
+            return node;
+        }
+    }
+}
@@ -34,6 +34,7 @@ import net.kodehawa.mantarobot.commands.utils.birthday.BirthdayTask;
 import net.kodehawa.mantarobot.core.MantaroEventManager;
 import net.kodehawa.mantarobot.core.listeners.MantaroListener;
 import net.kodehawa.mantarobot.core.listeners.command.CommandListener;
+import net.kodehawa.mantarobot.core.listeners.command.CommandScheduler;
 import net.kodehawa.mantarobot.core.listeners.operations.InteractiveOperations;
 import net.kodehawa.mantarobot.core.listeners.operations.ReactionOperations;
 import net.kodehawa.mantarobot.core.processor.core.ICommandProcessor;
@@ -84,7 +85,7 @@ public class MantaroShard implements JDA {
     @Getter
     private final ExecutorService threadPool;
     @Getter
-    private final ExecutorService commandPool;
+    private final CommandScheduler commandScheduler;
     @Delegate
     private JDA jda;
 
@@ -115,7 +116,7 @@ public class MantaroShard implements JDA {
                         .build();
 
         threadPool = Executors.newCachedThreadPool(normalTPNamedFactory);
-        commandPool = Executors.newCachedThreadPool(commandTPNamedFactory);
+        commandScheduler = new CommandScheduler(config.commandWorkers, config.commandQueueSize, commandTPNamedFactory);
 
         log = LoggerFactory.getLogger("MantaroShard-" + shardId);
         mantaroListener = new MantaroListener(shardId, this);
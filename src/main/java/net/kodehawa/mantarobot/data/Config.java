@@ -19,6 +19,9 @@ package net.kodehawa.mantarobot.data;
 import lombok.Data;
 import net.dv8tion.jda.core.entities.Member;
 import net.dv8tion.jda.core.entities.User;
+import net.kodehawa.mantarobot.core.listeners.command.CommandScheduler;
+import net.kodehawa.mantarobot.db.redis.MigratingCodec;
+import net.kodehawa.mantarobot.db.storage.Storage;
 import org.redisson.api.LocalCachedMapOptions;
 
 import java.util.ArrayList;
@@ -35,20 +38,34 @@ public class Config {
     public String carbonToken;
     public String cleverbotKey;
     public String cleverbotUser;
+    public CommandScheduler.OverloadPolicy commandOverloadPolicy = CommandScheduler.OverloadPolicy.REPLY;
+    public int commandQueueSize = 15; //per guild
+    public int commandWorkers = 16; //per shard
     public int connectionWatcherPort = 26000;
     public String consoleChannel = "266231083341840385";
     public String crossBotHost;
     public int crossBotPort;
     public boolean crossBotServer = false;
+    public Storage.Backend dbBackend = Storage.Backend.RETHINK; //where entities are stored
     public String dbDb = "mantaro";
+    public String dbFile = "mantaro.mv.db"; //only used by the FILE backend
+    public long dbHealthCheckInterval = 30; //seconds, pings idle connections
     public String dbHost = "localhost";
+    public boolean dbLeaderboardIndex = true; //keeps the player leaderboards in memory
+    public long dbLeaderboardIndexRebuildInterval = 30; //minutes, reloads the leaderboard index to pick up writes from other nodes. 0 to disable
     public String dbPassword;
+    public long dbPoolAcquireTimeoutMs = 5000; //how long to wait for a free connection
+    public int dbPoolSize = 4;
     public int dbPort = 28015;
+    public int dbStreamBatchSize = 500; //rows per batch on bulk reads
+    public long dbTimeout = 20; //seconds, rethink driver timeout
     public String dbUser;
     public String dbotsToken;
     public String dbotsorgToken;
     public boolean isBeta = false;
     public boolean isPremiumBot = false;
+    public long leaderboardRefreshInterval = 300; //seconds between global leaderboard snapshots
+    public LocalCacheInfo localCache = new LocalCacheInfo(); //only used when redis is disabled
     public int maxJdaReconnectDelay = 3; //3 seconds
     public String osuApiKey;
     public List<String> owners = new ArrayList<>();
@@ -71,6 +88,8 @@ public class Config {
     public String weatherAppId;
     public String webhookUrl;
     public String weebapiKey;
+    public int writeBehindBatchSize = 500; //max objects per insert
+    public long writeBehindInterval = 50; //flush pending saves every 50ms
     public String apiTwoUrl = "http://127.0.0.1:5874";
     public boolean needApi = true;
 
@@ -86,11 +105,21 @@ public class Config {
         return owners.contains(id);
     }
 
+    public static class LocalCacheInfo {
+        public boolean enabled = true;
+        public int maxSize = 10000; //per entity type
+        public long ttlMs = 180000;
+    }
+
     public static class RedisInfo {
+        public MigratingCodec.Format codec = MigratingCodec.Format.JSON; //SMILE is smaller, both are always readable
         public CacheInfo customCommands = new CacheInfo();
         public boolean enabled = true;
         public CacheInfo guilds = new CacheInfo();
         public String host = "localhost";
+        public long loadLockLeaseMs = 5000;
+        public long loadLockWaitMs = 1000;
+        public boolean loadLocks = false; //also dedupe cache misses across nodes
         public CacheInfo players = new CacheInfo();
         public int port = 6379;
         public CacheInfo premiumKeys = new CacheInfo();
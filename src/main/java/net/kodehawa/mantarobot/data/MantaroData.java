@@ -17,17 +17,26 @@
 package net.kodehawa.mantarobot.data;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.rethinkdb.net.Connection;
 import lombok.extern.slf4j.Slf4j;
+import net.kodehawa.mantarobot.core.processor.DefaultCommandProcessor;
+import net.kodehawa.mantarobot.db.CachingManagedDatabase;
+import net.kodehawa.mantarobot.db.ConnectionPool;
+import net.kodehawa.mantarobot.db.GlobalAccessIndex;
+import net.kodehawa.mantarobot.db.LocalLeaderboards;
 import net.kodehawa.mantarobot.db.ManagedDatabase;
+import net.kodehawa.mantarobot.db.redis.MigratingCodec;
 import net.kodehawa.mantarobot.db.redis.RedisCachedDatabase;
+import net.kodehawa.mantarobot.db.storage.FileStorage;
+import net.kodehawa.mantarobot.db.storage.IndexedStorage;
+import net.kodehawa.mantarobot.db.storage.MeteredStorage;
+import net.kodehawa.mantarobot.db.storage.RethinkStorage;
+import net.kodehawa.mantarobot.db.storage.Storage;
 import net.kodehawa.mantarobot.utils.data.GsonDataManager;
 import org.redisson.Redisson;
 import org.redisson.api.LocalCachedMapOptions;
 import org.redisson.api.RMap;
 import org.redisson.api.RedissonClient;
 import org.redisson.client.codec.Codec;
-import org.redisson.codec.JsonJacksonCodec;
 
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executors;
@@ -39,27 +48,41 @@ import static com.rethinkdb.RethinkDB.r;
 public class MantaroData {
     private static final ScheduledExecutorService exec = Executors.newSingleThreadScheduledExecutor();
     private static GsonDataManager<Config> config;
-    private static Connection conn;
-    private static ManagedDatabase db;
+    //Volatile so the double checked locking below never hands out a half built instance.
+    private static volatile Storage storage;
+    private static volatile ManagedDatabase db;
     private static ObjectMapper mapper = new ObjectMapper();
-    private static RedissonClient redisson;
-    private static Codec redissonCodec = new JsonJacksonCodec(mapper);
+    private static volatile RedissonClient redisson;
+    private static Codec redissonCodec;
 
     public static GsonDataManager<Config> config() {
         if(config == null) config = new GsonDataManager<>(Config.class, "config.json", Config::new);
         return config;
     }
 
-    public static Connection conn() {
+    public static Storage storage() {
         Config c = config().get();
-        if(conn == null) {
+        if(storage == null) {
             synchronized(MantaroData.class) {
-                if(conn != null) return conn;
-                conn = r.connection().hostname(c.dbHost).port(c.dbPort).db(c.dbDb).user(c.dbUser, c.dbPassword).connect();
-                log.info("Established first database connection to {}:{} ({})", c.dbHost, c.dbPort, c.dbUser);
+                if(storage != null) return storage;
+                Storage backend;
+                if(c.dbBackend == Storage.Backend.FILE) {
+                    backend = new FileStorage(c.dbFile);
+                } else {
+                    ConnectionPool pool = new ConnectionPool(
+                            () -> r.connection().hostname(c.dbHost).port(c.dbPort).db(c.dbDb).user(c.dbUser, c.dbPassword).timeout(c.dbTimeout).connect(),
+                            c.dbPoolSize, c.dbPoolAcquireTimeoutMs, c.dbHealthCheckInterval
+                    );
+                    log.info("Established {} database connections to {}:{} ({})", c.dbPoolSize, c.dbHost, c.dbPort, c.dbUser);
+                    backend = new RethinkStorage(pool, c.dbStreamBatchSize);
+                }
+
+                if(c.dbLeaderboardIndex)
+                    backend = new IndexedStorage(backend, c.dbLeaderboardIndexRebuildInterval);
+                storage = new MeteredStorage(backend);
             }
         }
-        return conn;
+        return storage;
     }
 
     public static RedissonClient redisson() {
@@ -68,7 +91,10 @@ public class MantaroData {
                 if(redisson != null) return redisson;
                 Config.RedisInfo i = config().get().redis;
                 if(i.enabled) {
+                    //Reads both formats, so the codec can be switched without flushing redis.
+                    redissonCodec = new MigratingCodec(mapper, i.codec);
                     org.redisson.config.Config cfg = new org.redisson.config.Config();
+                    cfg.setCodec(redissonCodec);
                     cfg.useSingleServer().setAddress("redis://" + i.host + ":" + i.port);
                     redisson = Redisson.create(cfg);
                     log.info("Established redis connection to {}:{}", i.host, i.port);
@@ -90,20 +116,39 @@ public class MantaroData {
 
     public static ManagedDatabase db() {
         if(db == null) {
-            Config.RedisInfo i = config().get().redis;
-            if(i.enabled) {
-                RedissonClient client = redisson();
-
-                db = new RedisCachedDatabase(conn(),
-                        map(client, "custom-commands", i.customCommands),
-                        map(client, "guilds", i.guilds),
-                        map(client, "players", i.players),
-                        map(client, "users", i.users),
-                        map(client, "premium-keys", i.premiumKeys),
-                        client.getBucket("mantaro")
-                );
-            } else {
-                db = new ManagedDatabase(conn());
+            //Only one of these can exist, each one has its own write-behind queue and entity locks.
+            synchronized(MantaroData.class) {
+                if(db != null) return db;
+                Config.RedisInfo i = config().get().redis;
+                ManagedDatabase database;
+                if(i.enabled) {
+                    RedissonClient client = redisson();
+
+                    database = new RedisCachedDatabase(storage(),
+                            map(client, "custom-commands", i.customCommands),
+                            map(client, "guilds", i.guilds),
+                            map(client, "players", i.players),
+                            map(client, "users", i.users),
+                            map(client, "premium-keys", i.premiumKeys),
+                            client.getBucket("mantaro"),
+                            client.getTopic("mantaro-updates"),
+                            i.loadLocks ? client : null,
+                            i.loadLockWaitMs,
+                            i.loadLockLeaseMs
+                    );
+                } else if(config().get().localCache.enabled) {
+                    database = new CachingManagedDatabase(storage(), config().get().localCache);
+                } else {
+                    database = new ManagedDatabase(storage());
+                }
+
+                //Before anyone gets to query without them.
+                database.ensureIndexes();
+                //Same, nothing should be saved before whatever caches things derived from the entities hears about it.
+                DefaultCommandProcessor.register(database);
+                GlobalAccessIndex.register(database);
+                LocalLeaderboards.register(database);
+                db = database;
             }
         }
         return db;
@@ -131,6 +176,6 @@ public class MantaroData {
                 .cacheSize(cacheInfo.maxSize)
                 .evictionPolicy(cacheInfo.evictionPolicy)
                 .invalidationPolicy(cacheInfo.invalidationPolicy);
-        return client.getLocalCachedMap(key, options);
+        return client.getLocalCachedMap(key, redissonCodec, options);
     }
 }
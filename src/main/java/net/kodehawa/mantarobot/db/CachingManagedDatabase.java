@@ -0,0 +1,323 @@
+/*
+ * Copyright (C) 2016-2018 David Alejandro Rubio Escares / Kodehawa
+ *
+ * Mantaro is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * Mantaro is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mantaro.  If not, see http://www.gnu.org/licenses/
+ */
+
+package net.kodehawa.mantarobot.db;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.timgroup.statsd.StatsDClient;
+import lombok.extern.slf4j.Slf4j;
+import net.kodehawa.mantarobot.ExtraRuntimeOptions;
+import net.kodehawa.mantarobot.data.Config;
+import net.kodehawa.mantarobot.db.entities.*;
+import net.kodehawa.mantarobot.db.storage.Storage;
+import net.kodehawa.mantarobot.utils.Pair;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * {@link ManagedDatabase} keeping a bounded in-heap cache of every entity type, used when redis is disabled.
+ * <p>
+ * Entries are evicted by size and TTL, and replaced whenever they're saved or deleted through this database.
+ * Unlike redis, the cached objects are shared: everyone asking for the same player gets the same instance until it's evicted.
+ * As nothing else updates the cache, this is only meant for a single node.
+ */
+@Slf4j
+public class CachingManagedDatabase extends ManagedDatabase {
+    private static final String MANTARO_KEY = "mantaro";
+
+    //Custom commands and premium keys can be missing, and Guava caches can't hold nulls.
+    private final Cache<String, Optional<CustomCommand>> customCommands;
+    private final Cache<String, DBGuild> guilds;
+    private final Cache<String, MantaroObj> mantaro;
+    private final Cache<String, Player> players;
+    private final Cache<String, Optional<PremiumKey>> premiumKeys;
+    private final Cache<String, DBUser> users;
+
+    public CachingManagedDatabase(@Nonnull Storage storage, @Nonnull Config.LocalCacheInfo cacheInfo) {
+        super(storage);
+        this.customCommands = cache(cacheInfo);
+        this.guilds = cache(cacheInfo);
+        this.mantaro = cache(cacheInfo);
+        this.players = cache(cacheInfo);
+        this.premiumKeys = cache(cacheInfo);
+        this.users = cache(cacheInfo);
+    }
+
+    private static <V> Cache<String, V> cache(Config.LocalCacheInfo cacheInfo) {
+        return CacheBuilder.newBuilder()
+                .concurrencyLevel(10)
+                .maximumSize(cacheInfo.maxSize)
+                .expireAfterWrite(cacheInfo.ttlMs, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+    }
+
+    private static <V> V get(String entity, Cache<String, V> cache, String key, Callable<V> loader) {
+        long start = System.nanoTime();
+        boolean[] loaded = {false};
+        try {
+            return cache.get(key, () -> {
+                loaded[0] = true;
+                return loader.call();
+            });
+        } catch(ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            DatabaseMetrics.recordLookup(entity, !loaded[0], System.nanoTime() - start);
+        }
+    }
+
+    //Everything missing gets loaded with a single call to the loader.
+    private static <V> Map<String, V> getAll(String entity, Cache<String, V> cache, Collection<String> keys, Function<Collection<String>, Map<String, V>> loader) {
+        long start = System.nanoTime();
+        Map<String, V> cached = cache.getAllPresent(keys);
+        Map<String, V> result = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        for(String key : keys) {
+            V value = cached.get(key);
+            if(value != null)
+                result.put(key, value);
+            else
+                missing.add(key);
+        }
+
+        DatabaseMetrics.count(DatabaseMetrics.Layer.CACHE, entity, DatabaseMetrics.Operation.HIT, result.size());
+        DatabaseMetrics.count(DatabaseMetrics.Layer.CACHE, entity, DatabaseMetrics.Operation.MISS, missing.size());
+        if(!missing.isEmpty()) {
+            Map<String, V> loaded = loader.apply(missing);
+            cache.putAll(loaded);
+            result.putAll(loaded);
+        }
+
+        DatabaseMetrics.record(DatabaseMetrics.Layer.CACHE, entity, DatabaseMetrics.Operation.BULK, System.nanoTime() - start);
+        return result;
+    }
+
+    private static void log(String message, Object... fmtArgs) {
+        if(ExtraRuntimeOptions.LOG_CACHE_ACCESS) {
+            log.info(message, fmtArgs);
+        }
+    }
+
+    @Override
+    @Nullable
+    @CheckReturnValue
+    public CustomCommand getCustomCommand(@Nonnull String guildId, @Nonnull String name) {
+        log("Getting custom command {}:{} from local cache", guildId, name);
+        return get(CustomCommand.DB_TABLE, customCommands, guildId + ":" + name, () -> Optional.ofNullable(super.getCustomCommand(guildId, name))).orElse(null);
+    }
+
+    @Override
+    @Nonnull
+    @CheckReturnValue
+    public DBGuild getGuild(@Nonnull String guildId) {
+        log("Getting guild {} from local cache", guildId);
+        return get(DBGuild.DB_TABLE, guilds, guildId, () -> super.getGuild(guildId));
+    }
+
+    @Override
+    @Nonnull
+    @CheckReturnValue
+    public Map<String, DBGuild> getGuilds(@Nonnull Collection<String> guildIds) {
+        log("Getting {} guilds from local cache", guildIds.size());
+        return getAll(DBGuild.DB_TABLE, guilds, guildIds, super::getGuilds);
+    }
+
+    @Override
+    @Nonnull
+    @CheckReturnValue
+    public MantaroObj getMantaroData() {
+        log("Getting MantaroObj from local cache");
+        return get(MantaroObj.DB_TABLE, mantaro, MANTARO_KEY, super::getMantaroData);
+    }
+
+    @Override
+    @Nonnull
+    @CheckReturnValue
+    public Player getPlayer(@Nonnull String userId) {
+        log("Getting player {} from local cache", userId);
+        return get(Player.DB_TABLE, players, userId, () -> super.getPlayer(userId));
+    }
+
+    @Override
+    @Nonnull
+    @CheckReturnValue
+    public Map<String, Player> getPlayers(@Nonnull Collection<String> userIds) {
+        log("Getting {} players from local cache", userIds.size());
+        return getAll(Player.DB_TABLE, players, userIds, super::getPlayers);
+    }
+
+    @Override
+    @Nullable
+    @CheckReturnValue
+    public PremiumKey getPremiumKey(@Nullable String id) {
+        log("Getting premium key {} from local cache", id);
+        if(id == null)
+            return null;
+
+        return get(PremiumKey.DB_TABLE, premiumKeys, id, () -> Optional.ofNullable(super.getPremiumKey(id))).orElse(null);
+    }
+
+    @Override
+    @Nonnull
+    @CheckReturnValue
+    public DBUser getUser(@Nonnull String userId) {
+        log("Getting user {} from local cache", userId);
+        return get(DBUser.DB_TABLE, users, userId, () -> super.getUser(userId));
+    }
+
+    @Override
+    @Nonnull
+    @CheckReturnValue
+    public Map<String, DBUser> getUsers(@Nonnull Collection<String> userIds) {
+        log("Getting {} users from local cache", userIds.size());
+        return getAll(DBUser.DB_TABLE, users, userIds, super::getUsers);
+    }
+
+    @Override
+    public void addExperience(@Nonnull Map<String, Pair<Long, Long>> increments) {
+        super.addExperience(increments);
+        //The increment happens on the storage, so the cached copies are stale now.
+        players.invalidateAll(increments.keySet());
+    }
+
+    @Override
+    public void save(@Nonnull ManagedObject object) {
+        if(object instanceof Player) {
+            super.save(object);
+            uncache(object);
+            return;
+        }
+
+        cache(object);
+        super.save(object);
+    }
+
+    @Override
+    public void saveAsync(@Nonnull ManagedObject object) {
+        //The cache is updated right away, only the storage write is deferred.
+        cache(object);
+        super.saveAsync(object);
+    }
+
+    @Override
+    public void saveChanges(@Nonnull ManagedObject object) {
+        //Experience flushes write players straight to the storage, so a player loaded before one would cache the old level and experience again.
+        //Those get loaded back from the storage instead.
+        if(object instanceof Player) {
+            super.saveChanges(object);
+            uncache(object);
+            return;
+        }
+
+        cache(object);
+        super.saveChanges(object);
+    }
+
+    @Override
+    public void delete(@Nonnull ManagedObject object) {
+        uncache(object);
+        super.delete(object);
+    }
+
+    @Override
+    public void deleteAsync(@Nonnull ManagedObject object) {
+        uncache(object);
+        super.deleteAsync(object);
+    }
+
+    /**
+     * @return The stats of every cache, by entity type.
+     */
+    public Map<String, CacheStats> getCacheStats() {
+        Map<String, CacheStats> stats = new LinkedHashMap<>();
+        stats.put("custom-commands", customCommands.stats());
+        stats.put("guilds", guilds.stats());
+        stats.put("mantaro", mantaro.stats());
+        stats.put("players", players.stats());
+        stats.put("premium-keys", premiumKeys.stats());
+        stats.put("users", users.stats());
+        return stats;
+    }
+
+    @Override
+    public void report(@Nonnull StatsDClient client) {
+        super.report(client);
+        getCacheStats().forEach((type, stats) -> {
+            client.recordGaugeValue("db_local_cache.hit_ratio", stats.hitRate(), "type:" + type);
+            client.recordGaugeValue("db_local_cache.hits", stats.hitCount(), "type:" + type);
+            client.recordGaugeValue("db_local_cache.misses", stats.missCount(), "type:" + type);
+            client.recordGaugeValue("db_local_cache.evictions", stats.evictionCount(), "type:" + type);
+        });
+    }
+
+    private void cache(ManagedObject object) {
+        //Local experience is always read from the storage (see ManagedDatabase#getLocalExperience), so it's never cached.
+        if(object instanceof LocalExperience) return;
+        DatabaseMetrics.count(DatabaseMetrics.Layer.CACHE, object.getTableName(), DatabaseMetrics.Operation.SAVE, 1);
+        log("Caching {} {}", object.getClass().getSimpleName(), object.getDatabaseId());
+        if(object instanceof CustomCommand) {
+            customCommands.put(object.getId(), Optional.of((CustomCommand) object));
+        } else if(object instanceof DBGuild) {
+            guilds.put(object.getId(), (DBGuild) object);
+        } else if(object instanceof MantaroObj) {
+            mantaro.put(MANTARO_KEY, (MantaroObj) object);
+        } else if(object instanceof Player) {
+            players.put(object.getDatabaseId(), (Player) object);
+        } else if(object instanceof PremiumKey) {
+            premiumKeys.put(object.getId(), Optional.of((PremiumKey) object));
+        } else if(object instanceof DBUser) {
+            users.put(object.getId(), (DBUser) object);
+        } else {
+            throw new IllegalStateException("No cache configured for " + object.getClass());
+        }
+    }
+
+    private void uncache(ManagedObject object) {
+        if(object instanceof LocalExperience) return;
+        DatabaseMetrics.count(DatabaseMetrics.Layer.CACHE, object.getTableName(), DatabaseMetrics.Operation.DELETE, 1);
+        log("Removing {} {} from local cache", object.getClass().getSimpleName(), object.getDatabaseId());
+        if(object instanceof CustomCommand) {
+            customCommands.invalidate(object.getId());
+        } else if(object instanceof DBGuild) {
+            guilds.invalidate(object.getId());
+        } else if(object instanceof MantaroObj) {
+            mantaro.invalidate(MANTARO_KEY);
+        } else if(object instanceof Player) {
+            players.invalidate(object.getDatabaseId());
+        } else if(object instanceof PremiumKey) {
+            premiumKeys.invalidate(object.getId());
+        } else if(object instanceof DBUser) {
+            users.invalidate(object.getId());
+        } else {
+            throw new IllegalStateException("No cache configured for " + object.getClass());
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2016-2018 David Alejandro Rubio Escares / Kodehawa
+ *
+ * Mantaro is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * Mantaro is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mantaro.  If not, see http://www.gnu.org/licenses/
+ */
+
+package net.kodehawa.mantarobot.db;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers what an entity and its data looked like when it was loaded (or last saved), so only the properties that changed get written back.
+ * <p>
+ * Properties are found the same way Jackson (and so the rethink driver) finds them. Immutable values (strings, numbers, enums...) are compared by value,
+ * while collections, maps and everything else are kept as their serialized JSON tree (a deep copy) and compared with equals. Hash codes aren't enough:
+ * {@code {2: 3}} and {@code {3: 2}} hash the same, and losing a change like that would silently drop items.
+ * <p>
+ * That deep copy costs about as much as serializing the entity again, so nothing is snapshotted until {@link #start()} gets called by whoever
+ * is about to change the entity and save it partially. Entities that are only read never pay for it.
+ */
+public class ChangeTracker {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Map<Class<?>, Property[]> PROPERTIES = new ConcurrentHashMap<>();
+    //Never written back, and the data is tracked property by property instead.
+    private static final String ID = "id";
+    private static final String DATA = "data";
+
+    private final Object entity;
+    private final Object data;
+    //Null until tracking starts.
+    private volatile Object[] entityState;
+    private volatile Object[] dataState;
+
+    /**
+     * Creates a tracker that doesn't track anything yet, see {@link #start()}.
+     *
+     * @param entity The entity.
+     * @param data   The data helper of the entity (GuildData, PlayerData...), can be null.
+     */
+    public ChangeTracker(Object entity, Object data) {
+        this.entity = entity;
+        this.data = data;
+    }
+
+    private static Property[] properties(Class<?> c) {
+        return PROPERTIES.computeIfAbsent(c, ignored -> {
+            List<Property> properties = new ArrayList<>();
+            for(BeanPropertyDefinition definition : MAPPER.getSerializationConfig().introspect(MAPPER.constructType(c)).findProperties()) {
+                AnnotatedMember accessor = definition.getAccessor();
+                if(accessor == null || definition.getName().equals(ID) || definition.getName().equals(DATA))
+                    continue;
+
+                accessor.fixAccess(true);
+                properties.add(new Property(definition.getName(), accessor));
+            }
+
+            return properties.toArray(new Property[0]);
+        });
+    }
+
+    private static Object[] snapshot(Object object) {
+        if(object == null)
+            return new Object[0];
+
+        Property[] properties = properties(object.getClass());
+        Object[] state = new Object[properties.length];
+        for(int i = 0; i < properties.length; i++) {
+            state[i] = state(properties[i].accessor.getValue(object));
+        }
+
+        return state;
+    }
+
+    private static Object state(Object value) {
+        if(value == null || value instanceof String || value instanceof Number || value instanceof Boolean || value instanceof Character || value instanceof Enum)
+            return value;
+
+        try {
+            return MAPPER.valueToTree(value);
+        } catch(IllegalArgumentException e) {
+            //Can't tell if it changed, so it always did.
+            return new Object();
+        }
+    }
+
+    private static void diff(Object object, Object[] state, String prefix, Map<String, Object> changes) {
+        if(object == null)
+            return;
+
+        Property[] properties = properties(object.getClass());
+        for(int i = 0; i < properties.length; i++) {
+            Property property = properties[i];
+            Object value = property.accessor.getValue(object);
+            if(!Objects.equals(state(value), state[i]))
+                changes.put(prefix + property.name, value);
+        }
+    }
+
+    /**
+     * Takes the first snapshot, changes are counted from here on. Starting again just takes a new one.
+     */
+    public void start() {
+        dataState = snapshot(data);
+        entityState = snapshot(entity);
+    }
+
+    /**
+     * @return Whether {@link #start()} was called.
+     */
+    public boolean isTracking() {
+        return entityState != null;
+    }
+
+    /**
+     * @return Every property that changed since the last snapshot, by path (nested ones look like {@code data.warnCount}), with their current value.
+     *         Null if tracking never started, as there's no way to tell.
+     */
+    public Map<String, Object> changes() {
+        if(!isTracking())
+            return null;
+
+        Map<String, Object> changes = new LinkedHashMap<>();
+        diff(entity, entityState, "", changes);
+        diff(data, dataState, DATA + ".", changes);
+        return changes;
+    }
+
+    /**
+     * Takes a new snapshot if tracking, forgetting every change made until now.
+     */
+    public void reset() {
+        if(isTracking())
+            start();
+    }
+
+    private static class Property {
+        final String name;
+        final AnnotatedMember accessor;
+
+        Property(String name, AnnotatedMember accessor) {
+            this.name = name;
+            this.accessor = accessor;
+        }
+    }
+}
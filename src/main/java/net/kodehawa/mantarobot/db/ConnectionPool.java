@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2016-2018 David Alejandro Rubio Escares / Kodehawa
+ *
+ * Mantaro is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * Mantaro is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mantaro.  If not, see http://www.gnu.org/licenses/
+ */
+
+package net.kodehawa.mantarobot.db;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.rethinkdb.ast.ReqlAst;
+import com.rethinkdb.net.Connection;
+import com.timgroup.statsd.StatsDClient;
+import lombok.extern.slf4j.Slf4j;
+import net.kodehawa.mantarobot.utils.stats.LatencyRecorder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static com.rethinkdb.RethinkDB.r;
+
+/**
+ * Fixed-size pool of rethink connections.
+ * <p>
+ * Queries borrow a connection ({@link #borrow()} or {@link #run(Function)}) and give it back when they're done, so a slow query
+ * (or a big cursor) only holds up its own socket instead of everything else in the bot. Closed connections are reconnected when borrowed,
+ * and idle ones get pinged every so often so dead sockets are found before a command gets them.
+ */
+@Slf4j
+public class ConnectionPool {
+    private final BlockingQueue<Connection> idle;
+    private final int size;
+    private final long acquireTimeoutMs;
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder reconnects = new LongAdder();
+    private final LatencyRecorder waitTime = new LatencyRecorder();
+    private volatile boolean closed = false;
+    private final ScheduledExecutorService healthChecker = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("ConnectionPool-HealthCheck").setDaemon(true).build()
+    );
+
+    /**
+     * @param connector          Opens a new connection.
+     * @param size               How many connections to keep.
+     * @param acquireTimeoutMs   How long to wait for a free connection before giving up.
+     * @param healthCheckSeconds How often to check the idle connections.
+     */
+    public ConnectionPool(Supplier<Connection> connector, int size, long acquireTimeoutMs, long healthCheckSeconds) {
+        if(size < 1)
+            throw new IllegalArgumentException("Pool size must be at least 1");
+
+        this.size = size;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.idle = new ArrayBlockingQueue<>(size);
+
+        for(int i = 0; i < size; i++) {
+            idle.add(connector.get());
+        }
+
+        healthChecker.scheduleWithFixedDelay(this::checkIdle, healthCheckSeconds, healthCheckSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Takes a connection from the pool, waiting for one to be free if needed. Has to be closed to give it back.
+     *
+     * @return The borrowed connection.
+     * @throws IllegalStateException If no connection was freed in time.
+     */
+    public Lease borrow() {
+        long start = System.nanoTime();
+        Connection connection;
+        try {
+            connection = idle.poll(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a database connection", e);
+        } finally {
+            waitTime.record(System.nanoTime() - start);
+        }
+
+        if(connection == null)
+            throw new IllegalStateException("Timed out waiting for a database connection (" + size + " in use)");
+
+        active.incrementAndGet();
+        try {
+            if(!connection.isOpen()) {
+                reconnect(connection);
+            }
+        } catch(RuntimeException e) {
+            release(connection);
+            throw e;
+        }
+
+        return new Lease(connection);
+    }
+
+    /**
+     * Runs something with a borrowed connection, giving it back afterwards.
+     * Cursors keep working after that (connections are multiplexed), they just share the connection with whoever borrows it next.
+     *
+     * @param query What to run.
+     * @return Whatever the query returned.
+     */
+    public <T> T run(Function<Connection, T> query) {
+        try(Lease lease = borrow()) {
+            return query.apply(lease.get());
+        }
+    }
+
+    /**
+     * Sends a query without waiting for its result.
+     *
+     * @param query The query to send.
+     */
+    public void runNoReply(ReqlAst query) {
+        try(Lease lease = borrow()) {
+            query.runNoReply(lease.get());
+        }
+    }
+
+    /**
+     * @return How many connections are borrowed right now.
+     */
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return How many times a connection had to be reopened since startup.
+     */
+    public long getReconnectCount() {
+        return reconnects.sum();
+    }
+
+    /**
+     * @return How long borrowing took, in nanoseconds.
+     */
+    public LatencyRecorder getWaitTime() {
+        return waitTime;
+    }
+
+    /**
+     * Sends the active connections, reconnects and wait time to StatsD.
+     *
+     * @param client The client to send the values with.
+     */
+    public void report(StatsDClient client) {
+        client.recordGaugeValue("db_pool.active", getActiveCount());
+        client.recordGaugeValue("db_pool.size", size);
+        client.recordGaugeValue("db_pool.reconnects", getReconnectCount());
+        waitTime.report(client, "db_pool.wait");
+    }
+
+    /**
+     * Stops the health checks and closes every idle connection. Borrowed ones get closed when they're given back.
+     */
+    public void close() {
+        healthChecker.shutdown();
+        closed = true;
+        List<Connection> connections = new ArrayList<>();
+        idle.drainTo(connections);
+        connections.forEach(Connection::close);
+    }
+
+    private void release(Connection connection) {
+        active.decrementAndGet();
+        if(closed)
+            connection.close();
+        else
+            idle.offer(connection);
+    }
+
+    private void reconnect(Connection connection) {
+        log.warn("Database connection closed, reconnecting");
+        reconnects.increment();
+        connection.reconnect();
+    }
+
+    private void checkIdle() {
+        //Only the ones nobody is using, the rest get checked when they're borrowed.
+        //One at a time, so the others stay available to borrow() while each ping runs.
+        int count = idle.size();
+        for(int i = 0; i < count; i++) {
+            Connection connection = idle.poll();
+            if(connection == null)
+                break;
+
+            try {
+                if(!connection.isOpen()) {
+                    reconnect(connection);
+                } else {
+                    r.expr(1).run(connection);
+                }
+            } catch(Exception e) {
+                log.warn("Database connection failed health check", e);
+                try {
+                    reconnect(connection);
+                } catch(Exception e1) {
+                    log.error("Couldn't reconnect to the database, will try again on the next check", e1);
+                }
+            } finally {
+                //The pool might have been closed while it was out.
+                if(closed)
+                    connection.close();
+                else
+                    idle.offer(connection);
+            }
+        }
+    }
+
+    public class Lease implements AutoCloseable {
+        private Connection connection;
+
+        private Lease(Connection connection) {
+            this.connection = connection;
+        }
+
+        public Connection get() {
+            if(connection == null)
+                throw new IllegalStateException("Connection already returned to the pool");
+
+            return connection;
+        }
+
+        @Override
+        public void close() {
+            if(connection != null) {
+                release(connection);
+                connection = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2016-2018 David Alejandro Rubio Escares / Kodehawa
+ *
+ * Mantaro is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * Mantaro is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mantaro.  If not, see http://www.gnu.org/licenses/
+ */
+
+package net.kodehawa.mantarobot.db;
+
+import com.timgroup.statsd.StatsDClient;
+import net.kodehawa.mantarobot.utils.stats.LatencyRecorder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of every database operation, by layer (cache or storage) and entity (table name).
+ * <p>
+ * Recording is lock-free, so it's always on, unlike {@link net.kodehawa.mantarobot.ExtraRuntimeOptions#LOG_DB_ACCESS}.
+ * Everything gets sent to StatsD with the rest of the database metrics, and {@code ~>debug db} shows a summary.
+ */
+public class DatabaseMetrics {
+    private static final Map<String, Metrics> METRICS = new ConcurrentHashMap<>();
+
+    /**
+     * Counts an operation and records how long it took.
+     *
+     * @param layer     Where the operation ran.
+     * @param entity    The table of the entity.
+     * @param operation The operation.
+     * @param nanos     How long it took, in nanoseconds.
+     */
+    public static void record(Layer layer, String entity, Operation operation, long nanos) {
+        Metrics metrics = metrics(layer, entity);
+        metrics.counts[operation.ordinal()].increment();
+        metrics.latencies[operation.ordinal()].record(nanos);
+    }
+
+    /**
+     * Records a single-key lookup on a cache, both as a get and as a hit or miss.
+     *
+     * @param entity The table of the entity.
+     * @param hit    Whether the cache had it.
+     * @param nanos  How long it took, including the load on a miss, in nanoseconds.
+     */
+    public static void recordLookup(String entity, boolean hit, long nanos) {
+        recordLookup(entity, hit ? Operation.HIT : Operation.MISS, nanos);
+    }
+
+    /**
+     * Records a single-key lookup on a cache, both as a get and as its outcome.
+     *
+     * @param entity  The table of the entity.
+     * @param outcome {@link Operation#NEAR_HIT}, {@link Operation#HIT} or {@link Operation#MISS}.
+     * @param nanos   How long it took, including the load on a miss, in nanoseconds.
+     */
+    public static void recordLookup(String entity, Operation outcome, long nanos) {
+        record(Layer.CACHE, entity, Operation.GET, nanos);
+        record(Layer.CACHE, entity, outcome, nanos);
+    }
+
+    /**
+     * Counts operations without recording their latency, for when they're part of something bigger (the hits of a bulk get)
+     * or don't wait for anything (async writes).
+     *
+     * @param layer     Where the operations ran.
+     * @param entity    The table of the entity.
+     * @param operation The operation.
+     * @param amount    How many of them.
+     */
+    public static void count(Layer layer, String entity, Operation operation, long amount) {
+        if(amount > 0)
+            metrics(layer, entity).counts[operation.ordinal()].add(amount);
+    }
+
+    /**
+     * @return Everything recorded since startup, sorted by layer and entity.
+     */
+    public static List<Metrics> getAll() {
+        List<Metrics> all = new ArrayList<>(METRICS.values());
+        all.sort(Comparator.comparing((Metrics metrics) -> metrics.layer).thenComparing(metrics -> metrics.entity));
+        return Collections.unmodifiableList(all);
+    }
+
+    /**
+     * Sends the counters and the latency percentiles of every operation to StatsD.
+     *
+     * @param client The client to send the values with.
+     */
+    public static void report(StatsDClient client) {
+        for(Metrics metrics : METRICS.values()) {
+            for(Operation operation : Operation.values()) {
+                String[] tags = {"layer:" + metrics.layer.getName(), "entity:" + metrics.entity, "op:" + operation.getName()};
+                client.recordGaugeValue("db_operations.count", metrics.getCount(operation), tags);
+                metrics.latencies[operation.ordinal()].report(client, "db_operations.latency", tags);
+            }
+        }
+    }
+
+    private static Metrics metrics(Layer layer, String entity) {
+        return METRICS.computeIfAbsent(layer.getName() + ":" + entity, ignored -> new Metrics(layer, entity));
+    }
+
+    public enum Layer {
+        //Redis or the local cache, whichever is enabled.
+        CACHE("cache"),
+        //Rethink or the embedded file.
+        STORAGE("storage");
+
+        private final String name;
+
+        Layer(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    public enum Operation {
+        //Single-key lookups, whatever the outcome.
+        GET("get"),
+        //Lookups answered by the cache, and lookups the cache had to load from the storage.
+        HIT("hit"), MISS("miss"),
+        //Lookups answered by the local copy of a local cached redis map, without going to redis. Not counted as HIT.
+        NEAR_HIT("near_hit"),
+        SAVE("save"), DELETE("delete"),
+        //Multi-key lookups and writes.
+        BULK("bulk"),
+        //Scans, ranges, leaderboards and counts.
+        QUERY("query");
+
+        private final String name;
+
+        Operation(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    public static class Metrics {
+        private final Layer layer;
+        private final String entity;
+        private final LongAdder[] counts = new LongAdder[Operation.values().length];
+        private final LatencyRecorder[] latencies = new LatencyRecorder[Operation.values().length];
+
+        Metrics(Layer layer, String entity) {
+            this.layer = layer;
+            this.entity = entity;
+            for(int i = 0; i < counts.length; i++) {
+                counts[i] = new LongAdder();
+                latencies[i] = new LatencyRecorder();
+            }
+        }
+
+        public Layer getLayer() {
+            return layer;
+        }
+
+        public String getEntity() {
+            return entity;
+        }
+
+        public long getCount(Operation operation) {
+            return counts[operation.ordinal()].sum();
+        }
+
+        public LatencyRecorder getLatency(Operation operation) {
+            return latencies[operation.ordinal()];
+        }
+
+        /**
+         * @return Hits (near or not) over hits plus misses, or -1 if nothing was looked up.
+         */
+        public double getHitRatio() {
+            long hits = getCount(Operation.HIT) + getCount(Operation.NEAR_HIT);
+            long total = hits + getCount(Operation.MISS);
+            return total == 0 ? -1 : (double) hits / total;
+        }
+
+        /**
+         * @return Near hits over every hit, or -1 if nothing was found on the cache.
+         */
+        public double getNearHitRatio() {
+            long near = getCount(Operation.NEAR_HIT);
+            long hits = near + getCount(Operation.HIT);
+            return hits == 0 ? -1 : (double) near / hits;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2016-2018 David Alejandro Rubio Escares / Kodehawa
+ *
+ * Mantaro is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * Mantaro is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mantaro.  If not, see http://www.gnu.org/licenses/
+ */
+
+package net.kodehawa.mantarobot.db;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.Striped;
+import net.kodehawa.mantarobot.db.entities.DBGuild;
+import net.kodehawa.mantarobot.db.entities.DBUser;
+import net.kodehawa.mantarobot.db.entities.LocalExperience;
+import net.kodehawa.mantarobot.db.entities.Player;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Applies read-modify-write mutations to entities without two commands overwriting each other.
+ * <p>
+ * Every mutation holds the lock of the entities it touches (striped by table and id), runs on a copy of them and saves only what
+ * it changed with {@link ManagedDatabase#saveChanges(ManagedObject)} before letting go, so the next mutation of the same entity on
+ * this node always sees the result of the previous one. The instances the caches hand out are shared, so they're never mutated:
+ * a mutation that throws halfway just leaves its copy behind, and nothing gets saved. Locks are local to the node, but as only the changed properties get written,
+ * mutations of different properties on different nodes don't overwrite each other either.
+ * <p>
+ * Mutations shouldn't block (no waiting for Discord, no interactive operations) and mustn't call back into the updater:
+ * use {@link #updatePlayers(String, String, BiFunction)} when two players have to change together.
+ */
+public class EntityUpdater {
+    //Way more than the amount of threads, so unrelated entities rarely share a lock.
+    private static final int STRIPES = 1024;
+    private static final ObjectMapper MAPPER = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final ManagedDatabase db;
+    private final Striped<Lock> locks = Striped.lock(STRIPES);
+
+    public EntityUpdater(@Nonnull ManagedDatabase db) {
+        this.db = db;
+    }
+
+    /**
+     * Mutates a global player, and saves whatever changed.
+     *
+     * @param userId   The user the player belongs to.
+     * @param mutation What to do with the player. Whatever it returns is returned by this method.
+     * @return The result of the mutation.
+     */
+    public <R> R updatePlayer(@Nonnull String userId, @Nonnull Function<Player, R> mutation) {
+        return locked(() -> {
+            Player player = copy(db.getPlayer(userId));
+            R result = mutation.apply(player);
+            db.saveChanges(player);
+            return result;
+        }, Player.DB_TABLE + ":" + userId);
+    }
+
+    /**
+     * Mutates two global players at once, for transfers and trades, and saves whatever changed on both.
+     * Both are locked for the whole mutation, always in the same order, so two transfers between the same players can't deadlock.
+     *
+     * @param first    The user the first player belongs to.
+     * @param second   The user the second player belongs to. Can't be the same as the first one.
+     * @param mutation What to do with the players. Whatever it returns is returned by this method.
+     * @return The result of the mutation.
+     */
+    public <R> R updatePlayers(@Nonnull String first, @Nonnull String second, @Nonnull BiFunction<Player, Player, R> mutation) {
+        if(first.equals(second))
+            throw new IllegalArgumentException("Both players are the same");
+
+        return locked(() -> {
+            Player firstPlayer = copy(db.getPlayer(first));
+            Player secondPlayer = copy(db.getPlayer(second));
+            R result = mutation.apply(firstPlayer, secondPlayer);
+            db.saveChanges(firstPlayer);
+            db.saveChanges(secondPlayer);
+            return result;
+        }, Player.DB_TABLE + ":" + first, Player.DB_TABLE + ":" + second);
+    }
+
+    /**
+     * Mutates a user, and saves whatever changed.
+     *
+     * @param userId   The user.
+     * @param mutation What to do with the user. Whatever it returns is returned by this method.
+     * @return The result of the mutation.
+     */
+    public <R> R updateUser(@Nonnull String userId, @Nonnull Function<DBUser, R> mutation) {
+        return locked(() -> {
+            DBUser user = copy(db.getUser(userId));
+            R result = mutation.apply(user);
+            db.saveChanges(user);
+            return result;
+        }, DBUser.DB_TABLE + ":" + userId);
+    }
+
+    /**
+     * Mutates a guild, and saves whatever changed.
+     *
+     * @param guildId  The guild.
+     * @param mutation What to do with the guild. Whatever it returns is returned by this method.
+     * @return The result of the mutation.
+     */
+    public <R> R updateGuild(@Nonnull String guildId, @Nonnull Function<DBGuild, R> mutation) {
+        return locked(() -> {
+            DBGuild guild = copy(db.getGuild(guildId));
+            R result = mutation.apply(guild);
+            db.saveChanges(guild);
+            return result;
+        }, DBGuild.DB_TABLE + ":" + guildId);
+    }
+
+    /**
+     * Mutates the local experience of a user on a guild, and saves it.
+     *
+     * @param guildId  The guild.
+     * @param userId   The user.
+     * @param mutation What to do with the experience. Whatever it returns is returned by this method.
+     * @return The result of the mutation.
+     */
+    public <R> R updateLocalExperience(@Nonnull String guildId, @Nonnull String userId, @Nonnull Function<LocalExperience, R> mutation) {
+        //Takes the guild lock, so it can't happen with the experience lock held.
+        db.migrateLocalExperience(guildId);
+        return locked(() -> {
+            LocalExperience experience = db.getLocalExperience(guildId, userId);
+            R result = mutation.apply(experience);
+            //Two numbers, nothing to gain from tracking which one changed.
+            db.save(experience);
+            return result;
+        }, LocalExperience.DB_TABLE + ":" + guildId + ":" + userId);
+    }
+
+    //Same round trip the storages do, so the copy is exactly what a fresh load would return.
+    @SuppressWarnings("unchecked")
+    private static <T extends ManagedObject> T copy(T object) {
+        T copy = (T) MAPPER.convertValue(object, object.getClass());
+        copy.trackChanges();
+        return copy;
+    }
+
+    //bulkGet sorts the locks by stripe, which is what keeps the order the same everywhere.
+    private <R> R locked(Supplier<R> action, String... keys) {
+        List<Lock> held = new ArrayList<>(keys.length);
+        try {
+            for(Lock lock : locks.bulkGet(Arrays.asList(keys))) {
+                lock.lock();
+                held.add(lock);
+            }
+
+            return action.get();
+        } finally {
+            for(int i = held.size() - 1; i >= 0; i--) {
+                held.get(i).unlock();
+            }
+        }
+    }
+}
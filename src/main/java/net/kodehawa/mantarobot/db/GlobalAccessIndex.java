@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2016-2018 David Alejandro Rubio Escares / Kodehawa
+ *
+ * Mantaro is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * Mantaro is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mantaro.  If not, see http://www.gnu.org/licenses/
+ */
+
+package net.kodehawa.mantarobot.db;
+
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+import lombok.extern.slf4j.Slf4j;
+import net.kodehawa.mantarobot.data.MantaroData;
+import net.kodehawa.mantarobot.db.entities.MantaroObj;
+
+import java.util.Collection;
+
+/**
+ * In-memory index of the global user/guild lists stored on {@link MantaroObj} (blacklists and patreon users).
+ * <p>
+ * The lists are copied into primitive long sets, so checking them is a constant time lookup instead of a cache/database fetch plus a linear scan.
+ * The index gets rebuilt every time {@link MantaroObj} is saved on this node, and invalidated through Redis when another node saves it.
+ */
+@Slf4j
+public class GlobalAccessIndex {
+    private static volatile Snapshot snapshot;
+
+    /**
+     * Rebuilds the index every time the specified database saves {@link MantaroObj}, and drops it when it gets deleted.
+     *
+     * @param db The database.
+     */
+    public static void register(ManagedDatabase db) {
+        db.addSaveListener(MantaroObj.class, GlobalAccessIndex::refresh);
+        db.addDeleteListener(MantaroObj.class, obj -> invalidate());
+    }
+
+    /**
+     * Rebuilds the index from the specified object.
+     *
+     * @param obj The object to build the index from.
+     */
+    public static void refresh(MantaroObj obj) {
+        snapshot = new Snapshot(obj);
+    }
+
+    /**
+     * Drops the index, it'll be rebuilt from the database the next time it's needed.
+     */
+    public static void invalidate() {
+        snapshot = null;
+    }
+
+    public static boolean isBlacklistedUser(long userId) {
+        return get().blackListedUsers.contains(userId);
+    }
+
+    public static boolean isBlacklistedUser(String userId) {
+        return isBlacklistedUser(parseId(userId));
+    }
+
+    public static boolean isBlacklistedGuild(long guildId) {
+        return get().blackListedGuilds.contains(guildId);
+    }
+
+    public static boolean isBlacklistedGuild(String guildId) {
+        return isBlacklistedGuild(parseId(guildId));
+    }
+
+    public static boolean isPatreon(long userId) {
+        return get().patreonUsers.contains(userId);
+    }
+
+    public static boolean isPatreon(String userId) {
+        return isPatreon(parseId(userId));
+    }
+
+    private static Snapshot get() {
+        Snapshot s = snapshot;
+        if(s == null) {
+            synchronized(GlobalAccessIndex.class) {
+                s = snapshot;
+                if(s == null) {
+                    s = snapshot = new Snapshot(MantaroData.db().getMantaroData());
+                    log.debug("Built global access index ({} blacklisted users, {} blacklisted guilds, {} patreon users)",
+                            s.blackListedUsers.size(), s.blackListedGuilds.size(), s.patreonUsers.size());
+                }
+            }
+        }
+
+        return s;
+    }
+
+    //Snowflakes are never 0, so nothing will ever match an invalid id.
+    private static long parseId(String id) {
+        if(id == null)
+            return 0;
+
+        try {
+            return Long.parseUnsignedLong(id);
+        } catch(NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static class Snapshot {
+        final TLongSet blackListedUsers;
+        final TLongSet blackListedGuilds;
+        final TLongSet patreonUsers;
+
+        Snapshot(MantaroObj obj) {
+            this.blackListedUsers = ids(obj.getBlackListedUsers());
+            this.blackListedGuilds = ids(obj.getBlackListedGuilds());
+            this.patreonUsers = ids(obj.getPatreonUsers());
+        }
+
+        private static TLongSet ids(Collection<String> ids) {
+            TLongSet set = new TLongHashSet();
+            if(ids == null)
+                return set;
+
+            for(String s : ids) {
+                long id = parseId(s);
+                if(id != 0)
+                    set.add(id);
+            }
+
+            return set;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2016-2018 David Alejandro Rubio Escares / Kodehawa
+ *
+ * Mantaro is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * Mantaro is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mantaro.  If not, see http://www.gnu.org/licenses/
+ */
+package net.kodehawa.mantarobot.db;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import lombok.extern.slf4j.Slf4j;
+import net.kodehawa.mantarobot.data.MantaroData;
+import net.kodehawa.mantarobot.db.entities.LocalExperience;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the top local players of the guilds whose leaderboard was requested recently.
+ * <p>
+ * A board gets loaded with a single range query the first time it's needed, and from then on every saved {@link LocalExperience}
+ * only gets compared against the {@link #SIZE} players on it. Experience only goes up, so that's enough to keep it exact.
+ * Whenever it can't be (someone on the board lost experience or got deleted), the board is dropped and loaded again next time.
+ * The same goes for boards that had something saved while their range query ran, as there's no telling whether the query saw it.
+ * Guilds are handled by the node their shard is on, so saves from other nodes aren't a concern.
+ */
+@Slf4j
+public class LocalLeaderboards {
+    public static final int SIZE = 10;
+    private static final Comparator<LocalExperience> ORDER = Comparator.comparingLong(LocalExperience::getExperience).reversed()
+            .thenComparing(LocalExperience::getId);
+    private static final Cache<String, Board> BOARDS = CacheBuilder.newBuilder()
+            .maximumSize(5000)
+            .expireAfterAccess(1, TimeUnit.HOURS)
+            .build();
+    //Guild -> board being loaded. Stays until the board is on BOARDS, so saves never find it on neither.
+    private static final Map<String, Board> LOADING = new ConcurrentHashMap<>();
+
+    /**
+     * @param guildId The guild.
+     * @return The top {@link #SIZE} local players of the guild, highest first.
+     */
+    public static List<LocalExperience> get(String guildId) {
+        Board board;
+        try {
+            board = BOARDS.get(guildId, () -> load(guildId));
+        } catch(ExecutionException | UncheckedExecutionException e) {
+            throw new RuntimeException("Error loading the local leaderboard of guild " + guildId, e.getCause());
+        }
+
+        LOADING.remove(guildId, board);
+        //Still good enough to show once, but it can't be kept up to date.
+        if(board.dirty)
+            BOARDS.asMap().remove(guildId, board);
+
+        return board.entries();
+    }
+
+    /**
+     * Keeps the boards up to date with the saves and deletions of the specified database.
+     *
+     * @param db The database.
+     */
+    public static void register(ManagedDatabase db) {
+        db.addSaveListener(LocalExperience.class, LocalLeaderboards::onSaved);
+        db.addDeleteListener(LocalExperience.class, LocalLeaderboards::onDeleted);
+    }
+
+    //LOADING goes first: a board leaves it only after it's on BOARDS, so checking the other way around could miss it in between.
+    private static void onSaved(LocalExperience experience) {
+        Board loading = LOADING.get(experience.getGuildId());
+        if(loading != null) {
+            loading.dirty = true;
+            return;
+        }
+
+        Board board = BOARDS.getIfPresent(experience.getGuildId());
+        if(board != null && !board.update(experience))
+            BOARDS.asMap().remove(experience.getGuildId(), board);
+    }
+
+    private static void onDeleted(LocalExperience experience) {
+        Board loading = LOADING.get(experience.getGuildId());
+        if(loading != null) {
+            loading.dirty = true;
+            return;
+        }
+
+        Board board = BOARDS.getIfPresent(experience.getGuildId());
+        if(board != null && board.contains(experience.getId()))
+            BOARDS.asMap().remove(experience.getGuildId(), board);
+    }
+
+    private static Board load(String guildId) {
+        Board board = new Board();
+        LOADING.put(guildId, board);
+        try {
+            List<LocalExperience> all = MantaroData.db().getLocalExperience(guildId);
+            all.sort(ORDER);
+            log.debug("Loaded local leaderboard of guild {} ({} players)", guildId, all.size());
+            board.fill(all.subList(0, Math.min(SIZE, all.size())));
+            return board;
+        } catch(RuntimeException e) {
+            LOADING.remove(guildId, board);
+            throw e;
+        }
+    }
+
+    private static class Board {
+        //Copies, so changes to the entities don't show up before they're saved. Holds everyone if the guild has less than SIZE players.
+        private final List<LocalExperience> entries = new ArrayList<>(SIZE);
+        //Set when something got saved or deleted while the board was being loaded.
+        volatile boolean dirty;
+
+        synchronized void fill(List<LocalExperience> top) {
+            entries.addAll(top);
+        }
+
+        synchronized List<LocalExperience> entries() {
+            List<LocalExperience> copy = new ArrayList<>(entries.size());
+            for(LocalExperience e : entries) {
+                copy.add(e.copy());
+            }
+
+            return Collections.unmodifiableList(copy);
+        }
+
+        synchronized boolean contains(String id) {
+            for(LocalExperience e : entries) {
+                if(e.getId().equals(id))
+                    return true;
+            }
+
+            return false;
+        }
+
+        /**
+         * @return Whether the board is still exact.
+         */
+        synchronized boolean update(LocalExperience experience) {
+            for(int i = 0; i < entries.size(); i++) {
+                LocalExperience e = entries.get(i);
+                if(!e.getId().equals(experience.getId()))
+                    continue;
+
+                //Someone who isn't on the board could have more now.
+                if(experience.getExperience() < e.getExperience() && entries.size() == SIZE)
+                    return false;
+
+                entries.set(i, experience.copy());
+                entries.sort(ORDER);
+                return true;
+            }
+
+            if(entries.size() < SIZE) {
+                entries.add(experience.copy());
+            } else if(ORDER.compare(experience, entries.get(SIZE - 1)) < 0) {
+                entries.set(SIZE - 1, experience.copy());
+            } else {
+                return true;
+            }
+
+            entries.sort(ORDER);
+            return true;
+        }
+    }
+}
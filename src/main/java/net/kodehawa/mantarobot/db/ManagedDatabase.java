@@ -16,29 +16,137 @@
 
 package net.kodehawa.mantarobot.db;
 
-import com.rethinkdb.net.Connection;
-import com.rethinkdb.net.Cursor;
+import com.timgroup.statsd.StatsDClient;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import net.dv8tion.jda.core.entities.Guild;
 import net.dv8tion.jda.core.entities.Member;
 import net.dv8tion.jda.core.entities.User;
 import net.dv8tion.jda.core.events.message.guild.GuildMessageReceivedEvent;
 import net.kodehawa.mantarobot.ExtraRuntimeOptions;
+import net.kodehawa.mantarobot.data.Config;
+import net.kodehawa.mantarobot.data.MantaroData;
 import net.kodehawa.mantarobot.db.entities.*;
+import net.kodehawa.mantarobot.db.entities.helpers.GuildData;
+import net.kodehawa.mantarobot.db.entities.helpers.LocalExperienceData;
+import net.kodehawa.mantarobot.db.storage.Index;
+import net.kodehawa.mantarobot.db.storage.Leaderboard;
+import net.kodehawa.mantarobot.db.storage.LeaderboardEntry;
+import net.kodehawa.mantarobot.db.storage.Storage;
+import net.kodehawa.mantarobot.utils.Pair;
 
 import javax.annotation.CheckReturnValue;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
-
-import static com.rethinkdb.RethinkDB.r;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Slf4j
 public class ManagedDatabase {
-    private final Connection conn;
+    @Getter
+    private final Storage storage;
+    @Getter
+    private final WriteBehindQueue writeQueue;
+    @Getter
+    private final EntityUpdater updater = new EntityUpdater(this);
+    private final int streamBatchSize;
+    //Guilds whose local experience is known to be on its own table already, so the guild doesn't get loaded on every read.
+    private final Set<String> migratedLocalExperience = ConcurrentHashMap.newKeySet();
+    private final List<Runnable> closeTasks = new CopyOnWriteArrayList<>();
+    private final List<Listener<?>> saveListeners = new CopyOnWriteArrayList<>();
+    private final List<Listener<?>> deleteListeners = new CopyOnWriteArrayList<>();
+
+    public ManagedDatabase(@Nonnull Storage storage) {
+        this.storage = storage;
+        Config config = MantaroData.config().get();
+        this.streamBatchSize = config.dbStreamBatchSize;
+        this.writeQueue = new WriteBehindQueue(storage, config.writeBehindInterval, config.writeBehindBatchSize, this::onSaved, this::onDeleted);
+        //A single hook, as separate ones run concurrently and the storage has to be closed last.
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "ManagedDatabase-Shutdown"));
+    }
+
+    /**
+     * Registers something to run on shutdown while the database can still be written to, like flushing writes buffered elsewhere.
+     *
+     * @param task What to run.
+     */
+    public void beforeClose(@Nonnull Runnable task) {
+        closeTasks.add(task);
+    }
+
+    /**
+     * Registers something to run every time an object of the specified type gets saved on this node, be it right away or from the write-behind queue.
+     * Runs on the thread that saved it, so it should be quick.
+     *
+     * @param type     The type of the objects to listen for.
+     * @param listener What to run with the saved object.
+     */
+    public <T extends ManagedObject> void addSaveListener(@Nonnull Class<T> type, @Nonnull Consumer<? super T> listener) {
+        saveListeners.add(new Listener<>(type, listener));
+    }
+
+    /**
+     * Registers something to run every time an object of the specified type gets deleted on this node, be it right away or from the write-behind queue.
+     * Runs on the thread that deleted it, so it should be quick.
+     *
+     * @param type     The type of the objects to listen for.
+     * @param listener What to run with the deleted object.
+     */
+    public <T extends ManagedObject> void addDeleteListener(@Nonnull Class<T> type, @Nonnull Consumer<? super T> listener) {
+        deleteListeners.add(new Listener<>(type, listener));
+    }
+
+    /**
+     * Runs the tasks registered with {@link #beforeClose(Runnable)}, writes everything still on the write-behind queue and closes the storage.
+     * Ran by a shutdown hook, nothing can be saved after this.
+     */
+    public void close() {
+        for(Runnable task : closeTasks) {
+            try {
+                task.run();
+            } catch(Exception e) {
+                log.error("Error running close task", e);
+            }
+        }
+
+        writeQueue.shutdown();
+        storage.close();
+    }
+
+    /**
+     * Creates the tables and secondary indexes the queries on this class need, if they don't exist yet, and waits for them to be ready.
+     * Safe to run from several nodes at once.
+     */
+    public void ensureIndexes() {
+        storage.init();
+    }
 
-    public ManagedDatabase(@Nonnull Connection conn) {
-        this.conn = conn;
+    /**
+     * @return How many rows the streaming methods get per batch, both from the storage and to the cache.
+     */
+    public int getStreamBatchSize() {
+        return streamBatchSize;
+    }
+
+    /**
+     * Fetches every row with the specified primary keys.
+     *
+     * @param table The table to query.
+     * @param ids   The primary keys of the rows.
+     * @param type  The type of the rows.
+     * @return Primary key -> row, only for the rows that exist.
+     */
+    protected <T extends ManagedObject> Map<String, T> getAll(String table, Collection<String> ids, Class<T> type) {
+        return storage.getAll(table, ids, type);
     }
 
     private static void log(String message, Object... fmtArgs) {
@@ -56,8 +164,8 @@ public class ManagedDatabase {
     @Nullable
     @CheckReturnValue
     public CustomCommand getCustomCommand(@Nonnull String guildId, @Nonnull String name) {
-        log("Requesting custom command {}:{} from rethink", guildId, name);
-        return r.table(CustomCommand.DB_TABLE).get(guildId + ":" + name).run(conn, CustomCommand.class);
+        log("Requesting custom command {}:{} from the database", guildId, name);
+        return storage.get(CustomCommand.DB_TABLE, guildId + ":" + name, CustomCommand.class);
     }
 
     @Nullable
@@ -81,18 +189,29 @@ public class ManagedDatabase {
     @Nonnull
     @CheckReturnValue
     public List<CustomCommand> getCustomCommands() {
-        log("Requesting all custom commands from rethink");
-        Cursor<CustomCommand> c = r.table(CustomCommand.DB_TABLE).run(conn, CustomCommand.class);
-        return c.toList();
+        try(Stream<CustomCommand> stream = streamCustomCommands()) {
+            return stream.collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Streams every custom command, fetching them from the database in batches as the stream is consumed. Has to be closed.
+     *
+     * @return The stream.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public Stream<CustomCommand> streamCustomCommands() {
+        log("Streaming all custom commands from the database");
+        return storage.stream(CustomCommand.DB_TABLE, CustomCommand.class);
     }
 
     @Nonnull
     @CheckReturnValue
     public List<CustomCommand> getCustomCommands(@Nonnull String guildId) {
-        log("Requesting all custom commands from guild {} from rethink", guildId);
-        String pattern = '^' + guildId + ':';
-        Cursor<CustomCommand> c = r.table(CustomCommand.DB_TABLE).filter(quote -> quote.g("id").match(pattern)).run(conn, CustomCommand.class);
-        return c.toList();
+        log("Requesting all custom commands from guild {} from the database", guildId);
+        //Ids are guildId:name, and ';' comes right after ':', so this is every id starting with guildId:
+        return storage.range(CustomCommand.DB_TABLE, guildId + ":", guildId + ";", CustomCommand.class);
     }
 
     @Nonnull
@@ -110,17 +229,15 @@ public class ManagedDatabase {
     @Nonnull
     @CheckReturnValue
     public List<CustomCommand> getCustomCommandsByName(@Nonnull String name) {
-        log("Requesting all custom commands named {} from rethink", name);
-        String pattern = ':' + name + '$';
-        Cursor<CustomCommand> c = r.table(CustomCommand.DB_TABLE).filter(quote -> quote.g("id").match(pattern)).run(conn, CustomCommand.class);
-        return c.toList();
+        log("Requesting all custom commands named {} from the database", name);
+        return storage.getAllByIndex(Index.CUSTOM_COMMAND_NAME, name, CustomCommand.class);
     }
 
     @Nonnull
     @CheckReturnValue
     public DBGuild getGuild(@Nonnull String guildId) {
-        log("Requesting guild {} from rethink", guildId);
-        DBGuild guild = r.table(DBGuild.DB_TABLE).get(guildId).run(conn, DBGuild.class);
+        log("Requesting guild {} from the database", guildId);
+        DBGuild guild = storage.get(DBGuild.DB_TABLE, guildId, DBGuild.class);
         return guild == null ? DBGuild.of(guildId) : guild;
     }
 
@@ -142,19 +259,39 @@ public class ManagedDatabase {
         return getGuild(event.getGuild());
     }
 
+    /**
+     * Fetches several guilds at once, instead of one round trip per guild.
+     *
+     * @param guildIds The ids of the guilds.
+     * @return Guild id -> guild, for every id. Guilds that aren't on the database get a new one, like {@link #getGuild(String)}.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public Map<String, DBGuild> getGuilds(@Nonnull Collection<String> guildIds) {
+        log("Requesting {} guilds from the database", guildIds.size());
+        Map<String, DBGuild> found = getAll(DBGuild.DB_TABLE, guildIds, DBGuild.class);
+        Map<String, DBGuild> guilds = new LinkedHashMap<>();
+        for(String id : guildIds) {
+            DBGuild guild = found.get(id);
+            guilds.put(id, guild == null ? DBGuild.of(id) : guild);
+        }
+
+        return guilds;
+    }
+
     @Nonnull
     @CheckReturnValue
     public MantaroObj getMantaroData() {
-        log("Requesting MantaroObj from rethink");
-        MantaroObj obj = r.table(MantaroObj.DB_TABLE).get("mantaro").run(conn, MantaroObj.class);
+        log("Requesting MantaroObj from the database");
+        MantaroObj obj = storage.get(MantaroObj.DB_TABLE, "mantaro", MantaroObj.class);
         return obj == null ? MantaroObj.create() : obj;
     }
 
     @Nonnull
     @CheckReturnValue
     public Player getPlayer(@Nonnull String userId) {
-        log("Requesting player {} from rethink", userId);
-        Player player = r.table(Player.DB_TABLE).get(userId + ":g").run(conn, Player.class);
+        log("Requesting player {} from the database", userId);
+        Player player = storage.get(Player.DB_TABLE, userId + ":g", Player.class);
         return player == null ? Player.of(userId) : player;
     }
 
@@ -170,37 +307,81 @@ public class ManagedDatabase {
         return getPlayer(member.getUser());
     }
 
+    /**
+     * Fetches several players at once, instead of one round trip per player.
+     *
+     * @param userIds The ids of the users.
+     * @return User id -> player, for every id. Players that aren't on the database get a new one, like {@link #getPlayer(String)}.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public Map<String, Player> getPlayers(@Nonnull Collection<String> userIds) {
+        log("Requesting {} players from the database", userIds.size());
+        Map<String, Player> found = getAll(Player.DB_TABLE, userIds.stream().map(id -> id + ":g").collect(Collectors.toList()), Player.class);
+        Map<String, Player> players = new LinkedHashMap<>();
+        for(String id : userIds) {
+            Player player = found.get(id + ":g");
+            players.put(id, player == null ? Player.of(id) : player);
+        }
+
+        return players;
+    }
+
     @Nonnull
     @CheckReturnValue
     public List<Player> getPlayers() {
-        log("Requesting all players from rethink");
-        String pattern = ":g$";
-        Cursor<Player> c = r.table(Player.DB_TABLE).filter(quote -> quote.g("id").match(pattern)).run(conn, Player.class);
-        return c.toList();
+        try(Stream<Player> stream = streamPlayers()) {
+            return stream.collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Streams every player, fetching them from the database in batches as the stream is consumed. Has to be closed.
+     *
+     * @return The stream.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public Stream<Player> streamPlayers() {
+        log("Streaming all players from the database");
+        //Local players share the table, they're skipped by the storage so they never get sent or deserialized.
+        return storage.streamByIdSuffix(Player.DB_TABLE, ":g", Player.class);
     }
 
     @Nonnull
     @CheckReturnValue
     public List<PremiumKey> getPremiumKeys() {
-        log("Requesting all premium keys from rethink");
-        Cursor<PremiumKey> c = r.table(PremiumKey.DB_TABLE).run(conn, PremiumKey.class);
-        return c.toList();
+        try(Stream<PremiumKey> stream = streamPremiumKeys()) {
+            return stream.collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Streams every premium key, fetching them from the database in batches as the stream is consumed. Has to be closed.
+     *
+     * @return The stream.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public Stream<PremiumKey> streamPremiumKeys() {
+        log("Streaming all premium keys from the database");
+        return storage.stream(PremiumKey.DB_TABLE, PremiumKey.class);
     }
 
     //Also tests if the key is valid or not!
     @Nullable
     @CheckReturnValue
     public PremiumKey getPremiumKey(@Nullable String id) {
-        log("Requesting premium key {} from rethink", id);
+        log("Requesting premium key {} from the database", id);
         if(id == null) return null;
-        return r.table(PremiumKey.DB_TABLE).get(id).run(conn, PremiumKey.class);
+        return storage.get(PremiumKey.DB_TABLE, id, PremiumKey.class);
     }
 
     @Nonnull
     @CheckReturnValue
     public DBUser getUser(@Nonnull String userId) {
-        log("Requesting user {} from rethink", userId);
-        DBUser user = r.table(DBUser.DB_TABLE).get(userId).run(conn, DBUser.class);
+        log("Requesting user {} from the database", userId);
+        DBUser user = storage.get(DBUser.DB_TABLE, userId, DBUser.class);
         return user == null ? DBUser.of(userId) : user;
     }
 
@@ -216,19 +397,242 @@ public class ManagedDatabase {
         return getUser(member.getUser());
     }
 
+    /**
+     * Fetches several users at once, instead of one round trip per user.
+     *
+     * @param userIds The ids of the users.
+     * @return User id -> user, for every id. Users that aren't on the database get a new one, like {@link #getUser(String)}.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public Map<String, DBUser> getUsers(@Nonnull Collection<String> userIds) {
+        log("Requesting {} users from the database", userIds.size());
+        Map<String, DBUser> found = getAll(DBUser.DB_TABLE, userIds, DBUser.class);
+        Map<String, DBUser> users = new LinkedHashMap<>();
+        for(String id : userIds) {
+            DBUser user = found.get(id);
+            users.put(id, user == null ? DBUser.of(id) : user);
+        }
+
+        return users;
+    }
+
+    /**
+     * Streams the id and birthday of every user, fetching them from the database in batches as the stream is consumed. Has to be closed.
+     * Everything else on the returned users might be missing, so they must never be saved.
+     *
+     * @return The stream.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public Stream<DBUser> streamUserBirthdays() {
+        log("Streaming all user birthdays from the database");
+        return storage.stream(DBUser.DB_TABLE, DBUser.class, "id", "data.birthday");
+    }
+
+    /**
+     * @param leaderboard The leaderboard.
+     * @param limit       How many entries to return.
+     * @return The top global players of the leaderboard, highest first.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public List<LeaderboardEntry> getLeaderboard(@Nonnull Leaderboard leaderboard, int limit) {
+        log("Requesting top {} of the {} leaderboard from the database", limit, leaderboard);
+        return storage.top(leaderboard, limit);
+    }
+
+    /**
+     * @param leaderboard The leaderboard.
+     * @param userId      The user.
+     * @return The position of the user on the leaderboard, starting at 1, or -1 if they don't have a player.
+     */
+    @CheckReturnValue
+    public long getLeaderboardRank(@Nonnull Leaderboard leaderboard, @Nonnull String userId) {
+        log("Requesting rank of {} on the {} leaderboard from the database", userId, leaderboard);
+        return storage.rank(leaderboard, userId);
+    }
+
+    /**
+     * @return How many players (global and local) there are.
+     */
+    @CheckReturnValue
+    public long getPlayerCount() {
+        log("Requesting player count from the database");
+        return storage.count(Player.DB_TABLE);
+    }
+
+    @Nonnull
+    @CheckReturnValue
+    public LocalExperience getLocalExperience(@Nonnull String guildId, @Nonnull String userId) {
+        migrateLocalExperience(guildId);
+        log("Requesting local experience of {} on guild {} from the database", userId, guildId);
+        LocalExperience experience = storage.get(LocalExperience.DB_TABLE, guildId + ":" + userId, LocalExperience.class);
+        return experience == null ? LocalExperience.of(guildId, userId) : experience;
+    }
+
+    /**
+     * Fetches the local experience of every user of a guild, with a single range query.
+     * Guilds that still keep it on their data get it moved to its own table first (once, see the flag on {@link GuildData}).
+     *
+     * @param guildId The guild.
+     * @return The local experience of every user of the guild, in no particular order.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public List<LocalExperience> getLocalExperience(@Nonnull String guildId) {
+        migrateLocalExperience(guildId);
+        log("Requesting local experience of guild {} from the database", guildId);
+        return storage.range(LocalExperience.DB_TABLE, guildId + ":", guildId + ";", LocalExperience.class);
+    }
+
+    /**
+     * @param guildId The guild.
+     * @return The top {@link LocalLeaderboards#SIZE} local players of the guild, highest first.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public List<LocalExperience> getLocalLeaderboard(@Nonnull String guildId) {
+        return LocalLeaderboards.get(guildId);
+    }
+
+    //Runs once per guild, ever: the flag is saved on the guild along with the emptied list, so the old rows can't overwrite newer ones later.
+    //Called by EntityUpdater before taking the experience lock too, so the guild lock is never taken while holding it.
+    void migrateLocalExperience(String guildId) {
+        if(migratedLocalExperience.contains(guildId))
+            return;
+
+        if(!getGuild(guildId).getData().isLocalExperienceMigrated()) {
+            updater.updateGuild(guildId, guild -> {
+                GuildData data = guild.getData();
+                if(data.isLocalExperienceMigrated())
+                    return null;
+
+                List<LocalExperienceData> old = data.getLocalPlayerExperience();
+                if(old != null && !old.isEmpty()) {
+                    log.info("Moving the local experience of {} users of guild {} to its own table", old.size(), guildId);
+                    storage.saveAll(LocalExperience.DB_TABLE, old.stream()
+                            .map(d -> new LocalExperience(guildId + ":" + d.getUserId(), d.getExperience(), d.getLevel()))
+                            .collect(Collectors.toList()));
+                }
+                data.setLocalPlayerExperience(new ArrayList<>());
+                data.setLocalExperienceMigrated(true);
+                return null;
+            });
+        }
+        migratedLocalExperience.add(guildId);
+    }
+
+    /**
+     * Atomically adds experience and levels to the specified players, in a single query.
+     * Only the experience and level fields get touched, so nothing else saved in-between gets overwritten.
+     * Players that don't exist on the database are skipped.
+     *
+     * @param increments User id -> (experience, levels) to add.
+     */
+    public void addExperience(@Nonnull Map<String, Pair<Long, Long>> increments) {
+        log("Adding experience to {} players on the database", increments.size());
+        storage.addExperience(increments);
+    }
+
     public void save(@Nonnull ManagedObject object) {
-        log("Saving {} {}:{} to rethink", object.getClass().getSimpleName(), object.getTableName(), object.getDatabaseId());
-        r.table(object.getTableName())
-                .insert(object)
-                .optArg("conflict", "replace")
-                .runNoReply(conn);
+        log("Saving {} {}:{} to the database", object.getClass().getSimpleName(), object.getTableName(), object.getDatabaseId());
+        writeQueue.discard(object);
+        storage.save(object);
+
+        object.clearChanges();
+        onSaved(object);
+    }
+
+    /**
+     * Writes only the properties that changed since {@link ManagedObject#trackChanges()} or the last save, instead of replacing the whole document.
+     * Falls back to {@link #save(ManagedObject)} if the object isn't tracking its changes, has an async write pending or isn't on the database yet.
+     *
+     * @param object The object to save.
+     */
+    public void saveChanges(@Nonnull ManagedObject object) {
+        Map<String, Object> changes = object.changes();
+        //A queued write could come from another copy of the object, with changes this one doesn't know about.
+        if(changes == null || writeQueue.isPending(object)) {
+            save(object);
+            return;
+        }
+
+        if(changes.isEmpty()) {
+            log("Nothing changed on {} {}:{}, skipping save", object.getClass().getSimpleName(), object.getTableName(), object.getDatabaseId());
+            return;
+        }
+
+        log("Saving {} changed properties of {} {}:{} to the database", changes.size(), object.getClass().getSimpleName(), object.getTableName(), object.getDatabaseId());
+        if(!storage.update(object.getTableName(), object.getId(), changes)) {
+            save(object);
+            return;
+        }
+
+        object.clearChanges();
+        onSaved(object);
+    }
+
+    public void saveAsync(@Nonnull ManagedObject object) {
+        log("Queueing save of {} {}:{} to the database", object.getClass().getSimpleName(), object.getTableName(), object.getDatabaseId());
+        writeQueue.save(object);
     }
 
     public void delete(@Nonnull ManagedObject object) {
-        log("Deleting {} {}:{} from rethink", object.getClass().getSimpleName(), object.getTableName(), object.getDatabaseId());
-        r.table(object.getTableName())
-                .get(object.getId())
-                .delete()
-                .runNoReply(conn);
+        log("Deleting {} {}:{} from the database", object.getClass().getSimpleName(), object.getTableName(), object.getDatabaseId());
+        writeQueue.discard(object);
+        storage.delete(object.getTableName(), object.getId());
+
+        onDeleted(object);
+    }
+
+    public void deleteAsync(@Nonnull ManagedObject object) {
+        log("Queueing deletion of {} {}:{} from the database", object.getClass().getSimpleName(), object.getTableName(), object.getDatabaseId());
+        writeQueue.delete(object);
+    }
+
+    /**
+     * Sends the metrics of this database to StatsD.
+     *
+     * @param client The client to send the values with.
+     */
+    public void report(@Nonnull StatsDClient client) {
+        writeQueue.report(client);
+        storage.report(client);
+        DatabaseMetrics.report(client);
+    }
+
+    private void onSaved(ManagedObject object) {
+        fire(saveListeners, object);
+    }
+
+    private void onDeleted(ManagedObject object) {
+        fire(deleteListeners, object);
+    }
+
+    //The write already happened, so a broken listener shouldn't make it look like it didn't.
+    private static void fire(List<Listener<?>> listeners, ManagedObject object) {
+        for(Listener<?> listener : listeners) {
+            try {
+                listener.accept(object);
+            } catch(Exception e) {
+                log.error("Error running listener for {} {}:{}", object.getClass().getSimpleName(), object.getTableName(), object.getDatabaseId(), e);
+            }
+        }
+    }
+
+    private static class Listener<T extends ManagedObject> {
+        private final Class<T> type;
+        private final Consumer<? super T> action;
+
+        Listener(Class<T> type, Consumer<? super T> action) {
+            this.type = type;
+            this.action = action;
+        }
+
+        void accept(ManagedObject object) {
+            if(type.isInstance(object))
+                action.accept(type.cast(object));
+        }
     }
 }
@@ -20,6 +20,8 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import net.kodehawa.mantarobot.data.MantaroData;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Map;
 
 public interface ManagedObject {
     @SuppressWarnings("NullableProblems")
@@ -45,10 +47,40 @@ public interface ManagedObject {
     }
 
     default void deleteAsync() {
-        MantaroData.queue(this::delete);
+        MantaroData.db().deleteAsync(this);
     }
 
     default void saveAsync() {
-        MantaroData.queue(this::save);
+        MantaroData.db().saveAsync(this);
+    }
+
+    /**
+     * Saves only what changed since {@link #trackChanges()} or the last save, or the whole object if it wasn't tracking them.
+     *
+     * @see ManagedDatabase#saveChanges(ManagedObject)
+     */
+    default void saveChanges() {
+        MantaroData.db().saveChanges(this);
+    }
+
+    /**
+     * Starts keeping track of what changes on this object, so {@link #saveChanges()} can write only that.
+     * Call it right before changing the object, nothing is tracked by default as it's about as expensive as serializing the object.
+     */
+    default void trackChanges() {
+    }
+
+    /**
+     * @return The properties that changed since {@link #trackChanges()} or the last save, by path. Null if this object isn't tracking them.
+     */
+    @Nullable
+    default Map<String, Object> changes() {
+        return null;
+    }
+
+    /**
+     * Forgets every change made until now, called once they've been saved.
+     */
+    default void clearChanges() {
     }
 }
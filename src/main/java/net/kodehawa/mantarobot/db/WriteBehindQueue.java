@@ -0,0 +1,319 @@
+/*
+ * Copyright (C) 2016-2018 David Alejandro Rubio Escares / Kodehawa
+ *
+ * Mantaro is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * Mantaro is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mantaro.  If not, see http://www.gnu.org/licenses/
+ */
+
+package net.kodehawa.mantarobot.db;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.timgroup.statsd.StatsDClient;
+import lombok.extern.slf4j.Slf4j;
+import net.kodehawa.mantarobot.db.storage.Storage;
+import net.kodehawa.mantarobot.utils.stats.LatencyRecorder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Write-behind queue for {@link ManagedObject#saveAsync()} and {@link ManagedObject#deleteAsync()}.
+ * <p>
+ * Only the latest pending write of every (table, id) is kept, so saving the same object five times before a flush only writes it once.
+ * Every few milliseconds (or as soon as enough objects are pending) the queue gets written on its own thread, as one multi-document insert
+ * and one delete per table. Flushes never overlap, so writes to the same object always land in order.
+ * <p>
+ * Reads don't go through the queue: until the flush, the storage still returns the previous version (redis already has the new one).
+ * Synchronous writes of an object that's being flushed wait for that flush, so the older version can't land after them.
+ */
+@Slf4j
+public class WriteBehindQueue {
+    //Failed writes get retried on the next flushes, up to this many times.
+    private static final int MAX_ATTEMPTS = 5;
+
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, PendingWrite>> tables = new ConcurrentHashMap<>();
+    //table:id of everything the current flush took out of the queue and didn't finish writing yet.
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LatencyRecorder flushLatency = new LatencyRecorder();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("WriteBehindQueue-Flusher").setDaemon(true).build()
+    );
+    private final Storage storage;
+    private final int batchSize;
+    private final Consumer<ManagedObject> onSaved;
+    private final Consumer<ManagedObject> onDeleted;
+
+    /**
+     * @param storage       The storage to write to.
+     * @param flushInterval How often to write the pending objects, in milliseconds.
+     * @param batchSize     How many objects to write per query, also how many can be pending before writing early.
+     * @param onSaved       Called after an object has been written.
+     * @param onDeleted     Called after an object has been deleted.
+     */
+    public WriteBehindQueue(Storage storage, long flushInterval, int batchSize, Consumer<ManagedObject> onSaved, Consumer<ManagedObject> onDeleted) {
+        if(batchSize < 1)
+            throw new IllegalArgumentException("Batch size must be at least 1");
+
+        this.storage = storage;
+        this.batchSize = batchSize;
+        this.onSaved = onSaved;
+        this.onDeleted = onDeleted;
+
+        executor.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    public void save(ManagedObject object) {
+        queue(object, false);
+    }
+
+    public void delete(ManagedObject object) {
+        queue(object, true);
+    }
+
+    /**
+     * Drops the pending write of an object, if any. Used when the object is being written synchronously, so the older pending version
+     * doesn't overwrite it later. If a flush is writing an older version right now, waits for it to finish first.
+     *
+     * @param object The object.
+     */
+    public void discard(ManagedObject object) {
+        remove(object);
+        if(inFlight.contains(key(object.getTableName(), object.getId()))) {
+            //Flushes hold the lock, so this waits for the write to land (or fail and get re-queued, which is dropped again here).
+            synchronized(this) {
+                remove(object);
+            }
+        }
+    }
+
+    /**
+     * @param object The object.
+     * @return Whether a write (or delete) of the object is waiting to be flushed, or being flushed right now.
+     */
+    public boolean isPending(ManagedObject object) {
+        ConcurrentHashMap<String, PendingWrite> table = tables.get(object.getTableName());
+        return (table != null && table.containsKey(object.getId())) || inFlight.contains(key(object.getTableName(), object.getId()));
+    }
+
+    /**
+     * @return How many objects are waiting to be written.
+     */
+    public int getDepth() {
+        return depth.get();
+    }
+
+    /**
+     * @return How many writes were skipped since startup because a newer version of the same object was queued before the flush.
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    /**
+     * @return How many objects were written (or deleted) since startup.
+     */
+    public long getWrittenCount() {
+        return written.sum();
+    }
+
+    /**
+     * @return How many writes were given up on since startup, after failing {@value #MAX_ATTEMPTS} times.
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public LatencyRecorder getFlushLatency() {
+        return flushLatency;
+    }
+
+    /**
+     * Sends the queue depth, flush latency and coalesced writes to StatsD.
+     *
+     * @param client The client to send the values with.
+     */
+    public void report(StatsDClient client) {
+        client.recordGaugeValue("db_write_queue.depth", getDepth());
+        client.recordGaugeValue("db_write_queue.coalesced", getCoalescedCount());
+        client.recordGaugeValue("db_write_queue.written", getWrittenCount());
+        client.recordGaugeValue("db_write_queue.dropped", getDroppedCount());
+        flushLatency.report(client, "db_write_queue.flush");
+    }
+
+    /**
+     * Writes everything that's pending, on the calling thread.
+     */
+    public synchronized void flush() {
+        flushQueued.set(false);
+        if(depth.get() == 0)
+            return;
+
+        for(Map.Entry<String, ConcurrentHashMap<String, PendingWrite>> entry : tables.entrySet()) {
+            String table = entry.getKey();
+            ConcurrentHashMap<String, PendingWrite> pending = entry.getValue();
+            if(pending.isEmpty())
+                continue;
+
+            List<PendingWrite> saves = new ArrayList<>();
+            List<PendingWrite> deletes = new ArrayList<>();
+            for(PendingWrite write : pending.values()) {
+                //Marked before leaving the queue, so discard() can't miss it in-between.
+                String key = key(table, write.object.getId());
+                if(!inFlight.add(key))
+                    continue; //Queued again after an older version got taken, that one has to land first.
+
+                if(!pending.remove(write.object.getId(), write)) {
+                    inFlight.remove(key);
+                    continue; //Replaced in-between, the new one gets written next time.
+                }
+
+                depth.decrementAndGet();
+                (write.delete ? deletes : saves).add(write);
+                if(saves.size() >= batchSize) {
+                    write(table, saves, false);
+                    saves = new ArrayList<>();
+                }
+
+                if(deletes.size() >= batchSize) {
+                    write(table, deletes, true);
+                    deletes = new ArrayList<>();
+                }
+            }
+
+            write(table, saves, false);
+            write(table, deletes, true);
+        }
+    }
+
+    /**
+     * Stops the flusher and writes whatever is still pending. Called by {@link ManagedDatabase#close()}, before the storage gets closed.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch(InterruptedException ignored) { }
+
+        flush();
+    }
+
+    private void queue(ManagedObject object, boolean delete) {
+        PendingWrite old = tables.computeIfAbsent(object.getTableName(), ignored -> new ConcurrentHashMap<>())
+                .put(object.getId(), new PendingWrite(object, delete));
+
+        if(old != null) {
+            coalesced.increment();
+        } else if(depth.incrementAndGet() >= batchSize && flushQueued.compareAndSet(false, true)) {
+            executor.execute(this::flush);
+        }
+    }
+
+    private void write(String table, List<PendingWrite> writes, boolean delete) {
+        if(writes.isEmpty())
+            return;
+
+        long start = System.nanoTime();
+        try {
+            if(delete) {
+                List<String> ids = new ArrayList<>(writes.size());
+                for(PendingWrite write : writes) {
+                    ids.add(write.object.getId());
+                }
+
+                storage.deleteAll(table, ids);
+            } else {
+                List<ManagedObject> objects = new ArrayList<>(writes.size());
+                for(PendingWrite write : writes) {
+                    objects.add(write.object);
+                }
+
+                storage.saveAll(table, objects);
+            }
+        } catch(Exception e) {
+            //Most likely lost the connection, put them back unless there's something newer already.
+            //Synchronous writes of these wait for this to return, and drop them again.
+            log.error("Error while writing {} objects to table {}, re-queueing", writes.size(), table, e);
+            ConcurrentHashMap<String, PendingWrite> pending = tables.get(table);
+            for(PendingWrite write : writes) {
+                if(write.attempts + 1 >= MAX_ATTEMPTS) {
+                    log.error("Giving up on writing {}:{} after {} attempts", table, write.object.getId(), MAX_ATTEMPTS);
+                    dropped.increment();
+                    continue;
+                }
+
+                if(pending.putIfAbsent(write.object.getId(), write.retry()) == null)
+                    depth.incrementAndGet();
+            }
+            return;
+        } finally {
+            flushLatency.record(System.nanoTime() - start);
+            for(PendingWrite write : writes) {
+                inFlight.remove(key(table, write.object.getId()));
+            }
+        }
+
+        written.add(writes.size());
+        for(PendingWrite write : writes) {
+            try {
+                (delete ? onDeleted : onSaved).accept(write.object);
+            } catch(Exception e) {
+                log.error("Error while running write callback for {}:{}", table, write.object.getId(), e);
+            }
+        }
+    }
+
+    private void remove(ManagedObject object) {
+        ConcurrentHashMap<String, PendingWrite> table = tables.get(object.getTableName());
+        if(table != null && table.remove(object.getId()) != null)
+            depth.decrementAndGet();
+    }
+
+    private static String key(String table, String id) {
+        return table + ":" + id;
+    }
+
+    private static class PendingWrite {
+        final ManagedObject object;
+        final boolean delete;
+        //How many times writing this failed already.
+        final int attempts;
+
+        PendingWrite(ManagedObject object, boolean delete) {
+            this(object, delete, 0);
+        }
+
+        private PendingWrite(ManagedObject object, boolean delete, int attempts) {
+            this.object = object;
+            this.delete = delete;
+            this.attempts = attempts;
+        }
+
+        PendingWrite retry() {
+            return new PendingWrite(object, delete, attempts + 1);
+        }
+    }
+}
@@ -19,30 +19,36 @@ package net.kodehawa.mantarobot.db.entities;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.ToString;
 import net.dv8tion.jda.core.JDA;
 import net.dv8tion.jda.core.entities.User;
 import net.kodehawa.mantarobot.data.MantaroData;
+import net.kodehawa.mantarobot.db.ChangeTracker;
 import net.kodehawa.mantarobot.db.ManagedObject;
 import net.kodehawa.mantarobot.db.entities.helpers.UserData;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.beans.ConstructorProperties;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
 import static java.lang.System.currentTimeMillis;
 
 @Getter
-@ToString
+@ToString(exclude = "tracker")
 @EqualsAndHashCode
 public class DBUser implements ManagedObject {
     public static final String DB_TABLE = "users";
     private final UserData data;
     private final String id;
     private long premiumUntil;
+    @Getter(AccessLevel.NONE)
+    private final transient ChangeTracker tracker;
 
     @JsonCreator
     @ConstructorProperties({"id", "premiumUntil", "data"})
@@ -50,6 +56,7 @@ public class DBUser implements ManagedObject {
         this.id = id;
         this.premiumUntil = premiumUntil;
         this.data = data;
+        this.tracker = new ChangeTracker(this, data);
     }
 
     public static DBUser of(String id) {
@@ -63,6 +70,22 @@ public class DBUser implements ManagedObject {
         return DB_TABLE;
     }
 
+    @Override
+    public void trackChanges() {
+        tracker.start();
+    }
+
+    @Nullable
+    @Override
+    public Map<String, Object> changes() {
+        return tracker.changes();
+    }
+
+    @Override
+    public void clearChanges() {
+        tracker.reset();
+    }
+
     public User getUser(JDA jda) {
         return jda.getUserById(getId());
     }
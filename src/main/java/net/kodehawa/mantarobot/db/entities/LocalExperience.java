@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2016-2018 David Alejandro Rubio Escares / Kodehawa
+ *
+ * Mantaro is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * Mantaro is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mantaro.  If not, see http://www.gnu.org/licenses/
+ */
+package net.kodehawa.mantarobot.db.entities;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+import lombok.Setter;
+import net.kodehawa.mantarobot.db.ManagedObject;
+
+import javax.annotation.Nonnull;
+import java.beans.ConstructorProperties;
+
+/**
+ * Experience of a user on a single guild. Keyed by guildId:userId, so all the users of a guild can be fetched with a range query.
+ */
+@Getter
+public class LocalExperience implements ManagedObject {
+    public static final String DB_TABLE = "localexperience";
+    private final String id;
+    @Setter
+    private long experience;
+    @Setter
+    private long level;
+
+    @JsonCreator
+    @ConstructorProperties({"id", "experience", "level"})
+    public LocalExperience(@JsonProperty("id") String id, @JsonProperty("experience") long experience, @JsonProperty("level") long level) {
+        this.id = id;
+        this.experience = experience;
+        this.level = level;
+    }
+
+    public static LocalExperience of(String guildId, String userId) {
+        return new LocalExperience(guildId + ":" + userId, 0, 0);
+    }
+
+    @JsonIgnore
+    @Override
+    @Nonnull
+    public String getTableName() {
+        return DB_TABLE;
+    }
+
+    @JsonIgnore
+    public String getGuildId() {
+        return getId().split(":", 2)[0];
+    }
+
+    @JsonIgnore
+    public String getUserId() {
+        return getId().split(":", 2)[1];
+    }
+
+    @JsonIgnore
+    public LocalExperience copy() {
+        return new LocalExperience(id, experience, level);
+    }
+}
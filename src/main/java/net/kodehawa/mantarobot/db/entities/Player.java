@@ -25,11 +25,13 @@ import net.dv8tion.jda.core.entities.Member;
 import net.dv8tion.jda.core.entities.User;
 import net.kodehawa.mantarobot.commands.currency.item.ItemStack;
 import net.kodehawa.mantarobot.commands.currency.item.Items;
+import net.kodehawa.mantarobot.db.ChangeTracker;
 import net.kodehawa.mantarobot.db.ManagedObject;
 import net.kodehawa.mantarobot.db.entities.helpers.Inventory;
 import net.kodehawa.mantarobot.db.entities.helpers.PlayerData;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.beans.ConstructorProperties;
 import java.util.HashMap;
 import java.util.Map;
@@ -44,6 +46,7 @@ public class Player implements ManagedObject {
     @Getter
     private final String id;
     private final transient Inventory inventory = new Inventory();
+    private final transient ChangeTracker tracker;
     @Getter
     private Long level = null;
     @Getter
@@ -61,6 +64,7 @@ public class Player implements ManagedObject {
         this.reputation = reputation == null ? 0 : reputation;
         this.data = data;
         this.inventory.replaceWith(unserialize(inventory));
+        this.tracker = new ChangeTracker(this, data);
     }
 
     /**
@@ -104,6 +108,22 @@ public class Player implements ManagedObject {
         return getUserId();
     }
 
+    @Override
+    public void trackChanges() {
+        tracker.start();
+    }
+
+    @Nullable
+    @Override
+    public Map<String, Object> changes() {
+        return tracker.changes();
+    }
+
+    @Override
+    public void clearChanges() {
+        tracker.reset();
+    }
+
     /**
      * Adds x amount of money from the player.
      *
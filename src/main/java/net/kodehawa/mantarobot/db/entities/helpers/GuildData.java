@@ -81,7 +81,9 @@ public class GuildData {
     private Set<String> blackListedImageTags = new HashSet<>();
     private String logJoinChannel = null;
     private String logLeaveChannel = null;
+    //Moved to the localexperience table, only kept so it can be migrated. See ManagedDatabase#getLocalExperience(String).
     private List<LocalExperienceData> localPlayerExperience = new ArrayList<>();
+    private boolean localExperienceMigrated = false;
     private Set<String> linkProtectionAllowedUsers = new HashSet<>();
     private HashMap<String, List<Category>> roleSpecificDisabledCategories = new HashMap<>();
     private HashMap<String, List<String>> roleSpecificDisabledCommands = new HashMap<>();
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2016-2018 David Alejandro Rubio Escares / Kodehawa
+ *
+ * Mantaro is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * Mantaro is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mantaro.  If not, see http://www.gnu.org/licenses/
+ */
+
+package net.kodehawa.mantarobot.db.redis;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import io.netty.buffer.ByteBuf;
+import net.kodehawa.mantarobot.db.entities.helpers.GuildData;
+import net.kodehawa.mantarobot.db.entities.helpers.PlayerData;
+import net.kodehawa.mantarobot.db.entities.helpers.UserData;
+import org.redisson.client.codec.Codec;
+import org.redisson.client.protocol.Decoder;
+import org.redisson.client.protocol.Encoder;
+import org.redisson.codec.JsonJacksonCodec;
+
+/**
+ * Redis codec that writes values in the configured format but reads both JSON and Smile, so switching formats doesn't need a cache flush:
+ * old entries keep being readable until they get overwritten or expire.
+ * <p>
+ * Smile is Jackson's binary JSON, it back-references repeated field names and stores numbers in binary. On top of that, the Smile mapper
+ * skips every {@link GuildData}/{@link PlayerData}/{@link UserData} field still holding its default value, which is most of them.
+ * <p>
+ * Map keys are always written as JSON, so existing keys keep matching no matter the format.
+ */
+public class MigratingCodec implements Codec {
+    //Every Smile document starts with ":)\n".
+    private static final byte[] SMILE_HEADER = {':', ')', '\n'};
+
+    private final Codec json;
+    private final Codec smile;
+    private final Codec writer;
+    private final Decoder<Object> decoder;
+
+    /**
+     * @param mapper The JSON mapper to use.
+     * @param format The format new values get written in.
+     */
+    public MigratingCodec(ObjectMapper mapper, Format format) {
+        this.json = new JsonJacksonCodec(mapper);
+        this.smile = new JsonJacksonCodec(smileMapper());
+        this.writer = format == Format.SMILE ? smile : json;
+        this.decoder = (buf, state) -> (isSmile(buf) ? smile : json).getValueDecoder().decode(buf, state);
+    }
+
+    /**
+     * @return A Smile mapper that skips the helper fields holding default values.
+     */
+    public static ObjectMapper smileMapper() {
+        return new ObjectMapper(new SmileFactory())
+                .addMixIn(GuildData.class, ElideDefaults.class)
+                .addMixIn(PlayerData.class, ElideDefaults.class)
+                .addMixIn(UserData.class, ElideDefaults.class);
+    }
+
+    private static boolean isSmile(ByteBuf buf) {
+        int start = buf.readerIndex();
+        if(buf.readableBytes() < SMILE_HEADER.length)
+            return false;
+
+        for(int i = 0; i < SMILE_HEADER.length; i++) {
+            if(buf.getByte(start + i) != SMILE_HEADER[i])
+                return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public Decoder<Object> getMapValueDecoder() {
+        return decoder;
+    }
+
+    @Override
+    public Encoder getMapValueEncoder() {
+        return writer.getMapValueEncoder();
+    }
+
+    @Override
+    public Decoder<Object> getMapKeyDecoder() {
+        return json.getMapKeyDecoder();
+    }
+
+    @Override
+    public Encoder getMapKeyEncoder() {
+        return json.getMapKeyEncoder();
+    }
+
+    @Override
+    public Decoder<Object> getValueDecoder() {
+        return decoder;
+    }
+
+    @Override
+    public Encoder getValueEncoder() {
+        return writer.getValueEncoder();
+    }
+
+    public enum Format {
+        JSON, SMILE
+    }
+
+    //Compared against a default instance of the class, so a field only gets skipped if reading it back gives the same value.
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    private static abstract class ElideDefaults {
+    }
+}
@@ -16,22 +16,44 @@
 
 package net.kodehawa.mantarobot.db.redis;
 
-import com.rethinkdb.net.Connection;
+import com.timgroup.statsd.StatsDClient;
 import lombok.extern.slf4j.Slf4j;
 import net.kodehawa.mantarobot.ExtraRuntimeOptions;
+import net.kodehawa.mantarobot.db.DatabaseMetrics;
+import net.kodehawa.mantarobot.db.GlobalAccessIndex;
 import net.kodehawa.mantarobot.db.ManagedDatabase;
 import net.kodehawa.mantarobot.db.ManagedObject;
+import net.kodehawa.mantarobot.db.SingleFlight;
 import net.kodehawa.mantarobot.db.entities.*;
+import net.kodehawa.mantarobot.db.storage.Storage;
+import net.kodehawa.mantarobot.utils.Pair;
 import net.kodehawa.mantarobot.utils.Utils;
 import org.redisson.api.RBucket;
+import org.redisson.api.RFuture;
+import org.redisson.api.RLocalCachedMap;
+import org.redisson.api.RLock;
 import org.redisson.api.RMap;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
 
 import javax.annotation.CheckReturnValue;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 @Slf4j
 public class RedisCachedDatabase extends ManagedDatabase {
@@ -43,6 +65,8 @@ public class RedisCachedDatabase extends ManagedDatabase {
             PremiumKey.class, "key"
     ));
 
+    private static final String NODE_ID = UUID.randomUUID().toString();
+
     private final RMap<String, CustomCommand> ccMap;
     private final RMap<String, DBGuild> guildMap;
     private final RMap<String, PremiumKey> keyMap;
@@ -50,21 +74,43 @@ public class RedisCachedDatabase extends ManagedDatabase {
     private final Map<Class<? extends ManagedObject>, RMap<String, ManagedObject>> map;
     private final RMap<String, Player> playerMap;
     private final RMap<String, DBUser> userMap;
+    //Tells the other nodes MantaroObj changed, so they can drop their GlobalAccessIndex.
+    private final RTopic<String> mantaroTopic;
+    private final SingleFlight<String> loads = new SingleFlight<>();
+    //Null if loads aren't locked across nodes.
+    private final RedissonClient lockClient;
+    private final long lockWaitMs;
+    private final long lockLeaseMs;
+    private final LongAdder lockCoalesced = new LongAdder();
 
-    public RedisCachedDatabase(@Nonnull Connection conn,
+    public RedisCachedDatabase(@Nonnull Storage storage,
                                @Nonnull RMap<String, CustomCommand> ccMap,
                                @Nonnull RMap<String, DBGuild> guildMap,
                                @Nonnull RMap<String, Player> playerMap,
                                @Nonnull RMap<String, DBUser> userMap,
                                @Nonnull RMap<String, PremiumKey> keyMap,
-                               @Nonnull RBucket<MantaroObj> mantaroBucket) {
-        super(conn);
+                               @Nonnull RBucket<MantaroObj> mantaroBucket,
+                               @Nonnull RTopic<String> mantaroTopic,
+                               @Nullable RedissonClient lockClient,
+                               long lockWaitMs,
+                               long lockLeaseMs) {
+        super(storage);
+        this.lockClient = lockClient;
+        this.lockWaitMs = lockWaitMs;
+        this.lockLeaseMs = lockLeaseMs;
         this.ccMap = ccMap;
         this.guildMap = guildMap;
         this.playerMap = playerMap;
         this.userMap = userMap;
         this.keyMap = keyMap;
         this.mantaroBucket = mantaroBucket;
+        this.mantaroTopic = mantaroTopic;
+        this.mantaroTopic.addListener((channel, node) -> {
+            if(!NODE_ID.equals(node)) {
+                log("MantaroObj changed on node {}, invalidating global access index", node);
+                GlobalAccessIndex.invalidate();
+            }
+        });
         this.map = Collections.unmodifiableMap(Utils.map(
                 CustomCommand.class, ccMap,
                 DBGuild.class, guildMap,
@@ -92,17 +138,15 @@ public class RedisCachedDatabase extends ManagedDatabase {
     @CheckReturnValue
     public CustomCommand getCustomCommand(@Nonnull String guildId, @Nonnull String name) {
         log("Getting custom command {}:{} from cache", guildId, name);
-        return ccMap.computeIfAbsent("cc:" + guildId + ":" + name, ignored -> super.getCustomCommand(guildId, name));
+        return load(CustomCommand.DB_TABLE, ccMap, "cc:" + guildId + ":" + name, () -> super.getCustomCommand(guildId, name));
     }
 
     @Override
     @Nonnull
     @CheckReturnValue
-    public List<CustomCommand> getCustomCommands() {
-        List<CustomCommand> list = super.getCustomCommands();
+    public Stream<CustomCommand> streamCustomCommands() {
         log("Caching all custom commands");
-        list.forEach(command -> ccMap.fastPutAsync(command.getId(), command));
-        return list;
+        return cacheAll(super.streamCustomCommands(), ccMap, "cc");
     }
 
     @Override
@@ -111,7 +155,7 @@ public class RedisCachedDatabase extends ManagedDatabase {
     public List<CustomCommand> getCustomCommands(@Nonnull String guildId) {
         List<CustomCommand> list = super.getCustomCommands(guildId);
         log("Caching all custom commands from guild {}", guildId);
-        list.forEach(command -> ccMap.fastPutAsync(command.getId(), command));
+        list.forEach(command -> ccMap.fastPutAsync("cc:" + command.getId(), command));
         return list;
     }
 
@@ -121,7 +165,7 @@ public class RedisCachedDatabase extends ManagedDatabase {
     public List<CustomCommand> getCustomCommandsByName(@Nonnull String name) {
         List<CustomCommand> list = super.getCustomCommandsByName(name);
         log("Caching all custom commands named {}", name);
-        list.forEach(command -> ccMap.fastPutAsync(command.getId(), command));
+        list.forEach(command -> ccMap.fastPutAsync("cc:" + command.getId(), command));
         return list;
     }
 
@@ -130,7 +174,15 @@ public class RedisCachedDatabase extends ManagedDatabase {
     @CheckReturnValue
     public DBGuild getGuild(@Nonnull String guildId) {
         log("Getting guild {} from cache", guildId);
-        return guildMap.computeIfAbsent("guild:" + guildId, ignored -> super.getGuild(guildId));
+        return load(DBGuild.DB_TABLE, guildMap, "guild:" + guildId, () -> super.getGuild(guildId));
+    }
+
+    @Override
+    @Nonnull
+    @CheckReturnValue
+    public Map<String, DBGuild> getGuilds(@Nonnull Collection<String> guildIds) {
+        log("Getting {} guilds from cache", guildIds.size());
+        return loadAll(DBGuild.DB_TABLE, guildMap, "guild:", guildIds, super::getGuilds);
     }
 
     @Override
@@ -138,10 +190,14 @@ public class RedisCachedDatabase extends ManagedDatabase {
     @CheckReturnValue
     public MantaroObj getMantaroData() {
         log("Getting MantaroObj from cache");
+        long start = System.nanoTime();
         MantaroObj o = mantaroBucket.get();
-        if(o == null) {
-            return getMantaroData(true);
+        boolean hit = o != null;
+        if(!hit) {
+            o = getMantaroData(true);
         }
+
+        DatabaseMetrics.recordLookup(MantaroObj.DB_TABLE, hit, System.nanoTime() - start);
         return o;
     }
 
@@ -151,6 +207,7 @@ public class RedisCachedDatabase extends ManagedDatabase {
         if(updateFromRethink) {
             MantaroObj o = super.getMantaroData();
             mantaroBucket.set(o);
+            GlobalAccessIndex.refresh(o);
             return o;
         } else {
             return getMantaroData();
@@ -162,17 +219,23 @@ public class RedisCachedDatabase extends ManagedDatabase {
     @CheckReturnValue
     public Player getPlayer(@Nonnull String userId) {
         log("Getting player {} from cache", userId);
-        return playerMap.computeIfAbsent("player:" + userId, ignored -> super.getPlayer(userId));
+        return load(Player.DB_TABLE, playerMap, "player:" + userId, () -> super.getPlayer(userId));
     }
 
     @Override
     @Nonnull
     @CheckReturnValue
-    public List<Player> getPlayers() {
-        List<Player> list = super.getPlayers();
+    public Map<String, Player> getPlayers(@Nonnull Collection<String> userIds) {
+        log("Getting {} players from cache", userIds.size());
+        return loadAll(Player.DB_TABLE, playerMap, "player:", userIds, super::getPlayers);
+    }
+
+    @Override
+    @Nonnull
+    @CheckReturnValue
+    public Stream<Player> streamPlayers() {
         log("Caching all players");
-        list.forEach(player -> playerMap.fastPutAsync(player.getId(), player));
-        return list;
+        return cacheAll(super.streamPlayers(), playerMap, "player");
     }
 
     @Override
@@ -183,17 +246,15 @@ public class RedisCachedDatabase extends ManagedDatabase {
         if(id == null)
             return null;
 
-        return keyMap.computeIfAbsent("key:" + id, ignored -> super.getPremiumKey(id));
+        return load(PremiumKey.DB_TABLE, keyMap, "key:" + id, () -> super.getPremiumKey(id));
     }
 
     @Override
     @Nonnull
     @CheckReturnValue
-    public List<PremiumKey> getPremiumKeys() {
-        List<PremiumKey> list = super.getPremiumKeys();
+    public Stream<PremiumKey> streamPremiumKeys() {
         log("Caching all premium keys");
-        list.forEach(key -> keyMap.fastPutAsync(key.getId(), key));
-        return list;
+        return cacheAll(super.streamPremiumKeys(), keyMap, "key");
     }
 
     @Override
@@ -201,13 +262,198 @@ public class RedisCachedDatabase extends ManagedDatabase {
     @CheckReturnValue
     public DBUser getUser(@Nonnull String userId) {
         log("Getting user {} from cache", userId);
-        return userMap.computeIfAbsent("user:" + userId, ignored -> super.getUser(userId));
+        return load(DBUser.DB_TABLE, userMap, "user:" + userId, () -> super.getUser(userId));
+    }
+
+    @Override
+    @Nonnull
+    @CheckReturnValue
+    public Map<String, DBUser> getUsers(@Nonnull Collection<String> userIds) {
+        log("Getting {} users from cache", userIds.size());
+        return loadAll(DBUser.DB_TABLE, userMap, "user:", userIds, super::getUsers);
+    }
+
+    @Override
+    public void addExperience(@Nonnull Map<String, Pair<Long, Long>> increments) {
+        super.addExperience(increments);
+        log("Removing {} players from cache after adding experience", increments.size());
+        //The increment happens on the storage, so the cached copies are stale now.
+        playerMap.fastRemove(increments.keySet().stream().map(id -> "player:" + id).toArray(String[]::new));
     }
 
     @Override
     public void save(@Nonnull ManagedObject object) {
+        if(object instanceof Player) {
+            super.save(object);
+            uncache(object);
+            return;
+        }
+
+        cache(object, true);
+        super.save(object);
+    }
+
+    @Override
+    public void saveAsync(@Nonnull ManagedObject object) {
+        //The cache is updated right away, only the storage write is deferred.
+        cache(object, false);
+        super.saveAsync(object);
+    }
+
+    @Override
+    public void saveChanges(@Nonnull ManagedObject object) {
+        //Only the changed properties reach the storage, but caching the whole object would undo whatever other nodes changed on it
+        //(and bring back the old level and experience of a player loaded before an experience flush). The next read gets the merged row instead.
+        super.saveChanges(object);
+        uncache(object);
+    }
+
+    @Override
+    public void delete(@Nonnull ManagedObject object) {
+        uncache(object);
+        super.delete(object);
+    }
+
+    @Override
+    public void deleteAsync(@Nonnull ManagedObject object) {
+        uncache(object);
+        super.deleteAsync(object);
+    }
+
+    @Override
+    public void report(@Nonnull StatsDClient client) {
+        super.report(client);
+        client.recordGaugeValue("db_cache_loads.count", loads.getLoadCount());
+        client.recordGaugeValue("db_cache_loads.coalesced", loads.getCoalescedCount());
+        client.recordGaugeValue("db_cache_loads.lock_coalesced", lockCoalesced.sum());
+    }
+
+    public SingleFlight<String> getLoads() {
+        return loads;
+    }
+
+    /**
+     * @return How many loads were skipped since startup because another node loaded the key while we waited for its lock.
+     */
+    public long getLockCoalescedCount() {
+        return lockCoalesced.sum();
+    }
+
+    //RMap#computeIfAbsent isn't atomic, so every caller missing at the same time would hit the storage.
+    private <T> T load(String entity, RMap<String, T> map, String key, Supplier<T> loader) {
+        long start = System.nanoTime();
+        RFuture<T> future = map.getAsync(key);
+        //Local cached maps answer from their local copy with an already completed future, anything else has to wait for redis.
+        //There's no other way to ask them where the value came from.
+        boolean near = map instanceof RLocalCachedMap && future.isDone();
+        T cached = future.join();
+        if(cached != null) {
+            DatabaseMetrics.recordLookup(entity, near ? DatabaseMetrics.Operation.NEAR_HIT : DatabaseMetrics.Operation.HIT, System.nanoTime() - start);
+            return cached;
+        }
+
+        try {
+            return loads.load(key, () -> lockClient == null ? loadInto(map, key, loader) : loadLocked(map, key, loader));
+        } finally {
+            DatabaseMetrics.recordLookup(entity, false, System.nanoTime() - start);
+        }
+    }
+
+    private <T> T loadLocked(RMap<String, T> map, String key, Supplier<T> loader) {
+        RLock lock = lockClient.getLock("load-lock:" + key);
+        boolean locked = false;
+        try {
+            //If we don't get it in time, just load it ourselves.
+            locked = lock.tryLock(lockWaitMs, lockLeaseMs, TimeUnit.MILLISECONDS);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            //Another node might have loaded it while we waited.
+            T cached = map.get(key);
+            if(cached != null) {
+                lockCoalesced.increment();
+                return cached;
+            }
+
+            return loadInto(map, key, loader);
+        } finally {
+            if(locked) {
+                try {
+                    lock.unlock();
+                } catch(IllegalMonitorStateException ignored) {
+                    //Lease ran out before we finished.
+                }
+            }
+        }
+    }
+
+    private <T> T loadInto(RMap<String, T> map, String key, Supplier<T> loader) {
+        T value = loader.get();
+        //Not async, so whoever misses right after this load finishes finds it.
+        if(value != null)
+            map.fastPut(key, value);
+        return value;
+    }
+
+    //A single HMGET for every key, then a single storage round trip for whatever wasn't cached.
+    private <T> Map<String, T> loadAll(String entity, RMap<String, T> map, String prefix, Collection<String> ids, Function<Collection<String>, Map<String, T>> loader) {
+        long start = System.nanoTime();
+        try {
+            return fetchAll(entity, map, prefix, ids, loader);
+        } finally {
+            DatabaseMetrics.record(DatabaseMetrics.Layer.CACHE, entity, DatabaseMetrics.Operation.BULK, System.nanoTime() - start);
+        }
+    }
+
+    private <T> Map<String, T> fetchAll(String entity, RMap<String, T> map, String prefix, Collection<String> ids, Function<Collection<String>, Map<String, T>> loader) {
+        Set<String> keys = new LinkedHashSet<>();
+        for(String id : ids) {
+            keys.add(prefix + id);
+        }
+
+        Map<String, T> cached = keys.isEmpty() ? Collections.emptyMap() : map.getAll(keys);
+        Map<String, T> result = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        for(String id : ids) {
+            T value = cached.get(prefix + id);
+            if(value != null)
+                result.put(id, value);
+            else
+                missing.add(id);
+        }
+
+        DatabaseMetrics.count(DatabaseMetrics.Layer.CACHE, entity, DatabaseMetrics.Operation.HIT, result.size());
+        DatabaseMetrics.count(DatabaseMetrics.Layer.CACHE, entity, DatabaseMetrics.Operation.MISS, missing.size());
+        if(missing.isEmpty())
+            return result;
+
+        log("Loading {} missing keys with prefix {} from the storage", missing.size(), prefix);
+        Map<String, T> loaded = loader.apply(missing);
+        Map<String, T> toCache = new HashMap<>();
+        loaded.forEach((id, value) -> toCache.put(prefix + id, value));
+        //Not async either, same reason as loadInto.
+        map.putAll(toCache);
+        result.putAll(loaded);
+        return result;
+    }
+
+    //Writes the rows to redis in batches as they're consumed, waiting for the last batch before sending another one.
+    private <T extends ManagedObject> Stream<T> cacheAll(Stream<T> stream, RMap<String, T> map, String prefix) {
+        BatchWriter<T> writer = new BatchWriter<>(map, prefix, getStreamBatchSize());
+        return stream.peek(writer::add).onClose(writer::finish);
+    }
+
+    //Sync saves wait for redis, so whoever reads it next (the next EntityUpdater mutation, most likely) gets this version.
+    private void cache(ManagedObject object, boolean sync) {
+        //Local experience is always read from the storage (see ManagedDatabase#getLocalExperience), so it's never cached.
+        if(object instanceof LocalExperience) return;
+        DatabaseMetrics.count(DatabaseMetrics.Layer.CACHE, object.getTableName(), DatabaseMetrics.Operation.SAVE, 1);
         if(object instanceof MantaroObj) {
-            mantaroBucket.setAsync((MantaroObj) object);
+            //Not async, as other nodes will re-read it as soon as they get the message.
+            mantaroBucket.set((MantaroObj) object);
+            mantaroTopic.publishAsync(NODE_ID);
         } else {
             Class<? extends ManagedObject> c = object.getClass();
             RMap<String, ManagedObject> m = map.get(c);
@@ -215,15 +461,19 @@ public class RedisCachedDatabase extends ManagedDatabase {
             String prefix = PREFIXES.get(c);
             if(prefix == null) throw new IllegalStateException("No prefix configured for " + c);
             log("Caching {} {}:{}", c.getSimpleName(), prefix, object.getDatabaseId());
-            m.fastPutAsync(prefix + ":" + object.getDatabaseId(), object);
+            if(sync)
+                m.fastPut(prefix + ":" + object.getDatabaseId(), object);
+            else
+                m.fastPutAsync(prefix + ":" + object.getDatabaseId(), object);
         }
-        super.save(object);
     }
 
-    @Override
-    public void delete(@Nonnull ManagedObject object) {
+    private void uncache(ManagedObject object) {
+        if(object instanceof LocalExperience) return;
+        DatabaseMetrics.count(DatabaseMetrics.Layer.CACHE, object.getTableName(), DatabaseMetrics.Operation.DELETE, 1);
         if(object instanceof MantaroObj) {
-            mantaroBucket.deleteAsync();
+            mantaroBucket.delete();
+            mantaroTopic.publishAsync(NODE_ID);
         } else {
             Class<? extends ManagedObject> c = object.getClass();
             RMap<String, ManagedObject> m = map.get(c);
@@ -233,6 +483,45 @@ public class RedisCachedDatabase extends ManagedDatabase {
             log("Removing {} {}:{} from cache", c.getSimpleName(), prefix, object.getDatabaseId());
             m.fastRemoveAsync(prefix + ":" + object.getDatabaseId());
         }
-        super.delete(object);
+    }
+
+    private static class BatchWriter<T extends ManagedObject> {
+        private final RMap<String, T> map;
+        private final String prefix;
+        private final int batchSize;
+        private Map<String, T> batch = new HashMap<>();
+        private RFuture<Void> inFlight;
+
+        BatchWriter(RMap<String, T> map, String prefix, int batchSize) {
+            this.map = map;
+            this.prefix = prefix;
+            this.batchSize = batchSize;
+        }
+
+        void add(T object) {
+            batch.put(prefix + ":" + object.getDatabaseId(), object);
+            if(batch.size() >= batchSize)
+                flush();
+        }
+
+        void finish() {
+            flush();
+            await();
+        }
+
+        private void flush() {
+            if(batch.isEmpty())
+                return;
+
+            //Backpressure: don't read any further than one batch ahead of redis.
+            await();
+            inFlight = map.putAllAsync(batch);
+            batch = new HashMap<>();
+        }
+
+        private void await() {
+            if(inFlight != null)
+                inFlight.awaitUninterruptibly();
+        }
     }
 }
@@ -0,0 +1,381 @@
+/*
+ * Copyright (C) 2016-2018 David Alejandro Rubio Escares / Kodehawa
+ *
+ * Mantaro is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * Mantaro is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mantaro.  If not, see http://www.gnu.org/licenses/
+ */
+
+package net.kodehawa.mantarobot.db.storage;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.util.concurrent.Striped;
+import com.timgroup.statsd.StatsDClient;
+import lombok.extern.slf4j.Slf4j;
+import net.kodehawa.mantarobot.db.ManagedObject;
+import net.kodehawa.mantarobot.db.entities.Player;
+import net.kodehawa.mantarobot.utils.Pair;
+import org.h2.mvstore.Cursor;
+import org.h2.mvstore.FileStore;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Embedded {@link Storage} on a single MVStore file, no server needed. Meant for single-node deployments, tests and benchmarks.
+ * <p>
+ * Every table is a sorted map of primary key -> JSON document, written with Jackson just like the rethink driver does,
+ * so the documents look the same on both backends. Secondary indexes are computed from the keys, and leaderboards scan the players table,
+ * which is fine for the amount of players a single node has.
+ */
+@Slf4j
+public class FileStorage implements Storage {
+    private static final String GLOBAL_PLAYER = ":g";
+
+    private final ObjectMapper mapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final Map<String, MVMap<String, byte[]>> tables = new ConcurrentHashMap<>();
+    //Read-modify-write operations lock the row, so they don't overwrite each other.
+    private final Striped<Lock> locks = Striped.lock(64);
+    private final MVStore store;
+
+    /**
+     * @param file The file to keep everything on, or null to keep everything on memory.
+     */
+    public FileStorage(@Nullable String file) {
+        MVStore.Builder builder = new MVStore.Builder().compress();
+        if(file != null)
+            builder.fileName(file);
+
+        this.store = builder.open();
+        log.info("Opened {} database with {} tables", file == null ? "in-memory" : file, store.getMapNames().size());
+    }
+
+    private MVMap<String, byte[]> table(String name) {
+        return tables.computeIfAbsent(name, store::openMap);
+    }
+
+    private Lock lock(String table, String id) {
+        return locks.get(table + ":" + id);
+    }
+
+    private <T> T read(byte[] bytes, Class<T> type) {
+        try {
+            return mapper.readValue(bytes, type);
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private JsonNode readTree(byte[] bytes) {
+        try {
+            return mapper.readTree(bytes);
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private byte[] write(Object object) {
+        try {
+            return mapper.writeValueAsBytes(object);
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long value(JsonNode node, String... path) {
+        JsonNode value = node;
+        for(String part : path) {
+            value = value.path(part);
+        }
+
+        return value.asLong(0);
+    }
+
+    @Override
+    public void init() {
+        //Indexes are computed from the keys, and maps are created when they're first used.
+    }
+
+    @Nullable
+    @Override
+    public <T> T get(@Nonnull String table, @Nonnull String id, @Nonnull Class<T> type) {
+        byte[] bytes = table(table).get(id);
+        return bytes == null ? null : read(bytes, type);
+    }
+
+    @Nonnull
+    @Override
+    public <T extends ManagedObject> Map<String, T> getAll(@Nonnull String table, @Nonnull Collection<String> ids, @Nonnull Class<T> type) {
+        MVMap<String, byte[]> map = table(table);
+        Map<String, T> found = new HashMap<>();
+        for(String id : ids) {
+            byte[] bytes = map.get(id);
+            if(bytes != null)
+                found.put(id, read(bytes, type));
+        }
+
+        return found;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The whole rows are always read, the fields are ignored.
+     */
+    @Nonnull
+    @Override
+    public <T> Stream<T> stream(@Nonnull String table, @Nonnull Class<T> type, String... fields) {
+        return stream(table, null, type);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The whole rows are always read, the fields are ignored. Rows are skipped by key, before being deserialized.
+     */
+    @Nonnull
+    @Override
+    public <T> Stream<T> streamByIdSuffix(@Nonnull String table, @Nonnull String idSuffix, @Nonnull Class<T> type, String... fields) {
+        return stream(table, idSuffix, type);
+    }
+
+    private <T> Stream<T> stream(String table, @Nullable String idSuffix, Class<T> type) {
+        Cursor<String, byte[]> cursor = table(table).cursor(null);
+        Iterator<T> iterator = new Iterator<T>() {
+            private byte[] next;
+
+            @Override
+            public boolean hasNext() {
+                while(next == null && cursor.hasNext()) {
+                    String id = cursor.next();
+                    if(idSuffix == null || id.endsWith(idSuffix))
+                        next = cursor.getValue();
+                }
+
+                return next != null;
+            }
+
+            @Override
+            public T next() {
+                if(!hasNext())
+                    throw new NoSuchElementException();
+
+                byte[] value = next;
+                next = null;
+                return read(value, type);
+            }
+        };
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    @Nonnull
+    @Override
+    public <T> List<T> range(@Nonnull String table, @Nonnull String from, @Nonnull String to, @Nonnull Class<T> type) {
+        List<T> rows = new ArrayList<>();
+        Cursor<String, byte[]> cursor = table(table).cursor(from);
+        while(cursor.hasNext()) {
+            if(cursor.next().compareTo(to) >= 0)
+                break;
+
+            rows.add(read(cursor.getValue(), type));
+        }
+
+        return rows;
+    }
+
+    @Nonnull
+    @Override
+    public <T> List<T> getAllByIndex(@Nonnull Index index, @Nonnull String key, @Nonnull Class<T> type) {
+        MVMap<String, byte[]> map = table(index.getTable());
+        List<T> rows = new ArrayList<>();
+        Iterator<String> keys = map.keyIterator(null);
+        while(keys.hasNext()) {
+            String id = keys.next();
+            if(!index.key(id).equals(key))
+                continue;
+
+            byte[] bytes = map.get(id);
+            if(bytes != null)
+                rows.add(read(bytes, type));
+        }
+
+        return rows;
+    }
+
+    @Override
+    public long count(@Nonnull String table) {
+        return table(table).sizeAsLong();
+    }
+
+    @Override
+    public void save(@Nonnull ManagedObject object) {
+        byte[] bytes = write(object);
+        Lock lock = lock(object.getTableName(), object.getId());
+        lock.lock();
+        try {
+            table(object.getTableName()).put(object.getId(), bytes);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void saveAll(@Nonnull String table, @Nonnull Collection<? extends ManagedObject> objects) {
+        for(ManagedObject object : objects) {
+            save(object);
+        }
+    }
+
+    @Override
+    public boolean update(@Nonnull String table, @Nonnull String id, @Nonnull Map<String, Object> changes) {
+        MVMap<String, byte[]> map = table(table);
+        Lock lock = lock(table, id);
+        lock.lock();
+        try {
+            byte[] bytes = map.get(id);
+            if(bytes == null)
+                return false;
+
+            ObjectNode document = (ObjectNode) readTree(bytes);
+            changes.forEach((path, value) -> {
+                String[] parts = path.split("\\.");
+                ObjectNode parent = document;
+                for(int i = 0; i < parts.length - 1; i++) {
+                    parent = parent.with(parts[i]);
+                }
+
+                parent.set(parts[parts.length - 1], mapper.valueToTree(value));
+            });
+
+            map.put(id, write(document));
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void delete(@Nonnull String table, @Nonnull String id) {
+        table(table).remove(id);
+    }
+
+    @Override
+    public void deleteAll(@Nonnull String table, @Nonnull Collection<String> ids) {
+        MVMap<String, byte[]> map = table(table);
+        for(String id : ids) {
+            map.remove(id);
+        }
+    }
+
+    @Override
+    public void addExperience(@Nonnull Map<String, Pair<Long, Long>> increments) {
+        MVMap<String, byte[]> map = table(Player.DB_TABLE);
+        increments.forEach((userId, delta) -> {
+            String id = userId + GLOBAL_PLAYER;
+            Lock lock = lock(Player.DB_TABLE, id);
+            lock.lock();
+            try {
+                byte[] bytes = map.get(id);
+                if(bytes == null)
+                    return;
+
+                ObjectNode player = (ObjectNode) readTree(bytes);
+                player.put("level", value(player, "level") + delta.getRight());
+                ObjectNode data = player.with("data");
+                data.put("experience", value(data, "experience") + delta.getLeft());
+                map.put(id, write(player));
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    @Nonnull
+    @Override
+    public List<LeaderboardEntry> top(@Nonnull Leaderboard leaderboard, int limit) {
+        String[] path = leaderboard.getPath();
+        //Lowest on top, so it's the one that gets kicked out.
+        PriorityQueue<LeaderboardEntry> top = new PriorityQueue<>(Comparator.comparingLong(LeaderboardEntry::getValue));
+        Cursor<String, byte[]> cursor = table(Player.DB_TABLE).cursor(null);
+        while(cursor.hasNext()) {
+            String id = cursor.next();
+            if(!id.endsWith(GLOBAL_PLAYER))
+                continue;
+
+            JsonNode player = readTree(cursor.getValue());
+            long value = value(player, path);
+            if(top.size() >= limit && top.peek().getValue() >= value)
+                continue;
+
+            top.add(new LeaderboardEntry(id.substring(0, id.length() - GLOBAL_PLAYER.length()), value, value(player, "data", "experience")));
+            if(top.size() > limit)
+                top.poll();
+        }
+
+        List<LeaderboardEntry> entries = new ArrayList<>(top);
+        entries.sort(Comparator.comparingLong(LeaderboardEntry::getValue).reversed());
+        return entries;
+    }
+
+    @Override
+    public long rank(@Nonnull Leaderboard leaderboard, @Nonnull String userId) {
+        MVMap<String, byte[]> map = table(Player.DB_TABLE);
+        byte[] own = map.get(userId + GLOBAL_PLAYER);
+        if(own == null)
+            return -1;
+
+        String[] path = leaderboard.getPath();
+        long value = value(readTree(own), path);
+        long above = 0;
+        Cursor<String, byte[]> cursor = map.cursor(null);
+        while(cursor.hasNext()) {
+            if(cursor.next().endsWith(GLOBAL_PLAYER) && value(readTree(cursor.getValue()), path) > value)
+                above++;
+        }
+
+        return above + 1;
+    }
+
+    @Override
+    public void report(@Nonnull StatsDClient client) {
+        FileStore file = store.getFileStore();
+        if(file != null)
+            client.recordGaugeValue("db_file.size", file.size());
+    }
+
+    @Override
+    public void close() {
+        store.close();
+    }
+}
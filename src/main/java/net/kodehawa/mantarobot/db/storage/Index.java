@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2016-2018 David Alejandro Rubio Escares / Kodehawa
+ *
+ * Mantaro is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * Mantaro is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mantaro.  If not, see http://www.gnu.org/licenses/
+ */
+
+package net.kodehawa.mantarobot.db.storage;
+
+import net.kodehawa.mantarobot.db.entities.CustomCommand;
+
+import java.util.function.Function;
+
+/**
+ * Secondary indexes the queries rely on. All of them are derived from the primary key, so backends without index support can compute them on the fly.
+ */
+public enum Index {
+    //guildId:name -> name
+    CUSTOM_COMMAND_NAME(CustomCommand.DB_TABLE, "name", id -> id.substring(id.indexOf(':') + 1));
+
+    private final String table;
+    private final String name;
+    private final Function<String, String> key;
+
+    Index(String table, String name, Function<String, String> key) {
+        this.table = table;
+        this.name = name;
+        this.key = key;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @param id The primary key of a row.
+     * @return The index key of the row.
+     */
+    public String key(String id) {
+        return key.apply(id);
+    }
+}
@@ -0,0 +1,431 @@
+/*
+ * Copyright (C) 2016-2018 David Alejandro Rubio Escares / Kodehawa
+ *
+ * Mantaro is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * Mantaro is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mantaro.  If not, see http://www.gnu.org/licenses/
+ */
+package net.kodehawa.mantarobot.db.storage;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.timgroup.statsd.StatsDClient;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+import lombok.extern.slf4j.Slf4j;
+import net.kodehawa.mantarobot.db.ManagedObject;
+import net.kodehawa.mantarobot.db.entities.Player;
+import net.kodehawa.mantarobot.utils.Pair;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Keeps every {@link Leaderboard} of another {@link Storage} in memory, so ranks and top players don't need to walk the players table.
+ * <p>
+ * The index is loaded on a background thread when the storage is initialized, and kept up to date with every player write going through it.
+ * Until it's done loading, leaderboard queries go to the wrapped storage. Writes made by other nodes straight to the database aren't seen,
+ * so the whole index gets reloaded every so often (into a separate copy, swapped in once it's done). On multi node setups, players written
+ * by other nodes are at most one rebuild interval out of date.
+ */
+@Slf4j
+public class IndexedStorage implements Storage {
+    private static final String GLOBAL_PLAYER = ":g";
+    private static final Leaderboard[] LEADERBOARDS = Leaderboard.values();
+    //Index of the experience on the values of a player, right after the leaderboards.
+    private static final int EXPERIENCE = LEADERBOARDS.length;
+    private static final String EXPERIENCE_PATH = "data.experience";
+
+    private final Storage storage;
+    private final long rebuildInterval;
+    private final String[] paths = new String[LEADERBOARDS.length];
+    private final ScheduledExecutorService loader = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("IndexedStorage-Loader").setDaemon(true).build()
+    );
+    //Everything below is guarded by this.
+    private Index index = new Index();
+    //Players written while a load is running, their values on the index are newer than what the load is reading. Null when not loading.
+    private TLongSet writtenWhileLoading;
+    private volatile boolean loaded = false;
+
+    /**
+     * @param storage         The storage to index.
+     * @param rebuildInterval How often to reload the whole index, in minutes, to pick up writes from other nodes. 0 to never reload it.
+     */
+    public IndexedStorage(@Nonnull Storage storage, long rebuildInterval) {
+        this.storage = storage;
+        this.rebuildInterval = rebuildInterval;
+        for(Leaderboard leaderboard : LEADERBOARDS) {
+            paths[leaderboard.ordinal()] = String.join(".", leaderboard.getPath());
+        }
+    }
+
+    @Nullable
+    private static Long userId(String playerId) {
+        if(!playerId.endsWith(GLOBAL_PLAYER))
+            return null;
+
+        try {
+            return Long.parseLong(playerId.substring(0, playerId.length() - GLOBAL_PLAYER.length()));
+        } catch(NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static long number(Object o) {
+        return o instanceof Number ? ((Number) o).longValue() : 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static long number(Map<String, Object> document, String... path) {
+        Object value = document;
+        for(String part : path) {
+            if(!(value instanceof Map))
+                return 0;
+            value = ((Map<String, Object>) value).get(part);
+        }
+
+        return number(value);
+    }
+
+    public Storage getStorage() {
+        return storage;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    @Override
+    public void init() {
+        storage.init();
+
+        loader.execute(this::load);
+        if(rebuildInterval > 0)
+            loader.scheduleWithFixedDelay(this::load, rebuildInterval, rebuildInterval, TimeUnit.MINUTES);
+    }
+
+    //Reads everything into a new index without holding the lock, the old one keeps being used (and written to) until it's swapped.
+    @SuppressWarnings("unchecked")
+    private void load() {
+        long start = System.currentTimeMillis();
+        String[] fields = new String[paths.length + 2];
+        fields[0] = "id";
+        System.arraycopy(paths, 0, fields, 1, paths.length);
+        fields[fields.length - 1] = EXPERIENCE_PATH;
+
+        synchronized(this) {
+            writtenWhileLoading = new TLongHashSet();
+        }
+
+        Index fresh = new Index();
+        try(Stream<Map> rows = storage.streamByIdSuffix(Player.DB_TABLE, GLOBAL_PLAYER, Map.class, fields)) {
+            rows.forEach(row -> {
+                Object id = row.get("id");
+                Long userId = id == null ? null : userId(id.toString());
+                if(userId == null)
+                    return;
+
+                long[] values = new long[EXPERIENCE + 1];
+                for(Leaderboard leaderboard : LEADERBOARDS) {
+                    values[leaderboard.ordinal()] = number(row, leaderboard.getPath());
+                }
+                values[EXPERIENCE] = number(row, "data", "experience");
+                fresh.put(userId, values);
+            });
+        } catch(Exception e) {
+            synchronized(this) {
+                writtenWhileLoading = null;
+            }
+            log.error("Error loading the leaderboard index, {}", loaded ? "keeping the old one" : "leaderboards will keep being read from the database", e);
+            return;
+        }
+
+        synchronized(this) {
+            //Anything written since loading started is newer than what the stream had.
+            Index current = index;
+            writtenWhileLoading.forEach(userId -> {
+                long[] values = current.players.get(userId);
+                if(values == null)
+                    fresh.remove(userId);
+                else
+                    fresh.put(userId, values);
+                return true;
+            });
+            writtenWhileLoading = null;
+            index = fresh;
+            loaded = true;
+        }
+        log.info("Loaded the leaderboard index with {} players in {}ms", fresh.players.size(), System.currentTimeMillis() - start);
+    }
+
+    //Caller must hold the lock.
+    private void put(long userId, long[] values) {
+        index.put(userId, values);
+        if(writtenWhileLoading != null)
+            writtenWhileLoading.add(userId);
+    }
+
+    private void index(ManagedObject object) {
+        if(!(object instanceof Player))
+            return;
+
+        Player player = (Player) object;
+        Long userId = userId(player.getId());
+        if(userId == null)
+            return;
+
+        long[] values = new long[EXPERIENCE + 1];
+        for(Leaderboard leaderboard : LEADERBOARDS) {
+            values[leaderboard.ordinal()] = leaderboard.valueOf(player);
+        }
+        values[EXPERIENCE] = player.getData().getExperience();
+
+        synchronized(this) {
+            put(userId, values);
+        }
+    }
+
+    private void unindex(String id) {
+        Long userId = userId(id);
+        if(userId == null)
+            return;
+
+        synchronized(this) {
+            index.remove(userId);
+            if(writtenWhileLoading != null)
+                writtenWhileLoading.add(userId);
+        }
+    }
+
+    @Nullable
+    @Override
+    public <T> T get(@Nonnull String table, @Nonnull String id, @Nonnull Class<T> type) {
+        return storage.get(table, id, type);
+    }
+
+    @Nonnull
+    @Override
+    public <T extends ManagedObject> Map<String, T> getAll(@Nonnull String table, @Nonnull Collection<String> ids, @Nonnull Class<T> type) {
+        return storage.getAll(table, ids, type);
+    }
+
+    @Nonnull
+    @Override
+    public <T> Stream<T> stream(@Nonnull String table, @Nonnull Class<T> type, String... fields) {
+        return storage.stream(table, type, fields);
+    }
+
+    @Nonnull
+    @Override
+    public <T> Stream<T> streamByIdSuffix(@Nonnull String table, @Nonnull String idSuffix, @Nonnull Class<T> type, String... fields) {
+        return storage.streamByIdSuffix(table, idSuffix, type, fields);
+    }
+
+    @Nonnull
+    @Override
+    public <T> List<T> range(@Nonnull String table, @Nonnull String from, @Nonnull String to, @Nonnull Class<T> type) {
+        return storage.range(table, from, to, type);
+    }
+
+    @Nonnull
+    @Override
+    public <T> List<T> getAllByIndex(@Nonnull Index index, @Nonnull String key, @Nonnull Class<T> type) {
+        return storage.getAllByIndex(index, key, type);
+    }
+
+    @Override
+    public long count(@Nonnull String table) {
+        return storage.count(table);
+    }
+
+    @Override
+    public void save(@Nonnull ManagedObject object) {
+        storage.save(object);
+        index(object);
+    }
+
+    @Override
+    public void saveAll(@Nonnull String table, @Nonnull Collection<? extends ManagedObject> objects) {
+        storage.saveAll(table, objects);
+        if(table.equals(Player.DB_TABLE))
+            objects.forEach(this::index);
+    }
+
+    @Override
+    public boolean update(@Nonnull String table, @Nonnull String id, @Nonnull Map<String, Object> changes) {
+        if(!storage.update(table, id, changes))
+            return false;
+
+        Long userId = table.equals(Player.DB_TABLE) ? userId(id) : null;
+        if(userId == null)
+            return true;
+
+        synchronized(this) {
+            long[] old = index.players.get(userId);
+            //Not loaded yet, the loader will pick it up.
+            if(old == null)
+                return true;
+
+            long[] values = old.clone();
+            for(int i = 0; i < paths.length; i++) {
+                if(changes.containsKey(paths[i]))
+                    values[i] = number(changes.get(paths[i]));
+            }
+            if(changes.containsKey(EXPERIENCE_PATH))
+                values[EXPERIENCE] = number(changes.get(EXPERIENCE_PATH));
+
+            put(userId, values);
+        }
+
+        return true;
+    }
+
+    @Override
+    public void delete(@Nonnull String table, @Nonnull String id) {
+        storage.delete(table, id);
+        if(table.equals(Player.DB_TABLE))
+            unindex(id);
+    }
+
+    @Override
+    public void deleteAll(@Nonnull String table, @Nonnull Collection<String> ids) {
+        storage.deleteAll(table, ids);
+        if(table.equals(Player.DB_TABLE))
+            ids.forEach(this::unindex);
+    }
+
+    @Override
+    public void addExperience(@Nonnull Map<String, Pair<Long, Long>> increments) {
+        storage.addExperience(increments);
+
+        synchronized(this) {
+            increments.forEach((id, delta) -> {
+                long userId;
+                try {
+                    userId = Long.parseLong(id);
+                } catch(NumberFormatException e) {
+                    return;
+                }
+
+                long[] old = index.players.get(userId);
+                if(old == null)
+                    return;
+
+                long[] values = old.clone();
+                values[Leaderboard.LEVEL.ordinal()] += delta.getRight();
+                values[EXPERIENCE] += delta.getLeft();
+                put(userId, values);
+            });
+        }
+    }
+
+    @Nonnull
+    @Override
+    public List<LeaderboardEntry> top(@Nonnull Leaderboard leaderboard, int limit) {
+        if(!loaded)
+            return storage.top(leaderboard, limit);
+
+        synchronized(this) {
+            RankTree tree = index.trees.get(leaderboard);
+            int size = Math.min(limit, tree.size());
+            long[] ids = new long[size];
+            long[] scores = new long[size];
+            int count = tree.top(size, ids, scores);
+
+            List<LeaderboardEntry> entries = new ArrayList<>(count);
+            for(int i = 0; i < count; i++) {
+                entries.add(new LeaderboardEntry(String.valueOf(ids[i]), scores[i], index.players.get(ids[i])[EXPERIENCE]));
+            }
+
+            return entries;
+        }
+    }
+
+    @Override
+    public long rank(@Nonnull Leaderboard leaderboard, @Nonnull String userId) {
+        if(!loaded)
+            return storage.rank(leaderboard, userId);
+
+        Long id = userId(userId + GLOBAL_PLAYER);
+        if(id == null)
+            return -1;
+
+        synchronized(this) {
+            long[] values = index.players.get(id);
+            if(values == null)
+                return -1;
+
+            return index.trees.get(leaderboard).rank(values[leaderboard.ordinal()], id) + 1;
+        }
+    }
+
+    @Override
+    public void report(@Nonnull StatsDClient client) {
+        if(loaded) {
+            synchronized(this) {
+                client.recordGaugeValue("db_leaderboard_index.size", index.players.size());
+            }
+        }
+        storage.report(client);
+    }
+
+    @Override
+    public void close() {
+        loader.shutdownNow();
+        storage.close();
+    }
+
+    private static class Index {
+        final EnumMap<Leaderboard, RankTree> trees = new EnumMap<>(Leaderboard.class);
+        //User id -> value on every leaderboard, plus experience. Needed to find the old entries when a player changes.
+        final TLongObjectMap<long[]> players = new TLongObjectHashMap<>();
+
+        Index() {
+            for(Leaderboard leaderboard : LEADERBOARDS) {
+                trees.put(leaderboard, new RankTree(1024));
+            }
+        }
+
+        void put(long userId, long[] values) {
+            long[] old = players.put(userId, values);
+            for(Leaderboard leaderboard : LEADERBOARDS) {
+                int i = leaderboard.ordinal();
+                RankTree tree = trees.get(leaderboard);
+                if(old != null) {
+                    if(old[i] == values[i])
+                        continue;
+                    tree.remove(old[i], userId);
+                }
+                tree.insert(values[i], userId);
+            }
+        }
+
+        void remove(long userId) {
+            long[] old = players.remove(userId);
+            if(old != null) {
+                for(Leaderboard leaderboard : LEADERBOARDS) {
+                    trees.get(leaderboard).remove(old[leaderboard.ordinal()], userId);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2016-2018 David Alejandro Rubio Escares / Kodehawa
+ *
+ * Mantaro is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * Mantaro is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mantaro.  If not, see http://www.gnu.org/licenses/
+ */
+
+package net.kodehawa.mantarobot.db.storage;
+
+import net.kodehawa.mantarobot.db.entities.Player;
+
+import java.util.function.ToLongFunction;
+
+/**
+ * Player leaderboards. Only global players are ranked.
+ */
+public enum Leaderboard {
+    MONEY("money", Player::getMoney, "money"),
+    LEVEL("level", Player::getLevel, "level"),
+    REPUTATION("reputation", Player::getReputation, "reputation"),
+    STREAK("userDailyStreak", player -> player.getData().getDailyStreak(), "data", "dailyStrike");
+
+    private final String index;
+    private final ToLongFunction<Player> value;
+    private final String[] path;
+
+    Leaderboard(String index, ToLongFunction<Player> value, String... path) {
+        this.index = index;
+        this.value = value;
+        this.path = path;
+    }
+
+    /**
+     * @return The name of the rethink secondary index sorting the players.
+     */
+    public String getIndex() {
+        return index;
+    }
+
+    /**
+     * @return Where the ranked value is stored on the player documents.
+     */
+    public String[] getPath() {
+        return path.clone();
+    }
+
+    public long valueOf(Player player) {
+        return value.applyAsLong(player);
+    }
+}
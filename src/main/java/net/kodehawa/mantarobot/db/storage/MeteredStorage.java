@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2016-2018 David Alejandro Rubio Escares / Kodehawa
+ *
+ * Mantaro is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * Mantaro is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mantaro.  If not, see http://www.gnu.org/licenses/
+ */
+
+package net.kodehawa.mantarobot.db.storage;
+
+import com.timgroup.statsd.StatsDClient;
+import net.kodehawa.mantarobot.db.DatabaseMetrics;
+import net.kodehawa.mantarobot.db.DatabaseMetrics.Operation;
+import net.kodehawa.mantarobot.db.ManagedObject;
+import net.kodehawa.mantarobot.db.entities.Player;
+import net.kodehawa.mantarobot.utils.Pair;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Records every call to another {@link Storage} on {@link DatabaseMetrics}, under the storage layer.
+ * <p>
+ * Rethink saves and deletes don't wait for a reply, so their latency is only how long it took to send them.
+ * Streams are only counted, as they take as long as whoever consumes them.
+ */
+public class MeteredStorage implements Storage {
+    private final Storage storage;
+
+    public MeteredStorage(@Nonnull Storage storage) {
+        this.storage = storage;
+    }
+
+    private static <T> T time(String entity, Operation operation, Supplier<T> call) {
+        long start = System.nanoTime();
+        try {
+            return call.get();
+        } finally {
+            DatabaseMetrics.record(DatabaseMetrics.Layer.STORAGE, entity, operation, System.nanoTime() - start);
+        }
+    }
+
+    private static void run(String entity, Operation operation, Runnable call) {
+        time(entity, operation, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    public Storage getStorage() {
+        return storage;
+    }
+
+    @Override
+    public void init() {
+        storage.init();
+    }
+
+    @Nullable
+    @Override
+    public <T> T get(@Nonnull String table, @Nonnull String id, @Nonnull Class<T> type) {
+        return time(table, Operation.GET, () -> storage.get(table, id, type));
+    }
+
+    @Nonnull
+    @Override
+    public <T extends ManagedObject> Map<String, T> getAll(@Nonnull String table, @Nonnull Collection<String> ids, @Nonnull Class<T> type) {
+        return time(table, Operation.BULK, () -> storage.getAll(table, ids, type));
+    }
+
+    @Nonnull
+    @Override
+    public <T> Stream<T> stream(@Nonnull String table, @Nonnull Class<T> type, String... fields) {
+        DatabaseMetrics.count(DatabaseMetrics.Layer.STORAGE, table, Operation.QUERY, 1);
+        return storage.stream(table, type, fields);
+    }
+
+    @Nonnull
+    @Override
+    public <T> Stream<T> streamByIdSuffix(@Nonnull String table, @Nonnull String idSuffix, @Nonnull Class<T> type, String... fields) {
+        DatabaseMetrics.count(DatabaseMetrics.Layer.STORAGE, table, Operation.QUERY, 1);
+        return storage.streamByIdSuffix(table, idSuffix, type, fields);
+    }
+
+    @Nonnull
+    @Override
+    public <T> List<T> range(@Nonnull String table, @Nonnull String from, @Nonnull String to, @Nonnull Class<T> type) {
+        return time(table, Operation.QUERY, () -> storage.range(table, from, to, type));
+    }
+
+    @Nonnull
+    @Override
+    public <T> List<T> getAllByIndex(@Nonnull Index index, @Nonnull String key, @Nonnull Class<T> type) {
+        return time(index.getTable(), Operation.QUERY, () -> storage.getAllByIndex(index, key, type));
+    }
+
+    @Override
+    public long count(@Nonnull String table) {
+        return time(table, Operation.QUERY, () -> storage.count(table));
+    }
+
+    @Override
+    public void save(@Nonnull ManagedObject object) {
+        run(object.getTableName(), Operation.SAVE, () -> storage.save(object));
+    }
+
+    @Override
+    public void saveAll(@Nonnull String table, @Nonnull Collection<? extends ManagedObject> objects) {
+        run(table, Operation.BULK, () -> storage.saveAll(table, objects));
+    }
+
+    @Override
+    public boolean update(@Nonnull String table, @Nonnull String id, @Nonnull Map<String, Object> changes) {
+        return time(table, Operation.SAVE, () -> storage.update(table, id, changes));
+    }
+
+    @Override
+    public void delete(@Nonnull String table, @Nonnull String id) {
+        run(table, Operation.DELETE, () -> storage.delete(table, id));
+    }
+
+    @Override
+    public void deleteAll(@Nonnull String table, @Nonnull Collection<String> ids) {
+        run(table, Operation.BULK, () -> storage.deleteAll(table, ids));
+    }
+
+    @Override
+    public void addExperience(@Nonnull Map<String, Pair<Long, Long>> increments) {
+        run(Player.DB_TABLE, Operation.BULK, () -> storage.addExperience(increments));
+    }
+
+    @Nonnull
+    @Override
+    public List<LeaderboardEntry> top(@Nonnull Leaderboard leaderboard, int limit) {
+        return time(Player.DB_TABLE, Operation.QUERY, () -> storage.top(leaderboard, limit));
+    }
+
+    @Override
+    public long rank(@Nonnull Leaderboard leaderboard, @Nonnull String userId) {
+        return time(Player.DB_TABLE, Operation.QUERY, () -> storage.rank(leaderboard, userId));
+    }
+
+    @Override
+    public void report(@Nonnull StatsDClient client) {
+        storage.report(client);
+    }
+
+    @Override
+    public void close() {
+        storage.close();
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2016-2018 David Alejandro Rubio Escares / Kodehawa
+ *
+ * Mantaro is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * Mantaro is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mantaro.  If not, see http://www.gnu.org/licenses/
+ */
+package net.kodehawa.mantarobot.db.storage;
+
+import java.util.Arrays;
+
+/**
+ * Order-statistic tree of (score, user id) entries, sorted by score (highest first) and then by id.
+ * <p>
+ * It's a treap kept on parallel primitive arrays, so an entry costs 32 bytes and no objects.
+ * Inserting, removing and finding the rank of an entry are all O(log n). Not thread safe.
+ */
+class RankTree {
+    //Node 0 is the empty tree, its size is always 0.
+    private static final int NIL = 0;
+
+    private long[] scores;
+    private long[] ids;
+    private int[] left;
+    private int[] right;
+    private int[] sizes;
+    private int[] priorities;
+    private int root = NIL;
+    private int used = 1;
+    //Removed nodes, chained through left[].
+    private int free = NIL;
+    private int seed = 0x2545F491;
+
+    //Results of split(), so it doesn't have to allocate.
+    private int splitLeft;
+    private int splitRight;
+
+    RankTree(int capacity) {
+        int length = Math.max(capacity, 16) + 1;
+        scores = new long[length];
+        ids = new long[length];
+        left = new int[length];
+        right = new int[length];
+        sizes = new int[length];
+        priorities = new int[length];
+    }
+
+    int size() {
+        return sizes[root];
+    }
+
+    void insert(long score, long id) {
+        int node = allocate(score, id);
+        split(root, score, id);
+        int l = splitLeft, r = splitRight;
+        root = merge(merge(l, node), r);
+    }
+
+    /**
+     * @return Whether the entry was on the tree.
+     */
+    boolean remove(long score, long id) {
+        int before = size();
+        root = remove(root, score, id);
+        return size() != before;
+    }
+
+    /**
+     * @return How many entries sort before the specified one.
+     */
+    int rank(long score, long id) {
+        int count = 0;
+        int t = root;
+        while(t != NIL) {
+            if(precedes(score, id, scores[t], ids[t])) {
+                t = left[t];
+            } else {
+                count += sizes[left[t]];
+                if(scores[t] == score && ids[t] == id)
+                    return count;
+                count++;
+                t = right[t];
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Copies the first entries of the tree, in order.
+     *
+     * @param limit     How many entries to copy, at most.
+     * @param outIds    Where to put the ids.
+     * @param outScores Where to put the scores.
+     * @return How many entries were copied.
+     */
+    int top(int limit, long[] outIds, long[] outScores) {
+        int[] stack = new int[64];
+        int depth = 0;
+        int count = 0;
+        int t = root;
+
+        while(count < limit && (t != NIL || depth > 0)) {
+            while(t != NIL) {
+                if(depth == stack.length)
+                    stack = Arrays.copyOf(stack, depth * 2);
+                stack[depth++] = t;
+                t = left[t];
+            }
+
+            t = stack[--depth];
+            outIds[count] = ids[t];
+            outScores[count] = scores[t];
+            count++;
+            t = right[t];
+        }
+
+        return count;
+    }
+
+    private static boolean precedes(long score, long id, long otherScore, long otherId) {
+        return score > otherScore || (score == otherScore && id < otherId);
+    }
+
+    //Splits t into the entries sorting before (score, id) and everything else.
+    private void split(int t, long score, long id) {
+        if(t == NIL) {
+            splitLeft = splitRight = NIL;
+            return;
+        }
+
+        if(precedes(scores[t], ids[t], score, id)) {
+            split(right[t], score, id);
+            right[t] = splitLeft;
+            update(t);
+            splitLeft = t;
+        } else {
+            split(left[t], score, id);
+            left[t] = splitRight;
+            update(t);
+            splitRight = t;
+        }
+    }
+
+    //Joins two trees, every entry of a sorting before every entry of b.
+    private int merge(int a, int b) {
+        if(a == NIL) return b;
+        if(b == NIL) return a;
+
+        if(priorities[a] > priorities[b]) {
+            right[a] = merge(right[a], b);
+            update(a);
+            return a;
+        }
+
+        left[b] = merge(a, left[b]);
+        update(b);
+        return b;
+    }
+
+    private int remove(int t, long score, long id) {
+        if(t == NIL)
+            return NIL;
+
+        if(scores[t] == score && ids[t] == id) {
+            int merged = merge(left[t], right[t]);
+            release(t);
+            return merged;
+        }
+
+        if(precedes(score, id, scores[t], ids[t])) {
+            left[t] = remove(left[t], score, id);
+        } else {
+            right[t] = remove(right[t], score, id);
+        }
+
+        update(t);
+        return t;
+    }
+
+    private void update(int t) {
+        sizes[t] = sizes[left[t]] + sizes[right[t]] + 1;
+    }
+
+    private int allocate(long score, long id) {
+        int node;
+        if(free != NIL) {
+            node = free;
+            free = left[node];
+        } else {
+            if(used == scores.length)
+                grow();
+            node = used++;
+        }
+
+        //xorshift, the priorities only need to look random.
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+
+        scores[node] = score;
+        ids[node] = id;
+        left[node] = right[node] = NIL;
+        sizes[node] = 1;
+        priorities[node] = seed;
+        return node;
+    }
+
+    private void release(int node) {
+        left[node] = free;
+        right[node] = NIL;
+        sizes[node] = 0;
+        free = node;
+    }
+
+    private void grow() {
+        int length = scores.length * 2;
+        scores = Arrays.copyOf(scores, length);
+        ids = Arrays.copyOf(ids, length);
+        left = Arrays.copyOf(left, length);
+        right = Arrays.copyOf(right, length);
+        sizes = Arrays.copyOf(sizes, length);
+        priorities = Arrays.copyOf(priorities, length);
+    }
+}
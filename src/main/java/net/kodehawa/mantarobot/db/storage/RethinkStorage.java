@@ -0,0 +1,353 @@
+/*
+ * Copyright (C) 2016-2018 David Alejandro Rubio Escares / Kodehawa
+ *
+ * Mantaro is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * Mantaro is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mantaro.  If not, see http://www.gnu.org/licenses/
+ */
+
+package net.kodehawa.mantarobot.db.storage;
+
+import com.rethinkdb.gen.ast.ReqlExpr;
+import com.rethinkdb.gen.exc.ReqlOpFailedError;
+import com.rethinkdb.model.MapObject;
+import com.rethinkdb.model.OptArgs;
+import com.rethinkdb.net.Connection;
+import com.rethinkdb.net.Cursor;
+import com.timgroup.statsd.StatsDClient;
+import lombok.extern.slf4j.Slf4j;
+import net.kodehawa.mantarobot.db.ConnectionPool;
+import net.kodehawa.mantarobot.db.ManagedObject;
+import net.kodehawa.mantarobot.db.entities.LocalExperience;
+import net.kodehawa.mantarobot.db.entities.Player;
+import net.kodehawa.mantarobot.utils.Pair;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static com.rethinkdb.RethinkDB.r;
+
+/**
+ * {@link Storage} on a RethinkDB server, through a {@link ConnectionPool}.
+ */
+@Slf4j
+public class RethinkStorage implements Storage {
+    //Global players only, guild-local ones were never finished.
+    private static final String GLOBAL_PLAYER = ":g$";
+    //Tables added after the database was first set up, created on startup if they're missing.
+    private static final String[] CREATED_TABLES = {LocalExperience.DB_TABLE};
+
+    private final ConnectionPool pool;
+    private final int batchSize;
+
+    /**
+     * @param pool      The pool to borrow connections from.
+     * @param batchSize How many rows to fetch per batch on streams, and how many keys to look up per query.
+     */
+    public RethinkStorage(@Nonnull ConnectionPool pool, int batchSize) {
+        this.pool = pool;
+        this.batchSize = batchSize;
+    }
+
+    //a.b.c -> row("a")("b")("c")
+    private static ReqlExpr field(ReqlExpr row, String... path) {
+        ReqlExpr field = row;
+        for(String part : path) {
+            field = field.g(part);
+        }
+
+        return field;
+    }
+
+    //data.birthday -> {data: "birthday"}, what pluck wants for nested fields.
+    private static Object pluckPath(String path) {
+        int dot = path.indexOf('.');
+        if(dot < 0)
+            return path;
+
+        return r.hashMap(path.substring(0, dot), pluckPath(path.substring(dot + 1)));
+    }
+
+    //data.warnCount -> {data: {warnCount: r.literal(value)}}, otherwise rethink would merge maps instead of replacing them.
+    private static MapObject partial(Map<String, Object> changes) {
+        MapObject document = r.hashMap();
+        changes.forEach((path, value) -> {
+            String[] parts = path.split("\\.");
+            MapObject parent = document;
+            for(int i = 0; i < parts.length - 1; i++) {
+                parent = (MapObject) parent.computeIfAbsent(parts[i], ignored -> r.hashMap());
+            }
+
+            parent.with(parts[parts.length - 1], r.literal(value));
+        });
+
+        return document;
+    }
+
+    private static long number(Object o) {
+        return o instanceof Number ? ((Number) o).longValue() : 0;
+    }
+
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    @Override
+    public void init() {
+        try(ConnectionPool.Lease lease = pool.borrow()) {
+            Connection conn = lease.get();
+            List<String> tables = r.tableList().run(conn);
+            for(String table : CREATED_TABLES) {
+                if(!tables.contains(table)) {
+                    log.info("Creating table {}", table);
+                    try {
+                        r.tableCreate(table).run(conn);
+                    } catch(ReqlOpFailedError e) {
+                        //Another node created it first.
+                        log.debug("Table {} already exists", table);
+                    }
+                }
+
+                r.table(table).wait_().run(conn);
+            }
+
+            for(Index index : Index.values()) {
+                List<String> indexes = r.table(index.getTable()).indexList().run(conn);
+                if(!indexes.contains(index.getName())) {
+                    log.info("Creating index {} on table {}, this might take a while", index.getName(), index.getTable());
+                    try {
+                        r.table(index.getTable()).indexCreate(index.getName(), row -> indexFunction(index, row)).run(conn);
+                    } catch(ReqlOpFailedError e) {
+                        //Another node created it first.
+                        log.debug("Index {} already exists", index.getName());
+                    }
+                }
+
+                r.table(index.getTable()).indexWait(index.getName()).run(conn);
+            }
+        }
+    }
+
+    //Has to match Index#key.
+    private ReqlExpr indexFunction(Index index, ReqlExpr row) {
+        switch(index) {
+            case CUSTOM_COMMAND_NAME:
+                return row.g("id").split(":", 1).nth(1);
+            default:
+                throw new IllegalArgumentException("No index function for " + index);
+        }
+    }
+
+    @Nullable
+    @Override
+    public <T> T get(@Nonnull String table, @Nonnull String id, @Nonnull Class<T> type) {
+        return pool.run(conn -> r.table(table).get(id).run(conn, type));
+    }
+
+    @Nonnull
+    @Override
+    public <T extends ManagedObject> Map<String, T> getAll(@Nonnull String table, @Nonnull Collection<String> ids, @Nonnull Class<T> type) {
+        List<String> keys = new ArrayList<>(new LinkedHashSet<>(ids));
+        Map<String, T> found = new HashMap<>();
+
+        for(int i = 0; i < keys.size(); i += batchSize) {
+            Object[] batch = keys.subList(i, Math.min(i + batchSize, keys.size())).toArray();
+            Cursor<T> c = pool.run(conn -> r.table(table).getAll(batch).run(conn, type));
+            for(T object : c.toList()) {
+                found.put(object.getId(), object);
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Rows are fetched in batches as the stream gets consumed, and the connection goes back to the pool when the stream is closed.
+     */
+    @Nonnull
+    @Override
+    public <T> Stream<T> stream(@Nonnull String table, @Nonnull Class<T> type, String... fields) {
+        return stream(r.table(table), type, fields);
+    }
+
+    @Nonnull
+    @Override
+    public <T> Stream<T> streamByIdSuffix(@Nonnull String table, @Nonnull String idSuffix, @Nonnull Class<T> type, String... fields) {
+        //RE2 supports \Q...\E too.
+        String pattern = Pattern.quote(idSuffix) + "$";
+        return stream(r.table(table).filter(row -> row.g("id").match(pattern)), type, fields);
+    }
+
+    private <T> Stream<T> stream(ReqlExpr query, Class<T> type, String... fields) {
+        if(fields.length > 0) {
+            Object[] paths = new Object[fields.length];
+            for(int i = 0; i < fields.length; i++) {
+                paths[i] = pluckPath(fields[i]);
+            }
+
+            query = query.pluck(paths);
+        }
+
+        ConnectionPool.Lease lease = pool.borrow();
+        Cursor<T> cursor;
+        try {
+            cursor = query.run(lease.get(), OptArgs.of("max_batch_rows", batchSize), type);
+        } catch(RuntimeException e) {
+            lease.close();
+            throw e;
+        }
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    try {
+                        cursor.close();
+                    } finally {
+                        lease.close();
+                    }
+                });
+    }
+
+    @Nonnull
+    @Override
+    public <T> List<T> range(@Nonnull String table, @Nonnull String from, @Nonnull String to, @Nonnull Class<T> type) {
+        Cursor<T> c = pool.run(conn -> r.table(table).between(from, to).run(conn, type));
+        return c.toList();
+    }
+
+    @Nonnull
+    @Override
+    public <T> List<T> getAllByIndex(@Nonnull Index index, @Nonnull String key, @Nonnull Class<T> type) {
+        Cursor<T> c = pool.run(conn -> r.table(index.getTable()).getAll(key).optArg("index", index.getName()).run(conn, type));
+        return c.toList();
+    }
+
+    @Override
+    public long count(@Nonnull String table) {
+        return pool.run(conn -> r.table(table).count().run(conn, OptArgs.of("read_mode", "outdated")));
+    }
+
+    @Override
+    public void save(@Nonnull ManagedObject object) {
+        pool.runNoReply(r.table(object.getTableName())
+                .insert(object)
+                .optArg("conflict", "replace"));
+    }
+
+    @Override
+    public void saveAll(@Nonnull String table, @Nonnull Collection<? extends ManagedObject> objects) {
+        List<ManagedObject> list = new ArrayList<>(objects);
+        Map<String, Object> result = pool.run(conn -> r.table(table).insert(list).optArg("conflict", "replace").run(conn));
+        long errors = number(result.get("errors"));
+        if(errors > 0)
+            log.error("Failed to write {} objects to table {}: {}", errors, table, result.get("first_error"));
+    }
+
+    @Override
+    public boolean update(@Nonnull String table, @Nonnull String id, @Nonnull Map<String, Object> changes) {
+        Map<String, Object> result = pool.run(conn -> r.table(table)
+                .get(id)
+                .update(partial(changes))
+                .run(conn));
+
+        //Updating a document that doesn't exist just skips it.
+        return result == null || number(result.get("skipped")) == 0;
+    }
+
+    @Override
+    public void delete(@Nonnull String table, @Nonnull String id) {
+        pool.runNoReply(r.table(table)
+                .get(id)
+                .delete());
+    }
+
+    @Override
+    public void deleteAll(@Nonnull String table, @Nonnull Collection<String> ids) {
+        Object[] keys = ids.toArray();
+        pool.run(conn -> r.table(table).getAll(keys).delete().run(conn));
+    }
+
+    @Override
+    public void addExperience(@Nonnull Map<String, Pair<Long, Long>> increments) {
+        List<Object> list = new ArrayList<>(increments.size());
+        increments.forEach((userId, delta) -> list.add(r.hashMap("id", userId + ":g")
+                .with("experience", delta.getLeft())
+                .with("levels", delta.getRight())));
+
+        pool.run(conn -> r.expr(list).forEach(increment -> r.table(Player.DB_TABLE).get(increment.g("id")).update(player -> r.hashMap("level", player.g("level").default_(0).add(increment.g("levels")))
+                .with("data", r.hashMap("experience", player.g("data").g("experience").default_(0).add(increment.g("experience"))))
+        )).run(conn));
+    }
+
+    @Nonnull
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<LeaderboardEntry> top(@Nonnull Leaderboard leaderboard, int limit) {
+        Cursor<Map> c = pool.run(conn -> r.table(Player.DB_TABLE)
+                .orderBy()
+                .optArg("index", r.desc(leaderboard.getIndex()))
+                .filter(player -> player.g("id").match(GLOBAL_PLAYER))
+                .map(player -> r.hashMap("id", player.g("id"))
+                        .with("value", field(player, leaderboard.getPath()).default_(0))
+                        .with("experience", player.g("data").g("experience").default_(0)))
+                .limit(limit)
+                .run(conn, OptArgs.of("read_mode", "outdated")));
+
+        List<LeaderboardEntry> entries = new ArrayList<>(limit);
+        try {
+            for(Map map : c) {
+                entries.add(new LeaderboardEntry(map.get("id").toString().split(":")[0], number(map.get("value")), number(map.get("experience"))));
+            }
+        } finally {
+            c.close();
+        }
+
+        return entries;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public long rank(@Nonnull Leaderboard leaderboard, @Nonnull String userId) {
+        Cursor<Long> c = pool.run(conn -> r.table(Player.DB_TABLE)
+                .orderBy()
+                .optArg("index", r.desc(leaderboard.getIndex()))
+                .offsetsOf(player -> player.g("id").eq(userId + ":g"))
+                .run(conn, OptArgs.of("read_mode", "outdated")));
+
+        try {
+            return c.hasNext() ? c.next() + 1 : -1;
+        } finally {
+            c.close();
+        }
+    }
+
+    @Override
+    public void report(@Nonnull StatsDClient client) {
+        pool.report(client);
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+    }
+}
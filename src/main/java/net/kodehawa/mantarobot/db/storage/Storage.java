@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2016-2018 David Alejandro Rubio Escares / Kodehawa
+ *
+ * Mantaro is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * Mantaro is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mantaro.  If not, see http://www.gnu.org/licenses/
+ */
+
+package net.kodehawa.mantarobot.db.storage;
+
+import com.timgroup.statsd.StatsDClient;
+import net.kodehawa.mantarobot.db.ManagedDatabase;
+import net.kodehawa.mantarobot.db.ManagedObject;
+import net.kodehawa.mantarobot.utils.Pair;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Where {@link ManagedDatabase} keeps its entities. Every query the bot runs against the database goes through here,
+ * so the caching layers on top don't care if the rows live on rethink or on a local file.
+ * <p>
+ * Rows are identified by table name and primary key ({@link ManagedObject#getId()}), and nested properties use dotted paths ({@code data.experience}).
+ */
+public interface Storage {
+    /**
+     * Creates whatever the queries need (tables, indexes...) if it doesn't exist yet. Called once before anything else.
+     */
+    void init();
+
+    /**
+     * @param table The table.
+     * @param id    The primary key.
+     * @param type  The type of the row.
+     * @return The row, or null if it doesn't exist.
+     */
+    @Nullable
+    <T> T get(@Nonnull String table, @Nonnull String id, @Nonnull Class<T> type);
+
+    /**
+     * @param table The table.
+     * @param ids   The primary keys.
+     * @param type  The type of the rows.
+     * @return Primary key -> row, only for the rows that exist.
+     */
+    @Nonnull
+    <T extends ManagedObject> Map<String, T> getAll(@Nonnull String table, @Nonnull Collection<String> ids, @Nonnull Class<T> type);
+
+    /**
+     * Streams every row of a table, fetching them as the stream is consumed. Has to be closed.
+     *
+     * @param table  The table.
+     * @param type   The type of the rows.
+     * @param fields The only paths to fetch, or nothing to fetch the whole rows. Backends are free to fetch more.
+     * @return The stream.
+     */
+    @Nonnull
+    <T> Stream<T> stream(@Nonnull String table, @Nonnull Class<T> type, String... fields);
+
+    /**
+     * Streams the rows of a table whose primary key ends with the specified suffix, skipping the rest on the database side. Has to be closed.
+     *
+     * @param table    The table.
+     * @param idSuffix What the primary key of the rows has to end with.
+     * @param type     The type of the rows.
+     * @param fields   The only paths to fetch, or nothing to fetch the whole rows. Backends are free to fetch more.
+     * @return The stream.
+     */
+    @Nonnull
+    <T> Stream<T> streamByIdSuffix(@Nonnull String table, @Nonnull String idSuffix, @Nonnull Class<T> type, String... fields);
+
+    /**
+     * @param table The table.
+     * @param from  The lowest primary key, inclusive.
+     * @param to    The highest primary key, exclusive.
+     * @param type  The type of the rows.
+     * @return Every row with a primary key in the range.
+     */
+    @Nonnull
+    <T> List<T> range(@Nonnull String table, @Nonnull String from, @Nonnull String to, @Nonnull Class<T> type);
+
+    /**
+     * @param index The index to look up.
+     * @param key   The key to look for.
+     * @param type  The type of the rows.
+     * @return Every row of the index table with that key.
+     */
+    @Nonnull
+    <T> List<T> getAllByIndex(@Nonnull Index index, @Nonnull String key, @Nonnull Class<T> type);
+
+    /**
+     * @param table The table.
+     * @return How many rows the table has.
+     */
+    long count(@Nonnull String table);
+
+    /**
+     * Inserts or replaces a row.
+     *
+     * @param object The row.
+     */
+    void save(@Nonnull ManagedObject object);
+
+    /**
+     * Inserts or replaces several rows of the same table at once.
+     *
+     * @param table   The table.
+     * @param objects The rows.
+     */
+    void saveAll(@Nonnull String table, @Nonnull Collection<? extends ManagedObject> objects);
+
+    /**
+     * Replaces some properties of a row, leaving the rest untouched. Maps and lists are replaced, not merged.
+     *
+     * @param table   The table.
+     * @param id      The primary key.
+     * @param changes Path -> new value.
+     * @return Whether the row existed. Nothing is written if it didn't.
+     */
+    boolean update(@Nonnull String table, @Nonnull String id, @Nonnull Map<String, Object> changes);
+
+    /**
+     * @param table The table.
+     * @param id    The primary key of the row to delete.
+     */
+    void delete(@Nonnull String table, @Nonnull String id);
+
+    /**
+     * @param table The table.
+     * @param ids   The primary keys of the rows to delete.
+     */
+    void deleteAll(@Nonnull String table, @Nonnull Collection<String> ids);
+
+    /**
+     * Atomically adds experience and levels to global players, only touching those two fields. Missing players are skipped.
+     *
+     * @param increments User id -> (experience, levels) to add.
+     */
+    void addExperience(@Nonnull Map<String, Pair<Long, Long>> increments);
+
+    /**
+     * @param leaderboard The leaderboard.
+     * @param limit       How many entries to return.
+     * @return The top global players of the leaderboard, highest first.
+     */
+    @Nonnull
+    List<LeaderboardEntry> top(@Nonnull Leaderboard leaderboard, int limit);
+
+    /**
+     * @param leaderboard The leaderboard.
+     * @param userId      The user.
+     * @return The position of the user on the leaderboard, starting at 1, or -1 if they don't have a player.
+     */
+    long rank(@Nonnull Leaderboard leaderboard, @Nonnull String userId);
+
+    /**
+     * Sends the metrics of this storage to StatsD.
+     *
+     * @param client The client to send the values with.
+     */
+    void report(@Nonnull StatsDClient client);
+
+    /**
+     * Writes everything out and releases the connections or files.
+     */
+    void close();
+
+    enum Backend {
+        //RethinkDB server, see Config#dbHost.
+        RETHINK,
+        //Embedded file, see Config#dbFile. Meant for single-node deployments and tests.
+        FILE
+    }
+}
@@ -187,12 +187,13 @@ public class CommandOptions extends OptionHandler {
             }
 
             DBGuild dbGuild = MantaroData.db().getGuild(event.getGuild());
+            dbGuild.trackChanges();
             GuildData guildData = dbGuild.getData();
 
             if(args[0].equals("*")) {
                 Set<String> allChannelsMinusCurrent = event.getGuild().getTextChannels().stream().filter(textChannel -> textChannel.getId().equals(event.getChannel().getId())).map(ISnowflake::getId).collect(Collectors.toSet());
                 guildData.getDisabledChannels().addAll(allChannelsMinusCurrent);
-                dbGuild.save();
+                dbGuild.saveChanges();
                 event.getChannel().sendMessage(EmoteReference.CORRECT + "Disallowed all channels except the current one. " +
                         "You can start allowing channels one by one again with `opts server channel allow` from **this** channel. " +
                         "You can disallow this channel later if you so desire.").queue();
@@ -206,7 +207,7 @@ public class CommandOptions extends OptionHandler {
 
             Consumer<TextChannel> consumer = textChannel -> {
                 guildData.getDisabledChannels().add(textChannel.getId());
-                dbGuild.save();
+                dbGuild.saveChanges();
                 event.getChannel().sendMessage(EmoteReference.OK + "Channel " + textChannel.getAsMention() + " will not longer listen to commands").queue();
             };
 
@@ -228,18 +229,19 @@ public class CommandOptions extends OptionHandler {
             }
 
             DBGuild dbGuild = MantaroData.db().getGuild(event.getGuild());
+            dbGuild.trackChanges();
             GuildData guildData = dbGuild.getData();
 
             if(args[0].equals("*")) {
                 guildData.getDisabledChannels().clear();
-                dbGuild.save();
+                dbGuild.saveChanges();
                 event.getChannel().sendMessage(EmoteReference.CORRECT + "All channels are allowed now.").queue();
                 return;
             }
 
             Consumer<TextChannel> consumer = textChannel -> {
                 guildData.getDisabledChannels().remove(textChannel.getId());
-                dbGuild.save();
+                dbGuild.saveChanges();
                 event.getChannel().sendMessage(EmoteReference.OK + "Channel " + textChannel.getAsMention() + " will now listen to commands").queue();
             };
 
@@ -262,6 +264,7 @@ public class CommandOptions extends OptionHandler {
             }
 
             DBGuild dbGuild = MantaroData.db().getGuild(event.getGuild());
+            dbGuild.trackChanges();
             GuildData guildData = dbGuild.getData();
             Category toDisable = Category.lookupFromString(args[0]);
 
@@ -283,7 +286,7 @@ public class CommandOptions extends OptionHandler {
             }
 
             guildData.getDisabledCategories().add(toDisable);
-            dbGuild.save();
+            dbGuild.saveChanges();
             event.getChannel().sendMessage(EmoteReference.CORRECT + "Disabled category `" + toDisable.toString() + "`").queue();
         });
 
@@ -298,6 +301,7 @@ public class CommandOptions extends OptionHandler {
             }
 
             DBGuild dbGuild = MantaroData.db().getGuild(event.getGuild());
+            dbGuild.trackChanges();
             GuildData guildData = dbGuild.getData();
             Category toEnable = Category.lookupFromString(args[0]);
 
@@ -309,7 +313,7 @@ public class CommandOptions extends OptionHandler {
             }
 
             guildData.getDisabledCategories().remove(toEnable);
-            dbGuild.save();
+            dbGuild.saveChanges();
             event.getChannel().sendMessage(EmoteReference.CORRECT + "Enabled category `" + toEnable.toString() + "`").queue();
         });
         //region specific
@@ -324,6 +328,7 @@ public class CommandOptions extends OptionHandler {
             }
 
             DBGuild dbGuild = MantaroData.db().getGuild(event.getGuild());
+            dbGuild.trackChanges();
             GuildData guildData = dbGuild.getData();
             Category toDisable = Category.lookupFromString(args[0]);
 
@@ -349,7 +354,7 @@ public class CommandOptions extends OptionHandler {
                 }
 
                 guildData.getChannelSpecificDisabledCategories().get(selectedChannel.getId()).add(toDisable);
-                dbGuild.save();
+                dbGuild.saveChanges();
                 event.getChannel().sendMessage(EmoteReference.CORRECT + "Disabled category `" + toDisable.toString() + "` on channel " + selectedChannel.getAsMention()).queue();
             };
 
@@ -371,6 +376,7 @@ public class CommandOptions extends OptionHandler {
             }
 
             DBGuild dbGuild = MantaroData.db().getGuild(event.getGuild());
+            dbGuild.trackChanges();
             GuildData guildData = dbGuild.getData();
             Category toEnable = Category.lookupFromString(args[0]);
             String channelName = args[1];
@@ -394,7 +400,7 @@ public class CommandOptions extends OptionHandler {
                     return;
                 }
                 guildData.getChannelSpecificDisabledCategories().get(selectedChannel.getId()).remove(toEnable);
-                dbGuild.save();
+                dbGuild.saveChanges();
                 event.getChannel().sendMessage(EmoteReference.CORRECT + "Enabled category `" + toEnable.toString() + "` on channel " + selectedChannel.getAsMention()).queue();
             };
 
@@ -419,6 +425,7 @@ public class CommandOptions extends OptionHandler {
 
             Consumer<Role> consumer = role -> {
                 DBGuild dbGuild = MantaroData.db().getGuild(event.getGuild());
+                dbGuild.trackChanges();
                 GuildData guildData = dbGuild.getData();
 
                 if(!DefaultCommandProcessor.REGISTRY.commands().containsKey(commandDisallow)) {
@@ -439,7 +446,7 @@ public class CommandOptions extends OptionHandler {
                 }
 
                 guildData.getRoleSpecificDisabledCommands().get(role.getId()).add(commandDisallow);
-                dbGuild.save();
+                dbGuild.saveChanges();
                 event.getChannel().sendMessage(String.format("%sSuccessfully restricted command `%s` for role `%s`", EmoteReference.CORRECT, commandDisallow, role.getName())).queue();
             };
 
@@ -468,6 +475,7 @@ public class CommandOptions extends OptionHandler {
                 }
 
                 DBGuild dbGuild = MantaroData.db().getGuild(event.getGuild());
+                dbGuild.trackChanges();
                 GuildData guildData = dbGuild.getData();
 
                 if(!DefaultCommandProcessor.REGISTRY.commands().containsKey(commandAllow)) {
@@ -482,7 +490,7 @@ public class CommandOptions extends OptionHandler {
                 }
 
                 guildData.getRoleSpecificDisabledCommands().get(role.getId()).remove(commandAllow);
-                dbGuild.save();
+                dbGuild.saveChanges();
                 event.getChannel().sendMessage(String.format("%sSuccessfully un-restricted command `%s` for role `%s`", EmoteReference.CORRECT, commandAllow, role.getName())).queue();
             };
 
@@ -502,6 +510,7 @@ public class CommandOptions extends OptionHandler {
             }
 
             DBGuild dbGuild = MantaroData.db().getGuild(event.getGuild());
+            dbGuild.trackChanges();
             GuildData guildData = dbGuild.getData();
             Category toDisable = Category.lookupFromString(args[0]);
 
@@ -527,7 +536,7 @@ public class CommandOptions extends OptionHandler {
                 }
 
                 guildData.getRoleSpecificDisabledCategories().get(role.getId()).add(toDisable);
-                dbGuild.save();
+                dbGuild.saveChanges();
                 event.getChannel().sendMessage(EmoteReference.CORRECT + "Disabled category `" + toDisable.toString() + "` for role " + role.getName()).queue();
             };
 
@@ -547,6 +556,7 @@ public class CommandOptions extends OptionHandler {
             }
 
             DBGuild dbGuild = MantaroData.db().getGuild(event.getGuild());
+            dbGuild.trackChanges();
             GuildData guildData = dbGuild.getData();
             Category toEnable = Category.lookupFromString(args[0]);
             String roleName = args[1];
@@ -570,7 +580,7 @@ public class CommandOptions extends OptionHandler {
                     return;
                 }
                 guildData.getRoleSpecificDisabledCategories().get(role.getId()).remove(toEnable);
-                dbGuild.save();
+                dbGuild.saveChanges();
                 event.getChannel().sendMessage(EmoteReference.CORRECT + "Enabled category `" + toEnable.toString() + "` for role " + role.getName()).queue();
             };
 
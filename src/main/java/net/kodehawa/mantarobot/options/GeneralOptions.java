@@ -65,13 +65,14 @@ public class GeneralOptions extends OptionHandler {
             }
 
             DBGuild dbGuild = MantaroData.db().getGuild(event.getGuild());
+            dbGuild.trackChanges();
             GuildData guildData = dbGuild.getData();
 
             List<String> toBlackList = mentioned.stream().map(ISnowflake::getId).collect(Collectors.toList());
             String blacklisted = mentioned.stream().map(user -> user.getName() + "#" + user.getDiscriminator()).collect(Collectors.joining(","));
 
             guildData.getModlogBlacklistedPeople().addAll(toBlackList);
-            dbGuild.save();
+            dbGuild.saveChanges();
 
             event.getChannel().sendMessage(EmoteReference.CORRECT + "Locally blacklisted users from mod-log: **" + blacklisted + "**").queue();
         });
@@ -88,25 +89,27 @@ public class GeneralOptions extends OptionHandler {
             }
 
             DBGuild dbGuild = MantaroData.db().getGuild(event.getGuild());
+            dbGuild.trackChanges();
             GuildData guildData = dbGuild.getData();
 
             List<String> toUnBlacklist = mentioned.stream().map(ISnowflake::getId).collect(Collectors.toList());
             String unBlacklisted = mentioned.stream().map(user -> user.getName() + "#" + user.getDiscriminator()).collect(Collectors.joining(","));
 
             guildData.getModlogBlacklistedPeople().removeAll(toUnBlacklist);
-            dbGuild.save();
+            dbGuild.saveChanges();
 
             event.getChannel().sendMessage(EmoteReference.CORRECT + "Locally un-blacklisted users from mod-log: **" + unBlacklisted + "**").queue();
         });
 
         registerOption("linkprotection:toggle", "Link-protection toggle", "Toggles anti-link protection.", event -> {
             DBGuild dbGuild = MantaroData.db().getGuild(event.getGuild());
+            dbGuild.trackChanges();
             GuildData guildData = dbGuild.getData();
             boolean toggler = guildData.isLinkProtection();
 
             guildData.setLinkProtection(!toggler);
             event.getChannel().sendMessage(EmoteReference.CORRECT + "Set link protection to " + "`" + !toggler + "`").queue();
-            dbGuild.save();
+            dbGuild.saveChanges();
         });
 
         registerOption("linkprotection:channel:allow", "Link-protection channel allow",
@@ -120,12 +123,13 @@ public class GeneralOptions extends OptionHandler {
             }
 
             DBGuild dbGuild = MantaroData.db().getGuild(event.getGuild());
+            dbGuild.trackChanges();
             GuildData guildData = dbGuild.getData();
             String channelName = args[0];
 
             Consumer<TextChannel> consumer = tc -> {
                 guildData.getLinkProtectionAllowedChannels().add(tc.getId());
-                dbGuild.save();
+                dbGuild.saveChanges();
                 event.getChannel().sendMessage(EmoteReference.OK + tc.getAsMention() + " can now be used to send discord invites.").queue();
             };
 
@@ -147,12 +151,13 @@ public class GeneralOptions extends OptionHandler {
             }
 
             DBGuild dbGuild = MantaroData.db().getGuild(event.getGuild());
+            dbGuild.trackChanges();
             GuildData guildData = dbGuild.getData();
             String channelName = args[0];
 
             Consumer<TextChannel> consumer = tc -> {
                 guildData.getLinkProtectionAllowedChannels().remove(tc.getId());
-                dbGuild.save();
+                dbGuild.saveChanges();
                 event.getChannel().sendMessage(EmoteReference.OK + tc.getAsMention() + " cannot longer be used to send discord invites.").queue();
             };
 
@@ -171,6 +176,7 @@ public class GeneralOptions extends OptionHandler {
             }
 
             DBGuild dbGuild = MantaroData.db().getGuild(event.getGuild());
+            dbGuild.trackChanges();
             GuildData guildData = dbGuild.getData();
 
             if(event.getMessage().getMentionedUsers().isEmpty()) {
@@ -180,7 +186,7 @@ public class GeneralOptions extends OptionHandler {
 
             User toWhiteList = event.getMessage().getMentionedUsers().get(0);
             guildData.getLinkProtectionAllowedUsers().add(toWhiteList.getId());
-            dbGuild.save();
+            dbGuild.saveChanges();
             event.getChannel().sendMessage(EmoteReference.CORRECT + "Successfully whitelisted " + toWhiteList.getName() + "#" + toWhiteList.getDiscriminator() + " from posting discord invites.").queue();
         });
 
@@ -192,6 +198,7 @@ public class GeneralOptions extends OptionHandler {
             }
 
             DBGuild dbGuild = MantaroData.db().getGuild(event.getGuild());
+            dbGuild.trackChanges();
             GuildData guildData = dbGuild.getData();
 
             if(event.getMessage().getMentionedUsers().isEmpty()) {
@@ -207,7 +214,7 @@ public class GeneralOptions extends OptionHandler {
             }
 
             guildData.getLinkProtectionAllowedUsers().remove(toBlackList.getId());
-            dbGuild.save();
+            dbGuild.saveChanges();
             event.getChannel().sendMessage(EmoteReference.CORRECT + "Successfully blacklisted " + toBlackList.getName() + "#" + toBlackList.getDiscriminator() + " from posting discord invites.").queue();
         });
 
@@ -158,9 +158,10 @@ public class GuildOptions extends OptionHandler {
                     }
 
                     DBGuild dbGuild = MantaroData.db().getGuild(event.getGuild());
+                    dbGuild.trackChanges();
                     GuildData guildData = dbGuild.getData();
                     guildData.setGuildCustomPrefix(prefix);
-                    dbGuild.save();
+                    dbGuild.saveChanges();
                     event.getChannel().sendMessage(EmoteReference.MEGA + "Your server's custom prefix has been set to " + prefix).queue();
                 });//endregion
 
@@ -170,9 +171,10 @@ public class GuildOptions extends OptionHandler {
                         "**Example:** `~>opts prefix clear`",
                 "Resets the server prefix.", (event) -> {
                     DBGuild dbGuild = MantaroData.db().getGuild(event.getGuild());
+                    dbGuild.trackChanges();
                     GuildData guildData = dbGuild.getData();
                     guildData.setGuildCustomPrefix(null);
-                    dbGuild.save();
+                    dbGuild.saveChanges();
                     event.getChannel().sendMessage(EmoteReference.MEGA + "Your server's custom prefix has been disabled").queue();
                 });//endregion
         // endregion
@@ -253,11 +255,12 @@ public class GuildOptions extends OptionHandler {
                         "**Example:** `~>opts usermessage resetchannel`",
                 "Clears the join/leave message channel.", (event) -> {
                     DBGuild dbGuild = MantaroData.db().getGuild(event.getGuild());
+                    dbGuild.trackChanges();
                     GuildData guildData = dbGuild.getData();
                     guildData.setLogJoinLeaveChannel(null);
                     guildData.setLogLeaveChannel(null);
                     guildData.setLogJoinChannel(null);
-                    dbGuild.save();
+                    dbGuild.saveChanges();
                     event.getChannel().sendMessage(EmoteReference.CORRECT + "Sucessfully reset the join/leave channel.").queue();
                 });//endregion
 
@@ -267,10 +270,11 @@ public class GuildOptions extends OptionHandler {
                         "**Example:** `~>opts usermessage resetdata`",
                 "Resets the join/leave message data.", (event) -> {
                     DBGuild dbGuild = MantaroData.db().getGuild(event.getGuild());
+                    dbGuild.trackChanges();
                     GuildData guildData = dbGuild.getData();
                     guildData.setLeaveMessage(null);
                     guildData.setJoinMessage(null);
-                    dbGuild.save();
+                    dbGuild.saveChanges();
                     event.getChannel().sendMessage(EmoteReference.CORRECT + "Sucessfully reset the join/leave message.").queue();
                 });
         //endregion
@@ -353,12 +357,13 @@ public class GuildOptions extends OptionHandler {
                     }
 
                     DBGuild dbGuild = MantaroData.db().getGuild(event.getGuild());
+                    dbGuild.trackChanges();
                     GuildData guildData = dbGuild.getData();
                     String channelName = args[0];
 
                     Consumer<TextChannel> consumer = textChannel -> {
                         guildData.setLogJoinLeaveChannel(textChannel.getId());
-                        dbGuild.save();
+                        dbGuild.saveChanges();
                         event.getChannel().sendMessage(EmoteReference.OK + "The logging Join/Leave channel is set to: " + textChannel.getAsMention()).queue();
                     };
 
@@ -380,11 +385,12 @@ public class GuildOptions extends OptionHandler {
                     }
 
                     DBGuild dbGuild = MantaroData.db().getGuild(event.getGuild());
+                    dbGuild.trackChanges();
                     GuildData guildData = dbGuild.getData();
 
                     String joinMessage = String.join(" ", args);
                     guildData.setJoinMessage(joinMessage);
-                    dbGuild.save();
+                    dbGuild.saveChanges();
                     event.getChannel().sendMessage(EmoteReference.CORRECT + "Server join message set to: " + joinMessage).queue();
                 });//endregion
 
@@ -399,11 +405,12 @@ public class GuildOptions extends OptionHandler {
                     }
 
                     DBGuild dbGuild = MantaroData.db().getGuild(event.getGuild());
+                    dbGuild.trackChanges();
                     GuildData guildData = dbGuild.getData();
 
                     String leaveMessage = String.join(" ", args);
                     guildData.setLeaveMessage(leaveMessage);
-                    dbGuild.save();
+                    dbGuild.saveChanges();
                     event.getChannel().sendMessage(EmoteReference.CORRECT + "Server leave message set to: " + leaveMessage).queue();
                 });//endregion
         //endregion
@@ -508,11 +515,12 @@ public class GuildOptions extends OptionHandler {
 
                     String action = args[0];
                     DBGuild dbGuild = MantaroData.db().getGuild(event.getGuild());
+                    dbGuild.trackChanges();
                     GuildData guildData = dbGuild.getData();
 
                     try {
                         guildData.setCustomAdminLock(Boolean.parseBoolean(action));
-                        dbGuild.save();
+                        dbGuild.saveChanges();
                         String toSend = EmoteReference.CORRECT + (Boolean.parseBoolean(action) ? "Custom command creation " +
                                 "is now admin only." : "Custom command creation can now be done by anyone.");
                         event.getChannel().sendMessage(toSend).queue();
@@ -525,6 +533,7 @@ public class GuildOptions extends OptionHandler {
         registerOption("timedisplay:set", "Time display set", "Toggles between 12h and 24h time display.\n" +
                 "Example: `~>opts timedisplay 24h`", "Toggles between 12h and 24h time display.", (event, args) -> {
             DBGuild dbGuild = MantaroData.db().getGuild(event.getGuild());
+            dbGuild.trackChanges();
             GuildData guildData = dbGuild.getData();
 
             if (args.length == 0) {
@@ -538,12 +547,12 @@ public class GuildOptions extends OptionHandler {
                 case "12h":
                     event.getChannel().sendMessage(EmoteReference.CORRECT + "Set time display mode to 12h").queue();
                     guildData.setTimeDisplay(1);
-                    dbGuild.save();
+                    dbGuild.saveChanges();
                     break;
                 case "24h":
                     event.getChannel().sendMessage(EmoteReference.CORRECT + "Set time display mode to 24h").queue();
                     guildData.setTimeDisplay(0);
-                    dbGuild.save();
+                    dbGuild.saveChanges();
                     break;
                 default:
                     event.getChannel().sendMessage(EmoteReference.ERROR + "Not a valid choice. Valid choices: **24h**, **12h**").queue();
@@ -73,13 +73,14 @@ public class ModerationOptions extends OptionHandler {
                     }
 
                     DBGuild dbGuild = MantaroData.db().getGuild(guild);
+                    dbGuild.trackChanges();
                     GuildData guildData = dbGuild.getData();
                     List<String> toBlackList = mentioned.stream().map(ISnowflake::getId).collect(Collectors.toList());
 
                     String blacklisted = mentioned.stream().map(user -> user.getName() + "#" + user.getDiscriminator()).collect(Collectors.joining(","));
 
                     guildData.getDisabledUsers().addAll(toBlackList);
-                    dbGuild.save();
+                    dbGuild.saveChanges();
 
                     event.getChannel().sendMessage(EmoteReference.CORRECT + "Locally blacklisted users: **" + blacklisted + "**").queue();
                 });
@@ -97,13 +98,14 @@ public class ModerationOptions extends OptionHandler {
                     }
 
                     DBGuild dbGuild = MantaroData.db().getGuild(event.getGuild());
+                    dbGuild.trackChanges();
                     GuildData guildData = dbGuild.getData();
 
                     List<String> toUnBlackList = mentioned.stream().map(ISnowflake::getId).collect(Collectors.toList());
                     String unBlackListed = mentioned.stream().map(user -> user.getName() + "#" + user.getDiscriminator()).collect(Collectors.joining(","));
 
                     guildData.getDisabledUsers().removeAll(toUnBlackList);
-                    dbGuild.save();
+                    dbGuild.saveChanges();
 
                     event.getChannel().sendMessage(EmoteReference.CORRECT + "Locally unblacklisted users: **" + unBlackListed + "**").queue();
                 });
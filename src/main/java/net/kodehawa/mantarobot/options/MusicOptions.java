@@ -47,6 +47,7 @@ public class MusicOptions extends OptionHandler {
                         "Example: `~>opts fairqueue max 5`",
                 "Sets the maximum fairqueue value.", (event, args) -> {
                     DBGuild dbGuild = MantaroData.db().getGuild(event.getGuild());
+                    dbGuild.trackChanges();
                     GuildData guildData = dbGuild.getData();
 
                     if(args.length == 0) {
@@ -64,18 +65,19 @@ public class MusicOptions extends OptionHandler {
                     }
 
                     guildData.setMaxFairQueue(fq);
-                    dbGuild.save();
+                    dbGuild.saveChanges();
                     event.getChannel().sendMessage(EmoteReference.CORRECT + "Set max fair queue size to " + fq).queue();
                 });
 
         registerOption("musicannounce:toggle", "Music announce toggle", "Toggles whether the bot will announce the new song playing or no.", event -> {
             DBGuild dbGuild = MantaroData.db().getGuild(event.getGuild());
+            dbGuild.trackChanges();
             GuildData guildData = dbGuild.getData();
             boolean t1 = guildData.isMusicAnnounce();
 
             guildData.setMusicAnnounce(!t1);
             event.getChannel().sendMessage(EmoteReference.CORRECT + "Set music announce to " + "**" + !t1 + "**").queue();
-            dbGuild.save();
+            dbGuild.saveChanges();
         });
 
         registerOption("music:channel", "Music VC lock",
@@ -90,10 +92,11 @@ public class MusicOptions extends OptionHandler {
                     String channelName = String.join(" ", args);
 
                     DBGuild dbGuild = MantaroData.db().getGuild(event.getGuild());
+                    dbGuild.trackChanges();
                     GuildData guildData = dbGuild.getData();
                     Consumer<VoiceChannel> consumer = voiceChannel -> {
                         guildData.setMusicChannel(voiceChannel.getId());
-                        dbGuild.save();
+                        dbGuild.saveChanges();
                         event.getChannel().sendMessage(EmoteReference.OK + "Music Channel set to: " + voiceChannel.getName()).queue();
                     };
 
@@ -120,12 +123,13 @@ public class MusicOptions extends OptionHandler {
                     }
 
                     DBGuild dbGuild = MantaroData.db().getGuild(event.getGuild());
+                    dbGuild.trackChanges();
                     GuildData guildData = dbGuild.getData();
                     try {
                         int finalSize = Integer.parseInt(args[0]);
                         int applySize = finalSize >= 300 ? 300 : finalSize;
                         guildData.setMusicQueueSizeLimit((long) applySize);
-                        dbGuild.save();
+                        dbGuild.saveChanges();
                         event.getChannel().sendMessage(String.format(EmoteReference.MEGA + "The queue limit on this server is now " +
                                 "**%d** songs.", applySize)).queue();
                     } catch(NumberFormatException ex) {
@@ -136,9 +140,10 @@ public class MusicOptions extends OptionHandler {
 
         registerOption("music:channnel:clear", "Music channel clear", "Clears the specific music channel.", (event) -> {
             DBGuild dbGuild = MantaroData.db().getGuild(event.getGuild());
+            dbGuild.trackChanges();
             GuildData guildData = dbGuild.getData();
             guildData.setMusicChannel(null);
-            dbGuild.save();
+            dbGuild.saveChanges();
             event.getChannel().sendMessage(EmoteReference.CORRECT + "I can play music on all channels now").queue();
         });
     }
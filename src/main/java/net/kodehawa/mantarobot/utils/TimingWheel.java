@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2016-2018 David Alejandro Rubio Escares / Kodehawa
+ *
+ * Mantaro is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * Mantaro is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mantaro.  If not, see http://www.gnu.org/licenses/
+ */
+package net.kodehawa.mantarobot.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hashed timing wheel: a single thread expiring any amount of timeouts with a precision of one tick.
+ * <p>
+ * Every tick has a bucket (hashed by the absolute tick, so deadlines further away than a full turn just get skipped until their turn comes),
+ * scheduling is pushing to the bucket list and every tick handles all the due timeouts of its bucket in one go.
+ * The timeouts are the list nodes themselves, so scheduling doesn't allocate anything.
+ */
+@Slf4j
+public class TimingWheel {
+    private final long tickMillis;
+    private final Bucket[] buckets;
+    private final int mask;
+    private final AtomicInteger pending = new AtomicInteger();
+    //Last tick the timer thread started handling. Buckets up to this one are taken.
+    private volatile long currentTick;
+
+    /**
+     * @param name       The name of the timer thread.
+     * @param tickMillis How long a tick is, in milliseconds.
+     * @param ticks      How many buckets the wheel has, rounded up to a power of two.
+     */
+    public TimingWheel(String name, long tickMillis, int ticks) {
+        if(tickMillis < 1)
+            throw new IllegalArgumentException("Tick must be at least 1ms");
+
+        int size = Integer.highestOneBit(Math.max(ticks, 2) - 1) << 1;
+        this.tickMillis = tickMillis;
+        this.buckets = new Bucket[size];
+        this.mask = size - 1;
+        for(int i = 0; i < size; i++) {
+            buckets[i] = new Bucket();
+        }
+
+        this.currentTick = System.currentTimeMillis() / tickMillis - 1;
+        Thread thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Schedules a timeout. A timeout can only be scheduled once at a time.
+     *
+     * @param timeout  The timeout.
+     * @param deadline When it should expire, in epoch milliseconds.
+     */
+    public void schedule(Timeout timeout, long deadline) {
+        if(timeout.scheduled)
+            throw new IllegalStateException("Timeout is already scheduled");
+
+        timeout.scheduled = true;
+        timeout.deadline = deadline;
+        pending.incrementAndGet();
+
+        while(true) {
+            long tick = Math.max(deadline / tickMillis, currentTick + 1);
+            Bucket bucket = buckets[(int) (tick & mask)];
+            synchronized(bucket) {
+                //The timer got to it while we weren't looking, it'd wait a full turn there.
+                if(tick <= currentTick)
+                    continue;
+
+                timeout.next = bucket.head;
+                bucket.head = timeout;
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return How many timeouts are waiting to expire.
+     */
+    public int getPending() {
+        return pending.get();
+    }
+
+    private void run() {
+        List<Timeout> expired = new ArrayList<>();
+
+        while(true) {
+            long tick = currentTick + 1;
+            //A tick is handled once it's over, so everything on it is due.
+            long wait = (tick + 1) * tickMillis - System.currentTimeMillis();
+            if(wait > 0) {
+                try {
+                    Thread.sleep(wait);
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+
+            currentTick = tick;
+            long now = System.currentTimeMillis();
+            Bucket bucket = buckets[(int) (tick & mask)];
+            synchronized(bucket) {
+                Timeout previous = null;
+                for(Timeout t = bucket.head; t != null; t = t.next) {
+                    if(t.deadline > now) {
+                        previous = t;
+                        continue;
+                    }
+
+                    if(previous == null)
+                        bucket.head = t.next;
+                    else
+                        previous.next = t.next;
+                    expired.add(t);
+                }
+            }
+
+            for(Timeout t : expired) {
+                t.next = null;
+                t.scheduled = false;
+                pending.decrementAndGet();
+                try {
+                    t.expire(now);
+                } catch(Exception e) {
+                    log.error("Error running timeout", e);
+                }
+            }
+
+            expired.clear();
+        }
+    }
+
+    /**
+     * Something that can be scheduled on a {@link TimingWheel}. {@link #expire(long)} runs on the timer thread, so it should be quick.
+     */
+    public abstract static class Timeout {
+        private Timeout next;
+        private long deadline;
+        private volatile boolean scheduled;
+
+        /**
+         * @return Whether this timeout is waiting to expire.
+         */
+        public boolean isScheduled() {
+            return scheduled;
+        }
+
+        /**
+         * Called once the deadline passed.
+         *
+         * @param now The current time, in epoch milliseconds.
+         */
+        protected abstract void expire(long now);
+    }
+
+    private static class Bucket {
+        Timeout head;
+    }
+}
@@ -16,71 +16,90 @@
 
 package net.kodehawa.mantarobot.utils.commands;
 
+import com.timgroup.statsd.StatsDClient;
 import net.dv8tion.jda.core.entities.Member;
 import net.dv8tion.jda.core.entities.User;
 import net.kodehawa.mantarobot.data.MantaroData;
+import net.kodehawa.mantarobot.utils.TimingWheel;
 
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
-
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ratelimiter allowing a few uses per key, each one given back after its own (slightly randomized) cooldown.
+ * <p>
+ * Every key that used it recently has a single record, which is also its timeout on a {@link TimingWheel} shared by all the limiters:
+ * it's scheduled for the earliest use to give back, and once it has nothing left to give back it's dropped.
+ * So no matter how often a key gets tested, there's never more than one pending timeout for it and nothing gets allocated per call.
+ */
 public class NewRateLimiter {
-    private final ReferenceCountedMap map = new ReferenceCountedMap();
-    private final ScheduledExecutorService executor;
+    //50ms ticks, a full turn is a bit less than a minute.
+    private static final TimingWheel WHEEL = new TimingWheel("RateLimiter-Timer", 50, 1024);
+    private static final Map<String, NewRateLimiter> LIMITERS = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final ConcurrentHashMap<String, Limit> limits = new ConcurrentHashMap<>();
     private int limit = 1;
     private final long timeoutMillis;
     private final long delta;
     private boolean isPremiumAware = false;
     private final int spamThreshold;
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder spamDetections = new LongAdder();
 
-    public NewRateLimiter(ScheduledExecutorService executor, int limit, int spamThreshold, long timeoutMillis, long delta) {
-        this.executor = executor;
-        this.limit = limit;
-        this.spamThreshold = spamThreshold;
-        this.timeoutMillis = timeoutMillis;
-        this.delta = delta;
+    public NewRateLimiter(String name, int limit, int spamThreshold, long timeoutMillis, long delta) {
+        this(name, limit, spamThreshold, timeoutMillis, delta, false);
     }
 
-    public NewRateLimiter(ScheduledExecutorService executor, int limit, int spamThreshold, long timeout, TimeUnit unit, long delta) {
-        this.executor = executor;
-        this.limit = limit;
-        this.spamThreshold = spamThreshold;
-        this.timeoutMillis = unit.toMillis(timeout);
-        this.delta = delta;
+    public NewRateLimiter(String name, int limit, int spamThreshold, long timeout, TimeUnit unit, long delta) {
+        this(name, limit, spamThreshold, unit.toMillis(timeout), delta, false);
     }
 
-    public NewRateLimiter(ScheduledExecutorService executor, int spamThreshold, long timeout, TimeUnit unit, long delta) {
-        this.executor = executor;
-        this.spamThreshold = spamThreshold;
-        this.timeoutMillis = unit.toMillis(timeout);
-        this.delta = delta;
+    public NewRateLimiter(String name, int spamThreshold, long timeout, TimeUnit unit, long delta) {
+        this(name, 1, spamThreshold, unit.toMillis(timeout), delta, false);
     }
 
-    public NewRateLimiter(ScheduledExecutorService executor, int limit, int spamThreshold, long timeout, TimeUnit unit, long delta, boolean isPremiumAware) {
-        this.executor = executor;
-        this.limit = limit;
-        this.spamThreshold = spamThreshold;
-        this.timeoutMillis = unit.toMillis(timeout);
-        this.delta = delta;
-        this.isPremiumAware = isPremiumAware;
+    public NewRateLimiter(String name, int limit, int spamThreshold, long timeout, TimeUnit unit, long delta, boolean isPremiumAware) {
+        this(name, limit, spamThreshold, unit.toMillis(timeout), delta, isPremiumAware);
     }
 
-    public NewRateLimiter(ScheduledExecutorService executor, int spamThreshold, long timeout, TimeUnit unit, long delta, boolean isPremiumAware) {
-        this.executor = executor;
-        this.spamThreshold = spamThreshold;
-        this.timeoutMillis = unit.toMillis(timeout);
-        this.delta = delta;
-        this.isPremiumAware = isPremiumAware;
+    public NewRateLimiter(String name, int spamThreshold, long timeout, TimeUnit unit, long delta, boolean isPremiumAware) {
+        this(name, 1, spamThreshold, unit.toMillis(timeout), delta, isPremiumAware);
     }
 
-    public NewRateLimiter(ScheduledExecutorService executor, int limit, int spamThreshold, long timeoutMillis, long delta, boolean isPremiumAware) {
-        this.executor = executor;
+    /**
+     * @param name           Shown on the metrics, should be unique.
+     * @param limit          How many uses a key gets before being ratelimited.
+     * @param spamThreshold  How many rejected attempts in a row count as spam.
+     * @param timeoutMillis  How long it takes for a use to be given back.
+     * @param delta          Up to how much time gets randomly added to the timeout.
+     * @param isPremiumAware Whether premium users get told they can try again sooner.
+     */
+    public NewRateLimiter(String name, int limit, int spamThreshold, long timeoutMillis, long delta, boolean isPremiumAware) {
+        this.name = name;
         this.limit = limit;
         this.spamThreshold = spamThreshold;
         this.timeoutMillis = timeoutMillis;
         this.delta = delta;
         this.isPremiumAware = isPremiumAware;
+        LIMITERS.put(name, this);
+    }
+
+    /**
+     * Sends the metrics of every limiter to StatsD.
+     *
+     * @param client The client to send the values with.
+     */
+    public static void report(StatsDClient client) {
+        LIMITERS.forEach((name, limiter) -> {
+            client.recordGaugeValue("ratelimiter.active_keys", limiter.getActiveKeys(), "name:" + name);
+            client.count("ratelimiter.rejections", limiter.rejections.sumThenReset(), "name:" + name);
+            client.count("ratelimiter.spam", limiter.spamDetections.sumThenReset(), "name:" + name);
+        });
+        client.recordGaugeValue("ratelimiter.pending_timeouts", WHEEL.getPending());
     }
 
     protected void onSpamDetected(String key, int times) {}
@@ -90,41 +109,51 @@ public class NewRateLimiter {
     }
 
     public boolean test(String key) {
-        if(executor.isShutdown()) {
-            throw new IllegalStateException("The executor has been shut down! No ratelimits can be processed");
-        }
-
         boolean isPremium = isPremiumAware && MantaroData.db().getUser(key).isPremium();
-        ReferenceCountedLimit l = map.get(key);
-        if(l.times >= limit) {
-            l.attemptsAfterRateLimited++;
-            l.referenceCount--;
-            if(l.attemptsAfterRateLimited >= spamThreshold) {
-                onSpamDetected(key, l.attemptsAfterRateLimited);
+        int spam;
+
+        while(true) {
+            Limit l = limits.computeIfAbsent(key, Limit::new);
+            synchronized(l) {
+                //Dropped by the timer while we were getting it.
+                if(l.removed)
+                    continue;
+
+                if(l.times < limit) {
+                    long now = System.currentTimeMillis();
+                    if(l.tryAgainIn < now) {
+                        l.tryAgainIn = now + (isPremium ? (long) (timeoutMillis * 0.75) : timeoutMillis);
+                    }
+
+                    l.releases[l.times++] = now + getCoolDown(key);
+                    if(!l.isScheduled())
+                        WHEEL.schedule(l, l.releases[l.times - 1]);
+                    return true;
+                }
+
+                rejections.increment();
+                spam = ++l.attemptsAfterRateLimited;
             }
-            return false;
-        }
 
-        long now = System.currentTimeMillis();
-        if(l.tryAgainIn < now) {
-            l.tryAgainIn = now + (isPremium ? (long) (timeoutMillis * 0.75) : timeoutMillis);
+            break;
         }
 
-        executor.schedule(() -> {
-            map.dispose(key, l);
-            l.times--;
-            l.attemptsAfterRateLimited = 0;
-        }, getCoolDown(key), TimeUnit.MILLISECONDS);
+        if(spam >= spamThreshold) {
+            spamDetections.increment();
+            onSpamDetected(key, spam);
+        }
 
-        return ++l.times <= limit;
+        return false;
     }
 
     public long tryAgainIn(String key) {
-        ReferenceCountedLimit l = map.getDirect(key);
+        Limit l = limits.get(key);
         if(l == null)
             return 0;
 
-        return Math.max(l.tryAgainIn - System.currentTimeMillis(), 0);
+        synchronized(l) {
+            return Math.max(l.tryAgainIn - System.currentTimeMillis(), 0);
+        }
     }
 
     public long tryAgainIn(Member key) {
@@ -135,44 +164,54 @@ public class NewRateLimiter {
         return tryAgainIn(key.getId());
     }
 
-    public ScheduledExecutorService getExecutor() {
-        return executor;
+    public String getName() {
+        return name;
     }
 
-    private static class ReferenceCountedMap {
-        private final ConcurrentHashMap<String, ReferenceCountedLimit> map = new ConcurrentHashMap<>();
+    /**
+     * @return How many keys have uses waiting to be given back.
+     */
+    public int getActiveKeys() {
+        return limits.size();
+    }
 
-        ReferenceCountedLimit get(String key) {
-            return map.compute(key, (k,v)->{
-                if(v != null) {
-                    v.referenceCount++;
-                    return v;
-                }
-                return new ReferenceCountedLimit();
-            });
-        }
+    //Everything the limiter knows about a key. Also the timeout giving its uses back.
+    private class Limit extends TimingWheel.Timeout {
+        final String key;
+        //When each use gets given back, only the first `times` are used.
+        final long[] releases = new long[limit];
+        int times;
+        int attemptsAfterRateLimited;
+        long tryAgainIn;
+        boolean removed;
 
-        ReferenceCountedLimit getDirect(String key) {
-            return map.get(key);
+        Limit(String key) {
+            this.key = key;
         }
 
-        void dispose(String key, ReferenceCountedLimit object) {
-            map.compute(key, (k,v)->{
-                if(v == object) {
-                    int i = --v.referenceCount;
-                    if(i <= 0) return null;
-                    return v;
+        @Override
+        protected synchronized void expire(long now) {
+            int kept = 0;
+            long next = Long.MAX_VALUE;
+            for(int i = 0; i < times; i++) {
+                if(releases[i] > now) {
+                    next = Math.min(next, releases[i]);
+                    releases[kept++] = releases[i];
                 }
+            }
 
-                return null;
-            });
+            if(kept < times)
+                attemptsAfterRateLimited = 0;
+            times = kept;
+
+            if(times > 0) {
+                //A test could've scheduled it again already, between the timer picking it up and this running.
+                if(!isScheduled())
+                    WHEEL.schedule(this, next);
+            } else {
+                removed = true;
+                limits.remove(key, this);
+            }
         }
     }
-
-    private static class ReferenceCountedLimit {
-        int referenceCount = 1;
-        int times;
-        int attemptsAfterRateLimited;
-        long tryAgainIn;
-    }
 }
@@ -16,16 +16,13 @@
 
 package net.kodehawa.mantarobot.utils.commands;
 
-import lombok.Getter;
 import net.dv8tion.jda.core.entities.Member;
 import net.dv8tion.jda.core.entities.User;
 import net.kodehawa.mantarobot.data.MantaroData;
 
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This class defines the x ratelimit that will be taken into account when x user inputs a command.
@@ -35,16 +32,22 @@ import java.util.concurrent.atomic.AtomicInteger;
  * <p>
  * This class normally does the work of making abusable commands not-so abusable, like ~>loot. Also sorts daily or timely timeouts for other commands like daily and rep.
  * <p>
+ * Implemented as a GCRA (a lazily evaluated token bucket): every key only stores the time its bucket will be full again, and a call is a single
+ * compare-and-set on it, without scheduling anything. Keys with a full bucket are the same as keys that were never seen, so they get swept
+ * once a minute.
+ * <p>
  * Made by UmModderQualquier (Natan), modified by Kodehawa.
  *
  * @since 01-06-2017
  */
 public class RateLimiter {
-    private static final ScheduledExecutorService ses = Executors.newSingleThreadScheduledExecutor();
+    //Marks an entry the sweeper removed, so nobody updates it after it's gone.
+    private static final long REMOVED = Long.MIN_VALUE;
+
     private final long max;
     private final long timeout;
-    @Getter
-    private final ConcurrentHashMap<String, Pair<AtomicInteger, Long>> usersRateLimited = new ConcurrentHashMap<>();
+    //Key -> when their bucket will be full again (the theoretical arrival time), in milliseconds.
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
     private boolean isPremiumAware = false;
 
     /**
@@ -53,8 +56,7 @@ public class RateLimiter {
      * @param timeout How much time until the ratelimit gets lifted
      */
     public RateLimiter(TimeUnit timeUnit, int timeout) {
-        this.max = 1;
-        this.timeout = timeUnit.toMillis(timeout);
+        this(timeUnit, 1, timeout);
     }
 
     /**
@@ -64,9 +66,8 @@ public class RateLimiter {
      * @param timeout How much time until the ratelimit gets lifted
      */
     public RateLimiter(TimeUnit timeUnit, int timeout, boolean isPremiumAware) {
-        this.max = 1;
+        this(timeUnit, 1, timeout);
         this.isPremiumAware = isPremiumAware;
-        this.timeout = timeUnit.toMillis(timeout);
     }
 
     /**
@@ -77,40 +78,43 @@ public class RateLimiter {
     public RateLimiter(TimeUnit timeUnit, int max, int timeout) {
         this.max = max;
         this.timeout = timeUnit.toMillis(timeout);
+        MantaroData.getExecutor().scheduleAtFixedRate(this::sweep, 1, 1, TimeUnit.MINUTES);
     }
 
     //Basically where you get b1nzy'd.
     public boolean process(String key) {
         boolean isPremium = isPremiumAware && MantaroData.db().getUser(key).isPremium();
-        Pair<AtomicInteger, Long> p = usersRateLimited.get(key);
-
-        //Put the user on the RL map if they aren't here already, but we already let him pass.
-        if(p == null) {
-            usersRateLimited.put(key, p = new Pair<>());
-            p.first = new AtomicInteger();
-        }
-
-        AtomicInteger a = p.first;
-        long i = a.get();
-        if(i >= max) return false;
-
-        a.incrementAndGet();
-        long now = System.currentTimeMillis();
-
-        Long tryAgain = p.second;
-        if(tryAgain == null || tryAgain < now) {
-            p.second = now + (isPremium ? (long) (timeout * 0.75) : timeout);
+        //Every use takes this long to be given back.
+        long increment = isPremium ? (long) (timeout * 0.75) : timeout;
+
+        while(true) {
+            AtomicLong bucket = buckets.computeIfAbsent(key, k -> new AtomicLong());
+            long now = System.currentTimeMillis();
+            long tat = bucket.get();
+            if(tat == REMOVED)
+                continue;
+
+            long start = Math.max(tat, now);
+            //Only max uses fit in the bucket at once.
+            if(start - now > (max - 1) * increment)
+                return false;
+
+            if(bucket.compareAndSet(tat, start + increment))
+                return true;
         }
-
-        ses.schedule(a::decrementAndGet, isPremium ? (long) (timeout * 0.75) : timeout, TimeUnit.MILLISECONDS);
-        return true;
     }
 
     //Method overload.
     public long tryAgainIn(String key) {
-        Pair<AtomicInteger, Long> p = usersRateLimited.get(key);
-        if(p == null || p.second == null) return 0;
-        return Math.max(p.second - System.currentTimeMillis(), 0);
+        AtomicLong bucket = buckets.get(key);
+        if(bucket == null)
+            return 0;
+
+        long tat = bucket.get();
+        if(tat == REMOVED)
+            return 0;
+
+        return Math.max(tat - (max - 1) * timeout - System.currentTimeMillis(), 0);
     }
 
     public long tryAgainIn(Member key) {
@@ -129,8 +133,20 @@ public class RateLimiter {
         return process(member.getUser());
     }
 
-    private static class Pair<F, S> {
-        F first;
-        S second;
+    /**
+     * @return How many keys used this limiter recently enough to still be limited.
+     */
+    public int getTrackedKeys() {
+        return buckets.size();
+    }
+
+    private void sweep() {
+        long now = System.currentTimeMillis();
+        buckets.forEach((key, bucket) -> {
+            long tat = bucket.get();
+            //Only remove it if nobody used it in the meantime.
+            if(tat <= now && tat != REMOVED && bucket.compareAndSet(tat, REMOVED))
+                buckets.remove(key, bucket);
+        });
     }
 }
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2016-2018 David Alejandro Rubio Escares / Kodehawa
+ *
+ * Mantaro is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * Mantaro is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mantaro.  If not, see http://www.gnu.org/licenses/
+ */
+
+package net.kodehawa.mantarobot.utils.stats;
+
+import com.timgroup.statsd.StatsDClient;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lock-free latency recorder backed by a HdrHistogram {@link Recorder}.
+ * Recording is wait-free, and the values get drained into a histogram holding everything since startup
+ * and another one holding everything since the last time it was reported to StatsD.
+ */
+public class LatencyRecorder {
+    private final Recorder recorder = new Recorder(2);
+    private final Histogram total = new Histogram(2);
+    private final Histogram sinceReport = new Histogram(2);
+    private Histogram interval;
+
+    /**
+     * Records a value.
+     *
+     * @param nanos The latency to record, in nanoseconds.
+     */
+    public void record(long nanos) {
+        recorder.recordValue(Math.max(nanos, 0));
+    }
+
+    /**
+     * @return A copy of everything recorded since startup, in nanoseconds.
+     */
+    public synchronized Histogram snapshot() {
+        drain();
+        return total.copy();
+    }
+
+    /**
+     * Sends the percentiles of everything recorded since the last report to StatsD, in microseconds.
+     * Nothing is sent if nothing was recorded.
+     *
+     * @param client The client to send the values with.
+     * @param aspect The name of the metric, suffixed with the percentile.
+     * @param tags   The tags to send along the values.
+     */
+    public synchronized void report(StatsDClient client, String aspect, String... tags) {
+        drain();
+        if(sinceReport.getTotalCount() == 0)
+            return;
+
+        client.recordGaugeValue(aspect + ".p50", micros(sinceReport.getValueAtPercentile(50)), tags);
+        client.recordGaugeValue(aspect + ".p95", micros(sinceReport.getValueAtPercentile(95)), tags);
+        client.recordGaugeValue(aspect + ".p99", micros(sinceReport.getValueAtPercentile(99)), tags);
+        client.recordGaugeValue(aspect + ".max", micros(sinceReport.getMaxValue()), tags);
+        client.recordGaugeValue(aspect + ".count", sinceReport.getTotalCount(), tags);
+        sinceReport.reset();
+    }
+
+    private void drain() {
+        interval = recorder.getIntervalHistogram(interval);
+        total.add(interval);
+        sinceReport.add(interval);
+    }
+
+    public static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}